@@ -169,17 +169,14 @@ public class Analytics {
         analysis.consume((term, waveformFiltered) -> {
             boolean found = false;
             if (!bitmaps.isEmpty(constrained)) {
-                BM answer = waveformFiltered;
-                bitmaps.inPlaceAnd(waveformFiltered, constrained);
-                if (!bitmaps.isEmpty(answer)) {
+                if (bitmaps.intersects(waveformFiltered, constrained)) {
                     found = true;
                     for (int i = 0; i < rawWaveformBuffer.length; i++) {
                         Arrays.fill(rawWaveformBuffer[i], 0);
                     }
-                    bitmaps.boundedCardinalities(answer, indexes, rawWaveformBuffer);
+                    bitmaps.boundedIntersectionCardinalities(waveformFiltered, constrained, indexes, rawWaveformBuffer);
 
                     if (solutionLog.isLogLevelEnabled(MiruSolutionLogLevel.DEBUG)) {
-                        solutionLog.log(MiruSolutionLogLevel.DEBUG, "analytics answer: {} items.", bitmaps.cardinality(answer));
                         solutionLog.log(MiruSolutionLogLevel.DEBUG, "analytics name: {}, waveform: {}.", term, Arrays.toString(rawWaveformBuffer));
                     }
                 } else {
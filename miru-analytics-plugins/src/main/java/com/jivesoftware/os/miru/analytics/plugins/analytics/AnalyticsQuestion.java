@@ -124,6 +124,11 @@ public class AnalyticsQuestion implements Question<AnalyticsQuery, AnalyticsAnsw
         return report;
     }
 
+    @Override
+    public MiruRequest<AnalyticsQuery> getCacheableRequest() {
+        return request;
+    }
+
     @Override
     public String toString() {
         return "AnalyticsQuestion{"
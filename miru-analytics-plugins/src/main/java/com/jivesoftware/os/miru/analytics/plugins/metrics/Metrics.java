@@ -18,14 +18,14 @@ public class Metrics {
     public <BM extends IBM, IBM> Waveform metricingSum(String id,
         MiruBitmaps<BM, IBM> bitmaps,
         BM rawAnswer,
-        List<BM> answers,
+        List<IBM> powerBits,
         int[] indexes,
         int numBits)
         throws Exception {
 
-        log.debug("Get metricing for answers={}", answers);
+        log.debug("Get metricing for rawAnswer={}", rawAnswer);
 
-        long[] waveform = sum(indexes, numBits, answers, bitmaps);
+        long[] waveform = sum(indexes, numBits, rawAnswer, powerBits, bitmaps);
 
         return Waveform.compressed(new MiruValue(id), waveform);
     }
@@ -33,19 +33,21 @@ public class Metrics {
     public <BM extends IBM, IBM> Waveform metricingAvg(String id,
         MiruBitmaps<BM, IBM> bitmaps,
         BM rawAnswer,
-        List<BM> answers,
+        List<IBM> powerBits,
         int[] indexes,
         int numBits)
         throws Exception {
 
-        log.debug("Get metricing for answers={}", answers);
+        log.debug("Get metricing for rawAnswer={}", rawAnswer);
         long[] rawCardinalities = new long[indexes.length - 1];
         bitmaps.boundedCardinalities(rawAnswer, new int[][] { indexes }, new long[][] { rawCardinalities });
 
-        long[] waveform = sum(indexes, numBits, answers, bitmaps);
+        long[] waveform = sum(indexes, numBits, rawAnswer, powerBits, bitmaps);
 
         for (int i = 0; i < waveform.length; i++) {
-            waveform[i] /= rawCardinalities[i];
+            if (rawCardinalities[i] > 0) {
+                waveform[i] /= rawCardinalities[i];
+            }
         }
         return Waveform.compressed(new MiruValue(id), waveform);
     }
@@ -61,7 +63,7 @@ public class Metrics {
      */
     public <BM extends IBM, IBM> Waveform metricingMin(MiruBitmaps<BM, IBM> bitmaps,
         BM rawAnswer,
-        List<BM> answers,
+        List<IBM> powerBits,
         int[] indexes,
         int numBits)
         throws Exception {
@@ -71,7 +73,7 @@ public class Metrics {
 
     public <BM extends IBM, IBM> Waveform metricingMax(MiruBitmaps<BM, IBM> bitmaps,
         BM rawAnswer,
-        List<BM> answers,
+        List<IBM> powerBits,
         int[] indexes,
         int numBits)
         throws Exception {
@@ -79,16 +81,16 @@ public class Metrics {
         return null; // TODO
     }
 
-    private <BM extends IBM, IBM> long[] sum(int[] indexes, int numBits, List<BM> answers, MiruBitmaps<BM, IBM> bitmaps) {
-        long[] waveform = new long[indexes.length];
+    private <BM extends IBM, IBM> long[] sum(int[] indexes, int numBits, BM rawAnswer, List<IBM> powerBits, MiruBitmaps<BM, IBM> bitmaps) {
+        long[] waveform = new long[indexes.length - 1];
         long[] cardinalities = new long[indexes.length - 1];
         for (int i = 0; i < numBits; i++) {
-            BM answer = answers.get(i);
-            if (answer != null) {
-                int multiplier = 1 << (numBits - 1 - i);
+            IBM powerBit = powerBits.get(i);
+            if (powerBit != null) {
+                long multiplier = 1L << (numBits - 1 - i);
                 Arrays.fill(cardinalities, 0);
-                bitmaps.boundedCardinalities(answer, new int[][] { indexes }, new long[][] { cardinalities });
-                for (int j = 0; j < indexes.length; j++) {
+                bitmaps.boundedIntersectionCardinalities(powerBit, rawAnswer, new int[][] { indexes }, new long[][] { cardinalities });
+                for (int j = 0; j < cardinalities.length; j++) {
                     waveform[j] += multiplier * cardinalities[j];
                 }
             }
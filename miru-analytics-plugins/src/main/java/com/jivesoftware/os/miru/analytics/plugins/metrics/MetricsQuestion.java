@@ -140,13 +140,13 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
         MiruFieldIndex<BM, IBM> primaryFieldIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
         int powerBitsFieldId = context.getSchema().getFieldId(request.query.powerBitsFieldName);
         MiruFieldDefinition powerBitsFieldDefinition = context.getSchema().getFieldDefinition(powerBitsFieldId);
-        List<BitmapAndLastId<BM>> powerBitIndexes = new ArrayList<>();
+        List<IBM> powerBits = new ArrayList<>();
         for (int i = 0; i < 64; i++) {
             MiruTermId powerBitTerm = context.getTermComposer().compose(schema, powerBitsFieldDefinition, stackBuffer, String.valueOf(i));
             MiruInvertedIndex<BM, IBM> invertedIndex = primaryFieldIndex.get("metrics", powerBitsFieldId, powerBitTerm);
             BitmapAndLastId<BM> powerBitContainer = new BitmapAndLastId<>();
             invertedIndex.getIndex(powerBitContainer, stackBuffer);
-            powerBitIndexes.add(powerBitContainer);
+            powerBits.add(powerBitContainer.isSet() ? powerBitContainer.getBitmap() : null);
         }
 
         List<Waveform> waveforms = Lists.newArrayListWithCapacity(request.query.filters.size());
@@ -158,27 +158,9 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
 
                 BM rawAnswer = bitmaps.and(Arrays.asList(constrained, waveformFiltered));
                 if (!bitmaps.isEmpty(rawAnswer)) {
-                    List<BM> answers = Lists.newArrayList();
-                    for (int i = 0; i < 64; i++) {
-                        BitmapAndLastId<BM> powerBitIndex = powerBitIndexes.get(i);
-                        if (powerBitIndex.isSet()) {
-                            BM answer = bitmaps.and(Arrays.asList(powerBitIndex.getBitmap(), rawAnswer));
-                            answers.add(answer);
-                        } else {
-                            answers.add(null);
-                        }
-                    }
-
-                    waveform = metrics.metricingAvg(entry.getKey(), bitmaps, rawAnswer, answers, indexes, 64);
+                    waveform = metrics.metricingAvg(entry.getKey(), bitmaps, rawAnswer, powerBits, indexes, 64);
                     if (solutionLog.isLogLevelEnabled(MiruSolutionLogLevel.DEBUG)) {
-                        int cardinality = 0;
-                        for (int i = 0; i < 64; i++) {
-                            BM answer = answers.get(i);
-                            if (answer != null) {
-                                cardinality += bitmaps.cardinality(answer);
-                            }
-                        }
-                        solutionLog.log(MiruSolutionLogLevel.DEBUG, "metrics answer: {} items.", cardinality);
+                        solutionLog.log(MiruSolutionLogLevel.DEBUG, "metrics answer: {} items.", bitmaps.cardinality(rawAnswer));
                         solutionLog.log(MiruSolutionLogLevel.DEBUG, "metrics name: {}, waveform: {}.", entry.getKey(), waveform);
                     }
                 } else {
@@ -213,4 +195,9 @@ public class MetricsQuestion implements Question<MetricsQuery, MetricsAnswer, Me
         }
         return report;
     }
+
+    @Override
+    public MiruRequest<MetricsQuery> getCacheableRequest() {
+        return request;
+    }
 }
@@ -11,29 +11,59 @@ public class MiruPartitionedActivity {
 
     public enum Type {
 
-        ACTIVITY((byte) 125, false, true, false),
-        REPAIR((byte) 125, false, true, false),
-        REMOVE((byte) 125, false, true, false),
-        READ((byte) 125, false, false, true),
-        UNREAD((byte) 125, false, false, true),
-        MARK_ALL_READ((byte) 125, false, false, true),
-
-        END((byte) 126, true, false, false),
-
-        BEGIN((byte) 127, true, false, false);
+        // indexes are persisted by the binary codec, so they must never be reused or renumbered
+        ACTIVITY(0, (byte) 125, false, true, false),
+        REPAIR(1, (byte) 125, false, true, false),
+        REMOVE(2, (byte) 125, false, true, false),
+        READ(3, (byte) 125, false, false, true),
+        UNREAD(4, (byte) 125, false, false, true),
+        MARK_ALL_READ(5, (byte) 125, false, false, true),
+
+        END(6, (byte) 126, true, false, false),
+
+        BEGIN(7, (byte) 127, true, false, false);
+
+        private final static Type[] types;
+
+        static {
+            int maxIndex = 0;
+            for (Type value : values()) {
+                maxIndex = Math.max(maxIndex, value.index);
+            }
+            types = new Type[maxIndex + 1];
+            for (Type value : values()) {
+                if (types[value.index] != null) {
+                    throw new IllegalStateException("Duplicate type index " + value.index + " for " + types[value.index] + " and " + value);
+                }
+                types[value.index] = value;
+            }
+        }
 
+        private final byte index;
         private final byte sort;
         private final boolean boundaryType;
         private final boolean activityType;
         private final boolean readType;
 
-        Type(byte sort, boolean boundaryType, boolean activityType, boolean readType) {
+        Type(int index, byte sort, boolean boundaryType, boolean activityType, boolean readType) {
+            this.index = (byte) index;
             this.sort = sort;
             this.boundaryType = boundaryType;
             this.activityType = activityType;
             this.readType = readType;
         }
 
+        public byte getIndex() {
+            return index;
+        }
+
+        /**
+         * @return the type with the given index, or null if there is none
+         */
+        public static Type fromIndex(int index) {
+            return index >= 0 && index < types.length ? types[index] : null;
+        }
+
         public byte getSort() {
             return sort;
         }
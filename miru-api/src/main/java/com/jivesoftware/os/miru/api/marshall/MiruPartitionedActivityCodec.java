@@ -0,0 +1,420 @@
+package com.jivesoftware.os.miru.api.marshall;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.MiruReadEvent;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.wal.MiruWALClient.StreamBatch;
+import com.jivesoftware.os.miru.api.wal.MiruWALEntry;
+import com.jivesoftware.os.rcvs.marshall.api.TypeMarshaller;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.xerial.snappy.Snappy;
+
+/**
+ * Versioned binary encoding for partitioned activities, both as single activity WAL rows and as whole WAL stream batches. Numbers
+ * are varints, and every string goes through a dictionary scoped to the row or batch, so field names and repeated values are
+ * written once and then referenced by ordinal. Bodies larger than a threshold are snappy compressed. Read events and batch cursors
+ * are rare and small, so they stay JSON inside the binary body.
+ * <p>
+ * Encoded bytes begin with a format byte and a flags byte. Anything that does not begin with a known format byte is decoded as the
+ * legacy JSON, so rows written before this codec remain readable.
+ */
+public class MiruPartitionedActivityCodec implements TypeMarshaller<MiruPartitionedActivity> {
+
+    private static final byte FORMAT_V1 = 1;
+    private static final byte FLAG_SNAPPY = 1;
+
+    private static final int HAS_ACTIVITY = 1;
+    private static final int HAS_READ_EVENT = 2;
+    private static final int HAS_ACTIVITY_TENANT = 4;
+
+    private final ObjectMapper mapper;
+    private final int compressAboveBytes;
+
+    /**
+     * @param compressAboveBytes bodies larger than this are compressed, or -1 to never compress
+     */
+    public MiruPartitionedActivityCodec(ObjectMapper mapper, int compressAboveBytes) {
+        this.mapper = mapper;
+        this.compressAboveBytes = compressAboveBytes;
+    }
+
+    @Override
+    public MiruPartitionedActivity fromBytes(byte[] bytes) throws Exception {
+        if (bytes == null) {
+            return null;
+        }
+        if (!isBinary(bytes)) {
+            return mapper.readValue(bytes, MiruPartitionedActivity.class);
+        }
+        return readActivity(open(bytes));
+    }
+
+    @Override
+    public byte[] toBytes(MiruPartitionedActivity partitionedActivity) throws Exception {
+        Output out = new Output();
+        writeActivity(out, partitionedActivity);
+        return finish(out);
+    }
+
+    @Override
+    public MiruPartitionedActivity fromLexBytes(byte[] bytes) throws Exception {
+        return fromBytes(bytes);
+    }
+
+    @Override
+    public byte[] toLexBytes(MiruPartitionedActivity partitionedActivity) throws Exception {
+        return toBytes(partitionedActivity);
+    }
+
+    public <C> byte[] batchToBytes(StreamBatch<MiruWALEntry, C> batch) throws Exception {
+        Output out = new Output();
+        out.writeBytes(mapper.writeValueAsBytes(new StreamBatch<>(null, batch.cursor, batch.endOfWAL, batch.suppressed)));
+        if (batch.activities == null) {
+            out.writeVarInt(0);
+        } else {
+            out.writeVarInt(batch.activities.size() + 1);
+            for (MiruWALEntry entry : batch.activities) {
+                out.writeSignedVarLong(entry.collisionId);
+                out.writeSignedVarLong(entry.version);
+                if (entry.activity == null) {
+                    out.writeByte(0);
+                } else {
+                    out.writeByte(1);
+                    writeActivity(out, entry.activity);
+                }
+            }
+        }
+        return finish(out);
+    }
+
+    public <C> StreamBatch<MiruWALEntry, C> batchFromBytes(byte[] bytes, Class<C> cursorClass) throws Exception {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (!isBinary(bytes)) {
+            throw new IOException("Unsupported activity batch format: " + bytes[0]);
+        }
+        Input in = open(bytes);
+        JavaType batchType = mapper.getTypeFactory().constructParametricType(StreamBatch.class, MiruWALEntry.class, cursorClass);
+        StreamBatch<MiruWALEntry, C> batch = mapper.readValue(in.readBytes(), batchType);
+        int count = in.readVarInt();
+        if (count == 0) {
+            batch.activities = null;
+        } else {
+            List<MiruWALEntry> activities = Lists.newArrayListWithCapacity(count - 1);
+            for (int i = 0; i < count - 1; i++) {
+                long collisionId = in.readSignedVarLong();
+                long version = in.readSignedVarLong();
+                MiruPartitionedActivity activity = in.readByte() == 0 ? null : readActivity(in);
+                activities.add(new MiruWALEntry(collisionId, version, activity));
+            }
+            batch.activities = activities;
+        }
+        return batch;
+    }
+
+    private static boolean isBinary(byte[] bytes) {
+        return bytes.length >= 2 && bytes[0] == FORMAT_V1;
+    }
+
+    private byte[] finish(Output out) throws IOException {
+        byte[] body = out.toByteArray();
+        byte flags = 0;
+        if (compressAboveBytes >= 0 && body.length > compressAboveBytes) {
+            body = Snappy.compress(body);
+            flags |= FLAG_SNAPPY;
+        }
+        byte[] bytes = new byte[body.length + 2];
+        bytes[0] = FORMAT_V1;
+        bytes[1] = flags;
+        System.arraycopy(body, 0, bytes, 2, body.length);
+        return bytes;
+    }
+
+    private static Input open(byte[] bytes) throws IOException {
+        byte[] body = Arrays.copyOfRange(bytes, 2, bytes.length);
+        if ((bytes[1] & FLAG_SNAPPY) != 0) {
+            body = Snappy.uncompress(body);
+        }
+        return new Input(body);
+    }
+
+    private void writeActivity(Output out, MiruPartitionedActivity partitionedActivity) throws IOException {
+        out.writeByte(partitionedActivity.type.getIndex());
+        out.writeSignedVarInt(partitionedActivity.writerId);
+        out.writeSignedVarInt(partitionedActivity.getPartitionId());
+        byte[] tenantId = partitionedActivity.getTenantIdAsBytes();
+        out.writeBytes(tenantId);
+        out.writeSignedVarInt(partitionedActivity.index);
+        out.writeSignedVarLong(partitionedActivity.timestamp);
+        out.writeSignedVarLong(partitionedActivity.clockTimestamp);
+
+        MiruActivity activity = partitionedActivity.activity.orNull();
+        MiruReadEvent readEvent = partitionedActivity.readEvent.orNull();
+        boolean activityTenant = activity != null && (activity.tenantId == null || !Arrays.equals(activity.tenantId.getBytes(), tenantId));
+        out.writeByte((activity != null ? HAS_ACTIVITY : 0) | (readEvent != null ? HAS_READ_EVENT : 0) | (activityTenant ? HAS_ACTIVITY_TENANT : 0));
+
+        if (activity != null) {
+            if (activityTenant) {
+                out.writeNullableBytes(activity.tenantId != null ? activity.tenantId.getBytes() : null);
+            }
+            out.writeSignedVarLong(activity.time);
+            out.writeSignedVarLong(activity.version);
+            out.writeByte(activity.realtimeDelivery ? 1 : 0);
+            if (activity.authz == null) {
+                out.writeVarInt(0);
+            } else {
+                out.writeVarInt(activity.authz.length + 1);
+                for (String authz : activity.authz) {
+                    out.writeString(authz);
+                }
+            }
+            writeValues(out, activity.fieldsValues);
+            writeValues(out, activity.propsValues);
+        }
+        if (readEvent != null) {
+            out.writeBytes(mapper.writeValueAsBytes(readEvent));
+        }
+    }
+
+    private MiruPartitionedActivity readActivity(Input in) throws IOException {
+        int typeIndex = in.readByte();
+        MiruPartitionedActivity.Type type = MiruPartitionedActivity.Type.fromIndex(typeIndex);
+        if (type == null) {
+            throw new IOException("Unknown activity type: " + typeIndex);
+        }
+        int writerId = in.readSignedVarInt();
+        int partitionId = in.readSignedVarInt();
+        byte[] tenantId = in.readBytes();
+        int index = in.readSignedVarInt();
+        long timestamp = in.readSignedVarLong();
+        long clockTimestamp = in.readSignedVarLong();
+        int presence = in.readByte();
+
+        MiruActivity activity = null;
+        if ((presence & HAS_ACTIVITY) != 0) {
+            MiruTenantId activityTenantId;
+            if ((presence & HAS_ACTIVITY_TENANT) != 0) {
+                byte[] activityTenant = in.readNullableBytes();
+                activityTenantId = activityTenant != null ? new MiruTenantId(activityTenant) : null;
+            } else {
+                activityTenantId = new MiruTenantId(tenantId);
+            }
+            long time = in.readSignedVarLong();
+            long version = in.readSignedVarLong();
+            boolean realtimeDelivery = in.readByte() != 0;
+            String[] authz = null;
+            int authzCount = in.readVarInt();
+            if (authzCount > 0) {
+                authz = new String[authzCount - 1];
+                for (int i = 0; i < authz.length; i++) {
+                    authz[i] = in.readString();
+                }
+            }
+            Map<String, List<String>> fieldsValues = readValues(in);
+            Map<String, List<String>> propsValues = readValues(in);
+            activity = new MiruActivity(activityTenantId, time, version, realtimeDelivery, authz, fieldsValues, propsValues);
+        }
+        MiruReadEvent readEvent = null;
+        if ((presence & HAS_READ_EVENT) != 0) {
+            readEvent = mapper.readValue(in.readBytes(), MiruReadEvent.class);
+        }
+        return MiruPartitionedActivity.fromJson(type, writerId, partitionId, tenantId, index, timestamp, clockTimestamp, activity, readEvent);
+    }
+
+    private static void writeValues(Output out, Map<String, List<String>> values) {
+        if (values == null) {
+            out.writeVarInt(0);
+            return;
+        }
+        out.writeVarInt(values.size() + 1);
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            out.writeString(entry.getKey());
+            List<String> list = entry.getValue();
+            if (list == null) {
+                out.writeVarInt(0);
+            } else {
+                out.writeVarInt(list.size() + 1);
+                for (String value : list) {
+                    out.writeString(value);
+                }
+            }
+        }
+    }
+
+    private static Map<String, List<String>> readValues(Input in) throws IOException {
+        int count = in.readVarInt();
+        if (count == 0) {
+            return null;
+        }
+        Map<String, List<String>> values = Maps.newLinkedHashMap();
+        for (int i = 0; i < count - 1; i++) {
+            String key = in.readString();
+            int size = in.readVarInt();
+            List<String> list = null;
+            if (size > 0) {
+                list = Lists.newArrayListWithCapacity(size - 1);
+                for (int j = 0; j < size - 1; j++) {
+                    list.add(in.readString());
+                }
+            }
+            values.put(key, list);
+        }
+        return values;
+    }
+
+    private static class Output {
+
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> dictionary = Maps.newHashMap();
+
+        private void writeByte(int b) {
+            bytes.write(b);
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeSignedVarInt(int value) {
+            writeVarLong(((long) value << 1) ^ ((long) value >> 63));
+        }
+
+        private void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                bytes.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            bytes.write((int) value);
+        }
+
+        private void writeBytes(byte[] value) {
+            writeVarInt(value.length);
+            bytes.write(value, 0, value.length);
+        }
+
+        private void writeNullableBytes(byte[] value) {
+            if (value == null) {
+                writeVarInt(0);
+            } else {
+                writeVarInt(value.length + 1);
+                bytes.write(value, 0, value.length);
+            }
+        }
+
+        /**
+         * Writes 0 for null, 1 followed by the bytes for a string seen for the first time, or 2 plus its dictionary ordinal.
+         */
+        private void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer ordinal = dictionary.get(value);
+            if (ordinal != null) {
+                writeVarInt(ordinal + 2);
+            } else {
+                writeVarInt(1);
+                writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                dictionary.put(value, dictionary.size());
+            }
+        }
+
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    private static class Input {
+
+        private final byte[] bytes;
+        private final List<String> dictionary = Lists.newArrayList();
+        private int position;
+
+        private Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int readByte() throws IOException {
+            if (position >= bytes.length) {
+                throw new IOException("Unexpected end of activity bytes");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private int readVarInt() throws IOException {
+            return (int) readVarLong();
+        }
+
+        private int readSignedVarInt() throws IOException {
+            return (int) readSignedVarLong();
+        }
+
+        private long readSignedVarLong() throws IOException {
+            long value = readVarLong();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint in activity bytes");
+        }
+
+        private byte[] readBytes() throws IOException {
+            return readFully(readVarInt());
+        }
+
+        private byte[] readNullableBytes() throws IOException {
+            int length = readVarInt();
+            return length == 0 ? null : readFully(length - 1);
+        }
+
+        private byte[] readFully(int length) throws IOException {
+            if (length < 0 || position + length > bytes.length) {
+                throw new IOException("Unexpected end of activity bytes");
+            }
+            byte[] value = Arrays.copyOfRange(bytes, position, position + length);
+            position += length;
+            return value;
+        }
+
+        private String readString() throws IOException {
+            int ref = readVarInt();
+            if (ref == 0) {
+                return null;
+            } else if (ref == 1) {
+                int length = readVarInt();
+                if (length < 0 || position + length > bytes.length) {
+                    throw new IOException("Unexpected end of activity bytes");
+                }
+                String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+                position += length;
+                dictionary.add(value);
+                return value;
+            } else {
+                return dictionary.get(ref - 2);
+            }
+        }
+    }
+}
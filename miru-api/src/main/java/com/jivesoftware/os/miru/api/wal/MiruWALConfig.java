@@ -2,6 +2,7 @@ package com.jivesoftware.os.miru.api.wal;
 
 import org.merlin.config.Config;
 import org.merlin.config.defaults.BooleanDefault;
+import org.merlin.config.defaults.IntDefault;
 import org.merlin.config.defaults.StringDefault;
 
 /**
@@ -17,4 +18,13 @@ public interface MiruWALConfig extends Config {
 
     @BooleanDefault(false)
     boolean getSecondaryAmzaWAL();
+
+    @BooleanDefault(false)
+    boolean getBinaryActivityEncoding();
+
+    @BooleanDefault(false)
+    boolean getBinaryActivityTransport();
+
+    @IntDefault(1024)
+    int getBinaryActivityCompressAboveBytes(); // -1 to never compress
 }
@@ -0,0 +1,162 @@
+package com.jivesoftware.os.miru.api.marshall;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivityFactory;
+import com.jivesoftware.os.miru.api.activity.MiruReadEvent;
+import com.jivesoftware.os.miru.api.activity.TimeAndVersion;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
+import com.jivesoftware.os.miru.api.topology.NamedCursor;
+import com.jivesoftware.os.miru.api.wal.AmzaSipCursor;
+import com.jivesoftware.os.miru.api.wal.MiruWALClient.StreamBatch;
+import com.jivesoftware.os.miru.api.wal.MiruWALEntry;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class MiruPartitionedActivityCodecTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final MiruPartitionedActivityFactory factory = new MiruPartitionedActivityFactory();
+    private final MiruTenantId tenantId = new MiruTenantId("tenant".getBytes());
+    private final MiruPartitionId partitionId = MiruPartitionId.of(7);
+
+    @Test
+    public void testActivityRoundTrip() throws Exception {
+        MiruPartitionedActivityCodec codec = new MiruPartitionedActivityCodec(mapper, -1);
+        MiruPartitionedActivity expected = factory.activity(3, partitionId, 42, activity(1_000L));
+
+        byte[] bytes = codec.toBytes(expected);
+        assertTrue(bytes.length < mapper.writeValueAsBytes(expected).length);
+        assertActivityEquals(codec.fromBytes(bytes), expected);
+    }
+
+    @Test
+    public void testReadsLegacyJson() throws Exception {
+        MiruPartitionedActivityCodec codec = new MiruPartitionedActivityCodec(mapper, -1);
+        MiruPartitionedActivity expected = factory.activity(3, partitionId, 42, activity(1_000L));
+
+        assertActivityEquals(codec.fromBytes(mapper.writeValueAsBytes(expected)), expected);
+    }
+
+    @Test
+    public void testBoundaryAndReadEvents() throws Exception {
+        MiruPartitionedActivityCodec codec = new MiruPartitionedActivityCodec(mapper, 0);
+
+        MiruPartitionedActivity begin = codec.fromBytes(codec.toBytes(factory.begin(3, partitionId, tenantId, 99)));
+        assertEquals(begin.type, MiruPartitionedActivity.Type.BEGIN);
+        assertEquals(begin.index, 99);
+        assertFalse(begin.activity.isPresent());
+
+        MiruReadEvent readEvent = new MiruReadEvent(tenantId.getBytes(), 1_000L, "stream".getBytes(), MiruFilter.NO_FILTER);
+        MiruPartitionedActivity read = codec.fromBytes(codec.toBytes(factory.read(3, partitionId, 43, readEvent)));
+        assertEquals(read.type, MiruPartitionedActivity.Type.READ);
+        assertTrue(read.readEvent.isPresent());
+        assertEquals(read.readEvent.get().streamId, readEvent.streamId);
+        assertEquals(read.readEvent.get().time, 1_000L);
+    }
+
+    @Test
+    public void testBatchRoundTrip() throws Exception {
+        MiruPartitionedActivityCodec codec = new MiruPartitionedActivityCodec(mapper, 64);
+        List<MiruWALEntry> entries = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            entries.add(new MiruWALEntry(1_000L + i, 2_000L + i, factory.activity(3, partitionId, i, activity(1_000L + i))));
+        }
+        AmzaSipCursor cursor = new AmzaSipCursor(Collections.singletonList(new NamedCursor("cursor", 123L)), false);
+        StreamBatch<MiruWALEntry, AmzaSipCursor> expected = new StreamBatch<>(entries, cursor, true,
+            Collections.singleton(new TimeAndVersion(5L, 6L)));
+
+        byte[] bytes = codec.batchToBytes(expected);
+        assertTrue(bytes.length < mapper.writeValueAsBytes(expected).length / 4);
+
+        StreamBatch<MiruWALEntry, AmzaSipCursor> got = codec.batchFromBytes(bytes, AmzaSipCursor.class);
+        assertTrue(got.endOfWAL);
+        assertEquals(got.suppressed, expected.suppressed);
+        assertEquals(got.cursor.cursors.get(0).name, "cursor");
+        assertEquals(got.cursor.cursors.get(0).id, 123L);
+        assertEquals(got.activities.size(), entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(got.activities.get(i).collisionId, entries.get(i).collisionId);
+            assertEquals(got.activities.get(i).version, entries.get(i).version);
+            assertActivityEquals(got.activities.get(i).activity, entries.get(i).activity);
+        }
+    }
+
+    @Test
+    public void testTypeIndexesArePersisted() throws Exception {
+        MiruPartitionedActivityCodec codec = new MiruPartitionedActivityCodec(mapper, -1);
+
+        // rows already in the WAL were written with these indexes, so they must never change
+        MiruPartitionedActivity.Type[] expected = {
+            MiruPartitionedActivity.Type.ACTIVITY,
+            MiruPartitionedActivity.Type.REPAIR,
+            MiruPartitionedActivity.Type.REMOVE,
+            MiruPartitionedActivity.Type.READ,
+            MiruPartitionedActivity.Type.UNREAD,
+            MiruPartitionedActivity.Type.MARK_ALL_READ,
+            MiruPartitionedActivity.Type.END,
+            MiruPartitionedActivity.Type.BEGIN
+        };
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].getIndex(), i);
+            assertEquals(MiruPartitionedActivity.Type.fromIndex(i), expected[i]);
+        }
+
+        assertEquals(codec.toBytes(factory.activity(3, partitionId, 42, activity(1_000L)))[2], 0);
+        byte[] bytes = codec.toBytes(factory.begin(3, partitionId, tenantId, 99));
+        assertEquals(bytes[2], 7);
+
+        bytes[2] = 99;
+        try {
+            codec.fromBytes(bytes);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("99"));
+        }
+    }
+
+    private MiruActivity activity(long time) {
+        return new MiruActivity.Builder(tenantId, time, time + 1, false, new String[] { "authz1", "authz2" })
+            .putFieldValue("objectId", "object" + (time % 10))
+            .putFieldValue("authors", "author" + (time % 3))
+            .putAllFieldValues("tags", Arrays.asList("tag1", "tag2", "tag1"))
+            .putPropValue("title", "Title " + time)
+            .build();
+    }
+
+    private void assertActivityEquals(MiruPartitionedActivity got, MiruPartitionedActivity expected) {
+        assertEquals(got.type, expected.type);
+        assertEquals(got.writerId, expected.writerId);
+        assertEquals(got.partitionId, expected.partitionId);
+        assertEquals(got.tenantId, expected.tenantId);
+        assertEquals(got.index, expected.index);
+        assertEquals(got.timestamp, expected.timestamp);
+        assertEquals(got.clockTimestamp, expected.clockTimestamp);
+        assertEquals(got.activity.isPresent(), expected.activity.isPresent());
+        if (expected.activity.isPresent()) {
+            MiruActivity gotActivity = got.activity.get();
+            MiruActivity expectedActivity = expected.activity.get();
+            assertEquals(gotActivity.tenantId, expectedActivity.tenantId);
+            assertEquals(gotActivity.time, expectedActivity.time);
+            assertEquals(gotActivity.version, expectedActivity.version);
+            assertEquals(gotActivity.realtimeDelivery, expectedActivity.realtimeDelivery);
+            assertEquals(gotActivity.authz, expectedActivity.authz);
+            assertEquals(gotActivity.fieldsValues, expectedActivity.fieldsValues);
+            assertEquals(gotActivity.propsValues, expectedActivity.propsValues);
+        }
+        assertNull(got.readEvent.orNull());
+    }
+}
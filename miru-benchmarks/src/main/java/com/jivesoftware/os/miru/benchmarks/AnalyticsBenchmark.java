@@ -0,0 +1,170 @@
+package com.jivesoftware.os.miru.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.jive.utils.ordered.id.SnowflakeIdPacker;
+import com.jivesoftware.os.miru.analytics.plugins.analytics.Analytics;
+import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsAnswer;
+import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsInjectable;
+import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsQuery;
+import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsQueryScoreSet;
+import com.jivesoftware.os.miru.api.MiruActorId;
+import com.jivesoftware.os.miru.api.MiruBackingStorage;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivityFactory;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.field.MiruFieldType;
+import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
+import com.jivesoftware.os.miru.api.query.filter.MiruFieldFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilterOperation;
+import com.jivesoftware.os.miru.plugin.MiruProvider;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
+import com.jivesoftware.os.miru.plugin.solution.MiruResponse;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
+import com.jivesoftware.os.miru.plugin.test.MiruPluginTestBootstrap;
+import com.jivesoftware.os.miru.service.MiruService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end Analytics queries through AnalyticsInjectable against a single heap bitmap partition. The numbers include request
+ * routing and solution merging, so see FilterBenchmark and AtomizedIndexBenchmark for the individual index paths.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalyticsBenchmark {
+
+    private static final int NUMBER_OF_USERS = 1_000;
+    private static final int NUMBER_OF_DOCS = 100_000;
+    private static final int NUMBER_OF_SCORE_FILTERS = 10;
+
+    private final MiruTenantId tenantId = new MiruTenantId("benchmark".getBytes());
+    private final MiruPartitionId partitionId = MiruPartitionId.of(1);
+
+    @Param({ "100000", "1000000" })
+    public int numberOfActivities;
+
+    @Param({ "32", "168" })
+    public int numberOfBuckets;
+
+    private AnalyticsInjectable injectable;
+    private MiruTimeRange timeRange;
+    private MiruFilter constraintsFilter;
+    private Map<String, MiruFilter> analyticsFilters;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        MiruProvider<MiruService> miruProvider = new MiruPluginTestBootstrap().bootstrap(
+            tenantId,
+            partitionId,
+            new MiruHost("benchmark"),
+            new MiruSchema.Builder("benchmark", 1)
+                .setFieldDefinitions(new MiruFieldDefinition[] {
+                    new MiruFieldDefinition(0, "user", MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE),
+                    new MiruFieldDefinition(1, "doc", MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE),
+                    new MiruFieldDefinition(2, "verb", MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE)
+                })
+                .build(),
+            MiruBackingStorage.disk,
+            BenchmarkBitmaps.createHeap(),
+            Collections.emptyList());
+        MiruService service = miruProvider.getMiru(tenantId);
+        injectable = new AnalyticsInjectable(miruProvider, new Analytics());
+
+        SnowflakeIdPacker snowflakeIdPacker = new SnowflakeIdPacker();
+        long timespan = snowflakeIdPacker.pack(TimeUnit.DAYS.toMillis(7), 0, 0);
+        long intervalPerActivity = timespan / numberOfActivities;
+        long smallestTime = snowflakeIdPacker.pack(System.currentTimeMillis(), 0, 0) - timespan;
+
+        MiruPartitionedActivityFactory partitionedActivityFactory = new MiruPartitionedActivityFactory();
+        String[] verbs = { "view", "like", "comment", "share" };
+        Random random = new Random(1234);
+        List<MiruPartitionedActivity> batch = Lists.newArrayListWithCapacity(10_000);
+        long time = smallestTime;
+        for (int i = 0; i < numberOfActivities; i++) {
+            time += intervalPerActivity;
+            Map<String, List<String>> fieldsValues = Maps.newHashMap();
+            // skew users and docs so that a few terms are dense and the long tail is sparse
+            fieldsValues.put("user", Arrays.asList("user" + skewed(random, NUMBER_OF_USERS)));
+            fieldsValues.put("doc", Arrays.asList("doc" + skewed(random, NUMBER_OF_DOCS)));
+            fieldsValues.put("verb", Arrays.asList(verbs[random.nextInt(verbs.length)]));
+            MiruActivity activity = new MiruActivity(tenantId, time, 0, false, new String[0], fieldsValues, Collections.emptyMap());
+            batch.add(partitionedActivityFactory.activity(1, partitionId, i, activity));
+            if (batch.size() == 10_000) {
+                service.writeToIndex(batch);
+                batch = Lists.newArrayListWithCapacity(10_000);
+            }
+        }
+        if (!batch.isEmpty()) {
+            service.writeToIndex(batch);
+        }
+
+        timeRange = new MiruTimeRange(smallestTime, time);
+        constraintsFilter = new MiruFilter(MiruFilterOperation.pButNotQ, false,
+            Arrays.asList(
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, "verb", "view", "like", "comment"),
+                MiruFieldFilter.ofTerms(MiruFieldType.primary, "doc", "doc0", "doc1", "doc2")),
+            null);
+        ImmutableMap.Builder<String, MiruFilter> filters = ImmutableMap.builder();
+        for (int i = 0; i < NUMBER_OF_SCORE_FILTERS; i++) {
+            filters.put("user" + i, new MiruFilter(MiruFilterOperation.or, false,
+                Collections.singletonList(MiruFieldFilter.ofTerms(MiruFieldType.primary, "user", "user" + i)), null));
+        }
+        analyticsFilters = filters.build();
+    }
+
+    private static int skewed(Random random, int bound) {
+        double r = random.nextDouble();
+        return (int) (r * r * r * bound);
+    }
+
+    @Benchmark
+    public MiruResponse<AnalyticsAnswer> unconstrained() throws Exception {
+        return score(MiruFilter.NO_FILTER);
+    }
+
+    @Benchmark
+    public MiruResponse<AnalyticsAnswer> constrained() throws Exception {
+        return score(constraintsFilter);
+    }
+
+    private MiruResponse<AnalyticsAnswer> score(MiruFilter constraints) throws Exception {
+        return injectable.score(new MiruRequest<>("benchmark",
+            tenantId,
+            MiruActorId.NOT_PROVIDED,
+            MiruAuthzExpression.NOT_PROVIDED,
+            new AnalyticsQuery(
+                Collections.singletonList(new AnalyticsQueryScoreSet("benchmark", timeRange, numberOfBuckets)),
+                constraints,
+                analyticsFilters),
+            MiruSolutionLogLevel.NONE));
+    }
+}
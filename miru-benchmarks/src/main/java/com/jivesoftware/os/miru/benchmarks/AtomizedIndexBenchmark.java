@@ -0,0 +1,106 @@
+package com.jivesoftware.os.miru.benchmarks;
+
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.jive.utils.ordered.id.ConstantWriterIdProvider;
+import com.jivesoftware.os.jive.utils.ordered.id.JiveEpochTimestampProvider;
+import com.jivesoftware.os.jive.utils.ordered.id.OrderIdProviderImpl;
+import com.jivesoftware.os.jive.utils.ordered.id.SnowflakeIdPacker;
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
+import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
+import com.jivesoftware.os.miru.plugin.partition.TrackError;
+import com.jivesoftware.os.miru.service.IndexTestUtil;
+import com.jivesoftware.os.miru.service.index.lab.LabInvertedIndex;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reads an inverted index through LabInvertedIndex.getIndex from a LAB value index, either from per-container atoms when atomized or
+ * from a single payload otherwise, for both the heap and buffer bitmaps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class AtomizedIndexBenchmark {
+
+    private static final int PARTITION_SIZE = 5_000_000;
+
+    private static final TrackError NO_OP_TRACK_ERROR = new TrackError() {
+        @Override
+        public void error(String reason) {
+        }
+
+        @Override
+        public void reset() {
+        }
+    };
+
+    @Param({ "heap", "buffer" })
+    public String bitmapsType;
+
+    @Param({ "true", "false" })
+    public boolean atomized;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int cardinality;
+
+    private Fixture<?, ?> fixture;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if ("heap".equals(bitmapsType)) {
+            fixture = new Fixture<>(BenchmarkBitmaps.createHeap(), atomized, cardinality);
+        } else {
+            fixture = new Fixture<>(BenchmarkBitmaps.createBuffer(), atomized, cardinality);
+        }
+    }
+
+    @Benchmark
+    public Object getIndex() throws Exception {
+        return fixture.getIndex();
+    }
+
+    private static class Fixture<BM extends IBM, IBM> {
+
+        private final MiruInvertedIndex<BM, IBM> invertedIndex;
+        private final StackBuffer stackBuffer = new StackBuffer();
+
+        private Fixture(MiruBitmaps<BM, IBM> bitmaps, boolean atomized, int cardinality) throws Exception {
+            invertedIndex = new LabInvertedIndex<>(
+                new OrderIdProviderImpl(new ConstantWriterIdProvider(1), new SnowflakeIdPacker(), new JiveEpochTimestampProvider()),
+                bitmaps,
+                NO_OP_TRACK_ERROR,
+                "benchmark",
+                0,
+                atomized,
+                new byte[] { 0 },
+                IndexTestUtil.buildValueIndex("bitmap"),
+                new byte[] { 0 },
+                IndexTestUtil.buildValueIndex("term"),
+                new Object());
+            int[] ids = new Random(1234).ints(cardinality, 0, PARTITION_SIZE).distinct().sorted().toArray();
+            invertedIndex.set(stackBuffer, ids);
+        }
+
+        private BitmapAndLastId<BM> getIndex() throws Exception {
+            BitmapAndLastId<BM> container = new BitmapAndLastId<>();
+            invertedIndex.getIndex(container, stackBuffer);
+            return container;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.jivesoftware.os.miru.benchmarks;
+
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import java.util.Random;
+import org.roaringbitmap.RoaringBitmap;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+/**
+ * Resolves the bitmaps implementations this build was packaged with (see the roaring5 and roaring6 profiles), and builds synthetic
+ * bitmaps for them.
+ */
+public class BenchmarkBitmaps {
+
+    private static final String[] IMPLEMENTATIONS = { "roaring6", "roaring5" };
+
+    private BenchmarkBitmaps() {
+    }
+
+    public static String implementation() {
+        for (String implementation : IMPLEMENTATIONS) {
+            try {
+                Class.forName(className(implementation, "MiruBitmapsRoaring"));
+                return implementation;
+            } catch (ClassNotFoundException e) {
+                // try the next one
+            }
+        }
+        throw new IllegalStateException("No bitmaps implementation on the classpath");
+    }
+
+    public static MiruBitmaps<MutableRoaringBitmap, ImmutableRoaringBitmap> createBuffer() {
+        return create(className(implementation(), "buffer.MiruBitmapsRoaringBuffer"));
+    }
+
+    public static MiruBitmaps<RoaringBitmap, RoaringBitmap> createHeap() {
+        return create(className(implementation(), "MiruBitmapsRoaring"));
+    }
+
+    /**
+     * @return a bitmap with roughly the given cardinality spread uniformly over ids [0, largestId)
+     */
+    public static <BM extends IBM, IBM> BM random(MiruBitmaps<BM, IBM> bitmaps, Random random, int cardinality, int largestId) {
+        int[] ids = new int[cardinality];
+        for (int i = 0; i < cardinality; i++) {
+            ids[i] = random.nextInt(largestId);
+        }
+        return bitmaps.createWithBits(ids);
+    }
+
+    private static String className(String implementation, String simpleName) {
+        return "com.jivesoftware.os.miru.bitmaps." + implementation + "." + simpleName;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <BM extends IBM, IBM> MiruBitmaps<BM, IBM> create(String className) {
+        try {
+            return (MiruBitmaps<BM, IBM>) Class.forName(className).newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create " + className, e);
+        }
+    }
+}
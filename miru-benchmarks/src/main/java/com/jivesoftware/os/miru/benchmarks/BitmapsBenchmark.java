@@ -0,0 +1,95 @@
+package com.jivesoftware.os.miru.benchmarks;
+
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+/**
+ * And/or/andNot fan-in and waveform bucketing over uniformly distributed bitmaps sized like a full partition.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class BitmapsBenchmark {
+
+    private static final int PARTITION_SIZE = 5_000_000;
+    private static final int WAVEFORM_BUCKETS = 32;
+
+    @Param({ "1000", "100000", "1000000" })
+    public int cardinality;
+
+    @Param({ "2", "16" })
+    public int fanIn;
+
+    private MiruBitmaps<MutableRoaringBitmap, ImmutableRoaringBitmap> bitmaps;
+    private List<ImmutableRoaringBitmap> operands;
+    private List<ImmutableRoaringBitmap> nots;
+    private int[][] indexBoundaries;
+    private long[][] rawWaveform;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        bitmaps = BenchmarkBitmaps.createBuffer();
+        Random random = new Random(1234);
+        operands = new ArrayList<>(fanIn);
+        for (int i = 0; i < fanIn; i++) {
+            operands.add(BenchmarkBitmaps.random(bitmaps, random, cardinality, PARTITION_SIZE));
+        }
+        nots = operands.subList(1, operands.size());
+
+        int[] boundaries = new int[WAVEFORM_BUCKETS + 1];
+        for (int i = 0; i < boundaries.length; i++) {
+            boundaries[i] = (int) ((long) PARTITION_SIZE * i / WAVEFORM_BUCKETS);
+        }
+        indexBoundaries = new int[][] { boundaries };
+        rawWaveform = new long[1][WAVEFORM_BUCKETS];
+    }
+
+    @Benchmark
+    public MutableRoaringBitmap or() {
+        return bitmaps.or(operands);
+    }
+
+    @Benchmark
+    public MutableRoaringBitmap and() {
+        return bitmaps.and(operands);
+    }
+
+    @Benchmark
+    public MutableRoaringBitmap andNot() {
+        return bitmaps.andNot(operands.get(0), nots);
+    }
+
+    @Benchmark
+    public long[][] boundedCardinalities() {
+        rawWaveform[0] = new long[WAVEFORM_BUCKETS];
+        bitmaps.boundedCardinalities(operands.get(0), indexBoundaries, rawWaveform);
+        return rawWaveform;
+    }
+
+    @Benchmark
+    public long[][] boundedIntersectionCardinalities() {
+        rawWaveform[0] = new long[WAVEFORM_BUCKETS];
+        bitmaps.boundedIntersectionCardinalities(operands.get(0), operands.get(1), indexBoundaries, rawWaveform);
+        return rawWaveform;
+    }
+}
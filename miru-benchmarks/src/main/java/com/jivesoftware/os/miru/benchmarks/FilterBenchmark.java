@@ -0,0 +1,169 @@
+package com.jivesoftware.os.miru.benchmarks;
+
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.jive.utils.ordered.id.SnowflakeIdPacker;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.api.field.MiruFieldName;
+import com.jivesoftware.os.miru.api.field.MiruFieldType;
+import com.jivesoftware.os.miru.api.query.filter.MiruFieldFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilterOperation;
+import com.jivesoftware.os.miru.api.wal.RCVSSipCursor;
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
+import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.service.IndexTestUtil;
+import com.jivesoftware.os.miru.service.stream.MiruContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Builds time range masks from a MiruTimeIndex and evaluates filters with MiruAggregateUtil.filter against a LAB backed partition,
+ * for both the heap and buffer bitmaps. The partition's filter cache is disabled, so every filter reads its terms from the field index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+    private static final int NUMBER_OF_AUTHORS = 1_000;
+    private static final String[] VIEW_CLASS_NAMES = { "Document", "Discussion", "Blog", "Idea" };
+
+    @Param({ "heap", "buffer" })
+    public String bitmapsType;
+
+    @Param({ "100000", "1000000" })
+    public int numberOfActivities;
+
+    private Fixture<?, ?> fixture;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if ("heap".equals(bitmapsType)) {
+            fixture = new Fixture<>(BenchmarkBitmaps.createHeap(), numberOfActivities);
+        } else {
+            fixture = new Fixture<>(BenchmarkBitmaps.createBuffer(), numberOfActivities);
+        }
+    }
+
+    @Benchmark
+    public Object timeRangeMask() throws Exception {
+        return fixture.timeRangeMask();
+    }
+
+    @Benchmark
+    public Object filter() throws Exception {
+        return fixture.filter();
+    }
+
+    private static class Fixture<BM extends IBM, IBM> {
+
+        private final MiruBitmaps<BM, IBM> bitmaps;
+        private final MiruContext<BM, IBM, RCVSSipCursor> context;
+        private final MiruAggregateUtil aggregateUtil = new MiruAggregateUtil();
+        private final StackBuffer stackBuffer = new StackBuffer();
+        private final MiruFilter filter;
+        private final long smallestTimestamp;
+        private final long largestTimestamp;
+        private final int largestIndex;
+
+        private Fixture(MiruBitmaps<BM, IBM> bitmaps, int numberOfActivities) throws Exception {
+            this.bitmaps = bitmaps;
+            MiruPartitionCoord coord = new MiruPartitionCoord(new MiruTenantId("benchmark".getBytes()), MiruPartitionId.of(0), new MiruHost("benchmark"));
+            context = IndexTestUtil.buildOnDiskContext(4, true, false, bitmaps, coord);
+
+            SnowflakeIdPacker snowflakeIdPacker = new SnowflakeIdPacker();
+            long timespan = snowflakeIdPacker.pack(TimeUnit.DAYS.toMillis(7), 0, 0);
+            long intervalPerActivity = timespan / numberOfActivities;
+            long time = snowflakeIdPacker.pack(System.currentTimeMillis(), 0, 0) - timespan;
+            for (int offset = 0; offset < numberOfActivities; offset += BATCH_SIZE) {
+                int count = Math.min(BATCH_SIZE, numberOfActivities - offset);
+                long[] timestamps = new long[count];
+                int[] ids = new int[count];
+                long[] monotonics = new long[count];
+                for (int i = 0; i < count; i++) {
+                    time += intervalPerActivity;
+                    timestamps[i] = time;
+                }
+                Arrays.fill(ids, -1);
+                Arrays.fill(monotonics, -1);
+                context.timeIdIndex.allocate(coord, context.version, timestamps, ids, monotonics,
+                    context.timeIndex.lastId(), context.timeIndex.getLargestTimestamp());
+                context.timeIndex.nextId(stackBuffer, timestamps, ids, monotonics);
+            }
+
+            MiruSchema schema = context.schema.get();
+            MiruFieldDefinition viewClassNameField = schema.getFieldDefinition(schema.getFieldId(MiruFieldName.VIEW_CLASS_NAME.getFieldName()));
+            MiruFieldDefinition authorField = schema.getFieldDefinition(schema.getFieldId(MiruFieldName.AUTHOR_ID.getFieldName()));
+            Map<String, List<Integer>> viewClassNameIds = Maps.newHashMap();
+            Map<String, List<Integer>> authorIds = Maps.newHashMap();
+            Random random = new Random(1234);
+            // skew authors so that a few terms are dense and the long tail is sparse
+            for (int id = 0; id < numberOfActivities; id++) {
+                double r = random.nextDouble();
+                viewClassNameIds.computeIfAbsent(VIEW_CLASS_NAMES[random.nextInt(VIEW_CLASS_NAMES.length)], k -> new ArrayList<>()).add(id);
+                authorIds.computeIfAbsent("author" + (int) (r * r * r * NUMBER_OF_AUTHORS), k -> new ArrayList<>()).add(id);
+            }
+            setTerms(schema, viewClassNameField, viewClassNameIds);
+            setTerms(schema, authorField, authorIds);
+
+            filter = new MiruFilter(MiruFilterOperation.and, false,
+                Arrays.asList(
+                    MiruFieldFilter.ofTerms(MiruFieldType.primary, viewClassNameField.name, "Document", "Discussion"),
+                    MiruFieldFilter.ofTerms(MiruFieldType.primary, authorField.name, "author0", "author1", "author10", "author100", "author500")),
+                null);
+            // the middle half of the partition
+            long quarter = (time - context.timeIndex.getSmallestTimestamp()) / 4;
+            smallestTimestamp = context.timeIndex.getSmallestTimestamp() + quarter;
+            largestTimestamp = time - quarter;
+            largestIndex = context.timeIndex.lastId();
+        }
+
+        private void setTerms(MiruSchema schema, MiruFieldDefinition fieldDefinition, Map<String, List<Integer>> termIds) throws Exception {
+            MiruFieldIndex<BM, IBM> fieldIndex = context.fieldIndexProvider.getFieldIndex(MiruFieldType.primary);
+            for (Map.Entry<String, List<Integer>> entry : termIds.entrySet()) {
+                MiruTermId termId = context.termComposer.compose(schema, fieldDefinition, stackBuffer, entry.getKey());
+                fieldIndex.set(fieldDefinition, termId, Ints.toArray(entry.getValue()), null, stackBuffer);
+            }
+        }
+
+        private IBM timeRangeMask() throws Exception {
+            return bitmaps.buildTimeRangeMask(context.timeIndex, smallestTimestamp, largestTimestamp, stackBuffer);
+        }
+
+        private BM filter() throws Exception {
+            return aggregateUtil.filter("benchmark", bitmaps, context, filter, new MiruSolutionLog(MiruSolutionLogLevel.NONE), null, largestIndex, -1, -1,
+                stackBuffer);
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.jivesoftware.os.miru.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with JSON results named for the bitmaps implementation, e.g. miru-benchmarks-roaring6.json, so that runs of
+ * the roaring5 and roaring6 builds can be compared side by side. Any standard JMH arguments are passed through, e.g. a benchmark
+ * regex or -p cardinality=1000.
+ */
+public class MiruBenchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        ChainedOptionsBuilder builder = new OptionsBuilder().parent(commandLineOptions);
+        if (!commandLineOptions.getResultFormat().hasValue()) {
+            builder.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLineOptions.getResult().hasValue()) {
+            builder.result("miru-benchmarks-" + BenchmarkBitmaps.implementation() + ".json");
+        }
+        new Runner(builder.build()).run();
+    }
+}
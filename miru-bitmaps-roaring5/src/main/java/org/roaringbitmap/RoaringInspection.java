@@ -292,6 +292,111 @@ public class RoaringInspection {
         return toIntUnsigned(bitmap.highLowContainer.getKeyAtIndex(pos)) << 16;
     }
 
+    /**
+     * Equivalent to {@link #cardinalityInBuckets} over the intersection of x1 and x2, but counts directly from the intersections of
+     * matching containers without materializing the intersection. A container which falls within a single bucket adds its whole
+     * cardinality, only containers which straddle a bucket boundary are iterated.
+     */
+    public static void intersectionCardinalityInBuckets(RoaringBitmap x1, RoaringBitmap x2, int[][] indexes, long[][] buckets) {
+        int bucketLength = buckets.length;
+        int[] currentBucket = new int[bucketLength];
+        int numExhausted = 0;
+        boolean[] exhausted = new boolean[bucketLength];
+        boolean[] counted = new boolean[bucketLength];
+        for (int bi = 0; bi < bucketLength; bi++) {
+            if (buckets[bi].length == 0) {
+                exhausted[bi] = true;
+                numExhausted++;
+            }
+        }
+
+        int size1 = x1.highLowContainer.size();
+        int size2 = x2.highLowContainer.size();
+        int pos1 = 0;
+        int pos2 = 0;
+        while (pos1 < size1 && pos2 < size2 && numExhausted < bucketLength) {
+            int key1 = toIntUnsigned(x1.highLowContainer.getKeyAtIndex(pos1));
+            int key2 = toIntUnsigned(x2.highLowContainer.getKeyAtIndex(pos2));
+            if (key1 < key2) {
+                pos1++;
+            } else if (key1 > key2) {
+                pos2++;
+            } else {
+                int min = key1 << 16;
+                int max = min + (1 << 16);
+                boolean anyCandidates = false;
+                for (int bi = 0; bi < bucketLength; bi++) {
+                    if (!exhausted[bi] && max > indexes[bi][currentBucket[bi]]) {
+                        anyCandidates = true;
+                        break;
+                    }
+                }
+
+                if (anyCandidates) {
+                    Container c1 = x1.highLowContainer.getContainerAtIndex(pos1);
+                    Container c2 = x2.highLowContainer.getContainerAtIndex(pos2);
+                    Container and = c1.and(c2);
+                    int cardinality = and.getCardinality();
+
+                    boolean straddles = false;
+                    for (int bi = 0; bi < bucketLength; bi++) {
+                        counted[bi] = false;
+                        if (exhausted[bi]) {
+                            continue;
+                        }
+                        while (min >= indexes[bi][currentBucket[bi] + 1]) {
+                            currentBucket[bi]++;
+                            if (currentBucket[bi] == buckets[bi].length) {
+                                numExhausted++;
+                                exhausted[bi] = true;
+                                break;
+                            }
+                        }
+                        if (exhausted[bi]) {
+                            continue;
+                        }
+                        int bucketStart = indexes[bi][currentBucket[bi]];
+                        if (max <= bucketStart) {
+                            // precedes the current bucket
+                            counted[bi] = true;
+                        } else if (min >= bucketStart && max <= indexes[bi][currentBucket[bi] + 1]) {
+                            buckets[bi][currentBucket[bi]] += cardinality;
+                            counted[bi] = true;
+                        } else {
+                            straddles = true;
+                        }
+                    }
+
+                    if (straddles) {
+                        ShortIterator iterator = and.getShortIterator();
+                        while (iterator.hasNext() && numExhausted < bucketLength) {
+                            int index = toIntUnsigned(iterator.next()) | min;
+                            next:
+                            for (int bi = 0; bi < bucketLength; bi++) {
+                                if (exhausted[bi] || counted[bi]) {
+                                    continue;
+                                }
+                                while (index >= indexes[bi][currentBucket[bi] + 1]) {
+                                    currentBucket[bi]++;
+                                    if (currentBucket[bi] == buckets[bi].length) {
+                                        numExhausted++;
+                                        exhausted[bi] = true;
+                                        continue next;
+                                    }
+                                }
+                                if (index >= indexes[bi][currentBucket[bi]]) {
+                                    buckets[bi][currentBucket[bi]]++;
+                                }
+                            }
+                        }
+                    }
+                }
+                pos1++;
+                pos2++;
+            }
+        }
+    }
+
     public static int key(int position) {
         return Util.highbits(position);
     }
@@ -573,6 +678,7 @@ public class RoaringInspection {
                 Container c2 = x2.highLowContainer.getContainerAtIndex(pos2);
                 if (c1.intersects(c2)) {
                     Container and = c1.and(c2);
+                    int cardinality = and.getCardinality();
                     int hs = toIntUnsigned(s1) << 16;
                     return toIntUnsigned(and.getShortIterator().next()) | hs;
                 }
@@ -1,12 +1,34 @@
 package org.roaringbitmap.buffer;
 
 import java.util.Arrays;
+import org.roaringbitmap.ShortIterator;
 
 /**
  *
  */
 public class RoaringBufferInspection {
 
+    /**
+     * @return the high 16 bits of the smallest value, or -1 if the bitmap is empty
+     */
+    public static int firstKey(ImmutableRoaringBitmap bitmap) {
+        if (bitmap.highLowContainer.size() == 0) {
+            return -1;
+        }
+        return BufferUtil.toIntUnsigned(bitmap.highLowContainer.getKeyAtIndex(0));
+    }
+
+    /**
+     * @return the high 16 bits of the largest value, or -1 if the bitmap is empty
+     */
+    public static int lastKey(ImmutableRoaringBitmap bitmap) {
+        int pos = bitmap.highLowContainer.size() - 1;
+        if (pos < 0) {
+            return -1;
+        }
+        return BufferUtil.toIntUnsigned(bitmap.highLowContainer.getKeyAtIndex(pos));
+    }
+
     public static long sizeInBits(ImmutableRoaringBitmap bitmap) {
         int pos = bitmap.highLowContainer.size() - 1;
         if (pos >= 0) {
@@ -174,6 +196,111 @@ public class RoaringBufferInspection {
         }
     }
 
+    /**
+     * Equivalent to {@link #cardinalityInBuckets} over the intersection of x1 and x2, but counts directly from the intersections of
+     * matching containers without materializing the intersection. A container which falls within a single bucket adds its whole
+     * cardinality, only containers which straddle a bucket boundary are iterated.
+     */
+    public static void intersectionCardinalityInBuckets(ImmutableRoaringBitmap x1, ImmutableRoaringBitmap x2, int[][] indexes, long[][] buckets) {
+        int bucketLength = buckets.length;
+        int[] currentBucket = new int[bucketLength];
+        int numExhausted = 0;
+        boolean[] exhausted = new boolean[bucketLength];
+        boolean[] counted = new boolean[bucketLength];
+        for (int bi = 0; bi < bucketLength; bi++) {
+            if (buckets[bi].length == 0) {
+                exhausted[bi] = true;
+                numExhausted++;
+            }
+        }
+
+        int size1 = x1.highLowContainer.size();
+        int size2 = x2.highLowContainer.size();
+        int pos1 = 0;
+        int pos2 = 0;
+        while (pos1 < size1 && pos2 < size2 && numExhausted < bucketLength) {
+            int key1 = BufferUtil.toIntUnsigned(x1.highLowContainer.getKeyAtIndex(pos1));
+            int key2 = BufferUtil.toIntUnsigned(x2.highLowContainer.getKeyAtIndex(pos2));
+            if (key1 < key2) {
+                pos1++;
+            } else if (key1 > key2) {
+                pos2++;
+            } else {
+                int min = key1 << 16;
+                int max = min + (1 << 16);
+                boolean anyCandidates = false;
+                for (int bi = 0; bi < bucketLength; bi++) {
+                    if (!exhausted[bi] && max > indexes[bi][currentBucket[bi]]) {
+                        anyCandidates = true;
+                        break;
+                    }
+                }
+
+                if (anyCandidates) {
+                    MappeableContainer c1 = x1.highLowContainer.getContainerAtIndex(pos1);
+                    MappeableContainer c2 = x2.highLowContainer.getContainerAtIndex(pos2);
+                    MappeableContainer and = c1.and(c2);
+                    int cardinality = and.getCardinality();
+
+                    boolean straddles = false;
+                    for (int bi = 0; bi < bucketLength; bi++) {
+                        counted[bi] = false;
+                        if (exhausted[bi]) {
+                            continue;
+                        }
+                        while (min >= indexes[bi][currentBucket[bi] + 1]) {
+                            currentBucket[bi]++;
+                            if (currentBucket[bi] == buckets[bi].length) {
+                                numExhausted++;
+                                exhausted[bi] = true;
+                                break;
+                            }
+                        }
+                        if (exhausted[bi]) {
+                            continue;
+                        }
+                        int bucketStart = indexes[bi][currentBucket[bi]];
+                        if (max <= bucketStart) {
+                            // precedes the current bucket
+                            counted[bi] = true;
+                        } else if (min >= bucketStart && max <= indexes[bi][currentBucket[bi] + 1]) {
+                            buckets[bi][currentBucket[bi]] += cardinality;
+                            counted[bi] = true;
+                        } else {
+                            straddles = true;
+                        }
+                    }
+
+                    if (straddles) {
+                        ShortIterator iterator = and.getShortIterator();
+                        while (iterator.hasNext() && numExhausted < bucketLength) {
+                            int index = BufferUtil.toIntUnsigned(iterator.next()) | min;
+                            next:
+                            for (int bi = 0; bi < bucketLength; bi++) {
+                                if (exhausted[bi] || counted[bi]) {
+                                    continue;
+                                }
+                                while (index >= indexes[bi][currentBucket[bi] + 1]) {
+                                    currentBucket[bi]++;
+                                    if (currentBucket[bi] == buckets[bi].length) {
+                                        numExhausted++;
+                                        exhausted[bi] = true;
+                                        continue next;
+                                    }
+                                }
+                                if (index >= indexes[bi][currentBucket[bi]]) {
+                                    buckets[bi][currentBucket[bi]]++;
+                                }
+                            }
+                        }
+                    }
+                }
+                pos1++;
+                pos2++;
+            }
+        }
+    }
+
     private static int containerMin(ImmutableRoaringBitmap bitmap, int pos) {
         return BufferUtil.toIntUnsigned(bitmap.highLowContainer.getKeyAtIndex(pos)) << 16;
     }
@@ -361,4 +361,45 @@ public class RoaringInspectionTest {
         int[] got = RoaringInspection.shortToIntKeys(keys);
         Assert.assertEquals(got, ukeys);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIntersectionCardinalityInBucketsWholeContainers() throws Exception {
+        RoaringBitmap x1 = new RoaringBitmap();
+        RoaringBitmap x2 = new RoaringBitmap();
+        for (int i = 0; i < 400_000; i++) {
+            if (i % 2 == 0) {
+                x1.add(i);
+            }
+            if (i % 5 == 0) {
+                x2.add(i);
+            }
+        }
+        x1.runOptimize();
+
+        int[][] indexes = new int[][] {
+            // every bucket holds whole containers
+            { 0, 131_072, 196_608, 400_000 },
+            // the first bucket straddles a container, the second holds whole containers
+            { 1_000, 65_536, 300_000 },
+            // exhausted within the first container
+            { 0, 10 },
+            // begins after the first containers
+            { 250_000, 262_144, 262_145 } };
+        long[][] buckets = new long[indexes.length][];
+        for (int i = 0; i < indexes.length; i++) {
+            buckets[i] = new long[indexes[i].length - 1];
+        }
+        RoaringInspection.intersectionCardinalityInBuckets(x1, x2, indexes, buckets);
+        for (int i = 0; i < buckets.length; i++) {
+            for (int j = 0; j < buckets[i].length; j++) {
+                long naive = 0;
+                for (int k = indexes[i][j]; k < indexes[i][j + 1]; k++) {
+                    if (k < 400_000 && k % 2 == 0 && k % 5 == 0) {
+                        naive++;
+                    }
+                }
+                assertEquals(buckets[i][j], naive, "bucket " + i + "," + j);
+            }
+        }
+    }
+}
@@ -126,6 +126,11 @@ public class MiruBitmapsRoaring implements MiruBitmaps<RoaringBitmap, RoaringBit
         RoaringInspection.cardinalityInBuckets(bitmap, indexBoundaries, rawWaveforms);
     }
 
+    @Override
+    public void boundedIntersectionCardinalities(RoaringBitmap bitmap, RoaringBitmap other, int[][] indexBoundaries, long[][] rawWaveforms) {
+        RoaringInspection.intersectionCardinalityInBuckets(bitmap, other, indexBoundaries, rawWaveforms);
+    }
+
     @Override
     public RoaringBitmap create() {
         return new RoaringBitmap();
@@ -428,6 +433,11 @@ public class MiruBitmapsRoaring implements MiruBitmaps<RoaringBitmap, RoaringBit
         return bitmap;
     }
 
+    @Override
+    public RoaringBitmap view(ByteBuffer byteBuffer) throws Exception {
+        return null;
+    }
+
     @Override
     public void serialize(RoaringBitmap bitmap, DataOutput dataOutput) throws Exception {
         bitmap.serialize(dataOutput);
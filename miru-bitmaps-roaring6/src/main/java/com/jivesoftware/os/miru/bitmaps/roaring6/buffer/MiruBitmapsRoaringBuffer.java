@@ -128,6 +128,14 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
         RoaringBufferInspection.cardinalityInBuckets(bitmap, indexBoundaries, rawWaveform);
     }
 
+    @Override
+    public void boundedIntersectionCardinalities(ImmutableRoaringBitmap bitmap,
+        ImmutableRoaringBitmap other,
+        int[][] indexBoundaries,
+        long[][] rawWaveform) {
+        RoaringBufferInspection.intersectionCardinalityInBuckets(bitmap, other, indexBoundaries, rawWaveform);
+    }
+
     @Override
     public MutableRoaringBitmap create() {
         return new MutableRoaringBitmap();
@@ -193,7 +201,7 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
                 if (bitmap != null) {
                     container.or(bitmap);
                 } else if (filer != null) {
-                    container.or(bitmapFromFiler(filer, offset, stackBuffer1));
+                    container.or(viewFromFiler(filer, offset, stackBuffer1));
                 }
                 return null;
             }, stackBuffer);
@@ -209,7 +217,7 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
             if (bitmap != null) {
                 container.or(bitmap);
             } else if (filer != null) {
-                container.or(bitmapFromFiler(filer, offset, stackBuffer1));
+                container.or(viewFromFiler(filer, offset, stackBuffer1));
             }
         }, stackBuffer);
         return container;
@@ -252,7 +260,7 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
                 if (bitmap != null) {
                     container.and(bitmap);
                 } else if (filer != null) {
-                    container.and(bitmapFromFiler(filer, offset, stackBuffer1));
+                    container.and(viewFromFiler(filer, offset, stackBuffer1));
                 } else {
                     container.clear();
                 }
@@ -281,7 +289,7 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
             if (bitmap != null) {
                 original.andNot(bitmap);
             } else if (filer != null) {
-                original.andNot(bitmapFromFiler(filer, offset, stackBuffer1));
+                original.andNot(viewFromFiler(filer, offset, stackBuffer1));
             }
             return null;
         }, stackBuffer);
@@ -313,10 +321,10 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
                     counter.get().andNot(bitmap);
                 }
             } else if (filer != null) {
-                MutableRoaringBitmap bitmapFromFiler = bitmapFromFiler(filer, offset, stackBuffer1);
-                original.andNot(bitmapFromFiler);
+                ImmutableRoaringBitmap viewFromFiler = viewFromFiler(filer, offset, stackBuffer1);
+                original.andNot(viewFromFiler);
                 if (counter.isPresent()) {
-                    counter.get().andNot(bitmapFromFiler);
+                    counter.get().andNot(viewFromFiler);
                 }
             }
             if (counts != null) {
@@ -388,7 +396,7 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
                 if (bitmap != null) {
                     container.andNot(bitmap);
                 } else if (filer != null) {
-                    container.andNot(bitmapFromFiler(filer, offset, stackBuffer1));
+                    container.andNot(viewFromFiler(filer, offset, stackBuffer1));
                 }
                 return null;
             }, stackBuffer);
@@ -423,6 +431,11 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
         return bitmap;
     }
 
+    @Override
+    public ImmutableRoaringBitmap view(ByteBuffer byteBuffer) throws Exception {
+        return new ImmutableRoaringBitmap(byteBuffer);
+    }
+
     @Override
     public void serialize(ImmutableRoaringBitmap bitmap, DataOutput dataOutput) throws Exception {
         bitmap.serialize(dataOutput);
@@ -645,7 +658,23 @@ public class MiruBitmapsRoaringBuffer implements MiruBitmaps<MutableRoaringBitma
         throw new UnsupportedOperationException("Wahhh");
     }
 
-    private MutableRoaringBitmap bitmapFromFiler(Filer filer, int offset, StackBuffer stackBuffer1) throws IOException {
+    /**
+     * For operands that are only read within the transaction, so a leakable chunk is viewed in place rather than copied.
+     */
+    private ImmutableRoaringBitmap viewFromFiler(Filer filer, int offset, StackBuffer stackBuffer1) throws IOException {
+        if (filer instanceof ChunkFiler && ((ChunkFiler) filer).canLeakUnsafeByteBuffer()) {
+            ByteBuffer buf = ((ChunkFiler) filer).leakUnsafeByteBuffer();
+            buf.position(offset);
+            return new ImmutableRoaringBitmap(buf);
+        } else {
+            filer.seek(offset);
+            MutableRoaringBitmap mutable = new MutableRoaringBitmap();
+            mutable.deserialize(new FilerDataInput(filer, stackBuffer1));
+            return mutable;
+        }
+    }
+
+    protected MutableRoaringBitmap bitmapFromFiler(Filer filer, int offset, StackBuffer stackBuffer1) throws IOException {
         if (filer instanceof ChunkFiler && ((ChunkFiler) filer).canLeakUnsafeByteBuffer()) {
             ByteBuffer buf = ((ChunkFiler) filer).leakUnsafeByteBuffer();
             buf.position(offset);
@@ -0,0 +1,109 @@
+package com.jivesoftware.os.miru.bitmaps.roaring6.buffer;
+
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.plugin.index.MiruTxIndex;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.roaringbitmap.buffer.RoaringBufferInspection;
+
+/**
+ * Orders transactional ands and andNots by operand cardinality rather than by the order the caller listed them. Operands are
+ * loaded once, heap bitmaps without copying, an and stops loading as soon as an operand is missing or the key ranges seen so far cannot
+ * intersect, and then intersects from the most selective operand up. An andNot ignores operands whose key range misses the
+ * original and removes the largest operands first.
+ */
+public class MiruBitmapsRoaringBufferCostBased extends MiruBitmapsRoaringBuffer {
+
+    private static final Comparator<ImmutableRoaringBitmap> CARDINALITY = Comparator.comparingInt(ImmutableRoaringBitmap::getCardinality);
+
+    @Override
+    public MutableRoaringBitmap andTx(List<MiruTxIndex<ImmutableRoaringBitmap>> indexes, StackBuffer stackBuffer) throws Exception {
+        if (indexes.isEmpty()) {
+            return new MutableRoaringBitmap();
+        }
+
+        List<ImmutableRoaringBitmap> operands = new ArrayList<>(indexes.size());
+        int fromKey = 0;
+        int toKey = Integer.MAX_VALUE;
+        for (MiruTxIndex<ImmutableRoaringBitmap> index : indexes) {
+            ImmutableRoaringBitmap operand = load(index, stackBuffer);
+            if (operand == null || operand.isEmpty()) {
+                return new MutableRoaringBitmap();
+            }
+            fromKey = Math.max(fromKey, RoaringBufferInspection.firstKey(operand));
+            toKey = Math.min(toKey, RoaringBufferInspection.lastKey(operand));
+            if (fromKey > toKey) {
+                return new MutableRoaringBitmap();
+            }
+            operands.add(operand);
+        }
+
+        if (operands.size() == 1) {
+            return copy(operands.get(0));
+        }
+
+        operands.sort(CARDINALITY);
+        MutableRoaringBitmap container = MutableRoaringBitmap.and(operands.get(0), operands.get(1));
+        for (int i = 2; i < operands.size() && !container.isEmpty(); i++) {
+            container.and(operands.get(i));
+        }
+        return container;
+    }
+
+    @Override
+    public MutableRoaringBitmap andNotTx(MiruTxIndex<ImmutableRoaringBitmap> original,
+        List<MiruTxIndex<ImmutableRoaringBitmap>> not,
+        StackBuffer stackBuffer) throws Exception {
+
+        ImmutableRoaringBitmap source = load(original, stackBuffer);
+        if (source == null || source.isEmpty()) {
+            return new MutableRoaringBitmap();
+        }
+
+        int fromKey = RoaringBufferInspection.firstKey(source);
+        int toKey = RoaringBufferInspection.lastKey(source);
+        List<ImmutableRoaringBitmap> operands = new ArrayList<>(not.size());
+        for (MiruTxIndex<ImmutableRoaringBitmap> index : not) {
+            ImmutableRoaringBitmap operand = load(index, stackBuffer);
+            if (operand != null
+                && !operand.isEmpty()
+                && RoaringBufferInspection.firstKey(operand) <= toKey
+                && RoaringBufferInspection.lastKey(operand) >= fromKey) {
+                operands.add(operand);
+            }
+        }
+
+        if (operands.isEmpty()) {
+            return copy(source);
+        }
+
+        operands.sort(CARDINALITY.reversed());
+        MutableRoaringBitmap container = MutableRoaringBitmap.andNot(source, operands.get(0));
+        for (int i = 1; i < operands.size() && !container.isEmpty(); i++) {
+            container.andNot(operands.get(i));
+        }
+        return container;
+    }
+
+    /**
+     * Operands are retained beyond their transaction, so views are copied to the heap.
+     *
+     * @return the operand's bitmap, which must not be mutated, or null if the index has no bitmap
+     */
+    private ImmutableRoaringBitmap load(MiruTxIndex<ImmutableRoaringBitmap> index, StackBuffer stackBuffer) throws Exception {
+        return index.txIndex((bitmap, filer, offset, stackBuffer1) -> {
+            if (bitmap instanceof MutableRoaringBitmap) {
+                return bitmap;
+            } else if (bitmap != null) {
+                return bitmap.toMutableRoaringBitmap();
+            } else if (filer != null) {
+                return bitmapFromFiler(filer, offset, stackBuffer1);
+            } else {
+                return null;
+            }
+        }, stackBuffer);
+    }
+}
@@ -0,0 +1,95 @@
+package com.jivesoftware.os.miru.bitmaps.roaring6.buffer;
+
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.plugin.index.MiruTxIndex;
+import com.jivesoftware.os.miru.plugin.solution.SimpleInvertedIndex;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class MiruBitmapsRoaringBufferCostBasedTest {
+
+    private final MiruBitmapsRoaringBuffer ordered = new MiruBitmapsRoaringBuffer();
+    private final MiruBitmapsRoaringBufferCostBased costBased = new MiruBitmapsRoaringBufferCostBased();
+
+    @Test
+    public void testAndTxMatchesOrdered() throws Exception {
+        Random random = new Random(1234);
+        StackBuffer stackBuffer = new StackBuffer();
+        for (int i = 0; i < 100; i++) {
+            List<MiruTxIndex<ImmutableRoaringBitmap>> indexes = randomIndexes(random, 1 + random.nextInt(5));
+            assertEquals(costBased.andTx(indexes, stackBuffer), ordered.andTx(indexes, stackBuffer));
+        }
+    }
+
+    @Test
+    public void testAndNotTxMatchesOrdered() throws Exception {
+        Random random = new Random(1234);
+        StackBuffer stackBuffer = new StackBuffer();
+        for (int i = 0; i < 100; i++) {
+            List<MiruTxIndex<ImmutableRoaringBitmap>> indexes = randomIndexes(random, 1 + random.nextInt(5));
+            MiruTxIndex<ImmutableRoaringBitmap> original = indexes.get(0);
+            List<MiruTxIndex<ImmutableRoaringBitmap>> not = indexes.subList(1, indexes.size());
+            assertEquals(costBased.andNotTx(original, not, stackBuffer), ordered.andNotTx(original, not, stackBuffer));
+        }
+    }
+
+    @Test
+    public void testDisjointAndMissingOperands() throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        MutableRoaringBitmap low = MutableRoaringBitmap.bitmapOf(1, 2, 3);
+        MutableRoaringBitmap high = MutableRoaringBitmap.bitmapOf(1 << 20, (1 << 20) + 1);
+
+        assertTrue(costBased.andTx(Lists.newArrayList(index(low), index(high)), stackBuffer).isEmpty());
+        assertTrue(costBased.andTx(Lists.newArrayList(index(low), index(null)), stackBuffer).isEmpty());
+        assertEquals(costBased.andNotTx(index(low), Collections.singletonList(index(high)), stackBuffer), low);
+        assertEquals(low, MutableRoaringBitmap.bitmapOf(1, 2, 3));
+    }
+
+    @Test
+    public void testRetainedViewsAreCopied() throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        MutableRoaringBitmap bitmap = MutableRoaringBitmap.bitmapOf(1, 2, 3, 1 << 20);
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        bitmap.serialize(new DataOutputStream(bytesOut));
+        ByteBuffer byteBuffer = ByteBuffer.wrap(bytesOut.toByteArray());
+
+        ImmutableRoaringBitmap view = costBased.view(byteBuffer);
+        assertEquals(view, bitmap);
+
+        MutableRoaringBitmap and = costBased.andTx(Lists.newArrayList(index(view), index(view)), stackBuffer);
+        MutableRoaringBitmap andNot = costBased.andNotTx(index(view), Collections.emptyList(), stackBuffer);
+        Arrays.fill(byteBuffer.array(), (byte) 0);
+        assertEquals(and, bitmap);
+        assertEquals(andNot, bitmap);
+    }
+
+    private List<MiruTxIndex<ImmutableRoaringBitmap>> randomIndexes(Random random, int count) {
+        List<MiruTxIndex<ImmutableRoaringBitmap>> indexes = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            MutableRoaringBitmap bitmap = new MutableRoaringBitmap();
+            int offset = random.nextInt(4) << 16;
+            int bits = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(100_000);
+            for (int j = 0; j < bits; j++) {
+                bitmap.add(offset + random.nextInt(1 << 18));
+            }
+            indexes.add(index(bitmap));
+        }
+        return indexes;
+    }
+
+    private MiruTxIndex<ImmutableRoaringBitmap> index(ImmutableRoaringBitmap bitmap) {
+        return new SimpleInvertedIndex<>(bitmap);
+    }
+}
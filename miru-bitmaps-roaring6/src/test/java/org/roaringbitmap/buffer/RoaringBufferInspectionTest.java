@@ -169,4 +169,77 @@ public class RoaringBufferInspectionTest {
             assertEquals(cardinalityInBuckets[i][7], 1);
         }
     }
+
+    @Test
+    public void testIntersectionCardinalityInBuckets() throws Exception {
+        MutableRoaringBitmap dense = new MutableRoaringBitmap();
+        MutableRoaringBitmap sparse = new MutableRoaringBitmap();
+        for (int i = 0; i < 200_000; i++) {
+            if (i % 3 != 0) {
+                dense.add(i);
+            }
+            if (i % 7 == 0) {
+                sparse.add(i);
+            }
+        }
+        dense.runOptimize();
+
+        int[][] indexes = new int[][] {
+            { 0, 10_000, 65_536, 70_000, 131_072, 150_000, 199_999 },
+            { 5, 65_535, 65_537, 180_000 } };
+        long[][] fused = new long[][] { new long[indexes[0].length - 1], new long[indexes[1].length - 1] };
+        RoaringBufferInspection.intersectionCardinalityInBuckets(dense, sparse, indexes, fused);
+        for (int i = 0; i < fused.length; i++) {
+            for (int j = 0; j < fused[i].length; j++) {
+                long naive = 0;
+                for (int k = indexes[i][j]; k < indexes[i][j + 1]; k++) {
+                    if (k % 3 != 0 && k % 7 == 0) {
+                        naive++;
+                    }
+                }
+                assertEquals(fused[i][j], naive, "bucket " + i + "," + j);
+            }
+        }
+    }
+
+    @Test
+    public void testIntersectionCardinalityInBucketsWholeContainers() throws Exception {
+        MutableRoaringBitmap x1 = new MutableRoaringBitmap();
+        MutableRoaringBitmap x2 = new MutableRoaringBitmap();
+        for (int i = 0; i < 400_000; i++) {
+            if (i % 2 == 0) {
+                x1.add(i);
+            }
+            if (i % 5 == 0) {
+                x2.add(i);
+            }
+        }
+        x1.runOptimize();
+
+        int[][] indexes = new int[][] {
+            // every bucket holds whole containers
+            { 0, 131_072, 196_608, 400_000 },
+            // the first bucket straddles a container, the second holds whole containers
+            { 1_000, 65_536, 300_000 },
+            // exhausted within the first container
+            { 0, 10 },
+            // begins after the first containers
+            { 250_000, 262_144, 262_145 } };
+        long[][] buckets = new long[indexes.length][];
+        for (int i = 0; i < indexes.length; i++) {
+            buckets[i] = new long[indexes[i].length - 1];
+        }
+        RoaringBufferInspection.intersectionCardinalityInBuckets(x1, x2, indexes, buckets);
+        for (int i = 0; i < buckets.length; i++) {
+            for (int j = 0; j < buckets[i].length; j++) {
+                long naive = 0;
+                for (int k = indexes[i][j]; k < indexes[i][j + 1]; k++) {
+                    if (k < 400_000 && k % 2 == 0 && k % 5 == 0) {
+                        naive++;
+                    }
+                }
+                assertEquals(buckets[i][j], naive, "bucket " + i + "," + j);
+            }
+        }
+    }
 }
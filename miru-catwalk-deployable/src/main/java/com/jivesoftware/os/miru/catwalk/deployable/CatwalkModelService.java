@@ -2,6 +2,7 @@ package com.jivesoftware.os.miru.catwalk.deployable;
 
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.MinMaxPriorityQueue;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Sets;
@@ -31,11 +32,13 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.TreeSet;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -64,6 +67,8 @@ public class CatwalkModelService {
     private final long abandonLeaderSolutionAfterNMillis;
     private final long abandonSolutionAfterNMillis;
 
+    private final Map<String, PendingCompaction> pendingCompactions = Maps.newConcurrentMap();
+
     public CatwalkModelService(CatwalkModelQueue modelQueue,
         ExecutorService readRepairers,
         PartitionClientProvider clientProvider,
@@ -149,6 +154,9 @@ public class CatwalkModelService {
                                     mergedScores.ranges.add(range);
                                     mergedScores.scores = scores;
                                     mergedScores.timeRange = scores.timeRange;
+                                    mergedScores.watermark = timestamp;
+                                } else {
+                                    mergedScores.contiguousClosedPartitions = false;
                                 }
                                 return mergedScores;
                             }
@@ -202,6 +210,7 @@ public class CatwalkModelService {
                             if (currentMerged.contiguousClosedPartitions) {
                                 currentMerged.ranges.add(range);
                                 currentMerged.scores = mergedScores;
+                                currentMerged.watermark = Math.max(currentMerged.watermark, timestamp);
                                 if (currentMerged.timeRange == null) {
                                     currentMerged.timeRange = scores.timeRange;
                                 } else {
@@ -215,7 +224,7 @@ public class CatwalkModelService {
                             currentMerged.allRanges.add(range);
                             currentMerged.mergedRange = new FeatureRange(range.featureName,
                                 featureId, Math.min(range.fromPartitionId, currentMerged.mergedRange.fromPartitionId),
-                                Math.min(range.toPartitionId, currentMerged.mergedRange.toPartitionId));
+                                Math.max(range.toPartitionId, currentMerged.mergedRange.toPartitionId));
                             currentMerged.mergedScores = mergedScores;
                             return currentMerged;
                         });
@@ -314,10 +323,14 @@ public class CatwalkModelService {
             LOG.info("Gathered scores:{} dropped:{} for tenantId:{} catwalkId:{} modelId:{} existing:{} missing:{} from {} models",
                 scoreCount, dropCount, tenantId, catwalkId, modelId, existingCount, missingCount, modelCount);
 
-            for (Map.Entry<String, MergedScores> entry : featureNameToMergedScores.entrySet()) {
-                List<FeatureRange> ranges = entry.getValue().ranges;
-                if (ranges != null && ranges.size() > 1) {
-                    readRepairers.submit(new ReadRepair(tenantId, catwalkId, modelId, entry.getKey(), numeratorsCount, entry.getValue()));
+            for (MergedScores mergedScores : featureNameToMergedScores.values()) {
+                if (mergedScores.ranges.size() > 1) {
+                    PendingCompaction existing = pendingCompactions.putIfAbsent(tenantId + "/" + catwalkId + "/" + modelId,
+                        new PendingCompaction(tenantId, catwalkId, modelId, features, numeratorsCount));
+                    if (existing == null) {
+                        LOG.inc("compact>requested");
+                    }
+                    break;
                 }
             }
 
@@ -457,6 +470,17 @@ public class CatwalkModelService {
         String catwalkId,
         String modelId,
         List<FeatureRange> ranges) throws Exception {
+        removeModel(tenantId, catwalkId, modelId, ranges, -1);
+    }
+
+    /**
+     * Removes the given ranges as of the given timestamp, so that any row written after that timestamp survives the removal.
+     */
+    private void removeModel(MiruTenantId tenantId,
+        String catwalkId,
+        String modelId,
+        List<FeatureRange> ranges,
+        long timestamp) throws Exception {
 
         PartitionClient client = modelClient(tenantId);
         client.commit(Consistency.leader_quorum, null,
@@ -465,7 +489,7 @@ public class CatwalkModelService {
                     LOG.info("Removing model for tenantId:{} catwalkId:{} modelId:{} feature:{} from:{} to:{}",
                         tenantId, catwalkId, modelId, range.featureId, range.fromPartitionId, range.toPartitionId);
                     byte[] key = modelPartitionKey(catwalkId, modelId, range.featureName, range.fromPartitionId, range.toPartitionId);
-                    if (!commitKeyValueStream.commit(key, null, -1, true)) {
+                    if (!commitKeyValueStream.commit(key, null, timestamp, true)) {
                         return false;
                     }
                 }
@@ -709,61 +733,100 @@ public class CatwalkModelService {
         }
     }
 
-    private class ReadRepair implements Runnable {
+    /**
+     * Compacts the models requested by reads since the last run, collapsing each feature's contiguous closed ranges into a
+     * single row, so that subsequent reads only touch the merged row plus any open partitions.
+     */
+    public void startCompaction(ScheduledExecutorService executorService, long compactionIntervalMillis) {
+        executorService.scheduleWithFixedDelay(() -> {
+            Iterator<PendingCompaction> iter = pendingCompactions.values().iterator();
+            while (iter.hasNext()) {
+                PendingCompaction pending = iter.next();
+                iter.remove();
+                try {
+                    compactModel(pending.tenantId, pending.catwalkId, pending.modelId, pending.features, pending.numeratorsCount);
+                } catch (Exception x) {
+                    LOG.error("Failure while compacting model for tenantId:{} catwalkId:{} modelId:{}",
+                        new Object[] { pending.tenantId, pending.catwalkId, pending.modelId }, x);
+                    LOG.inc("compact>failure");
+                }
+            }
+        }, compactionIntervalMillis, compactionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The merged row is written before its source rows are removed, and the removal is stamped with the newest timestamp seen
+     * among the source rows. Reads which land in between see the merged row and skip the rows it covers, and a row rewritten
+     * by the updater after the scan is newer than the watermark so it is not lost.
+     */
+    void compactModel(MiruTenantId tenantId, String catwalkId, String modelId, CatwalkFeature[] features, int numeratorsCount) throws Exception {
+        Map<String, MergedScores> featureNameToMergedScores = gatherModel("compact",
+            tenantId,
+            catwalkId,
+            modelId,
+            features,
+            Sets.newTreeSet(),
+            Lists.newArrayList(),
+            repairMinFeatureScore,
+            repairMaxFeatureScoresPerFeature);
+
+        for (Map.Entry<String, MergedScores> entry : featureNameToMergedScores.entrySet()) {
+            MergedScores mergedScores = entry.getValue();
+            if (mergedScores.ranges.size() < 2) {
+                continue;
+            }
+
+            FeatureRange merged = null;
+            for (FeatureRange range : mergedScores.ranges) {
+                merged = (merged == null) ? range : merged.merge(range);
+            }
+
+            LOG.info("Compacting model for tenantId:{} catwalkId:{} modelId:{} feature:{} from:{} to:{} ranges:{}",
+                tenantId, catwalkId, modelId, merged.featureId, merged.fromPartitionId, merged.toPartitionId, mergedScores.ranges.size());
+            ModelFeatureScores modelFeatureScores = new ModelFeatureScores(true,
+                mergedScores.scores.modelCount,
+                mergedScores.scores.totalCount,
+                mergedScores.scores.featureScores,
+                mergedScores.timeRange);
+            saveModel(tenantId,
+                catwalkId,
+                modelId,
+                numeratorsCount,
+                merged.fromPartitionId,
+                merged.toPartitionId,
+                new String[] { entry.getKey() },
+                new ModelFeatureScores[] { modelFeatureScores },
+                repairMinFeatureScore,
+                repairMaxFeatureScoresPerFeature);
+
+            List<FeatureRange> sourceRanges = Lists.newArrayList();
+            for (FeatureRange range : mergedScores.ranges) {
+                if (range.fromPartitionId != merged.fromPartitionId || range.toPartitionId != merged.toPartitionId) {
+                    sourceRanges.add(range);
+                }
+            }
+            removeModel(tenantId, catwalkId, modelId, sourceRanges, mergedScores.watermark);
+
+            LOG.inc("compact>merged");
+            LOG.inc("compact>ranges", mergedScores.ranges.size());
+        }
+    }
+
+    private static class PendingCompaction {
 
         private final MiruTenantId tenantId;
         private final String catwalkId;
         private final String modelId;
-        private final String featureName;
+        private final CatwalkFeature[] features;
         private final int numeratorsCount;
-        private final MergedScores mergedScores;
 
-        public ReadRepair(MiruTenantId tenantId, String catwalkId, String modelId, String featureName, int numeratorsCount, MergedScores mergedScores) {
+        private PendingCompaction(MiruTenantId tenantId, String catwalkId, String modelId, CatwalkFeature[] features, int numeratorsCount) {
             this.tenantId = tenantId;
             this.catwalkId = catwalkId;
             this.modelId = modelId;
-            this.featureName = featureName;
+            this.features = features;
             this.numeratorsCount = numeratorsCount;
-            this.mergedScores = mergedScores;
         }
-
-        @Override
-        public void run() {
-            try {
-                FeatureRange merged = null;
-                for (FeatureRange range : mergedScores.ranges) {
-                    if (merged == null) {
-                        merged = range;
-                    } else {
-                        merged = merged.merge(range);
-                    }
-                }
-
-                if (merged != null) {
-                    LOG.info("Merging model for tenantId:{} catwalkId:{} modelId:{} feature:{} from:{} to:{}",
-                        tenantId, catwalkId, modelId, merged.featureId, merged.fromPartitionId, merged.toPartitionId);
-                    ModelFeatureScores modelFeatureScores = new ModelFeatureScores(true,
-                        mergedScores.scores.modelCount,
-                        mergedScores.scores.totalCount,
-                        mergedScores.scores.featureScores,
-                        mergedScores.timeRange);
-                    saveModel(tenantId,
-                        catwalkId,
-                        modelId,
-                        numeratorsCount,
-                        merged.fromPartitionId,
-                        merged.toPartitionId,
-                        new String[] { featureName },
-                        new ModelFeatureScores[] { modelFeatureScores },
-                        repairMinFeatureScore,
-                        repairMaxFeatureScoresPerFeature);
-                    removeModel(tenantId, catwalkId, modelId, mergedScores.ranges);
-                }
-            } catch (Exception x) {
-                LOG.error("Failure while trying to apply read repairs.", x);
-            }
-        }
-
     }
 
     private static final Comparator<FeatureScore> FEATURE_SCORES_PER_FEATURE_COMPARATOR = (o1, o2) -> {
@@ -810,6 +873,7 @@ public class CatwalkModelService {
         public final List<FeatureRange> allRanges = new ArrayList<>();
         ModelFeatureScores scores;
         MiruTimeRange timeRange;
+        long watermark = -1;
 
         public MergedScores(FeatureRange mergedRange, ModelFeatureScores mergedScores) {
             this.firstRange = mergedRange;
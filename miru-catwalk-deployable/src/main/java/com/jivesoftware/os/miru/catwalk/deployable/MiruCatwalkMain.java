@@ -151,6 +151,9 @@ public class MiruCatwalkMain {
 
         @IntDefault(4)
         int getReadRepairThreadPoolSize();
+
+        @LongDefault(60_000)
+        long getModelCompactionIntervalMillis();
     }
 
     public interface MiruCatwalkConfig extends Config {
@@ -416,6 +419,9 @@ public class MiruCatwalkMain {
             catwalkModelUpdater.start(amzaCatwalkConfig.getNumberOfUpateModelQueues(),
                 amzaCatwalkConfig.getCheckQueuesBatchSize(),
                 amzaCatwalkConfig.getCheckQueuesForWorkEvenNMillis());
+            catwalkModelService.startCompaction(Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("model-compactor-%d").build()),
+                amzaCatwalkConfig.getModelCompactionIntervalMillis());
             isAmzaReady.set(amzaLifecycle::isReady);
             serviceStartupHealthCheck.success();
         } catch (Throwable t) {
@@ -1,12 +1,34 @@
 package com.jivesoftware.os.miru.catwalk.deployable;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.jivesoftware.os.amza.api.PartitionClient;
+import com.jivesoftware.os.amza.api.PartitionClientProvider;
+import com.jivesoftware.os.amza.api.RingPartitionProperties;
+import com.jivesoftware.os.amza.api.partition.PartitionName;
+import com.jivesoftware.os.amza.api.partition.PartitionProperties;
+import com.jivesoftware.os.amza.api.ring.RingMember;
+import com.jivesoftware.os.amza.api.wal.KeyUtil;
+import com.jivesoftware.os.amza.client.test.InMemoryPartitionClient;
+import com.jivesoftware.os.jive.utils.ordered.id.ConstantWriterIdProvider;
+import com.jivesoftware.os.jive.utils.ordered.id.JiveEpochTimestampProvider;
+import com.jivesoftware.os.jive.utils.ordered.id.OrderIdProvider;
+import com.jivesoftware.os.jive.utils.ordered.id.OrderIdProviderImpl;
+import com.jivesoftware.os.jive.utils.ordered.id.SnowflakeIdPacker;
+import com.jivesoftware.os.miru.api.MiruStats;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.api.base.MiruTermId;
 import com.jivesoftware.os.miru.catwalk.deployable.CatwalkModelService.FeatureRange;
+import com.jivesoftware.os.miru.catwalk.deployable.CatwalkModelService.MergedScores;
 import com.jivesoftware.os.miru.catwalk.shared.CatwalkQuery.CatwalkFeature;
 import com.jivesoftware.os.miru.catwalk.shared.FeatureScore;
 import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
 import org.testng.annotations.Test;
 
 import static org.testng.Assert.assertEquals;
@@ -16,6 +38,11 @@ import static org.testng.Assert.assertEquals;
  */
 public class CatwalkModelServiceTest {
 
+    private static final MiruTenantId TENANT_ID = new MiruTenantId("tenant1".getBytes());
+    private static final String CATWALK_ID = "catwalkId";
+    private static final String MODEL_ID = "modelId";
+    private static final CatwalkFeature[] FEATURES = { new CatwalkFeature("feature", null, null, 1f) };
+
     @Test
     public void testKeySerDer() throws Exception {
         int fromPartitionId = 123;
@@ -62,6 +89,143 @@ public class CatwalkModelServiceTest {
         assertEquals(modelFeatureScores.timeRange, timeRange);
     }
 
+    @Test
+    public void testGatherMergesContiguousClosedPartitions() throws Exception {
+        CatwalkModelService modelService = modelService();
+        for (int partitionId = 0; partitionId < 6; partitionId++) {
+            saveModel(modelService, partitionId, partitionId, true);
+        }
+
+        MergedScores mergedScores = gatherModel(modelService);
+        assertEquals(mergedScores.ranges.size(), 6);
+        assertEquals(mergedScores.allRanges.size(), 6);
+        assertEquals(mergedScores.mergedRange.fromPartitionId, 0);
+        assertEquals(mergedScores.mergedRange.toPartitionId, 5);
+        assertEquals(mergedScores.scores.modelCount, 60);
+    }
+
+    @Test
+    public void testGatherStopsMergingAtOpenPartition() throws Exception {
+        CatwalkModelService modelService = modelService();
+        saveModel(modelService, 0, 0, true);
+        saveModel(modelService, 1, 1, true);
+        saveModel(modelService, 2, 2, false);
+        saveModel(modelService, 3, 3, true);
+
+        MergedScores mergedScores = gatherModel(modelService);
+        assertEquals(mergedScores.ranges.size(), 2);
+        assertEquals(mergedScores.allRanges.size(), 4);
+        assertEquals(mergedScores.scores.modelCount, 20);
+        assertEquals(mergedScores.mergedScores.modelCount, 40);
+    }
+
+    @Test
+    public void testCompactModel() throws Exception {
+        CatwalkModelService modelService = modelService();
+        for (int partitionId = 0; partitionId < 4; partitionId++) {
+            saveModel(modelService, partitionId, partitionId, true);
+        }
+        saveModel(modelService, 4, 4, false);
+        MergedScores before = gatherModel(modelService);
+
+        modelService.compactModel(TENANT_ID, CATWALK_ID, MODEL_ID, FEATURES, 1);
+
+        MergedScores after = gatherModel(modelService);
+        assertEquals(after.allRanges.size(), 2);
+        assertEquals(after.allRanges.get(0).fromPartitionId, 0);
+        assertEquals(after.allRanges.get(0).toPartitionId, 3);
+        assertEquals(after.allRanges.get(1).fromPartitionId, 4);
+        assertEquals(after.allRanges.get(1).toPartitionId, 4);
+        assertEquals(after.ranges.size(), 1);
+        assertEquals(after.scores.modelCount, 40);
+        assertEquals(after.scores.totalCount, 400);
+        assertEquals(after.timeRange, new MiruTimeRange(0, 3_999));
+
+        // the compacted row scores the same as the rows it replaced
+        assertEquals(after.mergedScores.modelCount, before.mergedScores.modelCount);
+        assertEquals(after.mergedScores.totalCount, before.mergedScores.totalCount);
+        assertEquals(after.mergedScores.featureScores.size(), before.mergedScores.featureScores.size());
+        for (int i = 0; i < before.mergedScores.featureScores.size(); i++) {
+            FeatureScore expected = before.mergedScores.featureScores.get(i);
+            FeatureScore actual = after.mergedScores.featureScores.get(i);
+            assertEquals(actual.termIds, expected.termIds);
+            assertEquals(actual.numerators, expected.numerators);
+            assertEquals(actual.denominator, expected.denominator);
+            assertEquals(actual.numPartitions, expected.numPartitions);
+        }
+
+        // a compacted model with nothing new to merge is left alone
+        modelService.compactModel(TENANT_ID, CATWALK_ID, MODEL_ID, FEATURES, 1);
+        assertEquals(gatherModel(modelService).allRanges.size(), 2);
+    }
+
+    @Test
+    public void testCompactedRangeMergesWithLaterPartitions() throws Exception {
+        CatwalkModelService modelService = modelService();
+        for (int partitionId = 0; partitionId < 3; partitionId++) {
+            saveModel(modelService, partitionId, partitionId, true);
+        }
+        modelService.compactModel(TENANT_ID, CATWALK_ID, MODEL_ID, FEATURES, 1);
+
+        saveModel(modelService, 3, 3, true);
+        saveModel(modelService, 4, 4, true);
+
+        MergedScores mergedScores = gatherModel(modelService);
+        assertEquals(mergedScores.ranges.size(), 3);
+        assertEquals(mergedScores.mergedRange.toPartitionId, 4);
+
+        modelService.compactModel(TENANT_ID, CATWALK_ID, MODEL_ID, FEATURES, 1);
+        mergedScores = gatherModel(modelService);
+        assertEquals(mergedScores.allRanges.size(), 1);
+        assertEquals(mergedScores.allRanges.get(0).fromPartitionId, 0);
+        assertEquals(mergedScores.allRanges.get(0).toPartitionId, 4);
+        assertEquals(mergedScores.scores.modelCount, 50);
+    }
+
+    private CatwalkModelService modelService() {
+        OrderIdProvider orderIdProvider = new OrderIdProviderImpl(new ConstantWriterIdProvider(1),
+            new SnowflakeIdPacker(),
+            new JiveEpochTimestampProvider());
+        return new CatwalkModelService(null,
+            MoreExecutors.sameThreadExecutor(),
+            new InMemoryPartitionClientProvider(new RingMember("member1"), orderIdProvider),
+            new MiruStats(),
+            0f,
+            0f,
+            100,
+            100,
+            false,
+            1_000,
+            10_000,
+            30_000);
+    }
+
+    private void saveModel(CatwalkModelService modelService, int fromPartitionId, int toPartitionId, boolean partitionIsClosed) throws Exception {
+        List<FeatureScore> featureScores = Lists.newArrayList(
+            new FeatureScore(terms("a"), new long[] { 1 }, 10, 1),
+            new FeatureScore(terms("b"), new long[] { 2 }, 10, 1));
+        ModelFeatureScores model = new ModelFeatureScores(partitionIsClosed,
+            10,
+            100,
+            featureScores,
+            new MiruTimeRange(fromPartitionId * 1_000L, toPartitionId * 1_000L + 999L));
+        modelService.saveModel(TENANT_ID, CATWALK_ID, MODEL_ID, 1, fromPartitionId, toPartitionId,
+            new String[] { FEATURES[0].name }, new ModelFeatureScores[] { model }, 0f, 100);
+    }
+
+    private MergedScores gatherModel(CatwalkModelService modelService) throws Exception {
+        Map<String, MergedScores> gathered = modelService.gatherModel("test",
+            TENANT_ID,
+            CATWALK_ID,
+            MODEL_ID,
+            FEATURES,
+            Sets.newTreeSet(),
+            Lists.newArrayList(),
+            0f,
+            100);
+        return gathered.get(FEATURES[0].name);
+    }
+
     private static MiruTermId[] terms(String... terms) {
         MiruTermId[] termIds = new MiruTermId[terms.length];
         for (int i = 0; i < terms.length; i++) {
@@ -69,4 +233,36 @@ public class CatwalkModelServiceTest {
         }
         return termIds;
     }
+
+    private static class InMemoryPartitionClientProvider implements PartitionClientProvider {
+
+        private final RingMember ringMember;
+        private final OrderIdProvider orderIdProvider;
+
+        private final Map<PartitionName, PartitionClient> clients = Maps.newConcurrentMap();
+
+        private InMemoryPartitionClientProvider(RingMember ringMember, OrderIdProvider orderIdProvider) {
+            this.ringMember = ringMember;
+            this.orderIdProvider = orderIdProvider;
+        }
+
+        @Override
+        public RingPartitionProperties getProperties(PartitionName partitionName) throws Exception {
+            return null;
+        }
+
+        @Override
+        public PartitionClient getPartition(PartitionName partitionName) throws Exception {
+            return clients.computeIfAbsent(partitionName,
+                partitionName1 -> new InMemoryPartitionClient(ringMember,
+                    new ConcurrentSkipListMap<>(),
+                    new ConcurrentSkipListMap<>(KeyUtil.lexicographicalComparator()),
+                    orderIdProvider));
+        }
+
+        @Override
+        public PartitionClient getPartition(PartitionName partitionName, int ringSize, PartitionProperties partitionProperties) throws Exception {
+            return getPartition(partitionName);
+        }
+    }
 }
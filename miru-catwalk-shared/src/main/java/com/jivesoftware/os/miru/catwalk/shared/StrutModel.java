@@ -1,20 +1,19 @@
 package com.jivesoftware.os.miru.catwalk.shared;
 
 import com.jivesoftware.os.miru.api.base.MiruTermId;
-import java.util.Map;
 
 /**
  * @author jonathan.colt
  */
 public class StrutModel {
 
-    public final Map<StrutModelKey, StrutModelScore>[] model;
+    public final StrutModelScores[] model;
     public final long[] modelCounts;
     public final long totalCount;
     public final int[] numberOfModels;
     public final int[] totalNumPartitions;
 
-    public StrutModel(Map<StrutModelKey, StrutModelScore>[] model,
+    public StrutModel(StrutModelScores[] model,
         long[] modelCounts,
         long totalCount,
         int[] numberOfModels,
@@ -27,7 +26,17 @@ public class StrutModel {
     }
 
     public StrutModelScore score(int featureId, MiruTermId[] values) {
-        return model[featureId].get(new StrutModelKey(values));
+        return model[featureId].get(values);
+    }
+
+    public long sizeInBytes() {
+        long sizeInBytes = 0;
+        if (model != null) {
+            for (StrutModelScores scores : model) {
+                sizeInBytes += scores.sizeInBytes();
+            }
+        }
+        return sizeInBytes + modelCounts.length * 8L + numberOfModels.length * 4L + totalNumPartitions.length * 4L;
     }
 
 }
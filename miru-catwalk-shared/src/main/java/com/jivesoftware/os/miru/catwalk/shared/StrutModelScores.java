@@ -0,0 +1,100 @@
+package com.jivesoftware.os.miru.catwalk.shared;
+
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import java.util.Arrays;
+
+/**
+ * Compact scores for a single model feature. Numerators and denominators are held in flat primitive arrays and found through an
+ * open addressed table of term id hashes, so a decoded model costs a few arrays rather than a map entry, key and score per value.
+ */
+public class StrutModelScores {
+
+    private final int numeratorsCount;
+    private final MiruTermId[][] keys;
+    private final long[] numerators;
+    private final long[] denominators;
+    private final int[] slots;
+    private int size;
+
+    public StrutModelScores(int numeratorsCount, int capacity) {
+        this.numeratorsCount = numeratorsCount;
+        this.keys = new MiruTermId[capacity][];
+        this.numerators = new long[capacity * numeratorsCount];
+        this.denominators = new long[capacity];
+        this.slots = new int[slotsFor(capacity)];
+    }
+
+    private static int slotsFor(int capacity) {
+        int slots = 2;
+        while (slots < capacity * 2) {
+            slots <<= 1;
+        }
+        return slots;
+    }
+
+    /**
+     * Adds the score for a term, replacing any earlier score for the same term.
+     */
+    public void put(MiruTermId[] termIds, long[] numerators, long denominator) {
+        int slot = find(termIds);
+        int index;
+        if (slots[slot] == 0) {
+            if (size == keys.length) {
+                throw new IllegalStateException("Exceeded capacity of " + keys.length);
+            }
+            index = size;
+            size++;
+            keys[index] = termIds;
+            slots[slot] = index + 1;
+        } else {
+            index = slots[slot] - 1;
+        }
+        System.arraycopy(numerators, 0, this.numerators, index * numeratorsCount, numeratorsCount);
+        denominators[index] = denominator;
+    }
+
+    /**
+     * @return the score for the term, or null if the term is not part of the model
+     */
+    public StrutModelScore get(MiruTermId[] termIds) {
+        int index = slots[find(termIds)] - 1;
+        if (index < 0) {
+            return null;
+        }
+        int offset = index * numeratorsCount;
+        return new StrutModelScore(Arrays.copyOfRange(numerators, offset, offset + numeratorsCount), denominators[index]);
+    }
+
+    private int find(MiruTermId[] termIds) {
+        int mask = slots.length - 1;
+        int slot = mix(Arrays.deepHashCode(termIds)) & mask;
+        while (slots[slot] != 0 && !Arrays.deepEquals(keys[slots[slot] - 1], termIds)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long sizeInBytes() {
+        long sizeInBytes = slots.length * 4L + denominators.length * 8L + numerators.length * 8L + keys.length * 8L;
+        for (int i = 0; i < size; i++) {
+            sizeInBytes += 16; // array header
+            for (MiruTermId termId : keys[i]) {
+                sizeInBytes += termId != null ? 24 + termId.getBytes().length : 8; // reference, object and array headers
+            }
+        }
+        return sizeInBytes;
+    }
+}
@@ -0,0 +1,57 @@
+package com.jivesoftware.os.miru.catwalk.shared;
+
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class StrutModelScoresNGTest {
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        int count = 1_000;
+        StrutModelScores scores = new StrutModelScores(2, count);
+        assertTrue(scores.isEmpty());
+
+        for (int i = 0; i < count; i++) {
+            scores.put(termIds(i), new long[] { i, i * 2 }, i + 1);
+        }
+        assertEquals(scores.size(), count);
+
+        for (int i = 0; i < count; i++) {
+            StrutModelScore score = scores.get(termIds(i));
+            assertEquals(score.numerators, new long[] { i, i * 2 });
+            assertEquals(score.denominator, i + 1);
+        }
+        assertNull(scores.get(termIds(count)));
+        assertNull(scores.get(new MiruTermId[] { new MiruTermId(new byte[] { 1 }) }));
+    }
+
+    @Test
+    public void testPutReplaces() throws Exception {
+        StrutModelScores scores = new StrutModelScores(1, 1);
+        scores.put(termIds(7), new long[] { 1 }, 2);
+        scores.put(termIds(7), new long[] { 3 }, 4);
+
+        assertEquals(scores.size(), 1);
+        StrutModelScore score = scores.get(termIds(7));
+        assertEquals(score.numerators, new long[] { 3 });
+        assertEquals(score.denominator, 4);
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        StrutModelScores scores = new StrutModelScores(0, 0);
+        assertTrue(scores.isEmpty());
+        assertNull(scores.get(termIds(1)));
+    }
+
+    private static MiruTermId[] termIds(int i) {
+        return new MiruTermId[] {
+            new MiruTermId(("a" + i).getBytes()),
+            new MiruTermId(("b" + i).getBytes())
+        };
+    }
+}
@@ -1,6 +1,9 @@
 package com.jivesoftware.os.miru.logappender;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.mlogger.core.ValueType;
 import com.jivesoftware.os.routing.bird.http.client.HttpResponse;
 import com.jivesoftware.os.routing.bird.http.client.RoundRobinStrategy;
 import com.jivesoftware.os.routing.bird.http.client.TenantAwareHttpClient;
@@ -15,7 +18,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
@@ -31,6 +38,8 @@ import org.apache.logging.log4j.core.layout.ByteBufferDestination;
 
 public class HttpMiruLogAppender implements MiruLogAppender, Appender {
 
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
     private final String datacenter;
     private final String cluster;
     private final String host;
@@ -46,10 +55,13 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
     private final long ifErrorPauseMillis;
     private final int nonBlockingDrainThreshold;
     private final int nonBlockingDrainCount;
+    private final boolean pipelined;
+    private final int maxInFlightPosts;
+    private final long maxFlushLatencyMillis;
 
     private final AtomicBoolean installed = new AtomicBoolean(false);
     private final AtomicBoolean started = new AtomicBoolean(false);
-    private final AtomicReference<QueueConsumer> queueConsumer = new AtomicReference<>();
+    private final AtomicReference<Consumer> queueConsumer = new AtomicReference<>();
     private final Layout<?> layout = new EmptyLayout();
 
     private ErrorHandler errorHandler = new DefaultErrorHandler(this);
@@ -72,7 +84,10 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
         long ifEmptyPauseMillis,
         long ifErrorPauseMillis,
         int nonBlockingDrainThreshold,
-        int nonBlockingDrainCount) {
+        int nonBlockingDrainCount,
+        boolean pipelined,
+        int maxInFlightPosts,
+        long maxFlushLatencyMillis) {
         this.datacenter = datacenter;
         this.host = host;
         this.service = service;
@@ -88,6 +103,9 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
         this.ifErrorPauseMillis = ifErrorPauseMillis;
         this.nonBlockingDrainThreshold = nonBlockingDrainThreshold;
         this.nonBlockingDrainCount = nonBlockingDrainCount;
+        this.pipelined = pipelined;
+        this.maxInFlightPosts = maxInFlightPosts;
+        this.maxFlushLatencyMillis = maxFlushLatencyMillis;
     }
 
     public void install() {
@@ -144,15 +162,18 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
                     queue.put(miruLogEvent);
                 } catch (InterruptedException ie) {
                     System.err.println("Interrupted while waiting for a free slot in the MiruLogAppender MiruLogEvent-queue " + getName());
+                    LOG.inc("logAppender>dropped");
                 }
             } else {
                 if (queue.remainingCapacity() < nonBlockingDrainThreshold) {
                     System.err.println("Draining to create space in the MiruLogAppender MiruLogEvent-queue " + getName());
-                    queue.drainTo(DEV_NULL_COLLECTION, nonBlockingDrainCount);
+                    int drained = queue.drainTo(DEV_NULL_COLLECTION, nonBlockingDrainCount);
+                    LOG.inc("logAppender>dropped", drained);
                 }
 
                 if (!queue.offer(miruLogEvent)) {
                     System.err.println("MiruLogAppender " + getName() + " is unable to write. Queue is full.");
+                    LOG.inc("logAppender>dropped");
                 }
             }
         }
@@ -215,7 +236,14 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
     @Override
     public void start() {
         if (started.compareAndSet(false, true)) {
-            QueueConsumer consumer = new QueueConsumer();
+            Consumer consumer;
+            if (pipelined) {
+                MiruLogBatchPoster poster = new MiruLogBatchPoster("PipelinedQueueConsumer", "logAppender", client, batchSize,
+                    maxFlushLatencyMillis, ifErrorPauseMillis);
+                consumer = new PipelinedQueueConsumer(queue, poster, maxInFlightPosts);
+            } else {
+                consumer = new QueueConsumer();
+            }
             Thread thread = new Thread(consumer);
             thread.start();
             queueConsumer.set(consumer);
@@ -225,7 +253,7 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
     @Override
     public void stop() {
         if (started.compareAndSet(true, false)) {
-            QueueConsumer consumer = queueConsumer.getAndSet(null);
+            Consumer consumer = queueConsumer.getAndSet(null);
             if (consumer != null) {
                 consumer.stop();
             }
@@ -242,7 +270,12 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
         return !started.get();
     }
 
-    private class QueueConsumer implements Runnable {
+    interface Consumer extends Runnable {
+
+        void stop();
+    }
+
+    private class QueueConsumer implements Consumer {
 
         private final AtomicBoolean running = new AtomicBoolean(true);
 
@@ -272,9 +305,11 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
                                 throw new Exception("Error [" + httpResponse.getStatusCode() + "] posting: " + toJson);
                             }
 
+                            LOG.inc("logAppender>posted", miruLogEvents.size());
                             break;
                         } catch (Exception e) {
                             System.err.println("Append failed for logger: " + e.getClass().getCanonicalName() + ": " + e.getMessage());
+                            LOG.inc("logAppender>failed");
                         }
 
                         try {
@@ -297,7 +332,71 @@ public class HttpMiruLogAppender implements MiruLogAppender, Appender {
             }
         }
 
-        private void stop() {
+        @Override
+        public void stop() {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Posts up to the max in flight batches concurrently, each filled and posted by a {@link MiruLogBatchPoster}. A failed post only
+     * pauses its own poster, so the queue keeps draining while any poster is free. Once stopped, each in flight post makes one last
+     * attempt and is then counted as dropped, and the consumer waits for them before it exits.
+     */
+    static class PipelinedQueueConsumer implements Consumer {
+
+        private final BlockingQueue<MiruLogEvent> queue;
+        private final MiruLogBatchPoster poster;
+        private final int maxInFlightPosts;
+        private final AtomicBoolean running = new AtomicBoolean(true);
+        private final Semaphore inFlight;
+        private final ExecutorService posters;
+
+        PipelinedQueueConsumer(BlockingQueue<MiruLogEvent> queue, MiruLogBatchPoster poster, int maxInFlightPosts) {
+            this.queue = queue;
+            this.poster = poster;
+            this.maxInFlightPosts = maxInFlightPosts;
+            this.inFlight = new Semaphore(maxInFlightPosts);
+            AtomicInteger threadId = new AtomicInteger();
+            this.posters = Executors.newFixedThreadPool(maxInFlightPosts, runnable -> {
+                Thread thread = new Thread(runnable, "miru-log-appender-post-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                List<MiruLogEvent> miruLogEvents = poster.nextBatch(queue);
+                LOG.set(ValueType.COUNT, "logAppender>queueDepth", queue.size());
+                if (miruLogEvents.isEmpty()) {
+                    continue;
+                }
+
+                inFlight.acquireUninterruptibly();
+                LOG.set(ValueType.COUNT, "logAppender>inFlight", maxInFlightPosts - inFlight.availablePermits());
+                try {
+                    posters.submit(() -> {
+                        try {
+                            poster.post(miruLogEvents, running);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (Exception e) {
+                    inFlight.release();
+                    System.err.println("Post rejected for logger: " + e.getClass().getCanonicalName() + ": " + e.getMessage());
+                    LOG.inc("logAppender>dropped", miruLogEvents.size());
+                }
+            }
+            posters.shutdown();
+            inFlight.acquireUninterruptibly(maxInFlightPosts);
+            inFlight.release(maxInFlightPosts);
+        }
+
+        @Override
+        public void stop() {
             running.set(false);
         }
     }
@@ -37,6 +37,15 @@ public class MiruLogAppenderInitializer {
 
         @BooleanDefault(false)
         boolean getEnabled();
+
+        @BooleanDefault(false)
+        boolean getPipelined();
+
+        @IntDefault(4)
+        int getMaxInFlightPosts();
+
+        @LongDefault(1_000)
+        long getMaxFlushLatencyMillis();
     }
 
     public MiruLogAppender initialize(String datacenter,
@@ -63,7 +72,10 @@ public class MiruLogAppenderInitializer {
                 config.getIfEmptyPauseMillis(),
                 config.getIfErrorPauseMillis(),
                 config.getNonBlockingDrainThreshold(),
-                config.getNonBlockingDrainCount());
+                config.getNonBlockingDrainCount(),
+                config.getPipelined(),
+                config.getMaxInFlightPosts(),
+                config.getMaxFlushLatencyMillis());
         } else {
             return () -> {
             };
@@ -0,0 +1,164 @@
+package com.jivesoftware.os.miru.logappender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.mlogger.core.ValueType;
+import com.jivesoftware.os.routing.bird.http.client.HttpResponse;
+import com.jivesoftware.os.routing.bird.http.client.RoundRobinStrategy;
+import com.jivesoftware.os.routing.bird.http.client.TenantAwareHttpClient;
+import com.jivesoftware.os.routing.bird.shared.ClientCall;
+import com.jivesoftware.os.routing.bird.shared.NextClientStrategy;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.xerial.snappy.SnappyOutputStream;
+
+/**
+ * Fills batches of events from a queue and posts each batch to stumptown as snappy compressed json. A batch is flushed as soon as it
+ * reaches the batch size or its oldest event has waited for the max flush latency, and a failed post is retried until it is accepted
+ * or its owner stops running. Problems are reported to stderr, since the poster may be feeding the log appender itself.
+ */
+public class MiruLogBatchPoster {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private static final String snappyEndpoint = "/miru/stumptown/intake/snappy";
+
+    private final String name;
+    private final String metricPrefix;
+    private final TenantAwareHttpClient<String> client;
+    private final int batchSize;
+    private final long maxFlushLatencyMillis;
+    private final long ifErrorPauseMillis;
+
+    private final NextClientStrategy nextClientStrategy = new RoundRobinStrategy();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param name         names the poster in stderr messages
+     * @param metricPrefix prefixes the posted, failed, dropped and latency metrics
+     */
+    public MiruLogBatchPoster(String name,
+        String metricPrefix,
+        TenantAwareHttpClient<String> client,
+        int batchSize,
+        long maxFlushLatencyMillis,
+        long ifErrorPauseMillis) {
+        this.name = name;
+        this.metricPrefix = metricPrefix;
+        this.client = client;
+        this.batchSize = batchSize;
+        this.maxFlushLatencyMillis = maxFlushLatencyMillis;
+        this.ifErrorPauseMillis = ifErrorPauseMillis;
+    }
+
+    /**
+     * @return the next batch, or an empty batch if nothing arrived within the max flush latency
+     */
+    public List<MiruLogEvent> nextBatch(BlockingQueue<MiruLogEvent> queue) {
+        List<MiruLogEvent> miruLogEvents = new ArrayList<>();
+        try {
+            MiruLogEvent first = queue.poll(maxFlushLatencyMillis, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return miruLogEvents;
+            }
+            miruLogEvents.add(first);
+            long flushAtMillis = System.currentTimeMillis() + maxFlushLatencyMillis;
+            while (miruLogEvents.size() < batchSize) {
+                queue.drainTo(miruLogEvents, batchSize - miruLogEvents.size());
+                long waitMillis = flushAtMillis - System.currentTimeMillis();
+                if (miruLogEvents.size() >= batchSize || waitMillis <= 0) {
+                    break;
+                }
+                MiruLogEvent next = queue.poll(waitMillis, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    break;
+                }
+                miruLogEvents.add(next);
+            }
+        } catch (InterruptedException e) {
+            System.err.println(name + " was interrupted while filling a batch");
+            Thread.interrupted();
+        }
+        return miruLogEvents;
+    }
+
+    /**
+     * Posts the batch, retrying after a pause for as long as the owner is running.
+     *
+     * @return true if the batch was accepted, false if it was dropped
+     */
+    public boolean post(List<MiruLogEvent> miruLogEvents, AtomicBoolean running) {
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+            objectMapper.writeValue(new SnappyOutputStream(bytesOut), miruLogEvents);
+            bytes = bytesOut.toByteArray();
+        } catch (Exception e) {
+            System.err.println(name + " failed to encode: " + e.getClass().getCanonicalName() + ": " + e.getMessage());
+            LOG.inc(metricPrefix + ">dropped", miruLogEvents.size());
+            return false;
+        }
+
+        while (true) {
+            long start = System.currentTimeMillis();
+            try {
+                int statusCode = postBytes(bytes);
+                if (statusCode != 202) {
+                    throw new Exception("Error [" + statusCode + "] posting " + miruLogEvents.size() + " events");
+                }
+
+                long now = System.currentTimeMillis();
+                LOG.inc(metricPrefix + ">posted", miruLogEvents.size());
+                LOG.inc(metricPrefix + ">postedBytes", bytes.length);
+                LOG.set(ValueType.VALUE, metricPrefix + ">latency>post", now - start);
+                long timestamp = timestamp(miruLogEvents.get(0));
+                if (timestamp > 0) {
+                    LOG.set(ValueType.VALUE, metricPrefix + ">latency>delivery", now - timestamp);
+                }
+                return true;
+            } catch (Exception e) {
+                System.err.println(name + " failed to post: " + e.getClass().getCanonicalName() + ": " + e.getMessage());
+                LOG.inc(metricPrefix + ">failed");
+            }
+
+            if (!running.get()) {
+                LOG.inc(metricPrefix + ">dropped", miruLogEvents.size());
+                return false;
+            }
+            try {
+                Thread.sleep(ifErrorPauseMillis);
+            } catch (InterruptedException e) {
+                System.err.println(name + " was interrupted while sleeping due to errors");
+                Thread.interrupted();
+            }
+        }
+    }
+
+    /**
+     * @return the http status code of the post
+     */
+    protected int postBytes(byte[] bytes) throws Exception {
+        HttpResponse httpResponse = client.call(
+            "",
+            nextClientStrategy,
+            "ingress",
+            client -> new ClientCall.ClientResponse<>(client.postBytes(snappyEndpoint, bytes, null), true));
+        return httpResponse.getStatusCode();
+    }
+
+    private static long timestamp(MiruLogEvent miruLogEvent) {
+        if (miruLogEvent.timestamp == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(miruLogEvent.timestamp);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
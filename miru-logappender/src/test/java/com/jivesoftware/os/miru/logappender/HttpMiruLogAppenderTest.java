@@ -0,0 +1,194 @@
+package com.jivesoftware.os.miru.logappender;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jivesoftware.os.miru.logappender.HttpMiruLogAppender.PipelinedQueueConsumer;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+import org.xerial.snappy.SnappyInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class HttpMiruLogAppenderTest {
+
+    @Test
+    public void testPipelinedFlushesFullBatch() throws Exception {
+        BlockingQueue<MiruLogEvent> queue = new ArrayBlockingQueue<>(10);
+        RecordingPoster poster = new RecordingPoster(3, 60_000, new CountDownLatch(0), 0);
+        PipelinedQueueConsumer consumer = new PipelinedQueueConsumer(queue, poster, 1);
+        Thread thread = start(consumer);
+        try {
+            for (int i = 0; i < 3; i++) {
+                queue.put(event(i));
+            }
+            // the batch is full long before the flush latency elapses
+            waitForPosted(poster, 3);
+            assertEquals(poster.batchSizes, Collections.singletonList(3));
+        } finally {
+            stop(consumer, thread);
+        }
+    }
+
+    @Test
+    public void testPipelinedFlushesPartialBatchAfterLatency() throws Exception {
+        BlockingQueue<MiruLogEvent> queue = new ArrayBlockingQueue<>(10);
+        RecordingPoster poster = new RecordingPoster(100, 100, new CountDownLatch(0), 0);
+        PipelinedQueueConsumer consumer = new PipelinedQueueConsumer(queue, poster, 1);
+        Thread thread = start(consumer);
+        try {
+            long start = System.currentTimeMillis();
+            queue.put(event(0));
+            queue.put(event(1));
+            waitForPosted(poster, 2);
+            assertTrue(System.currentTimeMillis() - start >= 90, "Flushed before the latency elapsed");
+            assertEquals(poster.batchSizes, Collections.singletonList(2));
+        } finally {
+            stop(consumer, thread);
+        }
+    }
+
+    @Test
+    public void testPipelinedLimitsInFlightPosts() throws Exception {
+        BlockingQueue<MiruLogEvent> queue = new ArrayBlockingQueue<>(10);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingPoster poster = new RecordingPoster(1, 10, release, 0);
+        PipelinedQueueConsumer consumer = new PipelinedQueueConsumer(queue, poster, 2);
+        Thread thread = start(consumer);
+        try {
+            for (int i = 0; i < 5; i++) {
+                queue.put(event(i));
+            }
+            long failAfter = System.currentTimeMillis() + 10_000;
+            while (poster.concurrent.get() < 2) {
+                assertTrue(System.currentTimeMillis() < failAfter, "Posts were not started");
+                Thread.sleep(10);
+            }
+            Thread.sleep(100);
+
+            // two posts are stalled, and the consumer holds a third batch while it waits for a free post
+            assertEquals(poster.maxConcurrent.get(), 2);
+            assertEquals(queue.size(), 2);
+
+            release.countDown();
+            waitForPosted(poster, 5);
+            assertEquals(poster.maxConcurrent.get(), 2);
+        } finally {
+            stop(consumer, thread);
+        }
+    }
+
+    @Test
+    public void testPipelinedStopWaitsForInFlightPostAndDropsIt() throws Exception {
+        BlockingQueue<MiruLogEvent> queue = new ArrayBlockingQueue<>(10);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingPoster poster = new RecordingPoster(10, 10, release, Integer.MAX_VALUE);
+        PipelinedQueueConsumer consumer = new PipelinedQueueConsumer(queue, poster, 1);
+        Thread thread = start(consumer);
+        queue.put(event(0));
+        queue.put(event(1));
+
+        long failAfter = System.currentTimeMillis() + 10_000;
+        while (poster.concurrent.get() < 1) {
+            assertTrue(System.currentTimeMillis() < failAfter, "Post was not started");
+            Thread.sleep(10);
+        }
+        consumer.stop();
+        thread.join(100);
+        assertTrue(thread.isAlive(), "Consumer exited with a post in flight");
+
+        // once released the post fails, gives up since the consumer is stopped, and counts the batch as dropped
+        release.countDown();
+        thread.join(10_000);
+        assertFalse(thread.isAlive(), "Consumer did not exit");
+        assertEquals(poster.dropped.get(), 2);
+        assertTrue(poster.posted.isEmpty());
+    }
+
+    private static Thread start(PipelinedQueueConsumer consumer) {
+        Thread thread = new Thread(consumer);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private static void stop(PipelinedQueueConsumer consumer, Thread thread) throws InterruptedException {
+        consumer.stop();
+        thread.join(10_000);
+    }
+
+    private static void waitForPosted(RecordingPoster poster, int count) throws InterruptedException {
+        long failAfter = System.currentTimeMillis() + 10_000;
+        while (poster.posted.size() < count) {
+            assertTrue(System.currentTimeMillis() < failAfter, "Only posted " + poster.posted);
+            Thread.sleep(10);
+        }
+    }
+
+    private static MiruLogEvent event(int index) {
+        MiruLogEvent miruLogEvent = new MiruLogEvent();
+        miruLogEvent.host = "host";
+        miruLogEvent.service = "service";
+        miruLogEvent.message = String.valueOf(index);
+        return miruLogEvent;
+    }
+
+    /**
+     * Accepts posts once released, failing the given number of attempts first, and records the batches it accepted and dropped.
+     */
+    private static class RecordingPoster extends MiruLogBatchPoster {
+
+        private final CountDownLatch release;
+        private final int failures;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final AtomicInteger concurrent = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final AtomicInteger dropped = new AtomicInteger();
+        private final List<String> posted = Collections.synchronizedList(new ArrayList<>());
+        private final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        private RecordingPoster(int batchSize, long maxFlushLatencyMillis, CountDownLatch release, int failures) {
+            super("test", "test", null, batchSize, maxFlushLatencyMillis, 10);
+            this.release = release;
+            this.failures = failures;
+        }
+
+        @Override
+        public boolean post(List<MiruLogEvent> miruLogEvents, AtomicBoolean running) {
+            boolean accepted = super.post(miruLogEvents, running);
+            if (!accepted) {
+                dropped.addAndGet(miruLogEvents.size());
+            }
+            return accepted;
+        }
+
+        @Override
+        protected int postBytes(byte[] bytes) throws Exception {
+            int current = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(current, Math::max);
+            try {
+                release.await();
+                if (attempts.incrementAndGet() <= failures) {
+                    return 500;
+                }
+                MiruLogEvent[] miruLogEvents = objectMapper.readValue(new SnappyInputStream(new ByteArrayInputStream(bytes)), MiruLogEvent[].class);
+                batchSizes.add(miruLogEvents.length);
+                for (MiruLogEvent miruLogEvent : miruLogEvents) {
+                    posted.add(miruLogEvent.message);
+                }
+                return 202;
+            } finally {
+                concurrent.decrementAndGet();
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.jivesoftware.os.filer.io.StripingLocksProvider;
 import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
 import com.jivesoftware.os.miru.api.base.MiruStreamId;
 import com.jivesoftware.os.miru.api.wal.AmzaSipCursor;
+import com.jivesoftware.os.miru.plugin.cache.MiruFilterCache;
 import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
@@ -24,11 +25,20 @@ public class TestContext<BM extends IBM, IBM> implements MiruRequestContext<BM,
     private final MiruSchema schema;
     private final MiruTermComposer termComposer;
     private final MiruFieldIndexProvider<BM, IBM> fieldIndexProvider;
+    private final MiruFilterCache<BM, IBM> filterCache;
 
     public TestContext(MiruSchema schema, MiruTermComposer termComposer, MiruFieldIndexProvider<BM, IBM> fieldIndexProvider) {
+        this(schema, termComposer, fieldIndexProvider, null);
+    }
+
+    public TestContext(MiruSchema schema,
+        MiruTermComposer termComposer,
+        MiruFieldIndexProvider<BM, IBM> fieldIndexProvider,
+        MiruFilterCache<BM, IBM> filterCache) {
         this.schema = schema;
         this.termComposer = termComposer;
         this.fieldIndexProvider = fieldIndexProvider;
+        this.filterCache = filterCache;
     }
 
     @Override
@@ -66,6 +76,11 @@ public class TestContext<BM extends IBM, IBM> implements MiruRequestContext<BM,
         return null;
     }
 
+    @Override
+    public MiruFilterCache<BM, IBM> getFilterCache() {
+        return filterCache;
+    }
+
     @Override
     public MiruAuthzIndex<BM, IBM> getAuthzIndex() {
         return null;
@@ -0,0 +1,206 @@
+package com.jivesoftware.os.miru.plugin.test;
+
+import com.google.common.primitives.UnsignedBytes;
+import com.jivesoftware.os.filer.io.api.KeyRange;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
+import com.jivesoftware.os.miru.plugin.index.IndexTx;
+import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
+import com.jivesoftware.os.miru.plugin.index.MultiIndexTx;
+import com.jivesoftware.os.miru.plugin.index.TermIdStream;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * A read-only in-memory field index over whole term bitmaps.
+ */
+public class TestFieldIndex implements MiruFieldIndex<RoaringBitmap, RoaringBitmap> {
+
+    private final NavigableMap<MiruTermId, RoaringBitmap>[] indexes;
+    private final MiruBitmaps<RoaringBitmap, RoaringBitmap> bitmaps;
+    private final AtomicInteger reads = new AtomicInteger();
+
+    public TestFieldIndex(int numFields, MiruBitmaps<RoaringBitmap, RoaringBitmap> bitmaps) {
+        indexes = new NavigableMap[numFields];
+        this.bitmaps = bitmaps;
+        for (int i = 0; i < numFields; i++) {
+            Comparator<byte[]> comparator = UnsignedBytes.lexicographicalComparator();
+            indexes[i] = new ConcurrentSkipListMap<>((o1, o2) -> {
+                return comparator.compare(o1.getBytes(), o2.getBytes());
+            });
+        }
+    }
+
+    public void put(int fieldId, MiruTermId termId, RoaringBitmap bitmap) {
+        indexes[fieldId].put(termId, bitmap);
+    }
+
+    /**
+     * @return the number of term bitmaps read so far
+     */
+    public int getReads() {
+        return reads.get();
+    }
+
+    @Override
+    public MiruInvertedIndex<RoaringBitmap, RoaringBitmap> get(String name, int fieldId, MiruTermId termId) throws Exception {
+        return new TestInvertedIndex(fieldId, termId, bitmaps);
+    }
+
+    @Override
+    public void streamTermIdsForField(String name,
+        int fieldId,
+        List<KeyRange> ranges,
+        TermIdStream termIdStream,
+        StackBuffer stackBuffer) throws Exception {
+        for (KeyRange range : ranges) {
+            MiruTermId fromKey = new MiruTermId(range.getStartInclusiveKey());
+            MiruTermId toKey = new MiruTermId(range.getStopExclusiveKey());
+            for (MiruTermId termId : indexes[fieldId].subMap(fromKey, toKey).keySet()) {
+                if (!termIdStream.stream(termId)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public MiruInvertedIndex<RoaringBitmap, RoaringBitmap> getOrCreateInvertedIndex(String name, int fieldId, MiruTermId term) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    @Override
+    public void multiGet(String name,
+        int fieldId,
+        MiruTermId[] termIds,
+        BitmapAndLastId<RoaringBitmap>[] results,
+        StackBuffer stackBuffer) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    @Override
+    public void multiGetLastIds(String name, int fieldId, MiruTermId[] termIds, int[] lastIds, StackBuffer stackBuffer) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    @Override
+    public void multiTxIndex(String name,
+        int fieldId,
+        MiruTermId[] termIds,
+        int considerIfLastIdGreaterThanN,
+        StackBuffer stackBuffer,
+        MultiIndexTx<RoaringBitmap> indexTx) throws Exception {
+        NavigableMap<MiruTermId, RoaringBitmap> terms = indexes[fieldId];
+        for (int i = 0; i < termIds.length; i++) {
+            MiruTermId termId = termIds[i];
+            if (termId != null) {
+                RoaringBitmap bitmap = terms.get(termId);
+                if (bitmap != null) {
+                    reads.incrementAndGet();
+                    IntIterator reverse = bitmap.getReverseIntIterator();
+                    int lastId = reverse.hasNext() ? reverse.next() : -1;
+                    indexTx.tx(i, lastId, bitmap, null, -1, stackBuffer);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void set(MiruFieldDefinition fieldDefinition, MiruTermId termId, int[] ids, long[] counts, StackBuffer stackBuffer) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    @Override
+    public void setIfEmpty(MiruFieldDefinition fieldDefinition, MiruTermId termId, int id, long count, StackBuffer stackBuffer) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    @Override
+    public void remove(MiruFieldDefinition fieldDefinition, MiruTermId termId, int[] ids, StackBuffer stackBuffer) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    @Override
+    public long getCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, int id, StackBuffer stackBuffer) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    @Override
+    public long[] getCardinalities(MiruFieldDefinition fieldDefinition, MiruTermId termId, int[] ids, StackBuffer stackBuffer) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    @Override
+    public long getGlobalCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception {
+        throw new UnsupportedOperationException("Nope");
+    }
+
+    private class TestInvertedIndex implements MiruInvertedIndex<RoaringBitmap, RoaringBitmap> {
+
+        private final int fieldId;
+        private final MiruTermId termId;
+        private final MiruBitmaps<RoaringBitmap, RoaringBitmap> bitmaps;
+
+        public TestInvertedIndex(int fieldId, MiruTermId termId, MiruBitmaps<RoaringBitmap, RoaringBitmap> bitmaps) {
+            this.fieldId = fieldId;
+            this.termId = termId;
+            this.bitmaps = bitmaps;
+        }
+
+        @Override
+        public void getIndex(BitmapAndLastId<RoaringBitmap> container, StackBuffer stackBuffer) throws Exception {
+            reads.incrementAndGet();
+            RoaringBitmap bitmap = indexes[fieldId].get(termId);
+            container.set(bitmap, bitmaps.lastSetBit(bitmap));
+        }
+
+        @Override
+        public void remove(StackBuffer stackBuffer, int... ids) throws Exception {
+        }
+
+        @Override
+        public void set(StackBuffer stackBuffer, int... ids) throws Exception {
+        }
+
+        @Override
+        public boolean setIfEmpty(StackBuffer stackBuffer, int id) throws Exception {
+            return false;
+        }
+
+        @Override
+        public int lastId(StackBuffer stackBuffer) throws Exception {
+            return 0;
+        }
+
+        @Override
+        public void andNotToSourceSize(List<RoaringBitmap> masks, StackBuffer stackBuffer) throws Exception {
+        }
+
+        @Override
+        public void orToSourceSize(RoaringBitmap mask, StackBuffer stackBuffer) throws Exception {
+        }
+
+        @Override
+        public void andNot(RoaringBitmap mask, StackBuffer stackBuffer) throws Exception {
+        }
+
+        @Override
+        public void or(RoaringBitmap mask, StackBuffer stackBuffer) throws Exception {
+        }
+
+        @Override
+        public <R> R txIndex(IndexTx<R, RoaringBitmap> tx, StackBuffer stackBuffer) throws Exception {
+            reads.incrementAndGet();
+            return tx.tx(indexes[fieldId].get(termId), null, -1, null);
+        }
+    }
+}
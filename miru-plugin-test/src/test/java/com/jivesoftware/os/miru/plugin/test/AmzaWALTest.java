@@ -22,6 +22,7 @@ import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivityFactory;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.marshall.MiruPartitionedActivityCodec;
 import com.jivesoftware.os.miru.api.wal.AmzaCursor;
 import com.jivesoftware.os.miru.api.wal.MiruWALClient;
 import com.jivesoftware.os.miru.api.wal.MiruWALEntry;
@@ -122,8 +123,9 @@ public class AmzaWALTest {
             10_000,
             3,
             10_000);
-        AmzaActivityWALWriter activityWALWriter = new AmzaActivityWALWriter(amzaWALUtil, 0, mapper);
-        AmzaActivityWALReader activityWALReader = new AmzaActivityWALReader(amzaWALUtil, mapper);
+        MiruPartitionedActivityCodec activityCodec = new MiruPartitionedActivityCodec(mapper, -1);
+        AmzaActivityWALWriter activityWALWriter = new AmzaActivityWALWriter(amzaWALUtil, 0, mapper, activityCodec, true);
+        AmzaActivityWALReader activityWALReader = new AmzaActivityWALReader(amzaWALUtil, activityCodec);
 
         HostPort[] routingGroup = activityWALReader.getRoutingGroup(tenantId, partitionId, true);
         assertNotNull(routingGroup);
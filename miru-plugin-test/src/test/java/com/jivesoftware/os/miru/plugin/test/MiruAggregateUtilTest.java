@@ -32,20 +32,36 @@ import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
 import com.jivesoftware.os.miru.api.activity.schema.MiruSchema.Builder;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.api.field.MiruFieldType;
+import com.jivesoftware.os.miru.api.query.filter.MiruFieldFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilter;
+import com.jivesoftware.os.miru.api.query.filter.MiruFilterOperation;
 import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
+import com.jivesoftware.os.miru.plugin.MiruInterner;
 import com.jivesoftware.os.miru.plugin.cache.LabTimestampedCacheKeyValues;
+import com.jivesoftware.os.miru.plugin.cache.MiruFilterCache;
+import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruFieldIndexProvider;
+import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
 import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil;
 import com.jivesoftware.os.miru.plugin.solution.MiruAggregateUtil.GetAllTermIds;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
 import org.roaringbitmap.RoaringBitmap;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
 /**
  *
  */
@@ -165,6 +181,128 @@ public class MiruAggregateUtilTest {
         }
     }
 
+    @Test
+    public void testFilterCacheHit() throws Exception {
+        FilterCacheFixture fixture = new FilterCacheFixture(1024 * 1024);
+        fixture.fieldIndex.put(0, fixture.term("red"), RoaringBitmap.bitmapOf(0, 2, 4));
+        fixture.fieldIndex.put(0, fixture.term("blue"), RoaringBitmap.bitmapOf(1, 5));
+
+        assertEquals(fixture.filter(5), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5));
+        int reads = fixture.fieldIndex.getReads();
+        assertTrue(reads > 0);
+
+        RoaringBitmap hit = fixture.filter(5);
+        assertEquals(hit, RoaringBitmap.bitmapOf(0, 1, 2, 4, 5));
+        assertEquals(fixture.fieldIndex.getReads(), reads);
+
+        // hits are copies, so mutating one leaves the cached bitmap intact
+        hit.add(9);
+        assertEquals(fixture.filter(5), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5));
+    }
+
+    @Test
+    public void testFilterCacheDelta() throws Exception {
+        FilterCacheFixture fixture = new FilterCacheFixture(1024 * 1024);
+        fixture.fieldIndex.put(0, fixture.term("red"), RoaringBitmap.bitmapOf(0, 2, 4));
+        fixture.fieldIndex.put(0, fixture.term("blue"), RoaringBitmap.bitmapOf(1, 5));
+        assertEquals(fixture.filter(5), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5));
+
+        fixture.fieldIndex.put(0, fixture.term("red"), RoaringBitmap.bitmapOf(0, 2, 4, 6));
+        fixture.fieldIndex.put(0, fixture.term("blue"), RoaringBitmap.bitmapOf(1, 5, 7));
+        assertEquals(fixture.filter(7), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5, 6, 7));
+
+        int reads = fixture.fieldIndex.getReads();
+        assertEquals(fixture.filter(7), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5, 6, 7));
+        assertEquals(fixture.fieldIndex.getReads(), reads);
+    }
+
+    @Test
+    public void testFilterCacheInvalidation() throws Exception {
+        FilterCacheFixture fixture = new FilterCacheFixture(1024 * 1024);
+        fixture.fieldIndex.put(0, fixture.term("red"), RoaringBitmap.bitmapOf(0, 2, 4));
+        fixture.fieldIndex.put(0, fixture.term("blue"), RoaringBitmap.bitmapOf(1, 5));
+        assertEquals(fixture.filter(5), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5));
+
+        // a repair of already indexed ids is not seen until the cache is invalidated
+        fixture.fieldIndex.put(0, fixture.term("red"), RoaringBitmap.bitmapOf(0, 2));
+        assertEquals(fixture.filter(5), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5));
+
+        fixture.filterCache.invalidateAll();
+        assertEquals(fixture.filter(5), RoaringBitmap.bitmapOf(0, 1, 2, 5));
+    }
+
+    @Test
+    public void testFilterCacheIgnoresPutFromBeforeInvalidation() throws Exception {
+        MiruFilterCache<RoaringBitmap, RoaringBitmap> filterCache = new MiruFilterCache<>(new MiruBitmapsRoaring(), 1024 * 1024);
+
+        long generation = filterCache.generation();
+        filterCache.invalidateAll();
+        filterCache.put("key", generation, RoaringBitmap.bitmapOf(1, 2, 3), 3);
+        assertNull(filterCache.get("key"));
+
+        filterCache.put("key", filterCache.generation(), RoaringBitmap.bitmapOf(1, 2, 3), 3);
+        assertEquals(filterCache.get("key").bitmap, RoaringBitmap.bitmapOf(1, 2, 3));
+        assertEquals(filterCache.get("key").lastId, 3);
+
+        filterCache.invalidateAll();
+        assertNull(filterCache.get("key"));
+    }
+
+    @Test
+    public void testFilterCacheDisabled() throws Exception {
+        FilterCacheFixture fixture = new FilterCacheFixture(0);
+        fixture.fieldIndex.put(0, fixture.term("red"), RoaringBitmap.bitmapOf(0, 2, 4));
+        fixture.fieldIndex.put(0, fixture.term("blue"), RoaringBitmap.bitmapOf(1, 5));
+
+        assertFalse(fixture.filterCache.isEnabled());
+        assertEquals(fixture.filter(5), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5));
+        int reads = fixture.fieldIndex.getReads();
+        assertEquals(fixture.filter(5), RoaringBitmap.bitmapOf(0, 1, 2, 4, 5));
+        assertTrue(fixture.fieldIndex.getReads() > reads);
+    }
+
+    private static class FilterCacheFixture {
+
+        private final MiruSchema schema = new Builder("test", 1)
+            .setFieldDefinitions(new MiruFieldDefinition[] {
+                new MiruFieldDefinition(0, "a", Type.singleTerm, Prefix.NONE)
+            })
+            .build();
+        private final MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
+        private final MiruTermComposer termComposer = new MiruTermComposer(StandardCharsets.UTF_8, new MiruInterner<MiruTermId>(true) {
+            @Override
+            public MiruTermId create(byte[] bytes) {
+                return new MiruTermId(bytes);
+            }
+        });
+        private final MiruAggregateUtil aggregateUtil = new MiruAggregateUtil();
+        private final MiruFilter filter = new MiruFilter(MiruFilterOperation.or,
+            false,
+            Collections.singletonList(MiruFieldFilter.ofTerms(MiruFieldType.primary, "a", "red", "blue")),
+            null);
+        private final TestFieldIndex fieldIndex = new TestFieldIndex(1, bitmaps);
+        private final MiruFilterCache<RoaringBitmap, RoaringBitmap> filterCache;
+        private final TestContext<RoaringBitmap, RoaringBitmap> context;
+
+        private FilterCacheFixture(long filterCacheMaxBytes) {
+            @SuppressWarnings("unchecked")
+            MiruFieldIndex<RoaringBitmap, RoaringBitmap>[] indexes =
+                (MiruFieldIndex<RoaringBitmap, RoaringBitmap>[]) new MiruFieldIndex[MiruFieldType.values().length];
+            indexes[0] = fieldIndex;
+            filterCache = new MiruFilterCache<>(bitmaps, filterCacheMaxBytes);
+            context = new TestContext<>(schema, termComposer, new MiruFieldIndexProvider<>(indexes), filterCache);
+        }
+
+        private MiruTermId term(String value) throws Exception {
+            return termComposer.compose(schema, schema.getFieldDefinition(0), new StackBuffer(), value);
+        }
+
+        private RoaringBitmap filter(int largestIndex) throws Exception {
+            return aggregateUtil.filter("test", bitmaps, context, filter, new MiruSolutionLog(MiruSolutionLogLevel.NONE), null, largestIndex, -1, -1,
+                new StackBuffer());
+        }
+    }
+
     private void log(int streamIndex,
         int lastId,
         int answerFieldId,
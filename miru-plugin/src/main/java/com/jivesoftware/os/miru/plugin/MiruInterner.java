@@ -1,32 +1,48 @@
 package com.jivesoftware.os.miru.plugin;
 
 import com.jivesoftware.os.miru.api.base.MiruIBA;
-import java.lang.ref.WeakReference;
-import java.util.WeakHashMap;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.mlogger.core.ValueType;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
+ * Lock-free interner backed by a fixed size open-addressing table whose entries are compared on bytes, so a hit neither locks nor
+ * allocates. Each hash probes a short window of slots; a miss claims the first empty slot with a CAS, and once the window is full a
+ * random slot in it is overwritten. Slots are never emptied, which keeps probing correct without tombstones and bounds the table
+ * without relying on weak references.
  *
  * @author jonathan.colt
  */
 public abstract class MiruInterner<T extends MiruIBA> {
 
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private static final int DEFAULT_CAPACITY = 65_536;
+    private static final int MAX_PROBES = 8;
+
     public abstract T create(byte[] bytes);
 
-    private final WeakHashMap<T, WeakReference<T>>[] pools;
-    private final MiruIBA[] keys;
     private final boolean enabled;
+    private final AtomicReferenceArray<Entry<T>> table;
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
 
     public MiruInterner(boolean enabled) {
-        int concurencyLevel = 1024;
-        this.keys = new MiruIBA[concurencyLevel]; // TODO config
-        for (int i = 0; i < keys.length; i++) {
-            keys[i] = new MiruIBA(new byte[0]);
-        }
-        this.pools = new WeakHashMap[concurencyLevel];
-        for (int i = 0; i < pools.length; i++) {
-            pools[i] = new WeakHashMap<>();
-        }
+        this(enabled, DEFAULT_CAPACITY);
+    }
+
+    public MiruInterner(boolean enabled, int capacity) {
         this.enabled = enabled;
+        int size = Integer.highestOneBit(Math.max(capacity, MAX_PROBES) - 1) << 1;
+        this.table = enabled ? new AtomicReferenceArray<>(size) : null;
+        this.mask = size - 1;
     }
 
     public T intern(byte[] bytes) {
@@ -41,34 +57,101 @@ public abstract class MiruInterner<T extends MiruIBA> {
         if (!enabled) {
             byte[] exactBytes = new byte[length];
             System.arraycopy(bytes, offset, exactBytes, 0, length);
-            return create(bytes);
+            return create(exactBytes);
         }
         return doIntern(bytes, offset, length);
     }
 
-    // He likes to watch.
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long contended() {
+        return contended.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    public void logMetrics(String name) {
+        LOG.set(ValueType.COUNT, "interner>" + name + ">hits", hits.sum());
+        LOG.set(ValueType.COUNT, "interner>" + name + ">misses", misses.sum());
+        LOG.set(ValueType.COUNT, "interner>" + name + ">contended", contended.sum());
+        LOG.set(ValueType.COUNT, "interner>" + name + ">evictions", evictions.sum());
+    }
+
     private T doIntern(byte[] bytes, int offset, int length) {
-        int hashCode = MiruIBA.hashCode(bytes, offset, length);
-        int index = Math.abs(hashCode % keys.length);
-        MiruIBA key = keys[index];
-        WeakHashMap<T, WeakReference<T>> pool = pools[index];
-        synchronized (pool) {
+        int hash = hash(bytes, offset, length);
+        int home = hash & mask;
+
+        Entry<T> created = null;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int index = (home + i) & mask;
+            Entry<T> entry = table.get(index);
+            while (entry == null) {
+                if (created == null) {
+                    byte[] exactBytes = new byte[length];
+                    System.arraycopy(bytes, offset, exactBytes, 0, length);
+                    created = new Entry<>(hash, create(exactBytes));
+                }
+                if (table.compareAndSet(index, null, created)) {
+                    misses.increment();
+                    return created.value;
+                }
+                contended.increment();
+                entry = table.get(index);
+            }
+            if (entry.hash == hash && equals(entry.value.getBytes(), bytes, offset, length)) {
+                hits.increment();
+                return entry.value;
+            }
+        }
+
+        // window is full, so displace an arbitrary neighbor rather than grow
+        if (created == null) {
             byte[] exactBytes = new byte[length];
             System.arraycopy(bytes, offset, exactBytes, 0, length);
-            key.mutate(exactBytes, hashCode);
-
-            T res;
-            WeakReference<T> ref = pool.get(key);
-            if (ref != null) {
-                res = ref.get();
-            } else {
-                res = null;
-            }
-            if (res == null) {
-                res = create(exactBytes);
-                pool.put(res, new WeakReference<>(res));
+            created = new Entry<>(hash, create(exactBytes));
+        }
+        table.set((home + ThreadLocalRandom.current().nextInt(MAX_PROBES)) & mask, created);
+        misses.increment();
+        evictions.increment();
+        return created.value;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] exactBytes, byte[] bytes, int offset, int length) {
+        if (exactBytes.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (exactBytes[i] != bytes[offset + i]) {
+                return false;
             }
-            return res;
+        }
+        return true;
+    }
+
+    private static class Entry<T> {
+
+        private final int hash;
+        private final T value;
+
+        private Entry(int hash, T value) {
+            this.hash = hash;
+            this.value = value;
         }
     }
 }
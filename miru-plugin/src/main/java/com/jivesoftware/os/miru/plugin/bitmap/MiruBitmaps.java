@@ -26,6 +26,7 @@ import com.jivesoftware.os.miru.plugin.index.MiruTxIndex;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.List;
 
@@ -72,6 +73,17 @@ public interface MiruBitmaps<BM extends IBM, IBM> {
      */
     void boundedCardinalities(IBM bitmap, int[][] indexBoundaries, long[][] rawWaveform);
 
+    /**
+     * Fused equivalent of {@link #boundedCardinalities(Object, int[][], long[][])} over the intersection of the two bitmaps. Counts are
+     * accumulated into the waveform directly from the two inputs without materializing their intersection.
+     *
+     * @param bitmap          the bitmap
+     * @param other           the bitmap to intersect with
+     * @param indexBoundaries index aligned boundaries, lower boundary is inclusive, upper boundary is exclusive
+     * @param rawWaveform     index aligned destination to accumulate the waveform results
+     */
+    void boundedIntersectionCardinalities(IBM bitmap, IBM other, int[][] indexBoundaries, long[][] rawWaveform);
+
     boolean isEmpty(IBM bitmap);
 
     long sizeInBytes(IBM bitmap);
@@ -82,6 +94,14 @@ public interface MiruBitmaps<BM extends IBM, IBM> {
 
     BM deserialize(DataInput dataInput) throws Exception;
 
+    /**
+     * Returns a read only bitmap backed directly by the buffer from its current position, without copying. The view is only valid
+     * while the buffer is, so callers must copy it before retaining or mutating it.
+     *
+     * @return the view, or null if serialized bitmaps cannot be viewed in place
+     */
+    IBM view(ByteBuffer byteBuffer) throws Exception;
+
     void serialize(IBM bitmap, DataOutput dataOutput) throws Exception;
 
     void inPlaceOr(BM original, IBM or);
@@ -0,0 +1,80 @@
+package com.jivesoftware.os.miru.plugin.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-partition cache of evaluated filter bitmaps, keyed by the canonical form of a filter. Each entry is valid for the ids up to
+ * its lastId, so a later request need only evaluate newer ids. Any change to already indexed ids (repairs, removals) must
+ * {@link #invalidateAll()} since entries would otherwise miss the change.
+ */
+public class MiruFilterCache<BM extends IBM, IBM> {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final Cache<String, CachedFilter<BM>> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public MiruFilterCache(MiruBitmaps<BM, IBM> bitmaps, long maxBytes) {
+        this.cache = maxBytes > 0 ? CacheBuilder.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((String key, CachedFilter<BM> value) -> (int) Math.min(key.length() * 2L + bitmaps.sizeInBytes(value.bitmap), Integer.MAX_VALUE))
+            .removalListener(notification -> {
+                if (notification.getCause() == RemovalCause.SIZE) {
+                    LOG.inc("filter>cache>evicted");
+                }
+            })
+            .build() : null;
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    /**
+     * @return the generation to pass to {@link #put(String, long, Object, int)} for a filter evaluated from this point on
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    public CachedFilter<BM> get(String key) {
+        CachedFilter<BM> got = cache.getIfPresent(key);
+        if (got != null && got.generation != generation.get()) {
+            cache.invalidate(key);
+            got = null;
+        }
+        return got;
+    }
+
+    public void put(String key, long generation, BM bitmap, int lastId) {
+        if (generation == this.generation.get()) {
+            cache.put(key, new CachedFilter<>(generation, bitmap, lastId));
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public static class CachedFilter<BM> {
+
+        private final long generation;
+        public final BM bitmap;
+        public final int lastId;
+
+        private CachedFilter(long generation, BM bitmap, int lastId) {
+            this.generation = generation;
+            this.bitmap = bitmap;
+            this.lastId = lastId;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.jivesoftware.os.filer.io.StripingLocksProvider;
 import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
 import com.jivesoftware.os.miru.api.base.MiruStreamId;
 import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
+import com.jivesoftware.os.miru.plugin.cache.MiruFilterCache;
 import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruAuthzIndex;
@@ -34,6 +35,8 @@ public interface MiruRequestContext<BM extends IBM, IBM, S extends MiruSipCursor
 
     MiruPluginCacheProvider<BM, IBM> getCacheProvider();
 
+    MiruFilterCache<BM, IBM> getFilterCache();
+
     MiruAuthzIndex<BM, IBM> getAuthzIndex();
 
     MiruRemovalIndex<BM, IBM> getRemovalIndex();
@@ -40,4 +40,13 @@ public interface MiruFieldIndex<BM extends IBM, IBM> {
 
     long getGlobalCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception;
 
+    /**
+     * Returns an upper bound on the cardinality of the term for any single id, which is never lowered by removals.
+     *
+     * @return the upper bound, or -1 if the bound is unknown
+     */
+    default long getMaxCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception {
+        return -1;
+    }
+
 }
@@ -0,0 +1,47 @@
+package com.jivesoftware.os.miru.plugin.metric;
+
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.ValueType;
+
+/**
+ * A metric whose name is resolved once, so that recording it on a hot path neither concatenates nor allocates. Everything is
+ * forwarded to the owning {@link MetricLogger} under the same name.
+ */
+public class MiruCounter {
+
+    private final MetricLogger log;
+    private final String name;
+
+    public MiruCounter(MetricLogger log, String name) {
+        this.log = log;
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void inc() {
+        log.inc(name);
+    }
+
+    public void inc(long amount) {
+        log.inc(name, amount);
+    }
+
+    public void inc(long amount, String tenantId) {
+        log.inc(name, amount, tenantId);
+    }
+
+    public void incBucket(long bucketDurationInMillis, int numberOfBuckets) {
+        log.incBucket(name, bucketDurationInMillis, numberOfBuckets);
+    }
+
+    public void incBucket(long bucketDurationInMillis, int numberOfBuckets, long amount) {
+        log.incBucket(name, bucketDurationInMillis, numberOfBuckets, amount);
+    }
+
+    public void set(ValueType valueType, long value) {
+        log.set(valueType, name, value);
+    }
+}
@@ -0,0 +1,32 @@
+package com.jivesoftware.os.miru.plugin.metric;
+
+import com.google.common.collect.Maps;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+
+/**
+ * Interns metric handles by a name and a sub key, e.g. an index name and field id, or a request name and query key. A handle is
+ * created once per distinct pair and later lookups are lock-free map reads, so hot paths can resolve their metrics without
+ * building metric names on every call.
+ */
+public class MiruMetricHandles<K, H> {
+
+    private final BiFunction<String, K, H> factory;
+    private final ConcurrentMap<String, ConcurrentMap<K, H>> handles = Maps.newConcurrentMap();
+
+    public MiruMetricHandles(BiFunction<String, K, H> factory) {
+        this.factory = factory;
+    }
+
+    public H get(String name, K key) {
+        ConcurrentMap<K, H> named = handles.get(name);
+        if (named == null) {
+            named = handles.computeIfAbsent(name, k -> Maps.newConcurrentMap());
+        }
+        H handle = named.get(key);
+        if (handle == null) {
+            handle = named.computeIfAbsent(key, k -> factory.apply(name, k));
+        }
+        return handle;
+    }
+}
@@ -27,6 +27,7 @@ import com.jivesoftware.os.miru.api.query.filter.MiruValue;
 import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruIntIterator;
+import com.jivesoftware.os.miru.plugin.cache.MiruFilterCache;
 import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider.TimestampedCacheKeyValues;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
 import com.jivesoftware.os.miru.plugin.index.FieldMultiTermTxIndex;
@@ -1106,17 +1107,145 @@ public class MiruAggregateUtil {
         int maxWildcardExpansion,
         StackBuffer stackBuffer)
         throws Exception {
-        return filterInOut(name,
-            bitmaps,
-            context,
-            filter,
-            solutionLog,
-            termCollector,
-            true,
-            largestIndex,
-            considerIfIndexIdGreaterThanN,
-            maxWildcardExpansion,
-            stackBuffer);
+
+        MiruFilterCache<BM, IBM> filterCache = context.getFilterCache();
+        if (filterCache == null
+            || !filterCache.isEnabled()
+            || termCollector != null
+            || considerIfIndexIdGreaterThanN >= 0
+            || largestIndex < 0
+            || !isCacheable(filter)) {
+            return filterInOut(name,
+                bitmaps,
+                context,
+                filter,
+                solutionLog,
+                termCollector,
+                true,
+                largestIndex,
+                considerIfIndexIdGreaterThanN,
+                maxWildcardExpansion,
+                stackBuffer);
+        }
+
+        StringBuilder keyBuilder = new StringBuilder().append(maxWildcardExpansion).append(':');
+        canonicalize(filter, keyBuilder);
+        String key = keyBuilder.toString();
+
+        long generation = filterCache.generation();
+        MiruFilterCache.CachedFilter<BM> cached = filterCache.get(key);
+        if (cached != null && cached.lastId == largestIndex) {
+            LOG.inc("filter>cache>hit");
+            return bitmaps.copy(cached.bitmap);
+        }
+
+        BM result;
+        if (cached != null && cached.lastId < largestIndex) {
+            LOG.inc("filter>cache>delta");
+            long start = System.currentTimeMillis();
+            BM delta = filterInOut(name,
+                bitmaps,
+                context,
+                filter,
+                solutionLog,
+                null,
+                true,
+                largestIndex,
+                cached.lastId,
+                maxWildcardExpansion,
+                stackBuffer);
+            // terms without newer ids were skipped, so only ids beyond the cached lastId are trustworthy
+            IBM cachedMask = bitmaps.buildIndexMask(cached.lastId, null, null, stackBuffer);
+            BM newer = bitmaps.andNot(delta, cachedMask);
+            result = bitmaps.or(Arrays.<IBM>asList(cached.bitmap, newer));
+            solutionLog.log(MiruSolutionLogLevel.DEBUG, "filter: cache delta from lastId={} to lastId={} took {} millis.",
+                cached.lastId, largestIndex, System.currentTimeMillis() - start);
+        } else {
+            LOG.inc("filter>cache>miss");
+            result = filterInOut(name,
+                bitmaps,
+                context,
+                filter,
+                solutionLog,
+                null,
+                true,
+                largestIndex,
+                -1,
+                maxWildcardExpansion,
+                stackBuffer);
+            if (cached != null) {
+                // the cached entry is ahead of this request, so leave it be
+                return result;
+            }
+        }
+        filterCache.put(key, generation, result, largestIndex);
+        return bitmaps.copy(result);
+    }
+
+    /**
+     * Only primary field filters are append-only with respect to newly indexed ids, e.g. latest fields also unset older ids.
+     */
+    private static boolean isCacheable(MiruFilter filter) {
+        if (filter.fieldFilters != null) {
+            for (MiruFieldFilter fieldFilter : filter.fieldFilters) {
+                if (fieldFilter.fieldType != MiruFieldType.primary) {
+                    return false;
+                }
+            }
+        }
+        if (filter.subFilters != null) {
+            for (MiruFilter subFilter : filter.subFilters) {
+                if (!isCacheable(subFilter)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a canonical form of the filter, in which the clauses of commutative operations are sorted, and all strings are
+     * length-prefixed so that distinct filters cannot collide.
+     */
+    private static void canonicalize(MiruFilter filter, StringBuilder builder) {
+        List<String> clauses = new ArrayList<>();
+        if (filter.fieldFilters != null) {
+            for (MiruFieldFilter fieldFilter : filter.fieldFilters) {
+                List<String> values = new ArrayList<>();
+                if (fieldFilter.values != null) {
+                    for (MiruValue value : fieldFilter.values) {
+                        StringBuilder valueBuilder = new StringBuilder();
+                        for (String part : value.parts) {
+                            valueBuilder.append(part.length()).append('"').append(part);
+                        }
+                        values.add(valueBuilder.toString());
+                    }
+                }
+                Collections.sort(values);
+                StringBuilder fieldBuilder = new StringBuilder()
+                    .append('f').append(fieldFilter.fieldName.length()).append('"').append(fieldFilter.fieldName)
+                    .append(values.size()).append('[');
+                for (String value : values) {
+                    fieldBuilder.append(value.length()).append('"').append(value);
+                }
+                clauses.add(fieldBuilder.append(']').toString());
+            }
+        }
+        if (filter.subFilters != null) {
+            for (MiruFilter subFilter : filter.subFilters) {
+                StringBuilder subBuilder = new StringBuilder();
+                canonicalize(subFilter, subBuilder);
+                clauses.add(subBuilder.toString());
+            }
+        }
+        if (filter.operation != MiruFilterOperation.pButNotQ) {
+            Collections.sort(clauses);
+        }
+        builder.append(filter.operation.name()).append(filter.inclusiveFilter ? '+' : '-').append(clauses.size()).append('(');
+        for (String clause : clauses) {
+            builder.append(clause.length()).append('"').append(clause);
+        }
+        builder.append(')');
     }
 
     private <BM extends IBM, IBM> BM filterInOut(String name,
@@ -18,4 +18,14 @@ public interface MiruAnswerMerger<A> {
 
     A done(Optional<A> last, A alternative, MiruSolutionLog solutionLog);
 
+    /**
+     * Whether answers for adjacent runs of partitions may be merged in any grouping. The earlier run is always passed as last, so
+     * merging only needs to be associative, and the evaluator is consulted whenever a merged run begins at the first partition.
+     *
+     * @return true if merging is associative, otherwise false to merge one partition at a time in partition order
+     */
+    default boolean canMergeInTree() {
+        return false;
+    }
+
 }
@@ -0,0 +1,103 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import org.apache.http.HttpStatus;
+import org.nustaq.serialization.FSTConfiguration;
+
+/**
+ * Serves a {@link MiruBatchedRequest} by asking each partition in parallel and streaming every answer back as soon as it completes.
+ * Each answer is framed as the partition id, a status code, and the length and bytes of the packed {@link MiruPartitionResponse}.
+ * Partitions that are unavailable or fail get their own status, so one bad partition never fails the rest of the batch.
+ */
+public class MiruBatchedPartitionWriter {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+    private static final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+    private static final byte[] EMPTY_RESPONSE = new byte[0];
+
+    public interface PartitionAsker<Q, P, A> {
+
+        MiruPartitionResponse<A> ask(MiruPartitionId partitionId, MiruRequestAndReport<Q, P> requestAndReport) throws Exception;
+    }
+
+    private MiruBatchedPartitionWriter() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <Q, P> MiruRequestAndReport<Q, P> unpack(MiruBatchedRequest batchedRequest) throws Exception {
+        return (MiruRequestAndReport<Q, P>) conf.asObject(batchedRequest.requestAndReport);
+    }
+
+    public static <Q, P, A> void write(int[] partitionIds,
+        MiruRequestAndReport<Q, P> requestAndReport,
+        PartitionAsker<Q, P, A> asker,
+        Executor executor,
+        OutputStream outputStream) throws IOException {
+
+        CompletionService<Frame> completionService = new ExecutorCompletionService<>(executor);
+        List<Future<Frame>> futures = Lists.newArrayListWithCapacity(partitionIds.length);
+        for (int id : partitionIds) {
+            futures.add(completionService.submit(() -> ask(MiruPartitionId.of(id), requestAndReport, asker)));
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 8192));
+        try {
+            for (int i = 0; i < partitionIds.length; i++) {
+                Frame frame = completionService.take().get();
+                out.writeInt(frame.partitionId);
+                out.writeInt(frame.status);
+                out.writeInt(frame.bytes.length);
+                out.write(frame.bytes);
+                out.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while streaming batched partitions", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to stream batched partitions", e.getCause());
+        } finally {
+            for (Future<Frame> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static <Q, P, A> Frame ask(MiruPartitionId partitionId, MiruRequestAndReport<Q, P> requestAndReport, PartitionAsker<Q, P, A> asker) {
+        try {
+            MiruPartitionResponse<A> result = asker.ask(partitionId, requestAndReport);
+            return new Frame(partitionId.getId(), HttpStatus.SC_OK, result != null ? conf.asByteArray(result) : EMPTY_RESPONSE);
+        } catch (MiruPartitionUnavailableException | InterruptedException e) {
+            return new Frame(partitionId.getId(), HttpStatus.SC_SERVICE_UNAVAILABLE, EMPTY_RESPONSE);
+        } catch (Exception e) {
+            LOG.error("Failed batched ask for tenant: {} partition: {}", new Object[] { requestAndReport.request.tenantId, partitionId }, e);
+            return new Frame(partitionId.getId(), HttpStatus.SC_INTERNAL_SERVER_ERROR, EMPTY_RESPONSE);
+        }
+    }
+
+    private static class Frame {
+
+        private final int partitionId;
+        private final int status;
+        private final byte[] bytes;
+
+        private Frame(int partitionId, int status, byte[] bytes) {
+            this.partitionId = partitionId;
+            this.status = status;
+            this.bytes = bytes;
+        }
+    }
+}
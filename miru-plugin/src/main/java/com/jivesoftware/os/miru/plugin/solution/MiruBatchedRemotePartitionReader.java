@@ -0,0 +1,349 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruHostSelectiveStrategy;
+import com.jivesoftware.os.miru.api.MiruQueryServiceException;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.mlogger.core.EndPointMetrics;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.mlogger.core.ValueType;
+import com.jivesoftware.os.routing.bird.http.client.HttpResponseMapper;
+import com.jivesoftware.os.routing.bird.http.client.HttpStreamResponse;
+import com.jivesoftware.os.routing.bird.http.client.TenantAwareHttpClient;
+import com.jivesoftware.os.routing.bird.shared.ClientCall;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpStatus;
+import org.nustaq.serialization.FSTConfiguration;
+
+/**
+ * Coalesces concurrent reads of the same request from different partitions on the same host into one streaming request. The first
+ * read for a host, endpoint, request and report opens a batch that closes after a short window or once it is full, and every read
+ * still waits on its own partition's answer, so answers can be merged as they stream back and each partition keeps its own
+ * unavailable or failed outcome. Requests and reports are matched by identity, which is how a parallel ask shares them, so reads
+ * that merely look alike are never merged. A read that is interrupted, e.g. a hedge the solver has cancelled, abandons its entry so
+ * the partition is left out of a batch that has not been sent yet.
+ */
+public class MiruBatchedRemotePartitionReader {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+    private static final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+
+    private static final ObjectMapper MAPPER;
+    private static final HttpResponseMapper RESPONSE_MAPPER;
+
+    static {
+        MAPPER = new ObjectMapper();
+        MAPPER.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        MAPPER.registerModule(new GuavaModule());
+
+        RESPONSE_MAPPER = new HttpResponseMapper(MAPPER);
+    }
+
+    private final TenantAwareHttpClient<String> readerHttpClient;
+    private final Map<MiruHost, MiruHostSelectiveStrategy> strategyPerHost;
+    private final ScheduledExecutorService batchScheduler;
+    private final ExecutorService streamExecutor;
+    private final long batchWindowMillis;
+    private final int maxBatchSize;
+
+    final ConcurrentMap<BatchKey, Batch> batches = Maps.newConcurrentMap();
+
+    public MiruBatchedRemotePartitionReader(TenantAwareHttpClient<String> readerHttpClient,
+        Map<MiruHost, MiruHostSelectiveStrategy> strategyPerHost,
+        ScheduledExecutorService batchScheduler,
+        ExecutorService streamExecutor,
+        long batchWindowMillis,
+        int maxBatchSize) {
+        this.readerHttpClient = readerHttpClient;
+        this.strategyPerHost = strategyPerHost;
+        this.batchScheduler = batchScheduler;
+        this.streamExecutor = streamExecutor;
+        this.batchWindowMillis = batchWindowMillis;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public <Q, A, P> MiruPartitionResponse<A> read(String queryKey,
+        MiruHost host,
+        String batchEndpoint,
+        MiruPartitionId partitionId,
+        MiruRequest<Q> request,
+        Optional<P> report,
+        EndPointMetrics endPointMetrics,
+        A emptyResults)
+        throws MiruQueryServiceException, MiruPartitionUnavailableException {
+
+        endPointMetrics.start();
+        try {
+            BatchKey key = new BatchKey(queryKey, host, batchEndpoint, request, report.orNull());
+            CompletableFuture<Answer> future = enqueue(key, partitionId.getId());
+            Answer answer;
+            try {
+                answer = future.get();
+            } catch (InterruptedException e) {
+                abandon(key, partitionId.getId(), future);
+                Thread.currentThread().interrupt();
+                throw new MiruQueryServiceException("Interrupted awaiting batched read for host: " + host + " endpoint: " + batchEndpoint, e);
+            } catch (ExecutionException e) {
+                throw new MiruQueryServiceException("Failed batched read for host: " + host + " endpoint: " + batchEndpoint, e.getCause());
+            }
+
+            if (answer.status == HttpStatus.SC_SERVICE_UNAVAILABLE) {
+                throw new MiruPartitionUnavailableException("Remote partition is unavailable for host: " + host + " partition: " + partitionId);
+            } else if (!RESPONSE_MAPPER.isSuccessStatusCode(answer.status)) {
+                throw new MiruQueryServiceException("Failed batched read for host: " + host + " endpoint: " + batchEndpoint
+                    + " partition: " + partitionId + " status: " + answer.status);
+            }
+            try {
+                return unpack(answer.bytes, emptyResults);
+            } catch (RuntimeException e) {
+                throw new MiruQueryServiceException("Failed batched read for host: " + host + " endpoint: " + batchEndpoint, e);
+            }
+        } finally {
+            endPointMetrics.stop();
+        }
+    }
+
+    CompletableFuture<Answer> enqueue(BatchKey key, int partitionId) {
+        while (true) {
+            Batch batch = batches.computeIfAbsent(key, Batch::new);
+            CompletableFuture<Answer> future;
+            boolean opened;
+            boolean full;
+            synchronized (batch) {
+                if (batch.closed) {
+                    // a flush has closed this batch but not yet removed it, so open a new one
+                    batches.remove(key, batch);
+                    continue;
+                }
+                future = batch.futures.computeIfAbsent(partitionId, k -> new CompletableFuture<>());
+                batch.waiters.merge(partitionId, 1, Integer::sum);
+                opened = !batch.scheduled;
+                batch.scheduled = true;
+                full = batch.futures.size() >= maxBatchSize;
+            }
+            if (full) {
+                flush(batch);
+            } else if (opened) {
+                try {
+                    batchScheduler.schedule(() -> flush(batch), batchWindowMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    flush(batch);
+                }
+            }
+            return future;
+        }
+    }
+
+    /**
+     * Removes the partition from a batch that has not been sent once its last waiter gives up. A batch that has already closed keeps
+     * the partition, since its request may be in flight, and the answer is simply discarded.
+     */
+    private void abandon(BatchKey key, int partitionId, CompletableFuture<Answer> future) {
+        Batch batch = batches.get(key);
+        if (batch == null) {
+            return;
+        }
+        synchronized (batch) {
+            if (batch.closed || batch.futures.get(partitionId) != future) {
+                return;
+            }
+            if (batch.waiters.merge(partitionId, -1, Integer::sum) == 0) {
+                batch.waiters.remove(partitionId);
+                batch.futures.remove(partitionId);
+                future.cancel(false);
+                LOG.inc("batched>abandoned");
+            }
+        }
+    }
+
+    private void flush(Batch batch) {
+        boolean empty;
+        synchronized (batch) {
+            if (batch.closed) {
+                return;
+            }
+            batch.closed = true;
+            empty = batch.futures.isEmpty();
+        }
+        batches.remove(batch.key, batch);
+        if (empty) {
+            return;
+        }
+        try {
+            streamExecutor.submit(() -> send(batch));
+        } catch (RejectedExecutionException e) {
+            batch.failAll(e);
+        }
+    }
+
+    private void send(Batch batch) {
+        BatchKey key = batch.key;
+        int[] partitionIds = new int[batch.futures.size()];
+        int i = 0;
+        for (Integer partitionId : batch.futures.keySet()) {
+            partitionIds[i++] = partitionId;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            String json = MAPPER.writeValueAsString(new MiruBatchedRequest(partitionIds,
+                conf.asByteArray(new MiruRequestAndReport<>(key.request, key.report))));
+            streamingPost(key, json, (statusCode, inputStream) -> {
+                if (RESPONSE_MAPPER.isSuccessStatusCode(statusCode)) {
+                    readFrames(inputStream, batch.futures);
+                } else {
+                    for (CompletableFuture<Answer> future : batch.futures.values()) {
+                        future.complete(new Answer(statusCode, null));
+                    }
+                }
+            });
+            LOG.inc("batched>sent");
+            LOG.inc("batched>partitions", partitionIds.length);
+            LOG.set(ValueType.VALUE, "batched>latency", System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            LOG.warn("Failed batched read of {} partitions for host: {} endpoint: {}",
+                new Object[] { partitionIds.length, key.host, key.endpoint }, e);
+            LOG.inc("batched>failed");
+        } finally {
+            batch.failAll(new IOException("Batched response from host: " + key.host + " was missing partitions"));
+        }
+    }
+
+    /**
+     * Posts the batch to its host and hands the response status and stream to the consumer, closing the response afterward.
+     */
+    void streamingPost(BatchKey key, String json, ResponseConsumer consumer) throws Exception {
+        MiruHostSelectiveStrategy strategy = strategyPerHost.computeIfAbsent(key.host,
+            miruHost -> new MiruHostSelectiveStrategy(new MiruHost[] { miruHost }));
+        HttpStreamResponse response = readerHttpClient.call("", strategy,
+            key.queryKey + ":" + key.request.name + ":batched",
+            httpClient -> new ClientCall.ClientResponse<>(httpClient.streamingPost(key.endpoint, json, null), true));
+        try {
+            consumer.consume(response.getStatusCode(), response.getInputStream());
+        } finally {
+            response.close();
+        }
+    }
+
+    interface ResponseConsumer {
+
+        void consume(int statusCode, InputStream inputStream) throws IOException;
+    }
+
+    /**
+     * Completes each partition's future as its frame arrives, returning once every partition is answered or the stream ends.
+     */
+    static void readFrames(InputStream inputStream, Map<Integer, CompletableFuture<Answer>> futures) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(inputStream, 8192));
+        int remaining = futures.size();
+        while (remaining > 0) {
+            int partitionId = in.readInt();
+            int status = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            CompletableFuture<Answer> future = futures.get(partitionId);
+            if (future != null && future.complete(new Answer(status, bytes))) {
+                remaining--;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <A> MiruPartitionResponse<A> unpack(byte[] rawBytes, A emptyResult) {
+        if (rawBytes == null || rawBytes.length == 0) {
+            return new MiruPartitionResponse<>(emptyResult, null);
+        }
+        try {
+            return (MiruPartitionResponse<A>) conf.asObject(rawBytes);
+        } catch (Exception x) {
+            throw new RuntimeException("Error deserializing response object for bytes of length=" + rawBytes.length, x);
+        }
+    }
+
+    static class Answer {
+
+        final int status;
+        final byte[] bytes;
+
+        Answer(int status, byte[] bytes) {
+            this.status = status;
+            this.bytes = bytes;
+        }
+    }
+
+    static class Batch {
+
+        private final BatchKey key;
+        final Map<Integer, CompletableFuture<Answer>> futures = Maps.newHashMap();
+        private final Map<Integer, Integer> waiters = Maps.newHashMap();
+        private boolean scheduled;
+        boolean closed;
+
+        private Batch(BatchKey key) {
+            this.key = key;
+        }
+
+        private void failAll(Throwable t) {
+            for (CompletableFuture<Answer> future : futures.values()) {
+                future.completeExceptionally(t);
+            }
+        }
+    }
+
+    static class BatchKey {
+
+        private final String queryKey;
+        private final MiruHost host;
+        private final String endpoint;
+        private final MiruRequest<?> request;
+        private final Object report;
+
+        BatchKey(String queryKey, MiruHost host, String endpoint, MiruRequest<?> request, Object report) {
+            this.queryKey = queryKey;
+            this.host = host;
+            this.endpoint = endpoint;
+            this.request = request;
+            this.report = report;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            BatchKey batchKey = (BatchKey) o;
+            return request == batchKey.request
+                && report == batchKey.report
+                && queryKey.equals(batchKey.queryKey)
+                && host.equals(batchKey.host)
+                && endpoint.equals(batchKey.endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(queryKey, host, endpoint, System.identityHashCode(request), System.identityHashCode(report));
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.Arrays;
+
+/**
+ * One request and report asked of several partitions on the same host. The request and report are carried as the same packed bytes
+ * the single partition endpoints consume.
+ */
+public class MiruBatchedRequest {
+
+    public final int[] partitionIds;
+    public final byte[] requestAndReport;
+
+    @JsonCreator
+    public MiruBatchedRequest(
+        @JsonProperty("partitionIds") int[] partitionIds,
+        @JsonProperty("requestAndReport") byte[] requestAndReport) {
+        this.partitionIds = partitionIds;
+        this.requestAndReport = requestAndReport;
+    }
+
+    @Override
+    public String toString() {
+        return "MiruBatchedRequest{" + "partitionIds=" + Arrays.toString(partitionIds) + ", requestAndReport=" + requestAndReport.length + " bytes" + '}';
+    }
+}
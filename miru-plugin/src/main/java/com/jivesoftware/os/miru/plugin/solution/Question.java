@@ -18,4 +18,14 @@ public interface Question<Q, A, P> {
     MiruPartitionResponse<A> askRemote(MiruHost host, MiruPartitionId partitionId, Optional<P> report) throws MiruQueryServiceException;
 
     Optional<P> createReport(Optional<A> answer);
+
+    /**
+     * Questions whose answers depend only on the request, the report and the partition's indexes may expose their request so that
+     * answers from closed partitions can be cached.
+     *
+     * @return the request, or null if answers to this question must not be cached
+     */
+    default MiruRequest<Q> getCacheableRequest() {
+        return null;
+    }
 }
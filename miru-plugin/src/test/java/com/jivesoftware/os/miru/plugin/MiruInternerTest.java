@@ -0,0 +1,95 @@
+package com.jivesoftware.os.miru.plugin;
+
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class MiruInternerTest {
+
+    @Test
+    public void testInternsEqualBytes() throws Exception {
+        MiruInterner<MiruTermId> interner = interner(true, 1024);
+
+        MiruTermId first = interner.intern("term".getBytes(StandardCharsets.UTF_8));
+        MiruTermId second = interner.intern("term".getBytes(StandardCharsets.UTF_8));
+        MiruTermId sliced = interner.intern("xxtermyy".getBytes(StandardCharsets.UTF_8), 2, 4);
+
+        assertSame(second, first);
+        assertSame(sliced, first);
+        assertEquals(interner.misses(), 1);
+        assertEquals(interner.hits(), 2);
+    }
+
+    @Test
+    public void testDisabledCopiesSlice() throws Exception {
+        MiruInterner<MiruTermId> interner = interner(false, 1024);
+
+        MiruTermId first = interner.intern("xxtermyy".getBytes(StandardCharsets.UTF_8), 2, 4);
+        MiruTermId second = interner.intern("term".getBytes(StandardCharsets.UTF_8));
+
+        assertNotSame(second, first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void testEvictionIsBounded() throws Exception {
+        MiruInterner<MiruTermId> interner = interner(true, 16);
+
+        for (int i = 0; i < 10_000; i++) {
+            byte[] bytes = ("term" + i).getBytes(StandardCharsets.UTF_8);
+            assertEquals(interner.intern(bytes).getBytes(), bytes);
+        }
+        assertEquals(interner.misses(), 10_000);
+        assertTrue(interner.evictions() > 0);
+    }
+
+    @Test
+    public void testConcurrentInternsConverge() throws Exception {
+        MiruInterner<MiruTermId> interner = interner(true, 65_536);
+        int numTerms = 1_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<MiruTermId[]>> futures = Lists.newArrayList();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(() -> {
+                    MiruTermId[] interned = new MiruTermId[numTerms];
+                    for (int i = 0; i < numTerms; i++) {
+                        interned[i] = interner.intern(("term" + i).getBytes(StandardCharsets.UTF_8));
+                    }
+                    return interned;
+                }));
+            }
+
+            MiruTermId[] expected = futures.get(0).get();
+            for (Future<MiruTermId[]> future : futures) {
+                MiruTermId[] got = future.get();
+                for (int i = 0; i < numTerms; i++) {
+                    assertSame(got[i], expected[i]);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(interner.hits() + interner.misses(), 8 * numTerms);
+    }
+
+    private MiruInterner<MiruTermId> interner(boolean enabled, int capacity) {
+        return new MiruInterner<MiruTermId>(enabled, capacity) {
+            @Override
+            public MiruTermId create(byte[] bytes) {
+                return new MiruTermId(bytes);
+            }
+        };
+    }
+}
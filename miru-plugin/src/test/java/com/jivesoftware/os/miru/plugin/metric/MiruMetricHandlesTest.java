@@ -0,0 +1,31 @@
+package com.jivesoftware.os.miru.plugin.metric;
+
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+
+public class MiruMetricHandlesTest {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    @Test
+    public void testHandlesAreResolvedOnce() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        MiruMetricHandles<Integer, MiruCounter> handles = new MiruMetricHandles<>((name, fieldId) -> {
+            created.incrementAndGet();
+            return new MiruCounter(LOG, "count>" + name + ">" + fieldId);
+        });
+
+        MiruCounter a = handles.get("field", 1);
+        assertSame(handles.get("field", 1), a);
+        assertNotSame(handles.get("field", 2), a);
+        assertNotSame(handles.get("authz", 1), a);
+        assertEquals(created.get(), 3);
+        assertEquals(a.getName(), "count>field>1");
+    }
+}
@@ -0,0 +1,89 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.MiruActorId;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
+import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.http.HttpStatus;
+import org.nustaq.serialization.FSTConfiguration;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class MiruBatchedPartitionWriterTest {
+
+    private final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+
+    @Test
+    public void testFramesPerPartition() throws Exception {
+        MiruRequestAndReport<String, String> requestAndReport = new MiruRequestAndReport<>(
+            new MiruRequest<>("test", new MiruTenantId("tenant".getBytes()), new MiruActorId(new byte[] { 1 }), MiruAuthzExpression.NOT_PROVIDED,
+                "query", MiruSolutionLogLevel.NONE),
+            "report");
+        MiruBatchedRequest batchedRequest = new MiruBatchedRequest(new int[] { 1, 2, 3 }, conf.asByteArray(requestAndReport));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        try {
+            MiruRequestAndReport<String, String> unpacked = MiruBatchedPartitionWriter.unpack(batchedRequest);
+            MiruBatchedPartitionWriter.<String, String, String>write(batchedRequest.partitionIds, unpacked, (partitionId, rr) -> {
+                if (partitionId.getId() == 2) {
+                    throw new MiruPartitionUnavailableException("unavailable");
+                } else if (partitionId.getId() == 3) {
+                    throw new IllegalStateException("failed");
+                }
+                return new MiruPartitionResponse<>(rr.request.query + rr.report + partitionId.getId(), Collections.emptyList());
+            }, executor, bytesOut);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<Integer, CompletableFuture<MiruBatchedRemotePartitionReader.Answer>> futures = Maps.newHashMap();
+        for (int i = 1; i <= 3; i++) {
+            futures.put(i, new CompletableFuture<>());
+        }
+        MiruBatchedRemotePartitionReader.readFrames(new ByteArrayInputStream(bytesOut.toByteArray()), futures);
+
+        MiruBatchedRemotePartitionReader.Answer answer = futures.get(1).get();
+        assertEquals(answer.status, HttpStatus.SC_OK);
+        assertEquals(((MiruPartitionResponse<?>) conf.asObject(answer.bytes)).answer, "queryreport1");
+        assertEquals(futures.get(2).get().status, HttpStatus.SC_SERVICE_UNAVAILABLE);
+        assertEquals(futures.get(3).get().status, HttpStatus.SC_INTERNAL_SERVER_ERROR);
+    }
+
+    @Test
+    public void testMissingFramesLeavePartitionsIncomplete() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+        try {
+            MiruBatchedPartitionWriter.<String, String, String>write(new int[] { 1 }, new MiruRequestAndReport<>(null, null),
+                (partitionId, rr) -> new MiruPartitionResponse<>("answer", null), executor, bytesOut);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<Integer, CompletableFuture<MiruBatchedRemotePartitionReader.Answer>> futures = Maps.newHashMap();
+        futures.put(1, new CompletableFuture<>());
+        futures.put(2, new CompletableFuture<>());
+        try {
+            MiruBatchedRemotePartitionReader.readFrames(new ByteArrayInputStream(bytesOut.toByteArray()), futures);
+            fail();
+        } catch (EOFException e) {
+            // expected
+        }
+        assertTrue(futures.get(1).isDone());
+        assertFalse(futures.get(2).isDone());
+    }
+}
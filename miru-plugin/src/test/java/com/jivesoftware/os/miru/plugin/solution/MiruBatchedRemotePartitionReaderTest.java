@@ -0,0 +1,275 @@
+package com.jivesoftware.os.miru.plugin.solution;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import com.jivesoftware.os.miru.api.MiruActorId;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruQueryServiceException;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRemotePartitionReader.Batch;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRemotePartitionReader.BatchKey;
+import com.jivesoftware.os.mlogger.core.EndPointMetrics;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpStatus;
+import org.nustaq.serialization.FSTConfiguration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class MiruBatchedRemotePartitionReaderTest {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final FSTConfiguration conf = FSTConfiguration.createDefaultConfiguration();
+    private final EndPointMetrics endPointMetrics = new EndPointMetrics("test", LOG);
+    private final MiruHost host = new MiruHost("host");
+    private final MiruRequest<String> request = request();
+
+    private ScheduledExecutorService batchScheduler;
+    private ExecutorService streamExecutor;
+    private ExecutorService readExecutor;
+
+    @BeforeMethod
+    public void setUp() {
+        batchScheduler = Executors.newSingleThreadScheduledExecutor();
+        streamExecutor = Executors.newCachedThreadPool();
+        readExecutor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        batchScheduler.shutdownNow();
+        streamExecutor.shutdownNow();
+        readExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testCoalescesSameHostAndRequest() throws Exception {
+        RecordingReader reader = new RecordingReader(200, 10, this::answerAll);
+        Future<MiruPartitionResponse<String>> read1 = read(reader, host, 1, request);
+        Future<MiruPartitionResponse<String>> read2 = read(reader, host, 2, request);
+        Future<MiruPartitionResponse<String>> read3 = read(reader, host, 3, request);
+        // an equal but distinct request is never merged
+        Future<MiruPartitionResponse<String>> other = read(reader, host, 1, request());
+
+        assertEquals(read1.get(10, TimeUnit.SECONDS).answer, "answer1");
+        assertEquals(read2.get(10, TimeUnit.SECONDS).answer, "answer2");
+        assertEquals(read3.get(10, TimeUnit.SECONDS).answer, "answer3");
+        assertEquals(other.get(10, TimeUnit.SECONDS).answer, "answer1");
+        assertEquals(Sets.newHashSet(reader.sends), Sets.newHashSet(Lists.newArrayList(1, 2, 3), Lists.newArrayList(1)));
+    }
+
+    @Test
+    public void testFlushesAfterWindow() throws Exception {
+        RecordingReader reader = new RecordingReader(100, 10, this::answerAll);
+        long start = System.currentTimeMillis();
+        assertEquals(read(reader, host, 1, request).get(10, TimeUnit.SECONDS).answer, "answer1");
+        assertTrue(System.currentTimeMillis() - start >= 90, "Flushed before the window elapsed");
+        assertEquals(reader.sends, Collections.singletonList(Lists.newArrayList(1)));
+    }
+
+    @Test
+    public void testFlushesWhenFull() throws Exception {
+        RecordingReader reader = new RecordingReader(60_000, 2, this::answerAll);
+        Future<MiruPartitionResponse<String>> read1 = read(reader, host, 1, request);
+        Future<MiruPartitionResponse<String>> read2 = read(reader, host, 2, request);
+
+        // the window is far longer than the wait, so only a full batch can answer in time
+        assertEquals(read1.get(10, TimeUnit.SECONDS).answer, "answer1");
+        assertEquals(read2.get(10, TimeUnit.SECONDS).answer, "answer2");
+        assertEquals(reader.sends, Collections.singletonList(Lists.newArrayList(1, 2)));
+    }
+
+    @Test
+    public void testErrorStatusFailsOnlyWaitingPartitions() throws Exception {
+        RecordingReader reader = new RecordingReader(200, 10, (partitionIds, out) -> {
+            if (Ints.contains(partitionIds, 1)) {
+                return HttpStatus.SC_INTERNAL_SERVER_ERROR;
+            }
+            return answerAll(partitionIds, out);
+        });
+        Future<MiruPartitionResponse<String>> read1 = read(reader, host, 1, request);
+        Future<MiruPartitionResponse<String>> read2 = read(reader, host, 2, request);
+        Future<MiruPartitionResponse<String>> read3 = read(reader, new MiruHost("other"), 3, request);
+
+        assertFailed(read1, MiruQueryServiceException.class);
+        assertFailed(read2, MiruQueryServiceException.class);
+        assertEquals(read3.get(10, TimeUnit.SECONDS).answer, "answer3");
+        assertEquals(Sets.newHashSet(reader.sends), Sets.newHashSet(Lists.newArrayList(1, 2), Lists.newArrayList(3)));
+    }
+
+    @Test
+    public void testTruncatedStreamFailsRemainingPartitions() throws Exception {
+        RecordingReader reader = new RecordingReader(200, 10, (partitionIds, out) -> {
+            frame(out, 1, HttpStatus.SC_OK);
+            return HttpStatus.SC_OK;
+        });
+        Future<MiruPartitionResponse<String>> read1 = read(reader, host, 1, request);
+        Future<MiruPartitionResponse<String>> read2 = read(reader, host, 2, request);
+
+        assertEquals(read1.get(10, TimeUnit.SECONDS).answer, "answer1");
+        Throwable cause = assertFailed(read2, MiruQueryServiceException.class);
+        assertTrue(cause.getCause() instanceof IOException, String.valueOf(cause.getCause()));
+    }
+
+    @Test
+    public void testClosedBatchIsReplaced() throws Exception {
+        RecordingReader reader = new RecordingReader(60_000, 10, this::answerAll);
+        BatchKey key = new BatchKey("test", host, "/batch", request, null);
+        reader.enqueue(key, 1);
+        Batch closed = reader.batches.get(key);
+
+        // a flush closes the batch before removing it, so an enqueue in between must open a new one
+        synchronized (closed) {
+            closed.closed = true;
+        }
+        CompletableFuture<MiruBatchedRemotePartitionReader.Answer> future = reader.enqueue(key, 2);
+        Batch reopened = reader.batches.get(key);
+
+        assertNotSame(reopened, closed);
+        assertEquals(closed.futures.keySet(), Collections.singleton(1));
+        assertEquals(reopened.futures.keySet(), Collections.singleton(2));
+        assertEquals(reopened.futures.get(2), future);
+    }
+
+    @Test
+    public void testCancelledReadAbandonsEntry() throws Exception {
+        RecordingReader reader = new RecordingReader(300, 10, this::answerAll);
+        Future<MiruPartitionResponse<String>> read1 = read(reader, host, 1, request);
+        Future<MiruPartitionResponse<String>> read2 = read(reader, host, 2, request);
+        awaitQueued(reader, 2);
+
+        // a cancelled hedge interrupts its reader, which leaves the batch before it is sent
+        read1.cancel(true);
+        awaitQueued(reader, 1);
+
+        assertEquals(read2.get(10, TimeUnit.SECONDS).answer, "answer2");
+        assertEquals(reader.sends, Collections.singletonList(Lists.newArrayList(2)));
+    }
+
+    @Test
+    public void testAbandonedBatchIsNotSent() throws Exception {
+        RecordingReader reader = new RecordingReader(100, 10, this::answerAll);
+        Future<MiruPartitionResponse<String>> read1 = read(reader, host, 1, request);
+        awaitQueued(reader, 1);
+        read1.cancel(true);
+        awaitQueued(reader, 0);
+
+        Thread.sleep(300);
+        assertTrue(reader.sends.isEmpty(), String.valueOf(reader.sends));
+        assertTrue(reader.batches.isEmpty());
+    }
+
+    private Future<MiruPartitionResponse<String>> read(RecordingReader reader, MiruHost host, int partitionId, MiruRequest<String> request) {
+        return readExecutor.submit(() -> reader.read("test", host, "/batch", MiruPartitionId.of(partitionId), request, Optional.absent(),
+            endPointMetrics, "empty"));
+    }
+
+    private static Throwable assertFailed(Future<?> future, Class<? extends Throwable> causeClass) throws Exception {
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("Expected " + causeClass.getSimpleName());
+            return null;
+        } catch (ExecutionException e) {
+            assertTrue(causeClass.isInstance(e.getCause()), String.valueOf(e.getCause()));
+            return e.getCause();
+        }
+    }
+
+    private static void awaitQueued(RecordingReader reader, int count) throws InterruptedException {
+        long failAfter = System.currentTimeMillis() + 10_000;
+        while (queued(reader) != count) {
+            assertTrue(System.currentTimeMillis() < failAfter, "Queued " + queued(reader) + " not " + count);
+            Thread.sleep(10);
+        }
+    }
+
+    private static int queued(RecordingReader reader) {
+        int queued = 0;
+        for (Batch batch : reader.batches.values()) {
+            synchronized (batch) {
+                queued += batch.futures.size();
+            }
+        }
+        return queued;
+    }
+
+    private int answerAll(int[] partitionIds, DataOutputStream out) throws IOException {
+        for (int partitionId : partitionIds) {
+            frame(out, partitionId, HttpStatus.SC_OK);
+        }
+        return HttpStatus.SC_OK;
+    }
+
+    private void frame(DataOutputStream out, int partitionId, int status) throws IOException {
+        byte[] bytes = conf.asByteArray(new MiruPartitionResponse<>("answer" + partitionId, null));
+        out.writeInt(partitionId);
+        out.writeInt(status);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static MiruRequest<String> request() {
+        return new MiruRequest<>("test", new MiruTenantId("tenant".getBytes()), new MiruActorId(new byte[] { 1 }), MiruAuthzExpression.NOT_PROVIDED,
+            "query", MiruSolutionLogLevel.NONE);
+    }
+
+    private interface Responder {
+
+        int respond(int[] partitionIds, DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Answers each batch with the responder's status and frames in place of a remote host, and records the partitions of each batch.
+     */
+    private class RecordingReader extends MiruBatchedRemotePartitionReader {
+
+        private final Responder responder;
+        private final List<List<Integer>> sends = Collections.synchronizedList(Lists.newArrayList());
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        private RecordingReader(long batchWindowMillis, int maxBatchSize, Responder responder) {
+            super(null, Maps.newConcurrentMap(), batchScheduler, streamExecutor, batchWindowMillis, maxBatchSize);
+            this.responder = responder;
+        }
+
+        @Override
+        void streamingPost(BatchKey key, String json, ResponseConsumer consumer) throws Exception {
+            MiruBatchedRequest batchedRequest = objectMapper.readValue(json, MiruBatchedRequest.class);
+            List<Integer> partitionIds = Lists.newArrayList(Ints.asList(batchedRequest.partitionIds));
+            Collections.sort(partitionIds);
+            sends.add(partitionIds);
+
+            ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytesOut);
+            int status = responder.respond(batchedRequest.partitionIds, out);
+            out.flush();
+            consumer.consume(status, new ByteArrayInputStream(bytesOut.toByteArray()));
+        }
+    }
+}
@@ -241,7 +241,8 @@ public class MiruReaderMain {
 
             MiruResourceLocator diskResourceLocator = new MiruResourceLocatorInitializer().initialize(miruServiceConfig);
 
-            MiruInterner<MiruTermId> termInterner = new MiruInterner<MiruTermId>(miruServiceConfig.getEnableTermInterning()) {
+            MiruInterner<MiruTermId> termInterner = new MiruInterner<MiruTermId>(miruServiceConfig.getEnableTermInterning(),
+                miruServiceConfig.getTermInternerCapacity()) {
                 @Override
                 public MiruTermId create(byte[] bytes) {
                     return new MiruTermId(bytes);
@@ -438,7 +439,8 @@ public class MiruReaderMain {
                     1000,
                     mapper,
                     walClientSickThreads,
-                    10_000);
+                    10_000,
+                    walConfig.getBinaryActivityTransport());
 
                 inboxReadTracker = new AmzaInboxReadTracker(amzaWALClient);
                 miruServiceLifecyle = new MiruServiceInitializer().initialize(miruServiceConfig,
@@ -0,0 +1,50 @@
+package com.jivesoftware.os.miru.reco.plugins.trending;
+
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import com.jivesoftware.os.miru.reco.trending.WaveformRegression;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TrendingPartialNGTest {
+
+    @Test
+    public void testMergedPartialsMatchMergedWaveform() throws Exception {
+        Random random = new Random(1234);
+        MiruValue id = new MiruValue("term");
+        int length = 32;
+        long[] merged = new long[length];
+        TrendingPartial partial = null;
+        for (int p = 0; p < 5; p++) {
+            long[] waveform = new long[length];
+            for (int i = 0; i < length; i++) {
+                waveform[i] = random.nextInt(100);
+                merged[i] += waveform[i];
+            }
+            TrendingPartial next = TrendingPartial.of(id, waveform);
+            partial = partial == null ? next : partial.merge(next);
+        }
+
+        WaveformRegression regression = new WaveformRegression();
+        regression.add(merged, 0, merged.length);
+        assertEquals(partial.slope(length), regression.slope(), 1e-6);
+
+        long sum = 0;
+        long peak = 0;
+        for (long w : merged) {
+            sum += w;
+            peak = Math.max(peak, w);
+        }
+        assertEquals(partial.sum, sum);
+        assertTrue(partial.peakLower <= peak);
+        assertTrue(partial.peakUpper >= peak);
+    }
+
+    @Test
+    public void testEmptyWaveform() throws Exception {
+        assertNull(TrendingPartial.of(new MiruValue("term"), new long[8]));
+    }
+}
@@ -61,4 +61,9 @@ public class DistinctsQuestion implements Question<DistinctsQuery, DistinctsAnsw
         }
         return report;
     }
+
+    @Override
+    public MiruRequest<DistinctsQuery> getCacheableRequest() {
+        return request;
+    }
 }
@@ -0,0 +1,155 @@
+package com.jivesoftware.os.miru.reco.plugins.trending;
+
+import com.google.common.collect.Sets;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.miru.analytics.plugins.analytics.Analytics;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.api.field.MiruFieldType;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
+import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
+import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequestHandle;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
+import com.jivesoftware.os.miru.reco.plugins.distincts.Distincts;
+import com.jivesoftware.os.miru.reco.plugins.distincts.DistinctsQuery;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Gathers the trending terms for a partition and streams a waveform for each term and score set.
+ */
+public class TrendingAnalyzer {
+
+    private final Distincts distincts;
+    private final Analytics analytics;
+    private final int gatherDistinctsBatchSize;
+
+    public TrendingAnalyzer(Distincts distincts, Analytics analytics, int gatherDistinctsBatchSize) {
+        this.distincts = distincts;
+        this.analytics = analytics;
+        this.gatherDistinctsBatchSize = gatherDistinctsBatchSize;
+    }
+
+    public interface TermWaveformStream {
+
+        /**
+         * @param waveformBuffer the raw counts per segment, which are only valid for the duration of the call, or null if the term
+         *                       has no activity in the score set
+         */
+        boolean stream(int scoreSetIndex, MiruValue value, long[] waveformBuffer) throws Exception;
+    }
+
+    /**
+     * @param retainValues the terms to analyze, or null to gather them using the query's distincts
+     * @return whether results are exhausted
+     */
+    public <BM extends IBM, IBM> boolean analyze(String name,
+        MiruRequestHandle<BM, IBM, ?> handle,
+        MiruRequest<TrendingQuery> request,
+        MiruTimeRange combinedTimeRange,
+        List<MiruValue> retainValues,
+        MiruSolutionLog solutionLog,
+        TermWaveformStream stream) throws Exception {
+
+        MiruRequestContext<BM, IBM, ? extends MiruSipCursor<?>> context = handle.getRequestContext();
+        MiruBitmaps<BM, IBM> bitmaps = handle.getBitmaps();
+
+        MiruSchema schema = context.getSchema();
+        int fieldId = schema.getFieldId(request.query.aggregateCountAroundField);
+        MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(fieldId);
+        MiruFieldIndex<BM, IBM> primaryFieldIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
+        StackBuffer stackBuffer = new StackBuffer();
+
+        MiruTermComposer termComposer = context.getTermComposer();
+
+        long start = System.currentTimeMillis();
+        MiruTermId[] termIds;
+        if (retainValues != null) {
+            termIds = new MiruTermId[retainValues.size()];
+            for (int i = 0; i < termIds.length; i++) {
+                termIds[i] = termComposer.compose(schema, fieldDefinition, stackBuffer, retainValues.get(i).parts);
+            }
+            solutionLog.log(MiruSolutionLogLevel.INFO, "Composed {} retained distincts in {} ms.",
+                termIds.length, (System.currentTimeMillis() - start));
+        } else {
+            termIds = gatherTermIds(name, handle, request, schema, fieldDefinition, termComposer, stackBuffer, solutionLog);
+            solutionLog.log(MiruSolutionLogLevel.INFO, "Gathered {} distincts for {} queries in {} ms.",
+                termIds.length, request.query.distinctQueries.size(), (System.currentTimeMillis() - start));
+        }
+
+        List<TrendingQueryScoreSet> scoreSets = request.query.scoreSets;
+        Analytics.AnalyticsScoreable[] scoreables = new Analytics.AnalyticsScoreable[scoreSets.size()];
+        for (int i = 0; i < scoreSets.size(); i++) {
+            TrendingQueryScoreSet scoreSet = scoreSets.get(i);
+            scoreables[i] = new Analytics.AnalyticsScoreable(scoreSet.timeRange, scoreSet.divideTimeRangeIntoNSegments);
+        }
+
+        return analytics.analyze(name,
+            solutionLog,
+            handle,
+            context,
+            request.authzExpression,
+            combinedTimeRange,
+            request.query.constraintsFilter,
+            scoreables,
+            stackBuffer,
+            (Analytics.ToAnalyze<MiruTermId, BM> toAnalyze) -> {
+                bitmaps.multiTx(
+                    (tx, stackBuffer1) -> primaryFieldIndex.multiTxIndex(name, fieldId, termIds, -1, stackBuffer1, tx),
+                    (index, lastId, bitmap) -> toAnalyze.analyze(termIds[index], bitmap),
+                    stackBuffer);
+                return true;
+            },
+            (int index, MiruTermId termId, long[] waveformBuffer) -> stream.stream(index,
+                new MiruValue(termComposer.decompose(schema, fieldDefinition, stackBuffer, termId)),
+                waveformBuffer));
+    }
+
+    private <BM extends IBM, IBM> MiruTermId[] gatherTermIds(String name,
+        MiruRequestHandle<BM, IBM, ?> handle,
+        MiruRequest<TrendingQuery> request,
+        MiruSchema schema,
+        MiruFieldDefinition fieldDefinition,
+        MiruTermComposer termComposer,
+        StackBuffer stackBuffer,
+        MiruSolutionLog solutionLog) throws Exception {
+
+        Set<MiruTermId> andTerms = null;
+        for (List<DistinctsQuery> distinctsQueries : request.query.distinctQueries) {
+            Set<MiruTermId> orTerms = null;
+            for (DistinctsQuery distinctsQuery : distinctsQueries) {
+                Set<MiruTermId> distinctTerms = Sets.newHashSet();
+                distincts.gatherDirect(name, handle.getBitmaps(), handle.getRequestContext(), distinctsQuery, gatherDistinctsBatchSize, solutionLog,
+                    termId -> {
+                        distinctTerms.add(termId);
+                        return true;
+                    });
+
+                Set<MiruTermId> recomposed = distincts.recomposeDistincts(schema, fieldDefinition, stackBuffer, termComposer, distinctTerms, distinctsQuery);
+                if (orTerms == null) {
+                    orTerms = recomposed;
+                } else {
+                    orTerms.addAll(recomposed);
+                }
+            }
+
+            if (orTerms != null) {
+                if (andTerms == null) {
+                    andTerms = orTerms;
+                } else {
+                    andTerms.retainAll(orTerms);
+                }
+            }
+        }
+
+        return andTerms != null ? andTerms.toArray(new MiruTermId[andTerms.size()]) : new MiruTermId[0];
+    }
+}
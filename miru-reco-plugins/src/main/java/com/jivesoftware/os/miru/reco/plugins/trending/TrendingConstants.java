@@ -6,6 +6,8 @@ package com.jivesoftware.os.miru.reco.plugins.trending;
 public class TrendingConstants {
     public static final String TRENDING_PREFIX = "/plugin/trending";
     public static final String CUSTOM_QUERY_ENDPOINT = "/custom";
+    public static final String PARTIAL_QUERY_ENDPOINT = "/partial";
+    public static final String BATCH_ENDPOINT = "/batch";
 
     private TrendingConstants() {
     }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsAnswer;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedPartitionWriter;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRequest;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequestAndReport;
@@ -22,9 +24,12 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import org.nustaq.serialization.FSTConfiguration;
 
+import static com.jivesoftware.os.miru.reco.plugins.trending.TrendingConstants.BATCH_ENDPOINT;
 import static com.jivesoftware.os.miru.reco.plugins.trending.TrendingConstants.CUSTOM_QUERY_ENDPOINT;
+import static com.jivesoftware.os.miru.reco.plugins.trending.TrendingConstants.PARTIAL_QUERY_ENDPOINT;
 import static com.jivesoftware.os.miru.reco.plugins.trending.TrendingConstants.TRENDING_PREFIX;
 
 @Singleton
@@ -108,4 +113,73 @@ public class TrendingEndpoints {
             return Response.serverError().build();
         }
     }
+
+    @POST
+    @Path(PARTIAL_QUERY_ENDPOINT + "/{partitionId}")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response scoreTrendingPartial(@PathParam("partitionId") int id, byte[] rawBytes) {
+        MiruPartitionId partitionId = MiruPartitionId.of(id);
+
+        MiruRequestAndReport<TrendingQuery, TrendingReport> requestAndReport;
+        try {
+            requestAndReport = (MiruRequestAndReport<TrendingQuery, TrendingReport>) conf.asObject(rawBytes);
+        } catch (Exception e) {
+            log.error("Failed to deserialize request", e);
+            return Response.serverError().build();
+        }
+
+        try {
+            MiruPartitionResponse<TrendingPartialAnswer> result = injectable.scoreTrendingPartial(partitionId, requestAndReport);
+            byte[] responseBytes = result != null ? conf.asByteArray(result) : new byte[0];
+            return Response.ok(responseBytes, MediaType.APPLICATION_OCTET_STREAM).build();
+        } catch (MiruPartitionUnavailableException | InterruptedException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("Unavailable " + e.getMessage()).build();
+        } catch (Exception e) {
+            log.error("Failed to score trending partials for tenant: {} partition: {}", new Object[] { requestAndReport.request.tenantId, partitionId }, e);
+            return Response.serverError().build();
+        }
+    }
+
+    @POST
+    @Path(BATCH_ENDPOINT + CUSTOM_QUERY_ENDPOINT)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response scoreTrendingBatch(MiruBatchedRequest batchedRequest) {
+        MiruRequestAndReport<TrendingQuery, TrendingReport> requestAndReport;
+        try {
+            requestAndReport = MiruBatchedPartitionWriter.unpack(batchedRequest);
+        } catch (Exception e) {
+            log.error("Failed to deserialize batched request", e);
+            return Response.serverError().build();
+        }
+
+        StreamingOutput stream = os -> MiruBatchedPartitionWriter.write(batchedRequest.partitionIds,
+            requestAndReport,
+            injectable::scoreTrending,
+            injectable.getBatchExecutor(requestAndReport.request.tenantId),
+            os);
+        return Response.ok(stream, MediaType.APPLICATION_OCTET_STREAM).build();
+    }
+
+    @POST
+    @Path(BATCH_ENDPOINT + PARTIAL_QUERY_ENDPOINT)
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response scoreTrendingPartialBatch(MiruBatchedRequest batchedRequest) {
+        MiruRequestAndReport<TrendingQuery, TrendingReport> requestAndReport;
+        try {
+            requestAndReport = MiruBatchedPartitionWriter.unpack(batchedRequest);
+        } catch (Exception e) {
+            log.error("Failed to deserialize batched request", e);
+            return Response.serverError().build();
+        }
+
+        StreamingOutput stream = os -> MiruBatchedPartitionWriter.write(batchedRequest.partitionIds,
+            requestAndReport,
+            injectable::scoreTrendingPartial,
+            injectable.getBatchExecutor(requestAndReport.request.tenantId),
+            os);
+        return Response.ok(stream, MediaType.APPLICATION_OCTET_STREAM).build();
+    }
 }
@@ -5,6 +5,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.MinMaxPriorityQueue;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.jivesoftware.os.miru.analytics.plugins.analytics.Analytics;
 import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsAnswer;
@@ -36,6 +37,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import org.apache.commons.math.stat.descriptive.rank.Percentile;
 
 import static com.google.common.base.Objects.firstNonNull;
@@ -48,9 +50,8 @@ public class TrendingInjectable {
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
     private final MiruProvider<? extends Miru> provider;
-    private final Distincts distincts;
-    private final Analytics analytics;
-    private final int gatherDistinctsBatchSize;
+    private final TrendingAnalyzer analyzer;
+    private final boolean pushdownScoringEnabled;
 
     private final PeakDet peakDet = new PeakDet();
 
@@ -58,11 +59,10 @@ public class TrendingInjectable {
         Distincts distincts,
         Analytics analytics) {
         this.provider = miruProvider;
-        this.distincts = distincts;
-        this.analytics = analytics;
 
         TrendingPluginConfig config = miruProvider.getConfig(TrendingPluginConfig.class);
-        this.gatherDistinctsBatchSize = config.getGatherDistinctsBatchSize();
+        this.analyzer = new TrendingAnalyzer(distincts, analytics, config.getGatherDistinctsBatchSize());
+        this.pushdownScoringEnabled = config.getPushdownScoringEnabled();
     }
 
     double zeroToOne(long _min, long _max, long _long) {
@@ -92,12 +92,27 @@ public class TrendingInjectable {
                 keyedSegments.put(scoreSet.key, scoreSet.divideTimeRangeIntoNSegments);
             }
 
+            MiruResponse<TrendingPartialAnswer> partialResponse = null;
+            List<MiruValue> retainValues = null;
+            if (pushdownScoringEnabled && !usesStrategy(request, Strategy.PEAKS)) {
+                partialResponse = miru.askAndMerge(tenantId,
+                    new MiruSolvableFactory<>(request.name, provider.getStats(), "trendingPartial", new TrendingPartialQuestion(analyzer,
+                        combinedTimeRange,
+                        request,
+                        provider.getRemotePartition(TrendingPartialRemotePartition.class))),
+                    new TrendingPartialAnswerEvaluator(),
+                    new TrendingPartialAnswerMerger(keyedSegments.keySet()),
+                    TrendingPartialAnswer.EMPTY_RESULTS,
+                    miru.getDefaultExecutor(),
+                    request.logLevel);
+                retainValues = gatherCandidates(request, partialResponse.answer);
+            }
+
             MiruResponse<AnalyticsAnswer> analyticsResponse = miru.askAndMerge(tenantId,
-                new MiruSolvableFactory<>(request.name, provider.getStats(), "trending", new TrendingQuestion(distincts,
-                    analytics,
-                    gatherDistinctsBatchSize,
+                new MiruSolvableFactory<>(request.name, provider.getStats(), "trending", new TrendingQuestion(analyzer,
                     combinedTimeRange,
                     request,
+                    retainValues,
                     provider.getRemotePartition(TrendingRemotePartition.class))),
                 new AnalyticsAnswerEvaluator(),
                 new AnalyticsAnswerMerger(keyedSegments),
@@ -212,20 +227,30 @@ public class TrendingInjectable {
                 keyedScoreSets.put(queryScoreSet.key, new TrendingAnswerScoreSet(strategySortedTrendies));
             }
 
-            ImmutableList<String> solutionLog = ImmutableList.<String>builder()
-                .addAll(analyticsResponse.log)
-                .build();
+            ImmutableList.Builder<String> solutionLogBuilder = ImmutableList.builder();
+            ImmutableList.Builder<MiruSolution> solutionsBuilder = ImmutableList.builder();
+            Set<Integer> incompletePartitionIds = Sets.newTreeSet();
+            long totalElapsed = analyticsResponse.totalElapsed;
+            boolean missingSchema = analyticsResponse.missingSchema;
+            if (partialResponse != null) {
+                solutionLogBuilder.addAll(firstNonNull(partialResponse.log, Collections.<String>emptyList()));
+                solutionsBuilder.addAll(firstNonNull(partialResponse.solutions, Collections.<MiruSolution>emptyList()));
+                incompletePartitionIds.addAll(firstNonNull(partialResponse.incompletePartitionIds, Collections.<Integer>emptyList()));
+                totalElapsed += partialResponse.totalElapsed;
+                missingSchema |= partialResponse.missingSchema;
+            }
+            solutionLogBuilder.addAll(analyticsResponse.log);
+            solutionsBuilder.addAll(firstNonNull(analyticsResponse.solutions, Collections.<MiruSolution>emptyList()));
+            incompletePartitionIds.addAll(firstNonNull(analyticsResponse.incompletePartitionIds, Collections.<Integer>emptyList()));
+
+            ImmutableList<String> solutionLog = solutionLogBuilder.build();
             LOG.debug("Solution:\n{}", solutionLog);
 
             return new MiruResponse<>(new TrendingAnswer(keyedDistinctWaveforms, keyedScoreSets),
-                ImmutableList.<MiruSolution>builder()
-                    .addAll(firstNonNull(analyticsResponse.solutions, Collections.<MiruSolution>emptyList()))
-                    .build(),
-                analyticsResponse.totalElapsed,
-                analyticsResponse.missingSchema,
-                ImmutableList.<Integer>builder()
-                    .addAll(firstNonNull(analyticsResponse.incompletePartitionIds, Collections.<Integer>emptyList()))
-                    .build(),
+                solutionsBuilder.build(),
+                totalElapsed,
+                missingSchema,
+                ImmutableList.copyOf(incompletePartitionIds),
                 solutionLog);
         } catch (MiruPartitionUnavailableException | InterruptedException e) {
             throw e;
@@ -251,11 +276,10 @@ public class TrendingInjectable {
                 partitionId,
                 new MiruSolvableFactory<>(request.name, provider.getStats(),
                     "scoreTrending",
-                    new TrendingQuestion(distincts,
-                        analytics,
-                        gatherDistinctsBatchSize,
+                    new TrendingQuestion(analyzer,
                         combinedTimeRange,
                         request,
+                        null,
                         provider.getRemotePartition(TrendingRemotePartition.class))),
                 Optional.fromNullable(requestAndReport.report),
                 AnalyticsAnswer.EMPTY_RESULTS,
@@ -268,6 +292,102 @@ public class TrendingInjectable {
         }
     }
 
+    public MiruPartitionResponse<TrendingPartialAnswer> scoreTrendingPartial(MiruPartitionId partitionId,
+        MiruRequestAndReport<TrendingQuery, TrendingReport> requestAndReport)
+        throws MiruQueryServiceException, InterruptedException {
+        try {
+            MiruRequest<TrendingQuery> request = requestAndReport.request;
+            LOG.debug("askImmediate: partitionId={} request={}", partitionId, request);
+            LOG.trace("askImmediate: report={}", requestAndReport.report);
+            MiruTenantId tenantId = request.tenantId;
+            Miru miru = provider.getMiru(tenantId);
+
+            MiruTimeRange combinedTimeRange = getCombinedTimeRange(request);
+
+            return miru.askImmediate(tenantId,
+                partitionId,
+                new MiruSolvableFactory<>(request.name, provider.getStats(),
+                    "scoreTrendingPartial",
+                    new TrendingPartialQuestion(analyzer,
+                        combinedTimeRange,
+                        request,
+                        provider.getRemotePartition(TrendingPartialRemotePartition.class))),
+                Optional.fromNullable(requestAndReport.report),
+                TrendingPartialAnswer.EMPTY_RESULTS,
+                MiruSolutionLogLevel.NONE);
+        } catch (MiruPartitionUnavailableException | InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            //TODO throw http error codes
+            throw new MiruQueryServiceException("Failed to score trending partials for partition: " + partitionId.getId(), e);
+        }
+    }
+
+    public Executor getBatchExecutor(MiruTenantId tenantId) {
+        return provider.getMiru(tenantId).getDefaultExecutor();
+    }
+
+    private boolean usesStrategy(MiruRequest<TrendingQuery> request, Strategy strategy) {
+        for (TrendingQueryScoreSet scoreSet : request.query.scoreSets) {
+            if (scoreSet.strategies.contains(strategy)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Selects every term that could be ranked by a score set. Earlier score sets consume at most their desired number of terms
+     * per strategy, so a score set's results always come from the top (desired + consumed) terms of each strategy. Leader and
+     * regression ranks are exact from the merged partials. A term's highest bucket is at least its highest partition peak and at
+     * most the sum of its partition peaks, so any term whose upper bound reaches the (desired + consumed)th largest lower bound
+     * is kept for exact ranking against the merged waveforms.
+     */
+    private List<MiruValue> gatherCandidates(MiruRequest<TrendingQuery> request, TrendingPartialAnswer answer) {
+        Set<MiruValue> candidates = Sets.newHashSet();
+        int consumable = 0;
+        for (TrendingQueryScoreSet scoreSet : request.query.scoreSets) {
+            List<TrendingPartial> partials = (answer != null && answer.partials != null) ? answer.partials.get(scoreSet.key) : null;
+            int limit = scoreSet.desiredNumberOfDistincts + consumable;
+            if (partials != null && !partials.isEmpty() && limit > 0) {
+                if (scoreSet.strategies.contains(Strategy.LEADER)) {
+                    MinMaxPriorityQueue<Trendy> leaders = MinMaxPriorityQueue.maximumSize(limit).create();
+                    for (TrendingPartial partial : partials) {
+                        leaders.add(new Trendy(partial.id, (double) partial.sum));
+                    }
+                    for (Trendy trendy : leaders) {
+                        candidates.add(trendy.distinctValue);
+                    }
+                }
+                if (scoreSet.strategies.contains(Strategy.LINEAR_REGRESSION)) {
+                    MinMaxPriorityQueue<Trendy> slopes = MinMaxPriorityQueue.maximumSize(limit).create();
+                    for (TrendingPartial partial : partials) {
+                        slopes.add(new Trendy(partial.id, partial.slope(scoreSet.divideTimeRangeIntoNSegments)));
+                    }
+                    for (Trendy trendy : slopes) {
+                        candidates.add(trendy.distinctValue);
+                    }
+                }
+                if (scoreSet.strategies.contains(Strategy.HIGHEST_PEAK)) {
+                    MinMaxPriorityQueue<Long> peakLowers = MinMaxPriorityQueue.orderedBy(Ordering.<Long>natural().reverse())
+                        .maximumSize(limit)
+                        .create();
+                    for (TrendingPartial partial : partials) {
+                        peakLowers.add(partial.peakLower);
+                    }
+                    long threshold = peakLowers.size() < limit ? Long.MIN_VALUE : peakLowers.peekLast();
+                    for (TrendingPartial partial : partials) {
+                        if (partial.peakUpper >= threshold) {
+                            candidates.add(partial.id);
+                        }
+                    }
+                }
+            }
+            consumable += scoreSet.desiredNumberOfDistincts * scoreSet.strategies.size();
+        }
+        return Lists.newArrayList(candidates);
+    }
+
     private MiruTimeRange getCombinedTimeRange(MiruRequest<TrendingQuery> request) {
         long minTimestamp = Long.MAX_VALUE;
         long maxTimestamp = Long.MIN_VALUE;
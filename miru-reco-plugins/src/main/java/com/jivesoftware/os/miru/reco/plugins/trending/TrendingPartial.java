@@ -0,0 +1,82 @@
+package com.jivesoftware.os.miru.reco.plugins.trending;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import java.io.Serializable;
+
+/**
+ * Additive scoring statistics for a term's waveform in a single score set. Waveforms for the same term are summed bucket by bucket
+ * when partitions are merged, so the sum and index weighted sum merge exactly, while the highest bucket is bounded from below by
+ * the highest partition peak and from above by the sum of partition peaks.
+ */
+public class TrendingPartial implements Serializable {
+
+    public final MiruValue id;
+    public final long sum;
+    public final long weightedSum;
+    public final long peakLower;
+    public final long peakUpper;
+
+    @JsonCreator
+    public TrendingPartial(@JsonProperty("id") MiruValue id,
+        @JsonProperty("sum") long sum,
+        @JsonProperty("weightedSum") long weightedSum,
+        @JsonProperty("peakLower") long peakLower,
+        @JsonProperty("peakUpper") long peakUpper) {
+        this.id = id;
+        this.sum = sum;
+        this.weightedSum = weightedSum;
+        this.peakLower = peakLower;
+        this.peakUpper = peakUpper;
+    }
+
+    /**
+     * @return the partial for the raw waveform, or null if the waveform has no counts
+     */
+    public static TrendingPartial of(MiruValue id, long[] waveform) {
+        long sum = 0;
+        long weightedSum = 0;
+        long peak = 0;
+        for (int i = 0; i < waveform.length; i++) {
+            sum += waveform[i];
+            weightedSum += i * waveform[i];
+            peak = Math.max(peak, waveform[i]);
+        }
+        return sum > 0 ? new TrendingPartial(id, sum, weightedSum, peak, peak) : null;
+    }
+
+    public TrendingPartial merge(TrendingPartial other) {
+        return new TrendingPartial(id,
+            sum + other.sum,
+            weightedSum + other.weightedSum,
+            Math.max(peakLower, other.peakLower),
+            peakUpper + other.peakUpper);
+    }
+
+    /**
+     * Same least squares slope as {@link com.jivesoftware.os.miru.reco.trending.WaveformRegression}, which places the sample
+     * at index i at x = i / (length - 1).
+     */
+    public double slope(int length) {
+        if (length < 2) {
+            return Double.NaN;
+        }
+        double n = length;
+        double sumX = n / 2;
+        double sumXX = n * (2 * n - 1) / (6 * (n - 1));
+        double sumXY = (double) weightedSum / (n - 1);
+        return (sumXY - sumX * sum / n) / (sumXX - sumX * sumX / n);
+    }
+
+    @Override
+    public String toString() {
+        return "TrendingPartial{"
+            + "id=" + id
+            + ", sum=" + sum
+            + ", weightedSum=" + weightedSum
+            + ", peakLower=" + peakLower
+            + ", peakUpper=" + peakUpper
+            + '}';
+    }
+}
@@ -0,0 +1,34 @@
+package com.jivesoftware.os.miru.reco.plugins.trending;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ *
+ */
+public class TrendingPartialAnswer implements Serializable {
+
+    public static final TrendingPartialAnswer EMPTY_RESULTS = new TrendingPartialAnswer(null, true);
+
+    public final Map<String, List<TrendingPartial>> partials;
+    public final boolean resultsExhausted;
+
+    @JsonCreator
+    public TrendingPartialAnswer(
+        @JsonProperty("partials") Map<String, List<TrendingPartial>> partials,
+        @JsonProperty("resultsExhausted") boolean resultsExhausted) {
+        this.partials = partials;
+        this.resultsExhausted = resultsExhausted;
+    }
+
+    @Override
+    public String toString() {
+        return "TrendingPartialAnswer{"
+            + "partials=" + partials
+            + ", resultsExhausted=" + resultsExhausted
+            + '}';
+    }
+}
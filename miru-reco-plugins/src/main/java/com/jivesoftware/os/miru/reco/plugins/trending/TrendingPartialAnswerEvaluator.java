@@ -0,0 +1,27 @@
+package com.jivesoftware.os.miru.reco.plugins.trending;
+
+import com.jivesoftware.os.miru.plugin.solution.MiruAnswerEvaluator;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+
+/**
+ *
+ */
+public class TrendingPartialAnswerEvaluator implements MiruAnswerEvaluator<TrendingPartialAnswer> {
+
+    @Override
+    public boolean isDone(TrendingPartialAnswer answer, MiruSolutionLog solutionLog) {
+        solutionLog.log(MiruSolutionLogLevel.INFO, "Results exhausted = {}", answer.resultsExhausted);
+        return answer.resultsExhausted;
+    }
+
+    @Override
+    public boolean stopOnUnsolvablePartition() {
+        return false;
+    }
+
+    @Override
+    public boolean useParallelSolver() {
+        return false;
+    }
+}
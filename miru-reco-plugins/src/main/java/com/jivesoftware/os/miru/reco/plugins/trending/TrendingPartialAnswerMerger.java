@@ -0,0 +1,74 @@
+package com.jivesoftware.os.miru.reco.plugins.trending;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
+import com.jivesoftware.os.miru.plugin.solution.MiruAnswerMerger;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ *
+ */
+public class TrendingPartialAnswerMerger implements MiruAnswerMerger<TrendingPartialAnswer> {
+
+    private final Set<String> keys;
+
+    public TrendingPartialAnswerMerger(Set<String> keys) {
+        this.keys = keys;
+    }
+
+    @Override
+    public TrendingPartialAnswer merge(Optional<TrendingPartialAnswer> last, TrendingPartialAnswer currentAnswer, MiruSolutionLog solutionLog) {
+        if (!last.isPresent()) {
+            solutionLog.log(MiruSolutionLogLevel.INFO, "merge: no last answer, using current answer.");
+            return currentAnswer;
+        }
+
+        TrendingPartialAnswer lastAnswer = last.get();
+        Map<String, List<TrendingPartial>> keyedMergedPartials = Maps.newHashMap();
+        for (String key : keys) {
+            List<TrendingPartial> currentPartials = currentAnswer.partials != null ? currentAnswer.partials.get(key) : null;
+            List<TrendingPartial> lastPartials = lastAnswer.partials != null ? lastAnswer.partials.get(key) : null;
+            List<TrendingPartial> mergedPartials;
+            if (currentPartials == null) {
+                mergedPartials = lastPartials;
+            } else if (lastPartials == null) {
+                mergedPartials = currentPartials;
+            } else {
+                List<TrendingPartial> biggerList = lastPartials.size() > currentPartials.size() ? lastPartials : currentPartials;
+                List<TrendingPartial> smallerList = biggerList == lastPartials ? currentPartials : lastPartials;
+                Map<MiruValue, TrendingPartial> smallerMap = Maps.newHashMapWithExpectedSize(smallerList.size());
+                for (TrendingPartial partial : smallerList) {
+                    smallerMap.put(partial.id, partial);
+                }
+
+                mergedPartials = Lists.newArrayListWithCapacity(biggerList.size() + smallerList.size());
+                for (TrendingPartial partial : biggerList) {
+                    TrendingPartial had = smallerMap.remove(partial.id);
+                    mergedPartials.add(had != null ? partial.merge(had) : partial);
+                }
+                mergedPartials.addAll(smallerMap.values());
+                solutionLog.log(MiruSolutionLogLevel.INFO, "merge: merged key={}, last answer size={}, with current answer size={}.",
+                    key, lastPartials.size(), currentPartials.size());
+            }
+            keyedMergedPartials.put(key, mergedPartials);
+        }
+
+        return new TrendingPartialAnswer(keyedMergedPartials, currentAnswer.resultsExhausted);
+    }
+
+    @Override
+    public TrendingPartialAnswer done(Optional<TrendingPartialAnswer> last, TrendingPartialAnswer alternative, MiruSolutionLog solutionLog) {
+        return last.or(alternative);
+    }
+
+    @Override
+    public boolean canMergeInTree() {
+        return true;
+    }
+}
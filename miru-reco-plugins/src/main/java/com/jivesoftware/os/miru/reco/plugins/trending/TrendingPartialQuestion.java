@@ -0,0 +1,107 @@
+package com.jivesoftware.os.miru.reco.plugins.trending;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruQueryServiceException;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
+import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequestHandle;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
+import com.jivesoftware.os.miru.plugin.solution.Question;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers with per term scoring statistics instead of waveforms.
+ */
+public class TrendingPartialQuestion implements Question<TrendingQuery, TrendingPartialAnswer, TrendingReport> {
+
+    private final TrendingAnalyzer analyzer;
+    private final MiruRequest<TrendingQuery> request;
+    private final MiruTimeRange combinedTimeRange;
+    private final MiruRemotePartition<TrendingQuery, TrendingPartialAnswer, TrendingReport> remotePartition;
+
+    public TrendingPartialQuestion(TrendingAnalyzer analyzer,
+        MiruTimeRange combinedTimeRange,
+        MiruRequest<TrendingQuery> request,
+        MiruRemotePartition<TrendingQuery, TrendingPartialAnswer, TrendingReport> remotePartition) {
+        this.analyzer = analyzer;
+        this.combinedTimeRange = combinedTimeRange;
+        this.request = request;
+        this.remotePartition = remotePartition;
+    }
+
+    @Override
+    public <BM extends IBM, IBM> MiruPartitionResponse<TrendingPartialAnswer> askLocal(MiruRequestHandle<BM, IBM, ?> handle,
+        Optional<TrendingReport> report) throws Exception {
+
+        MiruSolutionLog solutionLog = new MiruSolutionLog(request.logLevel);
+        List<TrendingQueryScoreSet> scoreSets = request.query.scoreSets;
+
+        long upperTime = combinedTimeRange.largestTimestamp;
+        long lowerTime = combinedTimeRange.smallestTimestamp;
+        if (upperTime == Long.MAX_VALUE || lowerTime == 0) {
+            Map<String, List<TrendingPartial>> emptyResults = Maps.newHashMap();
+            for (TrendingQueryScoreSet scoreSet : scoreSets) {
+                emptyResults.put(scoreSet.key, Collections.emptyList());
+            }
+            return new MiruPartitionResponse<>(new TrendingPartialAnswer(emptyResults, true), solutionLog.asList());
+        }
+
+        @SuppressWarnings("unchecked")
+        List<TrendingPartial>[] partials = new List[scoreSets.size()];
+        for (int i = 0; i < scoreSets.size(); i++) {
+            partials[i] = Lists.newArrayList();
+        }
+
+        long start = System.currentTimeMillis();
+        int[] count = new int[1];
+        boolean resultsExhausted = analyzer.analyze("trendingPartial", handle, request, combinedTimeRange, null, solutionLog,
+            (index, value, waveformBuffer) -> {
+                if (waveformBuffer != null) {
+                    TrendingPartial partial = TrendingPartial.of(value, waveformBuffer);
+                    if (partial != null) {
+                        partials[index].add(partial);
+                        count[0]++;
+                    }
+                }
+                return true;
+            });
+        solutionLog.log(MiruSolutionLogLevel.INFO, "Analyzed {} partials in {} ms.", count[0], (System.currentTimeMillis() - start));
+
+        Map<String, List<TrendingPartial>> resultPartials = Maps.newHashMap();
+        for (int i = 0; i < partials.length; i++) {
+            resultPartials.put(scoreSets.get(i).key, partials[i]);
+        }
+        return new MiruPartitionResponse<>(new TrendingPartialAnswer(resultPartials, resultsExhausted), solutionLog.asList());
+    }
+
+    @Override
+    public MiruPartitionResponse<TrendingPartialAnswer> askRemote(MiruHost host,
+        MiruPartitionId partitionId,
+        Optional<TrendingReport> report) throws MiruQueryServiceException {
+        return remotePartition.askRemote(host, partitionId, request, report);
+    }
+
+    @Override
+    public Optional<TrendingReport> createReport(Optional<TrendingPartialAnswer> answer) {
+        Optional<TrendingReport> report = Optional.absent();
+        if (answer.isPresent()) {
+            report = Optional.of(new TrendingReport(null));
+        }
+        return report;
+    }
+
+    @Override
+    public MiruRequest<TrendingQuery> getCacheableRequest() {
+        return request;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.jivesoftware.os.miru.reco.plugins.trending;
+
+import com.google.common.base.Optional;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruQueryServiceException;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRemotePartitionReader;
+import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
+import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
+import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartitionReader;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
+import com.jivesoftware.os.mlogger.core.EndPointMetrics;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+
+/**
+ *
+ */
+public class TrendingPartialRemotePartition implements MiruRemotePartition<TrendingQuery, TrendingPartialAnswer, TrendingReport> {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+    private static final EndPointMetrics endPointMetrics = new EndPointMetrics("process", LOG);
+
+    private final MiruRemotePartitionReader remotePartitionReader;
+    private final MiruBatchedRemotePartitionReader batchedRemotePartitionReader;
+
+    public TrendingPartialRemotePartition(MiruRemotePartitionReader remotePartitionReader) {
+        this(remotePartitionReader, null);
+    }
+
+    public TrendingPartialRemotePartition(MiruRemotePartitionReader remotePartitionReader, MiruBatchedRemotePartitionReader batchedRemotePartitionReader) {
+        this.remotePartitionReader = remotePartitionReader;
+        this.batchedRemotePartitionReader = batchedRemotePartitionReader;
+    }
+
+    private String getEndpoint(MiruPartitionId partitionId) {
+        return TrendingConstants.TRENDING_PREFIX + TrendingConstants.PARTIAL_QUERY_ENDPOINT + "/" + partitionId.getId();
+    }
+
+    private String getBatchEndpoint() {
+        return TrendingConstants.TRENDING_PREFIX + TrendingConstants.BATCH_ENDPOINT + TrendingConstants.PARTIAL_QUERY_ENDPOINT;
+    }
+
+    @Override
+    public MiruPartitionResponse<TrendingPartialAnswer> askRemote(MiruHost host,
+        MiruPartitionId partitionId,
+        MiruRequest<TrendingQuery> request,
+        Optional<TrendingReport> report) throws MiruQueryServiceException {
+        if (batchedRemotePartitionReader != null) {
+            return batchedRemotePartitionReader.read("trendingPartial",
+                host,
+                getBatchEndpoint(),
+                partitionId,
+                request,
+                report,
+                endPointMetrics,
+                TrendingPartialAnswer.EMPTY_RESULTS);
+        }
+        return remotePartitionReader.read("trendingPartial",
+            host,
+            getEndpoint(partitionId),
+            request,
+            TrendingPartialAnswer.class,
+            report,
+            endPointMetrics,
+            TrendingPartialAnswer.EMPTY_RESULTS);
+    }
+
+}
@@ -1,15 +1,19 @@
 package com.jivesoftware.os.miru.reco.plugins.trending;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.jivesoftware.os.miru.analytics.plugins.analytics.Analytics;
 import com.jivesoftware.os.miru.plugin.Miru;
 import com.jivesoftware.os.miru.plugin.MiruProvider;
 import com.jivesoftware.os.miru.plugin.plugin.MiruEndpointInjectable;
 import com.jivesoftware.os.miru.plugin.plugin.MiruPlugin;
 import com.jivesoftware.os.miru.plugin.solution.FstRemotePartitionReader;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRemotePartitionReader;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import com.jivesoftware.os.miru.reco.plugins.distincts.Distincts;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.Executors;
 
 /**
  *
@@ -34,7 +38,20 @@ public class TrendingPlugin implements MiruPlugin<TrendingEndpoints, TrendingInj
 
     @Override
     public Collection<MiruRemotePartition<?, ?, ?>> getRemotePartitions(MiruProvider<? extends Miru> miruProvider) {
-        return Collections.singletonList(new TrendingRemotePartition(
-            new FstRemotePartitionReader(miruProvider.getReaderHttpClient(), miruProvider.getReaderStrategyCache(), false)));
+        FstRemotePartitionReader remotePartitionReader = new FstRemotePartitionReader(miruProvider.getReaderHttpClient(),
+            miruProvider.getReaderStrategyCache(),
+            false);
+        TrendingPluginConfig config = miruProvider.getConfig(TrendingPluginConfig.class);
+        MiruBatchedRemotePartitionReader batchedRemotePartitionReader = null;
+        if (config.getBatchedRemoteReadEnabled()) {
+            batchedRemotePartitionReader = new MiruBatchedRemotePartitionReader(miruProvider.getReaderHttpClient(),
+                miruProvider.getReaderStrategyCache(),
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("trending-batch-%d").setDaemon(true).build()),
+                miruProvider.allocateThreadPool("trending-batch-stream", config.getBatchedRemoteReadThreads()),
+                config.getBatchedRemoteReadWindowMillis(),
+                config.getBatchedRemoteReadMaxPartitions());
+        }
+        return Arrays.asList(new TrendingRemotePartition(remotePartitionReader, batchedRemotePartitionReader),
+            new TrendingPartialRemotePartition(remotePartitionReader, batchedRemotePartitionReader));
     }
 }
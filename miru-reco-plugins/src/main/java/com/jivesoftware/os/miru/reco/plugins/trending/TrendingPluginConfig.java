@@ -1,7 +1,9 @@
 package com.jivesoftware.os.miru.reco.plugins.trending;
 
 import org.merlin.config.Config;
+import org.merlin.config.defaults.BooleanDefault;
 import org.merlin.config.defaults.IntDefault;
+import org.merlin.config.defaults.LongDefault;
 
 /**
  *
@@ -10,4 +12,19 @@ public interface TrendingPluginConfig extends Config {
 
     @IntDefault(100)
     int getGatherDistinctsBatchSize();
+
+    @BooleanDefault(false)
+    boolean getPushdownScoringEnabled();
+
+    @BooleanDefault(false)
+    boolean getBatchedRemoteReadEnabled();
+
+    @LongDefault(2)
+    long getBatchedRemoteReadWindowMillis();
+
+    @IntDefault(64)
+    int getBatchedRemoteReadMaxPartitions();
+
+    @IntDefault(64)
+    int getBatchedRemoteReadThreads();
 }
@@ -3,23 +3,11 @@ package com.jivesoftware.os.miru.reco.plugins.trending;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
-import com.jivesoftware.os.filer.io.api.StackBuffer;
-import com.jivesoftware.os.miru.analytics.plugins.analytics.Analytics;
 import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsAnswer;
 import com.jivesoftware.os.miru.api.MiruHost;
 import com.jivesoftware.os.miru.api.MiruQueryServiceException;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
-import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
-import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
-import com.jivesoftware.os.miru.api.base.MiruTermId;
-import com.jivesoftware.os.miru.api.field.MiruFieldType;
 import com.jivesoftware.os.miru.api.query.filter.MiruValue;
-import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
-import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
-import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
-import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
-import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
@@ -29,36 +17,33 @@ import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
 import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
 import com.jivesoftware.os.miru.plugin.solution.Question;
 import com.jivesoftware.os.miru.plugin.solution.Waveform;
-import com.jivesoftware.os.miru.reco.plugins.distincts.Distincts;
-import com.jivesoftware.os.miru.reco.plugins.distincts.DistinctsQuery;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
  *
  */
 public class TrendingQuestion implements Question<TrendingQuery, AnalyticsAnswer, TrendingReport> {
 
-    private final Distincts distincts;
-    private final Analytics analytics;
-    private final int gatherDistinctsBatchSize;
+    private final TrendingAnalyzer analyzer;
     private final MiruRequest<TrendingQuery> request;
     private final MiruTimeRange combinedTimeRange;
+    private final List<MiruValue> retainValues;
     private final MiruRemotePartition<TrendingQuery, AnalyticsAnswer, TrendingReport> remotePartition;
 
-    public TrendingQuestion(Distincts distincts,
-        Analytics analytics,
-        int gatherDistinctsBatchSize,
+    /**
+     * @param retainValues the only terms for which waveforms are gathered, or null to gather terms using the query's distincts
+     */
+    public TrendingQuestion(TrendingAnalyzer analyzer,
         MiruTimeRange combinedTimeRange,
         MiruRequest<TrendingQuery> request,
+        List<MiruValue> retainValues,
         MiruRemotePartition<TrendingQuery, AnalyticsAnswer, TrendingReport> remotePartition) {
-        this.distincts = distincts;
-        this.analytics = analytics;
-        this.gatherDistinctsBatchSize = gatherDistinctsBatchSize;
+        this.analyzer = analyzer;
         this.combinedTimeRange = combinedTimeRange;
         this.request = request;
+        this.retainValues = retainValues;
         this.remotePartition = remotePartition;
     }
 
@@ -67,16 +52,6 @@ public class TrendingQuestion implements Question<TrendingQuery, AnalyticsAnswer
         Optional<TrendingReport> report) throws Exception {
 
         MiruSolutionLog solutionLog = new MiruSolutionLog(request.logLevel);
-        MiruRequestContext<BM, IBM, ? extends MiruSipCursor<?>> context = handle.getRequestContext();
-        MiruBitmaps<BM, IBM> bitmaps = handle.getBitmaps();
-
-        MiruSchema schema = context.getSchema();
-        int fieldId = schema.getFieldId(request.query.aggregateCountAroundField);
-        MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(fieldId);
-        MiruFieldIndex<BM, IBM> primaryFieldIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
-        StackBuffer stackBuffer = new StackBuffer();
-
-        MiruTermComposer termComposer = context.getTermComposer();
 
         long upperTime = combinedTimeRange.largestTimestamp;
         long lowerTime = combinedTimeRange.smallestTimestamp;
@@ -88,84 +63,21 @@ public class TrendingQuestion implements Question<TrendingQuery, AnalyticsAnswer
             return new MiruPartitionResponse<>(new AnalyticsAnswer(emptyResults, true), solutionLog.asList());
         }
 
-        long start = System.currentTimeMillis();
-        MiruTermId[] termIds;
-
-        Set<MiruTermId> andTerms = null;
-        for (List<DistinctsQuery> distinctsQueries : request.query.distinctQueries) {
-            Set<MiruTermId> orTerms = null;
-            for (DistinctsQuery distinctsQuery : distinctsQueries) {
-                Set<MiruTermId> distinctTerms = Sets.newHashSet();
-                distincts.gatherDirect("trending", bitmaps, handle.getRequestContext(), distinctsQuery, gatherDistinctsBatchSize, solutionLog,
-                    termId -> {
-                        distinctTerms.add(termId);
-                        return true;
-                    });
-
-                Set<MiruTermId> recomposed = distincts.recomposeDistincts(schema, fieldDefinition, stackBuffer, termComposer, distinctTerms, distinctsQuery);
-                if (orTerms == null) {
-                    orTerms = recomposed;
-                } else {
-                    orTerms.addAll(recomposed);
-                }
-            }
-
-            if (orTerms != null) {
-                if (andTerms == null) {
-                    andTerms = orTerms;
-                } else {
-                    andTerms.retainAll(orTerms);
-                }
-            }
-        }
-
-        if (andTerms != null) {
-            termIds = andTerms.toArray(new MiruTermId[andTerms.size()]);
-        } else {
-            termIds = new MiruTermId[0];
-        }
-
-        solutionLog.log(MiruSolutionLogLevel.INFO, "Gathered {} distincts for {} queries in {} ms.",
-            termIds.length, request.query.distinctQueries.size(), (System.currentTimeMillis() - start));
-
-        start = System.currentTimeMillis();
+        List<MiruValue> values = report.isPresent() && report.get().retainValues != null ? report.get().retainValues : retainValues;
 
         List<TrendingQueryScoreSet> scoreSets = request.query.scoreSets;
-
-        String[] keys = new String[scoreSets.size()];
         @SuppressWarnings("unchecked")
         List<Waveform>[] waveforms = new List[scoreSets.size()];
-        Analytics.AnalyticsScoreable[] scoreables = new Analytics.AnalyticsScoreable[scoreSets.size()];
-
         for (int i = 0; i < scoreSets.size(); i++) {
-            TrendingQueryScoreSet scoreSet = scoreSets.get(i);
-            keys[i] = scoreSet.key;
-            waveforms[i] = Lists.newArrayListWithExpectedSize(termIds.length);
-            scoreables[i] = new Analytics.AnalyticsScoreable(scoreSet.timeRange, scoreSet.divideTimeRangeIntoNSegments);
+            waveforms[i] = Lists.newArrayList();
         }
 
+        long start = System.currentTimeMillis();
         int[] count = new int[1];
-        boolean resultsExhausted = analytics.analyze("trending",
-            solutionLog,
-            handle,
-            context,
-            request.authzExpression,
-            combinedTimeRange,
-            request.query.constraintsFilter,
-            scoreables,
-            stackBuffer,
-            (Analytics.ToAnalyze<MiruTermId, BM> toAnalyze) -> {
-                bitmaps.multiTx(
-                    (tx, stackBuffer1) -> primaryFieldIndex.multiTxIndex("trending", fieldId, termIds, -1, stackBuffer1, tx),
-                    (index, lastId, bitmap) -> toAnalyze.analyze(termIds[index], bitmap),
-                    stackBuffer);
-                return true;
-            },
-            (int index, MiruTermId termId, long[] waveformBuffer) -> {
+        boolean resultsExhausted = analyzer.analyze("trending", handle, request, combinedTimeRange, values, solutionLog,
+            (index, value, waveformBuffer) -> {
                 if (waveformBuffer != null) {
-                    Waveform waveform = Waveform.compressed(new MiruValue(termComposer.decompose(schema, fieldDefinition, stackBuffer, termId)),
-                        waveformBuffer);
-                    waveforms[index].add(waveform);
+                    waveforms[index].add(Waveform.compressed(value, waveformBuffer));
                     count[0]++;
                 }
                 return true;
@@ -174,7 +86,7 @@ public class TrendingQuestion implements Question<TrendingQuery, AnalyticsAnswer
 
         Map<String, List<Waveform>> resultWaveforms = Maps.newHashMap();
         for (int i = 0; i < waveforms.length; i++) {
-            resultWaveforms.put(keys[i], waveforms[i]);
+            resultWaveforms.put(scoreSets.get(i).key, waveforms[i]);
         }
         AnalyticsAnswer result = new AnalyticsAnswer(resultWaveforms, resultsExhausted);
         return new MiruPartitionResponse<>(result, solutionLog.asList());
@@ -190,10 +102,16 @@ public class TrendingQuestion implements Question<TrendingQuery, AnalyticsAnswer
     @Override
     public Optional<TrendingReport> createReport(Optional<AnalyticsAnswer> answer) {
         Optional<TrendingReport> report = Optional.absent();
-        if (answer.isPresent()) {
-            report = Optional.of(new TrendingReport());
+        if (answer.isPresent() || retainValues != null) {
+            report = Optional.of(new TrendingReport(retainValues));
         }
         return report;
     }
 
+    @Override
+    public MiruRequest<TrendingQuery> getCacheableRequest() {
+        // retained values are not part of the request
+        return retainValues == null ? request : null;
+    }
+
 }
@@ -5,6 +5,7 @@ import com.jivesoftware.os.miru.analytics.plugins.analytics.AnalyticsAnswer;
 import com.jivesoftware.os.miru.api.MiruHost;
 import com.jivesoftware.os.miru.api.MiruQueryServiceException;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.solution.MiruBatchedRemotePartitionReader;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartition;
 import com.jivesoftware.os.miru.plugin.solution.MiruRemotePartitionReader;
@@ -22,20 +23,40 @@ public class TrendingRemotePartition implements MiruRemotePartition<TrendingQuer
     private static final EndPointMetrics endPointMetrics = new EndPointMetrics("process", LOG);
 
     private final MiruRemotePartitionReader remotePartitionReader;
+    private final MiruBatchedRemotePartitionReader batchedRemotePartitionReader;
 
     public TrendingRemotePartition(MiruRemotePartitionReader remotePartitionReader) {
+        this(remotePartitionReader, null);
+    }
+
+    public TrendingRemotePartition(MiruRemotePartitionReader remotePartitionReader, MiruBatchedRemotePartitionReader batchedRemotePartitionReader) {
         this.remotePartitionReader = remotePartitionReader;
+        this.batchedRemotePartitionReader = batchedRemotePartitionReader;
     }
 
     private String getEndpoint(MiruPartitionId partitionId) {
         return TrendingConstants.TRENDING_PREFIX + TrendingConstants.CUSTOM_QUERY_ENDPOINT + "/" + partitionId.getId();
     }
 
+    private String getBatchEndpoint() {
+        return TrendingConstants.TRENDING_PREFIX + TrendingConstants.BATCH_ENDPOINT + TrendingConstants.CUSTOM_QUERY_ENDPOINT;
+    }
+
     @Override
     public MiruPartitionResponse<AnalyticsAnswer> askRemote(MiruHost host,
         MiruPartitionId partitionId,
         MiruRequest<TrendingQuery> request,
         Optional<TrendingReport> report) throws MiruQueryServiceException {
+        if (batchedRemotePartitionReader != null) {
+            return batchedRemotePartitionReader.read("trending",
+                host,
+                getBatchEndpoint(),
+                partitionId,
+                request,
+                report,
+                endPointMetrics,
+                AnalyticsAnswer.EMPTY_RESULTS);
+        }
         return remotePartitionReader.read("trending",
             host,
             getEndpoint(partitionId),
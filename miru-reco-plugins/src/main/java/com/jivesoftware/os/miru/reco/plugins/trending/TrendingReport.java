@@ -1,19 +1,27 @@
 package com.jivesoftware.os.miru.reco.plugins.trending;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.jivesoftware.os.miru.api.query.filter.MiruValue;
 import java.io.Serializable;
+import java.util.List;
 
 /**
  * Requires mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
  */
 public class TrendingReport implements Serializable {
 
+    public final List<MiruValue> retainValues; // nullable, restricts waveforms to these terms
+
     @JsonCreator
-    public TrendingReport() {
+    public TrendingReport(@JsonProperty("retainValues") List<MiruValue> retainValues) {
+        this.retainValues = retainValues;
     }
 
     @Override
     public String toString() {
-        return "TrendingReport{}";
+        return "TrendingReport{" +
+            "retainValues=" + retainValues +
+            '}';
     }
 }
@@ -0,0 +1,131 @@
+package com.jivesoftware.os.miru.service.index;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Interners;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
+import com.jivesoftware.os.miru.bitmaps.roaring6.MiruBitmapsRoaring;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityInternExtern;
+import com.jivesoftware.os.miru.service.index.auth.MiruAuthzCache;
+import com.jivesoftware.os.miru.service.index.auth.MiruAuthzUtils;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.roaringbitmap.RoaringBitmap;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+
+public class MiruAuthzCacheTest {
+
+    private final MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
+    private final MiruPartitionCoord coord = new MiruPartitionCoord(new MiruTenantId(new byte[] { 1 }), MiruPartitionId.of(1), new MiruHost("logicalName"));
+    private final MiruActivityInternExtern interner = new MiruActivityInternExtern(null, null, Interners.<String>newWeakInterner(), null);
+
+    @Test
+    public void testIncrementalSetAppliesDelta() throws Exception {
+        Map<String, RoaringBitmap> index = Maps.newHashMap();
+        index.put("a", RoaringBitmap.bitmapOf(1, 2));
+        index.put("b", RoaringBitmap.bitmapOf(3));
+        AtomicInteger retrieved = new AtomicInteger();
+
+        MiruAuthzCache<RoaringBitmap, RoaringBitmap> cache = new MiruAuthzCache<>(bitmaps, coord, 100, 0, true, interner, new MiruAuthzUtils<>(bitmaps));
+        MiruAuthzExpression expression = new MiruAuthzExpression(ImmutableList.of("a", "b"));
+        MiruAuthzUtils.IndexRetriever<RoaringBitmap> retriever = authz -> {
+            retrieved.incrementAndGet();
+            return index.get(authz);
+        };
+
+        RoaringBitmap first = cache.getOrCompose(expression, retriever);
+        assertEquals(first, RoaringBitmap.bitmapOf(1, 2, 3));
+        assertEquals(retrieved.get(), 2);
+
+        index.get("a").add(4);
+        cache.set("a", 4);
+        RoaringBitmap second = cache.getOrCompose(expression, retriever);
+        assertEquals(second, RoaringBitmap.bitmapOf(1, 2, 3, 4));
+        assertEquals(retrieved.get(), 2, "delta should not recompose");
+        assertEquals(first, RoaringBitmap.bitmapOf(1, 2, 3), "handed out bitmap should not be mutated");
+        assertNotSame(first, second);
+
+        index.get("b").remove(3);
+        cache.increment("b");
+        assertEquals(cache.getOrCompose(expression, retriever), RoaringBitmap.bitmapOf(1, 2, 4));
+        assertEquals(retrieved.get(), 4, "remove should recompose");
+    }
+
+    @Test
+    public void testConcurrentComposeRegistersOnce() throws Exception {
+        Map<String, RoaringBitmap> index = Maps.newHashMap();
+        index.put("a", RoaringBitmap.bitmapOf(1));
+        index.put("b", RoaringBitmap.bitmapOf(2));
+
+        MiruAuthzCache<RoaringBitmap, RoaringBitmap> cache = new MiruAuthzCache<>(bitmaps, coord, 100, 0, true, interner, new MiruAuthzUtils<>(bitmaps));
+        MiruAuthzExpression expression = new MiruAuthzExpression(ImmutableList.of("a", "b"));
+        int numThreads = 4;
+        CountDownLatch composing = new CountDownLatch(numThreads);
+        MiruAuthzUtils.IndexRetriever<RoaringBitmap> retriever = authz -> {
+            if (authz.equals("a")) {
+                // hold every thread inside its compose until all of them have missed
+                composing.countDown();
+                composing.await(10, TimeUnit.SECONDS);
+            }
+            return index.get(authz);
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<RoaringBitmap>> futures = Lists.newArrayList();
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(() -> cache.getOrCompose(expression, retriever)));
+            }
+            for (Future<RoaringBitmap> future : futures) {
+                assertEquals(future.get(), RoaringBitmap.bitmapOf(1, 2));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(cache.registeredCount(), 2, "only the cached composite should stay registered for each authz value");
+
+        index.get("a").add(3);
+        cache.set("a", 3);
+        assertEquals(cache.getOrCompose(expression, retriever), RoaringBitmap.bitmapOf(1, 2, 3));
+        assertEquals(cache.registeredCount(), 2);
+    }
+
+    @Test
+    public void testVersionedSetRecomposes() throws Exception {
+        Map<String, RoaringBitmap> index = Maps.newHashMap();
+        index.put("a", RoaringBitmap.bitmapOf(1));
+        AtomicInteger retrieved = new AtomicInteger();
+
+        MiruAuthzCache<RoaringBitmap, RoaringBitmap> cache = new MiruAuthzCache<>(bitmaps, coord, 100, 1024 * 1024, false, interner,
+            new MiruAuthzUtils<>(bitmaps));
+        MiruAuthzExpression expression = new MiruAuthzExpression(ImmutableList.of("a"));
+        MiruAuthzUtils.IndexRetriever<RoaringBitmap> retriever = authz -> {
+            retrieved.incrementAndGet();
+            return index.get(authz);
+        };
+
+        assertEquals(cache.getOrCompose(expression, retriever), RoaringBitmap.bitmapOf(1));
+        assertEquals(cache.getOrCompose(expression, retriever), RoaringBitmap.bitmapOf(1));
+        assertEquals(retrieved.get(), 1);
+
+        index.get("a").add(2);
+        cache.set("a", 2);
+        assertEquals(cache.getOrCompose(expression, retriever), RoaringBitmap.bitmapOf(1, 2));
+        assertEquals(retrieved.get(), 2);
+    }
+}
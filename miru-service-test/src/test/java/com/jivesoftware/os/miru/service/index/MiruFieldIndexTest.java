@@ -9,6 +9,7 @@ import com.jivesoftware.os.miru.api.MiruBackingStorage;
 import com.jivesoftware.os.miru.api.MiruHost;
 import com.jivesoftware.os.miru.api.MiruPartitionCoord;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
 import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.api.base.MiruTermId;
@@ -124,6 +125,61 @@ public class MiruFieldIndexTest {
         assertTrue(found.contains(new MiruTermId(key)));
     }
 
+    @Test(dataProvider = "miruLabIndexDataProvider")
+    public <BM extends IBM, IBM> void testMaxCardinality(MiruBitmaps<BM, IBM> bitmaps,
+        MiruSchema schema,
+        MiruFieldIndex<BM, IBM> miruFieldIndex,
+        MiruBackingStorage miruBackingStorage) throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        MiruFieldDefinition fieldDefinition = new MiruFieldDefinition(0, "text", MiruFieldDefinition.Type.multiTermCardinality,
+            MiruFieldDefinition.Prefix.NONE);
+        MiruTermId termId = new MiruTermId("term1".getBytes());
+
+        assertEquals(miruFieldIndex.getMaxCardinality(fieldDefinition, termId, stackBuffer), -1L);
+
+        miruFieldIndex.set(fieldDefinition, termId, new int[] { 1, 2 }, new long[] { 3, 7 }, stackBuffer);
+        assertEquals(miruFieldIndex.getMaxCardinality(fieldDefinition, termId, stackBuffer), 7L);
+
+        miruFieldIndex.set(fieldDefinition, termId, new int[] { 3 }, new long[] { 5 }, stackBuffer);
+        assertEquals(miruFieldIndex.getMaxCardinality(fieldDefinition, termId, stackBuffer), 7L);
+
+        miruFieldIndex.setIfEmpty(fieldDefinition, termId, 4, 9, stackBuffer);
+        assertEquals(miruFieldIndex.getMaxCardinality(fieldDefinition, termId, stackBuffer), 9L);
+        assertEquals(miruFieldIndex.getGlobalCardinality(fieldDefinition, termId, stackBuffer), 24L);
+
+        // the bound is never lowered by removals
+        miruFieldIndex.remove(fieldDefinition, termId, new int[] { 4 }, stackBuffer);
+        assertEquals(miruFieldIndex.getMaxCardinality(fieldDefinition, termId, stackBuffer), 9L);
+        assertEquals(miruFieldIndex.getGlobalCardinality(fieldDefinition, termId, stackBuffer), 15L);
+
+        // every id's cardinality is within the bound
+        long[] cardinalities = miruFieldIndex.getCardinalities(fieldDefinition, termId, new int[] { 1, 2, 3, 4 }, stackBuffer);
+        for (long cardinality : cardinalities) {
+            assertTrue(cardinality <= miruFieldIndex.getMaxCardinality(fieldDefinition, termId, stackBuffer));
+        }
+    }
+
+    @Test(dataProvider = "miruLabIndexDataProvider")
+    public <BM extends IBM, IBM> void testMaxCardinalityUnknownWithoutCardinalityFeature(MiruBitmaps<BM, IBM> bitmaps,
+        MiruSchema schema,
+        MiruFieldIndex<BM, IBM> miruFieldIndex,
+        MiruBackingStorage miruBackingStorage) throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(0);
+        MiruTermId termId = new MiruTermId("term1".getBytes());
+
+        miruFieldIndex.set(fieldDefinition, termId, new int[] { 1, 2 }, null, stackBuffer);
+        assertEquals(miruFieldIndex.getMaxCardinality(fieldDefinition, termId, stackBuffer), -1L);
+    }
+
+    @DataProvider(name = "miruLabIndexDataProvider")
+    public Object[][] miruLabIndexDataProvider() throws Exception {
+        MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
+        MiruPartitionCoord coord = new MiruPartitionCoord(new MiruTenantId("test".getBytes()), MiruPartitionId.of(0), new MiruHost("logicalName"));
+
+        return buildIndexDataProvider(bitmaps, coord, true);
+    }
+
     @DataProvider(name = "miruIndexDataProvider")
     public Object[][] miruIndexDataProvider() throws Exception {
         MiruBitmapsRoaring bitmaps = new MiruBitmapsRoaring();
@@ -0,0 +1,213 @@
+package com.jivesoftware.os.miru.service.index.lab;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.jivesoftware.os.filer.io.api.StackBuffer;
+import com.jivesoftware.os.jive.utils.ordered.id.ConstantWriterIdProvider;
+import com.jivesoftware.os.jive.utils.ordered.id.OrderIdProviderImpl;
+import com.jivesoftware.os.lab.api.ValueIndex;
+import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
+import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
+import com.jivesoftware.os.miru.plugin.index.MiruInternalActivity;
+import com.jivesoftware.os.miru.service.IndexTestUtil;
+import com.jivesoftware.os.miru.service.stream.IntTermIdsKeyValueMarshaller;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class LabActivityIndexTest {
+
+    private final MiruTenantId tenantId = new MiruTenantId("test".getBytes());
+    private final MiruSchema schema = new MiruSchema.Builder("test", 1)
+        .setFieldDefinitions(new MiruFieldDefinition[] {
+            new MiruFieldDefinition(0, "a", MiruFieldDefinition.Type.singleTerm, MiruFieldDefinition.Prefix.NONE),
+            new MiruFieldDefinition(1, "b", MiruFieldDefinition.Type.singleTermNonStored, MiruFieldDefinition.Prefix.NONE),
+            new MiruFieldDefinition(2, "c", MiruFieldDefinition.Type.multiTerm, MiruFieldDefinition.Prefix.NONE)
+        })
+        .build();
+
+    @Test
+    public void testCompactReadWriteRestore() throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        File columnarFile = new File(Files.createTempDir(), "columnarActivity");
+        LabActivityIndex activityIndex = buildActivityIndex(columnarFile);
+
+        List<MiruActivityAndId<MiruInternalActivity>> activityAndIds = Lists.newArrayList();
+        for (int id = 0; id < 100; id++) {
+            activityAndIds.add(activityAndId(id, "v0"));
+        }
+        activityIndex.setAndReady(schema, activityAndIds, stackBuffer);
+
+        activityIndex.compactColumnar(schema, 1L);
+        assertTrue(columnarFile.exists());
+        for (int id = 0; id < 100; id++) {
+            assertTerms(activityIndex, id, "v0", stackBuffer);
+        }
+
+        activityIndex.setAndReady(schema, Lists.newArrayList(activityAndId(5, "v1"), activityAndId(100, "v1")), stackBuffer);
+        assertFalse(columnarFile.exists());
+        for (int id = 0; id <= 100; id++) {
+            assertTerms(activityIndex, id, id == 5 || id == 100 ? "v1" : "v0", stackBuffer);
+        }
+
+        activityIndex.compactColumnar(schema, 2L);
+        assertTrue(columnarFile.exists());
+        activityIndex.restoreTermStorage();
+        assertFalse(columnarFile.exists());
+        for (int id = 0; id <= 100; id++) {
+            assertTerms(activityIndex, id, id == 5 || id == 100 ? "v1" : "v0", stackBuffer);
+        }
+    }
+
+    @Test
+    public void testConcurrentWritesSurviveCompaction() throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        File columnarFile = new File(Files.createTempDir(), "columnarActivity");
+        LabActivityIndex activityIndex = buildActivityIndex(columnarFile);
+
+        int numIds = 50;
+        List<MiruActivityAndId<MiruInternalActivity>> activityAndIds = Lists.newArrayList();
+        for (int id = 0; id < numIds; id++) {
+            activityAndIds.add(activityAndId(id, "v0"));
+        }
+        activityIndex.setAndReady(schema, activityAndIds, stackBuffer);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> compactor = executor.submit(() -> {
+                long version = 1L;
+                while (running.get()) {
+                    activityIndex.compactColumnar(schema, version++);
+                }
+                return null;
+            });
+            Future<?> writer = executor.submit(() -> {
+                StackBuffer writerBuffer = new StackBuffer();
+                for (int round = 1; round <= 20; round++) {
+                    for (int id = 0; id < numIds; id++) {
+                        activityIndex.set(schema, Collections.singletonList(activityAndId(id, "v" + round)), writerBuffer);
+                    }
+                }
+                return null;
+            });
+            writer.get();
+            running.set(false);
+            compactor.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (int id = 0; id < numIds; id++) {
+            assertTerms(activityIndex, id, "v20", stackBuffer);
+        }
+        activityIndex.restoreTermStorage();
+        for (int id = 0; id < numIds; id++) {
+            assertTerms(activityIndex, id, "v20", stackBuffer);
+        }
+    }
+
+    @Test
+    public void testConcurrentReadsSurviveCompaction() throws Exception {
+        StackBuffer stackBuffer = new StackBuffer();
+        File columnarFile = new File(Files.createTempDir(), "columnarActivity");
+        LabActivityIndex activityIndex = buildActivityIndex(columnarFile);
+
+        int numIds = 200;
+        List<MiruActivityAndId<MiruInternalActivity>> activityAndIds = Lists.newArrayList();
+        int[] indexes = new int[numIds];
+        for (int id = 0; id < numIds; id++) {
+            activityAndIds.add(activityAndId(id, "v0"));
+            indexes[id] = id;
+        }
+        activityIndex.setAndReady(schema, activityAndIds, stackBuffer);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> compactor = executor.submit(() -> {
+                for (long version = 1L; version <= 20L; version++) {
+                    activityIndex.compactColumnar(schema, version);
+                    activityIndex.restoreTermStorage();
+                }
+                running.set(false);
+                return null;
+            });
+            List<Future<?>> readers = Lists.newArrayList();
+            for (int i = 0; i < 2; i++) {
+                readers.add(executor.submit(() -> {
+                    StackBuffer readerBuffer = new StackBuffer();
+                    MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(2);
+                    int reads = 0;
+                    while (running.get() || reads == 0) {
+                        MiruTermId[][] got = activityIndex.getAll("test", indexes, fieldDefinition, readerBuffer);
+                        for (int id = 0; id < numIds; id++) {
+                            assertEquals(got[id], new MiruTermId[] { term("c1", id, "v0"), term("c2", id, "v0") }, "id:" + id);
+                        }
+                        reads++;
+                    }
+                    return null;
+                }));
+            }
+            compactor.get();
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void assertTerms(LabActivityIndex activityIndex, int id, String value, StackBuffer stackBuffer) throws Exception {
+        assertEquals(activityIndex.get("test", id, schema.getFieldDefinition(0), stackBuffer), new MiruTermId[] { term("a", id, value) });
+        assertEquals(activityIndex.get("test", id, schema.getFieldDefinition(1), stackBuffer), null);
+        assertEquals(activityIndex.get("test", id, schema.getFieldDefinition(2), stackBuffer),
+            new MiruTermId[] { term("c1", id, value), term("c2", id, value) });
+    }
+
+    private MiruActivityAndId<MiruInternalActivity> activityAndId(int id, String value) {
+        MiruTermId[][] fieldsValues = new MiruTermId[][] {
+            { term("a", id, value) },
+            { term("b", id, value) },
+            { term("c1", id, value), term("c2", id, value) }
+        };
+        MiruInternalActivity activity = new MiruInternalActivity.Builder(schema, tenantId, id, id, false, new String[0])
+            .putFieldsValues(fieldsValues)
+            .build();
+        return new MiruActivityAndId<>(activity, id, id);
+    }
+
+    private static MiruTermId term(String field, int id, String value) {
+        return new MiruTermId((field + "-" + id + "-" + value).getBytes());
+    }
+
+    @SuppressWarnings("unchecked")
+    private LabActivityIndex buildActivityIndex(File columnarFile) throws Exception {
+        return new LabActivityIndex(new OrderIdProviderImpl(new ConstantWriterIdProvider(1)),
+            false,
+            false,
+            IndexTestUtil.buildValueIndex("timeAndVersion"),
+            new IntTermIdsKeyValueMarshaller(),
+            IndexTestUtil.buildValueIndex("meta"),
+            "lastId".getBytes(),
+            new ValueIndex[] { IndexTestUtil.buildValueIndex("terms") },
+            columnarFile,
+            null,
+            false);
+    }
+}
@@ -0,0 +1,85 @@
+package com.jivesoftware.os.miru.service.index.lab;
+
+import com.google.common.io.Files;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import java.io.File;
+import java.util.Random;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class LabColumnarActivityStoreTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(1234);
+        int lastId = 1_000;
+        MiruTermId[][][] expected = new MiruTermId[3][lastId + 1][];
+        LabColumnarActivityStore.Builder builder = new LabColumnarActivityStore.Builder(lastId, 3);
+        builder.field(0);
+        builder.field(2);
+        for (int fieldId : new int[] { 0, 2 }) {
+            for (int id = 0; id <= lastId; id++) {
+                if (random.nextInt(4) == 0) {
+                    continue;
+                }
+                MiruTermId[] termIds = new MiruTermId[1 + random.nextInt(3)];
+                for (int i = 0; i < termIds.length; i++) {
+                    termIds[i] = new MiruTermId(("term" + random.nextInt(50)).getBytes());
+                }
+                expected[fieldId][id] = termIds;
+                builder.add(fieldId, id, termIds);
+            }
+        }
+
+        File file = new File(Files.createTempDir(), "columnarActivity");
+        assertTrue(builder.write(file, 7L) > 0);
+        assertNull(LabColumnarActivityStore.open(file, 8L));
+
+        LabColumnarActivityStore store = LabColumnarActivityStore.open(file, 7L);
+        assertEquals(store.lastId(), lastId);
+        assertEquals(store.fieldCount(), 3);
+        assertTrue(store.hasField(0));
+        assertFalse(store.hasField(1));
+        assertTrue(store.hasField(2));
+        for (int fieldId : new int[] { 0, 2 }) {
+            for (int id = 0; id <= lastId; id++) {
+                MiruTermId[] got = store.get(fieldId, id);
+                assertEquals(store.has(fieldId, id), expected[fieldId][id] != null);
+                if (expected[fieldId][id] == null) {
+                    assertNull(got);
+                } else {
+                    assertEquals(got, expected[fieldId][id]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSharesDecodedTerms() throws Exception {
+        LabColumnarActivityStore.Builder builder = new LabColumnarActivityStore.Builder(1, 1);
+        builder.field(0);
+        builder.add(0, 0, new MiruTermId[] { new MiruTermId("a".getBytes()) });
+        builder.add(0, 1, new MiruTermId[] { new MiruTermId("a".getBytes()) });
+
+        File file = new File(Files.createTempDir(), "columnarActivity");
+        builder.write(file, 1L);
+        LabColumnarActivityStore store = LabColumnarActivityStore.open(file, 1L);
+        assertSame(store.get(0, 0)[0], store.get(0, 1)[0]);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsDescendingIndexes() throws Exception {
+        LabColumnarActivityStore.Builder builder = new LabColumnarActivityStore.Builder(10, 1);
+        builder.field(0);
+        builder.add(0, 5, new MiruTermId[] { new MiruTermId("a".getBytes()) });
+        builder.add(0, 4, new MiruTermId[] { new MiruTermId("b".getBytes()) });
+    }
+}
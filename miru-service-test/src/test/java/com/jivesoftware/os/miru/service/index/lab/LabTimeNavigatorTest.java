@@ -0,0 +1,157 @@
+package com.jivesoftware.os.miru.service.index.lab;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class LabTimeNavigatorTest {
+
+    @Test
+    public void testCeilingMatchesScan() throws Exception {
+        Random random = new Random(1234);
+        long[] monotonics = monotonics(random, 10_000);
+        LabTimeNavigator navigator = new LabTimeNavigator(Long.MAX_VALUE);
+        navigator.seed(seeding -> {
+            for (int id = 0; id < monotonics.length / 2; id++) {
+                seeding.append(id, monotonics[id]);
+            }
+        });
+        for (int id = monotonics.length / 2; id < monotonics.length; id += 100) {
+            append(navigator, monotonics, id, Math.min(id + 100, monotonics.length));
+        }
+
+        int lastId = monotonics.length - 1;
+        for (int i = 0; i < 10_000; i++) {
+            long timestamp = monotonics[0] - 10 + (long) (random.nextDouble() * (monotonics[lastId] - monotonics[0] + 20));
+            assertEquals(navigator.ceiling(timestamp, lastId), ceiling(monotonics, timestamp));
+        }
+        for (int id = 0; id <= lastId; id++) {
+            assertEquals(navigator.ceiling(monotonics[id], lastId), id);
+        }
+        assertEquals(navigator.ceiling(monotonics[lastId] + 1, lastId - 1), LabTimeNavigator.UNKNOWN);
+    }
+
+    @Test
+    public void testEvictsOldestBlocks() throws Exception {
+        Random random = new Random(1234);
+        long[] monotonics = monotonics(random, 10_000);
+        LabTimeNavigator navigator = new LabTimeNavigator(1_024);
+        navigator.seed(seeding -> {
+            for (int id = 0; id < monotonics.length; id++) {
+                seeding.append(id, monotonics[id]);
+            }
+        });
+        assertTrue(navigator.sizeInBytes() <= 1_024);
+
+        int lastId = monotonics.length - 1;
+        assertEquals(navigator.ceiling(monotonics[0], lastId), LabTimeNavigator.UNKNOWN);
+        assertEquals(navigator.ceiling(monotonics[lastId], lastId), lastId);
+        int hits = 0;
+        for (int id = 0; id <= lastId; id++) {
+            int navigated = navigator.ceiling(monotonics[id], lastId);
+            if (navigated != LabTimeNavigator.UNKNOWN) {
+                assertEquals(navigated, id);
+                hits++;
+            }
+        }
+        assertTrue(hits > 0 && hits < monotonics.length);
+    }
+
+    @Test
+    public void testGapInvalidates() throws Exception {
+        LabTimeNavigator navigator = new LabTimeNavigator(Long.MAX_VALUE);
+        navigator.seed(seeding -> {
+            seeding.append(0, 10);
+            seeding.append(1, 20);
+        });
+        assertEquals(navigator.ceiling(15, 1), 1);
+
+        navigator.append(new int[] { 3 }, new long[] { 30 });
+        assertEquals(navigator.ceiling(15, 3), LabTimeNavigator.UNKNOWN);
+    }
+
+    @Test
+    public void testIgnoresAppendsBeforeSeed() throws Exception {
+        LabTimeNavigator navigator = new LabTimeNavigator(Long.MAX_VALUE);
+        navigator.append(new int[] { 0 }, new long[] { 10 });
+        assertEquals(navigator.ceiling(10, 0), LabTimeNavigator.UNKNOWN);
+
+        navigator.seed(seeding -> seeding.append(0, 10));
+        assertEquals(navigator.ceiling(10, 0), 0);
+        assertEquals(navigator.ceiling(5, 0), 0);
+        assertEquals(navigator.ceiling(11, 0), 1);
+    }
+
+    @Test
+    public void testReadersSeeWholeBatches() throws Exception {
+        Random random = new Random(1234);
+        long[] monotonics = monotonics(random, 100_000);
+        LabTimeNavigator navigator = new LabTimeNavigator(Long.MAX_VALUE);
+        navigator.seed(seeding -> seeding.append(0, monotonics[0]));
+
+        AtomicInteger appendedLastId = new AtomicInteger(0);
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> reader = executor.submit(() -> {
+                Random readRandom = new Random(5678);
+                while (running.get()) {
+                    int lastId = appendedLastId.get();
+                    int id = readRandom.nextInt(lastId + 1);
+                    // lookups never block, and any published batch answers exactly
+                    int navigated = navigator.ceiling(monotonics[id], lastId);
+                    assertEquals(navigated, id);
+                }
+                return null;
+            });
+            for (int id = 1; id < monotonics.length; id += 37) {
+                int toId = Math.min(id + 37, monotonics.length);
+                append(navigator, monotonics, id, toId);
+                appendedLastId.set(toId - 1);
+            }
+            running.set(false);
+            reader.get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void append(LabTimeNavigator navigator, long[] monotonics, int fromId, int toId) {
+        int[] ids = new int[toId - fromId];
+        long[] batch = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = fromId + i;
+            batch[i] = monotonics[fromId + i];
+        }
+        navigator.append(ids, batch);
+    }
+
+    private static long[] monotonics(Random random, int count) {
+        long[] monotonics = new long[count];
+        long monotonic = 1_000_000L;
+        for (int i = 0; i < count; i++) {
+            monotonic += 1 + (random.nextInt(10) == 0 ? random.nextInt(1_000_000) : random.nextInt(100));
+            monotonics[i] = monotonic;
+        }
+        return monotonics;
+    }
+
+    private static int ceiling(long[] monotonics, long timestamp) {
+        for (int id = 0; id < monotonics.length; id++) {
+            if (monotonics[id] >= timestamp) {
+                return id;
+            }
+        }
+        return monotonics.length;
+    }
+}
@@ -208,7 +208,8 @@ public class MiruLocalHostedPartitionTest {
             new MiruIndexValueBits<>(),
             new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
             new MiruIndexLatest<>(),
-            new MiruIndexPairedLatest<>());
+            new MiruIndexPairedLatest<>(),
+            2_500, 48, 48, 8, 8);
         timings = new MiruLocalHostedPartition.Timings(5_000, 5_000, 5_000, 30_000, 3_000, 30_000, 300_000, 60_000);
 
         MiruInterner<MiruIBA> ibaInterner = new MiruInterner<MiruIBA>(true) {
@@ -315,6 +316,9 @@ public class MiruLocalHostedPartitionTest {
             new RCVSSipIndexMarshaller(),
             resourceLocator,
             config.getPartitionAuthzCacheSize(),
+            config.getPartitionAuthzCacheMaxBytes(),
+            config.getPartitionAuthzCacheIncremental(),
+            config.getPartitionFilterCacheMaxBytes(),
             new StripingLocksProvider<>(8),
             new StripingLocksProvider<>(8),
             new StripingLocksProvider<>(8),
@@ -328,6 +332,8 @@ public class MiruLocalHostedPartitionTest {
             true,
             true,
             false,
+            false,
+            1024 * 1024,
             false);
         sipTrackerFactory = new RCVSSipTrackerFactory();
 
@@ -730,6 +736,8 @@ public class MiruLocalHostedPartitionTest {
             true,
             true,
             100,
+            2,
+            1024 * 1024,
             100,
             persistentMergeChits,
             transientMergeChits,
@@ -0,0 +1,41 @@
+package com.jivesoftware.os.miru.service.partition;
+
+import java.util.concurrent.TimeUnit;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class MiruRebuildQueueTest {
+
+    @Test
+    public void testBoundedByBatches() throws Exception {
+        MiruRebuildQueue<String> queue = new MiruRebuildQueue<>(2, Long.MAX_VALUE);
+        assertTrue(queue.offer("a", 1, 0, TimeUnit.MILLISECONDS));
+        assertTrue(queue.offer("b", 1, 0, TimeUnit.MILLISECONDS));
+        assertFalse(queue.offer("c", 1, 10, TimeUnit.MILLISECONDS));
+
+        assertEquals(queue.poll(0, TimeUnit.MILLISECONDS), "a");
+        assertTrue(queue.offer("c", 1, 0, TimeUnit.MILLISECONDS));
+        assertEquals(queue.poll(0, TimeUnit.MILLISECONDS), "b");
+        assertEquals(queue.poll(0, TimeUnit.MILLISECONDS), "c");
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testBoundedByBytes() throws Exception {
+        MiruRebuildQueue<String> queue = new MiruRebuildQueue<>(10, 100);
+        assertTrue(queue.offer("a", 60, 0, TimeUnit.MILLISECONDS));
+        assertFalse(queue.offer("b", 60, 10, TimeUnit.MILLISECONDS));
+        assertEquals(queue.sizeInBytes(), 60);
+
+        assertEquals(queue.poll(0, TimeUnit.MILLISECONDS), "a");
+        assertTrue(queue.isEmpty());
+
+        // an oversized batch is always admitted into an empty queue
+        assertTrue(queue.offer("c", 1_000, 0, TimeUnit.MILLISECONDS));
+        assertEquals(queue.size(), 1);
+    }
+}
@@ -0,0 +1,271 @@
+package com.jivesoftware.os.miru.service.solver;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.solution.MiruAnswerEvaluator;
+import com.jivesoftware.os.miru.plugin.solution.MiruAnswerMerger;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolution;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class MiruParallelSolutionsTest {
+
+    private final MiruSolutionLog solutionLog = new MiruSolutionLog(MiruSolutionLogLevel.NONE);
+
+    private ExecutorService executor;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testTreeMergePreservesPartitionOrder() throws Exception {
+        Semaphore permits = new Semaphore(4);
+        MiruParallelSolutions<String> parallelSolutions = new MiruParallelSolutions<>(executor, permits, 4, solutionLog);
+        Random random = new Random(1234);
+        for (int i = 0; i < 20; i++) {
+            add(parallelSolutions, i, random.nextInt(5));
+        }
+
+        List<MiruSolution> solved = Lists.newArrayList();
+        Optional<String> merged = parallelSolutions.treeMerge(evaluator(answer -> false), new ConcatMerger(), solved, Lists.newArrayList(),
+            Lists.newArrayList());
+
+        assertEquals(merged.get(), range(0, 20));
+        assertEquals(solved.size(), 20);
+        assertEquals(permits.availablePermits(), 4);
+    }
+
+    @Test
+    public void testTreeMergeEvaluatesMergedPrefix() throws Exception {
+        Semaphore permits = new Semaphore(4);
+        MiruParallelSolutions<String> parallelSolutions = new MiruParallelSolutions<>(executor, permits, 4, solutionLog);
+        for (int i = 0; i < 20; i++) {
+            add(parallelSolutions, i, i);
+        }
+
+        List<String> evaluated = Collections.synchronizedList(Lists.newArrayList());
+        Optional<String> merged = parallelSolutions.treeMerge(evaluator(answer -> {
+            evaluated.add(answer);
+            return answer.split(",").length >= 5;
+        }), new ConcatMerger(), Lists.newArrayList(), Lists.newArrayList(), Lists.newArrayList());
+
+        for (String answer : evaluated) {
+            assertEquals(answer, range(0, answer.split(",").length), "evaluated a run that does not begin at the first partition");
+        }
+        int count = merged.get().split(",").length;
+        assertTrue(count >= 5 && count < 20, "merged " + count);
+        assertEquals(merged.get(), range(0, count));
+        assertEquals(evaluated.get(evaluated.size() - 1), merged.get());
+
+        waitForPermits(permits, 4);
+    }
+
+    @Test
+    public void testTreeMergeSkipsUnsolvedPartitions() throws Exception {
+        MiruParallelSolutions<String> parallelSolutions = new MiruParallelSolutions<>(executor, new Semaphore(4), 4, solutionLog);
+        for (int i = 0; i < 6; i++) {
+            int index = i;
+            parallelSolutions.add(MiruPartitionId.of(i), () -> index % 2 == 0 ? null : new MiruSolved<>(null, String.valueOf(index)));
+        }
+
+        List<Integer> incomplete = Lists.newArrayList();
+        Optional<String> merged = parallelSolutions.treeMerge(evaluator(answer -> false), new ConcatMerger(), Lists.newArrayList(),
+            Lists.newArrayList(), incomplete);
+
+        assertEquals(merged.get(), "1,3,5");
+        Collections.sort(incomplete);
+        assertEquals(incomplete, Lists.newArrayList(0, 2, 4));
+    }
+
+    @Test
+    public void testTreeMergePropagatesMergeFailure() throws Exception {
+        Semaphore permits = new Semaphore(4);
+        MiruParallelSolutions<String> parallelSolutions = new MiruParallelSolutions<>(executor, permits, 4, solutionLog);
+        for (int i = 0; i < 8; i++) {
+            add(parallelSolutions, i, 0);
+        }
+
+        try {
+            parallelSolutions.treeMerge(evaluator(answer -> false), new ConcatMerger() {
+                @Override
+                public String merge(Optional<String> last, String current, MiruSolutionLog solutionLog) {
+                    throw new IllegalStateException("boom");
+                }
+            }, Lists.newArrayList(), Lists.newArrayList(), Lists.newArrayList());
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        waitForPermits(permits, 4);
+    }
+
+    @Test
+    public void testLaunchWindowIsBounded() throws Exception {
+        Semaphore permits = new Semaphore(64);
+        MiruParallelSolutions<String> parallelSolutions = new MiruParallelSolutions<>(executor, permits, 3, solutionLog);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            int index = i;
+            parallelSolutions.add(MiruPartitionId.of(i), () -> {
+                release.await();
+                return new MiruSolved<>(null, String.valueOf(index));
+            });
+        }
+
+        parallelSolutions.launchWindow(0);
+        assertEquals(permits.availablePermits(), 61);
+
+        parallelSolutions.launchWindow(1);
+        assertEquals(permits.availablePermits(), 60);
+
+        release.countDown();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(parallelSolutions.get(i).answer, String.valueOf(i));
+        }
+        waitForPermits(permits, 64);
+    }
+
+    @Test
+    public void testLaunchWindowStopsAtTenantPermits() throws Exception {
+        Semaphore permits = new Semaphore(2);
+        MiruParallelSolutions<String> parallelSolutions = new MiruParallelSolutions<>(executor, permits, 8, solutionLog);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            int index = i;
+            parallelSolutions.add(MiruPartitionId.of(i), () -> {
+                release.await();
+                return new MiruSolved<>(null, String.valueOf(index));
+            });
+        }
+
+        parallelSolutions.launchWindow(0);
+        assertEquals(permits.availablePermits(), 0);
+
+        release.countDown();
+        for (int i = 0; i < 4; i++) {
+            assertEquals(parallelSolutions.get(i).answer, String.valueOf(i));
+        }
+        waitForPermits(permits, 2);
+    }
+
+    @Test
+    public void testCancelHoldsPermitUntilTaskExits() throws Exception {
+        ExecutorService singleExecutor = Executors.newSingleThreadExecutor();
+        try {
+            Semaphore permits = new Semaphore(2);
+            MiruParallelSolutions<String> parallelSolutions = new MiruParallelSolutions<>(singleExecutor, permits, 2, solutionLog);
+            CountDownLatch running = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            parallelSolutions.add(MiruPartitionId.of(0), () -> {
+                running.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+                return new MiruSolved<>(null, "0");
+            });
+            parallelSolutions.add(MiruPartitionId.of(1), () -> new MiruSolved<>(null, "1"));
+
+            parallelSolutions.launchWindow(0);
+            running.await();
+            assertEquals(permits.availablePermits(), 0);
+
+            // queued behind the running task, so its permit comes back immediately
+            parallelSolutions.cancel(1);
+            assertEquals(permits.availablePermits(), 1);
+
+            // still running, so its permit is held until it exits
+            parallelSolutions.cancel(0);
+            assertEquals(permits.availablePermits(), 1);
+
+            release.countDown();
+            waitForPermits(permits, 2);
+        } finally {
+            singleExecutor.shutdownNow();
+        }
+    }
+
+    private void add(MiruParallelSolutions<String> parallelSolutions, int index, int sleepMillis) {
+        parallelSolutions.add(MiruPartitionId.of(index), () -> {
+            Thread.sleep(sleepMillis);
+            return new MiruSolved<>(null, String.valueOf(index));
+        });
+    }
+
+    private void waitForPermits(Semaphore permits, int expected) throws Exception {
+        assertTrue(permits.tryAcquire(expected, 10, TimeUnit.SECONDS));
+        permits.release(expected);
+    }
+
+    private static String range(int from, int to) {
+        List<Integer> values = Lists.newArrayList();
+        for (int i = from; i < to; i++) {
+            values.add(i);
+        }
+        return Joiner.on(',').join(values);
+    }
+
+    private static MiruAnswerEvaluator<String> evaluator(Predicate<String> isDone) {
+        return new MiruAnswerEvaluator<String>() {
+            @Override
+            public boolean isDone(String result, MiruSolutionLog solutionLog) {
+                return isDone.test(result);
+            }
+
+            @Override
+            public boolean stopOnUnsolvablePartition() {
+                return false;
+            }
+
+            @Override
+            public boolean useParallelSolver() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Associative but not commutative, so any merge out of partition order shows up in the answer.
+     */
+    private static class ConcatMerger implements MiruAnswerMerger<String> {
+
+        @Override
+        public String merge(Optional<String> last, String current, MiruSolutionLog solutionLog) {
+            return last.isPresent() ? last.get() + "," + current : current;
+        }
+
+        @Override
+        public String done(Optional<String> last, String alternative, MiruSolutionLog solutionLog) {
+            return last.or(alternative);
+        }
+
+        @Override
+        public boolean canMergeInTree() {
+            return true;
+        }
+    }
+}
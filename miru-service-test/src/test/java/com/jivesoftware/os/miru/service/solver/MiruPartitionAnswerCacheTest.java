@@ -0,0 +1,156 @@
+package com.jivesoftware.os.miru.service.solver;
+
+import com.google.common.base.Optional;
+import com.google.common.io.Files;
+import com.jivesoftware.os.miru.api.MiruActorId;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.MiruQueryServiceException;
+import com.jivesoftware.os.miru.api.MiruStats;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
+import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequestHandle;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolvableFactory;
+import com.jivesoftware.os.miru.plugin.solution.Question;
+import com.jivesoftware.os.miru.service.stream.MiruContextFactory;
+import java.io.File;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+public class MiruPartitionAnswerCacheTest {
+
+    private final MiruHost localhost = new MiruHost("local");
+    private final MiruHost remotehost = new MiruHost("remote");
+    private final MiruTenantId tenantId = new MiruTenantId("tenant".getBytes());
+    private final MiruPartitionId partitionId = MiruPartitionId.of(1);
+    private final MiruPartitionCoord localCoord = new MiruPartitionCoord(tenantId, partitionId, localhost);
+    private final MiruPartitionCoord remoteCoord = new MiruPartitionCoord(tenantId, partitionId, remotehost);
+
+    private MiruContextFactory<?> contextFactory;
+    private MiruSolvableFactory<String, String, String> solvableFactory;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        contextFactory = mock(MiruContextFactory.class);
+        when(contextFactory.checkClosed(any(MiruPartitionCoord.class))).thenReturn(true);
+        when(contextFactory.readVersion(any(MiruPartitionCoord.class))).thenReturn(1L);
+
+        MiruRequest<String> request = new MiruRequest<>("test", tenantId, new MiruActorId(new byte[] { 1 }), MiruAuthzExpression.NOT_PROVIDED,
+            "query", MiruSolutionLogLevel.NONE);
+        solvableFactory = new MiruSolvableFactory<>("test", new MiruStats(), "queryKey", new CacheableQuestion(request));
+    }
+
+    @Test
+    public void testHit() throws Exception {
+        MiruPartitionAnswerCache cache = new MiruPartitionAnswerCache(localhost, contextFactory, 0, 1024 * 1024, null, 0);
+
+        MiruPartitionAnswerCache.AnswerKey key = cache.key(tenantId, partitionId, solvableFactory, Optional.absent());
+        assertNotNull(key);
+        assertNull(cache.get("test", key));
+
+        cache.put("test", key, localCoord, "answer");
+        assertEquals(cache.get("test", cache.key(tenantId, partitionId, solvableFactory, Optional.absent())), "answer");
+    }
+
+    @Test
+    public void testOpenPartitionIsNotCached() throws Exception {
+        when(contextFactory.checkClosed(any(MiruPartitionCoord.class))).thenReturn(false);
+        MiruPartitionAnswerCache cache = new MiruPartitionAnswerCache(localhost, contextFactory, 0, 1024 * 1024, null, 0);
+
+        assertNull(cache.key(tenantId, partitionId, solvableFactory, Optional.absent()));
+    }
+
+    @Test
+    public void testVersionChangeMisses() throws Exception {
+        MiruPartitionAnswerCache cache = new MiruPartitionAnswerCache(localhost, contextFactory, 0, 1024 * 1024, null, 0);
+
+        MiruPartitionAnswerCache.AnswerKey key = cache.key(tenantId, partitionId, solvableFactory, Optional.absent());
+        cache.put("test", key, localCoord, "answer");
+
+        when(contextFactory.readVersion(any(MiruPartitionCoord.class))).thenReturn(2L);
+        MiruPartitionAnswerCache.AnswerKey rebuiltKey = cache.key(tenantId, partitionId, solvableFactory, Optional.absent());
+        assertNotEquals(rebuiltKey, key);
+        assertNull(cache.get("test", rebuiltKey));
+        assertNull(cache.get("test", key));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        MiruPartitionAnswerCache cache = new MiruPartitionAnswerCache(localhost, contextFactory, 60_000, 1024 * 1024, null, 0);
+
+        MiruPartitionAnswerCache.AnswerKey key = cache.key(tenantId, partitionId, solvableFactory, Optional.absent());
+        cache.put("test", key, localCoord, "answer");
+        cache.invalidate(tenantId, partitionId);
+
+        assertNull(cache.get("test", key));
+    }
+
+    @Test
+    public void testRemoteAnswerIsNotCached() throws Exception {
+        MiruPartitionAnswerCache cache = new MiruPartitionAnswerCache(localhost, contextFactory, 0, 1024 * 1024, null, 0);
+
+        MiruPartitionAnswerCache.AnswerKey key = cache.key(tenantId, partitionId, solvableFactory, Optional.absent());
+        cache.put("test", key, remoteCoord, "answer");
+
+        assertNull(cache.get("test", key));
+    }
+
+    @Test
+    public void testInvalidateAfterReload() throws Exception {
+        File diskDir = Files.createTempDir();
+        MiruPartitionAnswerCache cache = new MiruPartitionAnswerCache(localhost, contextFactory, 60_000, 1024 * 1024, diskDir, 1024 * 1024);
+        MiruPartitionAnswerCache.AnswerKey key = cache.key(tenantId, partitionId, solvableFactory, Optional.absent());
+        cache.put("test", key, localCoord, "answer");
+
+        MiruPartitionAnswerCache reloaded = new MiruPartitionAnswerCache(localhost, contextFactory, 60_000, 1024 * 1024, diskDir, 1024 * 1024);
+        MiruPartitionAnswerCache.AnswerKey reloadedKey = reloaded.key(tenantId, partitionId, solvableFactory, Optional.absent());
+        assertEquals(reloaded.get("test", reloadedKey), "answer");
+
+        reloaded.invalidate(tenantId, partitionId);
+        assertNull(reloaded.get("test", reloadedKey));
+        assertEquals(diskDir.list().length, 0);
+    }
+
+    private static class CacheableQuestion implements Question<String, String, String> {
+
+        private final MiruRequest<String> request;
+
+        private CacheableQuestion(MiruRequest<String> request) {
+            this.request = request;
+        }
+
+        @Override
+        public <BM extends IBM, IBM> MiruPartitionResponse<String> askLocal(MiruRequestHandle<BM, IBM, ?> queryHandle, Optional<String> report)
+            throws Exception {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MiruPartitionResponse<String> askRemote(MiruHost host, MiruPartitionId partitionId, Optional<String> report)
+            throws MiruQueryServiceException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Optional<String> createReport(Optional<String> answer) {
+            return Optional.absent();
+        }
+
+        @Override
+        public MiruRequest<String> getCacheableRequest() {
+            return request;
+        }
+    }
+}
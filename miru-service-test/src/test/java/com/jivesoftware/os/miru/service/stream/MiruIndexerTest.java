@@ -19,19 +19,28 @@ import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.index.BloomIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
 import com.jivesoftware.os.miru.plugin.index.MiruAuthzIndex;
+import com.jivesoftware.os.miru.plugin.index.MiruInternalActivity;
 import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
 import com.jivesoftware.os.miru.service.IndexTestUtil;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.lang3.ArrayUtils;
 import org.roaringbitmap.RoaringBitmap;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class MiruIndexerTest {
 
@@ -142,6 +151,121 @@ public class MiruIndexerTest {
         verifyAuthzValues(context.getAuthzIndex(), context.getActivityIndex().getAuthz("test", nextId, stackBuffer), nextId, stackBuffer);
     }
 
+    @Test(dataProvider = "miruIndexContextDataProvider")
+    public void testPipelinedSubBatchesAreReadyOnlyAtEnd(MiruPartitionCoord coord,
+        MiruContext<RoaringBitmap, RoaringBitmap, ?> context,
+        MiruIndexer<RoaringBitmap, RoaringBitmap> miruIndexer,
+        List<MiruActivityAndId<MiruActivity>> activityList)
+        throws Exception {
+
+        StackBuffer stackBuffer = new StackBuffer();
+        MiruTenantId tenantId = coord.tenantId;
+        int initialLastId = context.getActivityIndex().lastId(stackBuffer);
+
+        List<int[]> calls = Collections.synchronizedList(Lists.newArrayList());
+        MiruIndexer<RoaringBitmap, RoaringBitmap> pipelinedIndexer = buildIndexer(new MiruIndexLatest<RoaringBitmap, RoaringBitmap>() {
+            @Override
+            public List<Future<?>> index(MiruContext<RoaringBitmap, RoaringBitmap, ?> context,
+                MiruTenantId tenantId,
+                List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds,
+                int parallelism,
+                ExecutorService indexExecutor) throws Exception {
+                calls.add(new int[] {
+                    internalActivityAndIds.get(0).id,
+                    internalActivityAndIds.get(internalActivityAndIds.size() - 1).id,
+                    context.getActivityIndex().lastId(new StackBuffer())
+                });
+                return super.index(context, tenantId, internalActivityAndIds, parallelism, indexExecutor);
+            }
+        });
+
+        ExecutorService indexExecutor = Executors.newFixedThreadPool(4);
+        try {
+            pipelinedIndexer.index(context, coord, newActivities(tenantId, activityList.size(), 7), indexExecutor);
+        } finally {
+            indexExecutor.shutdownNow();
+        }
+
+        // sub-batches are written in id order, and none is visible until the last has been written
+        assertEquals(calls.size(), 4);
+        for (int i = 0; i < calls.size(); i++) {
+            int firstId = activityList.size() + i * 2;
+            assertEquals(calls.get(i)[0], firstId);
+            assertEquals(calls.get(i)[1], Math.min(firstId + 1, activityList.size() + 6));
+            assertEquals(calls.get(i)[2], initialLastId);
+        }
+        assertEquals(context.getActivityIndex().lastId(stackBuffer), activityList.size() + 6);
+        for (int id = activityList.size(); id < activityList.size() + 7; id++) {
+            verifyFieldValues(tenantId, context, id, 0, stackBuffer);
+            verifyFieldValues(tenantId, context, id, 1, stackBuffer);
+        }
+    }
+
+    @Test(dataProvider = "miruIndexContextDataProvider")
+    public void testSubBatchFailurePropagates(MiruPartitionCoord coord,
+        MiruContext<RoaringBitmap, RoaringBitmap, ?> context,
+        MiruIndexer<RoaringBitmap, RoaringBitmap> miruIndexer,
+        List<MiruActivityAndId<MiruActivity>> activityList)
+        throws Exception {
+
+        StackBuffer stackBuffer = new StackBuffer();
+        int initialLastId = context.getActivityIndex().lastId(stackBuffer);
+
+        AtomicInteger calls = new AtomicInteger();
+        MiruIndexer<RoaringBitmap, RoaringBitmap> failingIndexer = buildIndexer(new MiruIndexLatest<RoaringBitmap, RoaringBitmap>() {
+            @Override
+            public List<Future<?>> index(MiruContext<RoaringBitmap, RoaringBitmap, ?> context,
+                MiruTenantId tenantId,
+                List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds,
+                int parallelism,
+                ExecutorService indexExecutor) throws Exception {
+                if (calls.incrementAndGet() == 2) {
+                    return Collections.singletonList(indexExecutor.submit(() -> {
+                        throw new IllegalStateException("latest failed");
+                    }));
+                }
+                return super.index(context, tenantId, internalActivityAndIds, parallelism, indexExecutor);
+            }
+        });
+
+        ExecutorService indexExecutor = Executors.newFixedThreadPool(4);
+        try {
+            failingIndexer.index(context, coord, newActivities(coord.tenantId, activityList.size(), 7), indexExecutor);
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        } finally {
+            indexExecutor.shutdownNow();
+        }
+
+        // the failed sub-batch stops the pipeline before any later sub-batch is written or the batch is marked ready
+        assertEquals(calls.get(), 2);
+        assertEquals(context.getActivityIndex().lastId(stackBuffer), initialLastId);
+    }
+
+    private MiruIndexer<RoaringBitmap, RoaringBitmap> buildIndexer(MiruIndexLatest<RoaringBitmap, RoaringBitmap> indexLatest) {
+        return new MiruIndexer<>(new MiruIndexAuthz<>(),
+            new MiruIndexPrimaryFields<>(),
+            new MiruIndexValueBits<>(),
+            new MiruIndexBloom<>(new BloomIndex<>(new MiruBitmapsRoaring(), Hashing.murmur3_128(), 100_000, 0.01f)),
+            indexLatest,
+            new MiruIndexPairedLatest<>(),
+            2, 4, 4, 2, 2);
+    }
+
+    private List<MiruActivityAndId<MiruActivity>> newActivities(MiruTenantId tenantId, int firstId, int count) {
+        List<MiruActivityAndId<MiruActivity>> activityAndIds = Lists.newArrayList();
+        for (int id = firstId; id < firstId + count; id++) {
+            activityAndIds.add(new MiruActivityAndId<>(
+                buildMiruActivity(tenantId, id + 1, new String[] { "abcde" }, ImmutableMap.of(
+                    DefaultMiruSchemaDefinition.FIELDS[0].name, "0",
+                    DefaultMiruSchemaDefinition.FIELDS[1].name, String.valueOf(id))),
+                id,
+                id + 1));
+        }
+        return activityAndIds;
+    }
+
     private void verifyFieldValues(MiruTenantId tenantId,
         MiruContext<RoaringBitmap, RoaringBitmap, ?> context,
         int activityId,
@@ -189,7 +313,8 @@ public class MiruIndexerTest {
             new MiruIndexValueBits<>(),
             new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
             new MiruIndexLatest<>(),
-            new MiruIndexPairedLatest<>());
+            new MiruIndexPairedLatest<>(),
+            2, 4, 4, 2, 2);
 
         return ArrayUtils.addAll(buildIndexContextDataProvider(tenantId, coord, bitmaps, miruIndexer, false),
             buildIndexContextDataProvider(tenantId, coord, bitmaps, miruIndexer, true));
@@ -16,7 +16,9 @@ import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolvable;
 import com.jivesoftware.os.miru.service.solver.MiruLowestLatencySolver;
 import com.jivesoftware.os.miru.service.solver.MiruSolved;
+import com.jivesoftware.os.miru.service.solver.MiruSolverHedging;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Executor;
@@ -72,4 +74,131 @@ public class MiruLowestLatencySolverTest {
         assertNotNull(solved.solution, "The solution was null");
         assertEquals(solved.solution.usedPartition.host.getLogicalName(), "logicalName_" + 10_000);
     }
+
+    @Test
+    public void testHedgingBudget() throws Exception {
+        Executor executor = Executors.newFixedThreadPool(10);
+        MiruTenantId tenantId = new MiruTenantId("test".getBytes());
+        MiruPartitionId partitionId = MiruPartitionId.of(1);
+
+        MiruSolverHedging exhausted = new MiruSolverHedging(100, 95, 0, 0d, 1, 100, 60_000);
+        MiruLowestLatencySolver noHedgeSolver = new MiruLowestLatencySolver(1, 10, 10, 3_000, exhausted);
+        MiruSolved<Integer> solved = noHedgeSolver.solve("a", "b", tenantId, partitionId, slowThenFast(tenantId, partitionId).iterator(),
+            Optional.<Long>absent(), executor, new MiruSolutionLog(MiruSolutionLogLevel.ERROR));
+        assertNotNull(solved);
+        assertEquals((int) solved.answer, 0, "Hedge should have been denied by the budget");
+
+        MiruSolverHedging unbounded = new MiruSolverHedging(100, 95, 100, 100d, 1, 100, 60_000);
+        MiruLowestLatencySolver hedgeSolver = new MiruLowestLatencySolver(1, 10, 10, 3_000, unbounded);
+        solved = hedgeSolver.solve("a", "b", tenantId, partitionId, slowThenFast(tenantId, partitionId).iterator(),
+            Optional.<Long>absent(), executor, new MiruSolutionLog(MiruSolutionLogLevel.ERROR));
+        assertNotNull(solved);
+        assertEquals((int) solved.answer, 1, "Hedge should have won");
+
+        // the fast replica has now been observed, so it should be tried first
+        solved = hedgeSolver.solve("a", "b", tenantId, partitionId, slowThenFast(tenantId, partitionId).iterator(),
+            Optional.<Long>absent(), executor, new MiruSolutionLog(MiruSolutionLogLevel.ERROR));
+        assertNotNull(solved);
+        assertEquals(solved.solution.usedPartition.host.getLogicalName(), "logicalName_1");
+        assertEquals(solved.solution.triedPartitions.size(), 1);
+    }
+
+    @Test
+    public void testFailedReplicaIsCharged() throws Exception {
+        Executor executor = Executors.newFixedThreadPool(10);
+        MiruTenantId tenantId = new MiruTenantId("test".getBytes());
+        MiruPartitionId partitionId = MiruPartitionId.of(1);
+
+        MiruSolverHedging hedging = new MiruSolverHedging(1, 95, 1_000, 100d, 10, 100, 60_000);
+        MiruLowestLatencySolver solver = new MiruLowestLatencySolver(1, 10, 1_000, 3_000, hedging);
+        MiruSolved<Integer> solved = solver.solve("a", "b", tenantId, partitionId, failFirst(tenantId, partitionId, false).iterator(),
+            Optional.<Long>absent(), executor, new MiruSolutionLog(MiruSolutionLogLevel.ERROR));
+        assertEquals(solved.solution.usedPartition.host.getLogicalName(), "logicalName_0");
+
+        solved = solver.solve("a", "b", tenantId, partitionId, failFirst(tenantId, partitionId, true).iterator(),
+            Optional.<Long>absent(), executor, new MiruSolutionLog(MiruSolutionLogLevel.ERROR));
+        assertEquals(solved.solution.usedPartition.host.getLogicalName(), "logicalName_1");
+
+        // the failure outweighs the earlier win, so the healthy replica is now tried first
+        Iterator<MiruSolvable<Integer>> ordered = hedging.orderByLatency("a", "b", failFirst(tenantId, partitionId, false).iterator());
+        assertEquals(ordered.next().getCoord().host.getLogicalName(), "logicalName_1");
+    }
+
+    @Test
+    public void testLateHedgeIsNotOrderedAheadOfWinner() throws Exception {
+        Executor executor = Executors.newFixedThreadPool(10);
+        MiruTenantId tenantId = new MiruTenantId("test".getBytes());
+        MiruPartitionId partitionId = MiruPartitionId.of(1);
+
+        // the hedge is added after 200 millis, shortly before the first replica answers, and is then abandoned
+        MiruSolverHedging hedging = new MiruSolverHedging(1, 95, 200, 100d, 10, 100, 60_000);
+        MiruLowestLatencySolver solver = new MiruLowestLatencySolver(1, 10, 200, 3_000, hedging);
+        MiruSolved<Integer> solved = solver.solve("a", "b", tenantId, partitionId, winThenHedge(tenantId, partitionId).iterator(),
+            Optional.<Long>absent(), executor, new MiruSolutionLog(MiruSolutionLogLevel.ERROR));
+        assertEquals(solved.solution.usedPartition.host.getLogicalName(), "logicalName_0");
+        assertEquals(solved.solution.triedPartitions.size(), 2);
+
+        Iterator<MiruSolvable<Integer>> ordered = hedging.orderByLatency("a", "b", winThenHedge(tenantId, partitionId).iterator());
+        assertEquals(ordered.next().getCoord().host.getLogicalName(), "logicalName_0");
+    }
+
+    @Test
+    public void testUnusedPercentilesExpire() throws Exception {
+        MiruSolverHedging hedging = new MiruSolverHedging(100, 95, 0, 100d, 1, 100, 0);
+        hedging.record("a", "b", new MiruHost("logicalName_0"), 5);
+        assertEquals(hedging.hedgeAfterNMillis("a", "b", 123), 123);
+    }
+
+    private List<MiruSolvable<Integer>> failFirst(MiruTenantId tenantId, MiruPartitionId partitionId, boolean fail) {
+        List<MiruSolvable<Integer>> solvables = Lists.newArrayList();
+        for (int i = 0; i < 2; i++) {
+            final int id = i;
+            MiruPartitionCoord coord = new MiruPartitionCoord(tenantId, partitionId, new MiruHost("logicalName_" + i));
+            solvables.add(new MiruSolvable<>(
+                coord,
+                () -> {
+                    if (id == 0 && fail) {
+                        throw new IllegalStateException("failed replica");
+                    }
+                    return new MiruPartitionResponse<>(id, null);
+                },
+                true,
+                null));
+        }
+        return solvables;
+    }
+
+    private List<MiruSolvable<Integer>> winThenHedge(MiruTenantId tenantId, MiruPartitionId partitionId) {
+        List<MiruSolvable<Integer>> solvables = Lists.newArrayList();
+        for (int i = 0; i < 2; i++) {
+            final int id = i;
+            MiruPartitionCoord coord = new MiruPartitionCoord(tenantId, partitionId, new MiruHost("logicalName_" + i));
+            solvables.add(new MiruSolvable<>(
+                coord,
+                () -> {
+                    Thread.sleep(id == 0 ? 300 : 5_000);
+                    return new MiruPartitionResponse<>(id, null);
+                },
+                true,
+                null));
+        }
+        return solvables;
+    }
+
+    private List<MiruSolvable<Integer>> slowThenFast(MiruTenantId tenantId, MiruPartitionId partitionId) {
+        List<MiruSolvable<Integer>> solvables = Lists.newArrayList();
+        for (int i = 0; i < 2; i++) {
+            final int id = i;
+            MiruPartitionCoord coord = new MiruPartitionCoord(tenantId, partitionId, new MiruHost("logicalName_" + i));
+            solvables.add(new MiruSolvable<>(
+                coord,
+                () -> {
+                    Thread.sleep(id == 0 ? 1_000 : 0);
+                    return new MiruPartitionResponse<>(id, null);
+                },
+                true,
+                null));
+        }
+        return solvables;
+    }
 }
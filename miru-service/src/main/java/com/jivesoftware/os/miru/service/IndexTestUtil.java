@@ -198,6 +198,9 @@ public class IndexTestUtil {
             new RCVSSipIndexMarshaller(),
             new MiruTempDirectoryResourceLocator(),
             1024,
+            0,
+            false,
+            1024 * 1024,
             fieldIndexStripingLocksProvider,
             streamStripingLocksProvider,
             authzStripingLocksProvider,
@@ -211,6 +214,8 @@ public class IndexTestUtil {
             useLabIndexes,
             hasRealtime,
             false,
+            false,
+            1024 * 1024,
             false);
     }
 
@@ -5,7 +5,7 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
-import com.jivesoftware.os.filer.io.FilerIO;
+import com.google.common.collect.Maps;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
 import com.jivesoftware.os.miru.api.MiruHost;
 import com.jivesoftware.os.miru.api.MiruPartitionCoord;
@@ -40,6 +40,8 @@ import com.jivesoftware.os.miru.plugin.solution.MiruSolvable;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolvableFactory;
 import com.jivesoftware.os.miru.plugin.solution.MiruTimeRange;
 import com.jivesoftware.os.miru.service.partition.MiruHostedPartitionComparison;
+import com.jivesoftware.os.miru.service.solver.MiruParallelSolutions;
+import com.jivesoftware.os.miru.service.solver.MiruPartitionAnswerCache;
 import com.jivesoftware.os.miru.service.solver.MiruSolved;
 import com.jivesoftware.os.miru.service.solver.MiruSolver;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
@@ -47,9 +49,10 @@ import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 /**
  * @author jonathan
@@ -65,6 +68,10 @@ public class MiruService implements Miru {
     private final MiruSchemaProvider schemaProvider;
     private final Executor defaultExecutor;
     private final ExecutorService parallelExecutor;
+    private final MiruPartitionAnswerCache answerCache;
+    private final int maxInFlightPerQuery;
+    private final int maxInFlightPerTenant;
+    private final ConcurrentMap<MiruTenantId, Semaphore> tenantSolvePermits = Maps.newConcurrentMap();
     private final MiruBitmapsDebug bitmapsDebug = new MiruBitmapsDebug();
 
     public MiruService(MiruHost localhost,
@@ -73,7 +80,10 @@ public class MiruService implements Miru {
         MiruSolver solver,
         MiruSchemaProvider schemaProvider,
         Executor defaultExecutor,
-        ExecutorService parallelExecutor) {
+        ExecutorService parallelExecutor,
+        MiruPartitionAnswerCache answerCache,
+        int maxInFlightPerQuery,
+        int maxInFlightPerTenant) {
 
         this.localhost = localhost;
         this.partitionDirector = partitionDirector;
@@ -82,6 +92,9 @@ public class MiruService implements Miru {
         this.schemaProvider = schemaProvider;
         this.defaultExecutor = defaultExecutor;
         this.parallelExecutor = parallelExecutor;
+        this.answerCache = answerCache;
+        this.maxInFlightPerQuery = maxInFlightPerQuery;
+        this.maxInFlightPerTenant = maxInFlightPerTenant;
     }
 
     public void writeToIndex(List<MiruPartitionedActivity> partitionedActivities) throws Exception {
@@ -119,6 +132,7 @@ public class MiruService implements Miru {
 
         A answer;
         List<MiruSolution> solutions = Lists.newArrayList();
+        List<MiruSolution> solvedSolutions = Lists.newArrayList();
         List<Integer> incompletePartitionIds = Lists.newArrayList();
         final MiruSolutionLog solutionLog = new MiruSolutionLog(logLevel);
         solutionLog.log(MiruSolutionLogLevel.INFO, "Solving: host:{} tenantId:{} question:{}", localhost, tenantId, solvableFactory.getQuestion());
@@ -130,6 +144,12 @@ public class MiruService implements Miru {
 
             Optional<A> lastAnswer = Optional.absent();
 
+            boolean parallel = evaluator.useParallelSolver();
+            boolean treeMerge = parallel && merger.canMergeInTree();
+            MiruParallelSolutions<A> parallelSolutions = parallel
+                ? new MiruParallelSolutions<>(parallelExecutor, tenantPermits(tenantId), maxInFlightPerQuery, solutionLog)
+                : null;
+
             List<ExpectedSolution<A>> expectedSolutions = Lists.newArrayList();
             for (OrderedPartitions<?, ?> orderedPartitions : partitionReplicas) {
                 Optional<Long> suggestedTimeoutInMillis = partitionComparison.suggestTimeout(orderedPartitions.tenantId, orderedPartitions.partitionId,
@@ -137,14 +157,20 @@ public class MiruService implements Miru {
                 solutionLog.log(MiruSolutionLogLevel.INFO, "Solving partition:{} for tenant:{} with timeout:{}",
                     orderedPartitions.partitionId.getId(), orderedPartitions.tenantId, suggestedTimeoutInMillis.or(-1L));
 
-                if (evaluator.useParallelSolver()) {
-                    expectedSolutions.add(new ParallelExpectedSolution<>(orderedPartitions, solvableFactory, suggestedTimeoutInMillis, executor, solutionLog));
+                if (parallel) {
+                    int index = parallelSolutions.add(orderedPartitions.partitionId,
+                        () -> solveParallel(orderedPartitions, solvableFactory, suggestedTimeoutInMillis, executor, solutionLog));
+                    expectedSolutions.add(new ParallelExpectedSolution<>(parallelSolutions, index));
                 } else {
                     expectedSolutions.add(new SerialExpectedSolution<>(orderedPartitions, solvableFactory, suggestedTimeoutInMillis, executor, solutionLog));
                 }
             }
 
-            boolean done = false;
+            if (treeMerge) {
+                lastAnswer = parallelSolutions.treeMerge(evaluator, merger, solutions, solvedSolutions, incompletePartitionIds);
+            }
+
+            boolean done = treeMerge;
             for (ExpectedSolution<A> expectedSolution : expectedSolutions) {
                 if (done) {
                     expectedSolution.cancel();
@@ -163,6 +189,9 @@ public class MiruService implements Miru {
                         solutionLog.log(MiruSolutionLogLevel.INFO, "Solved partition:{}. elapse:{} millis",
                             expectedSolution.getPartitionId(), (System.currentTimeMillis() - expectedSolution.getStart()));
                         solutions.add(solved.solution);
+                        if (!solved.cached) {
+                            solvedSolutions.add(solved.solution);
+                        }
 
                         A currentAnswer = solved.answer;
                         solutionLog.log(MiruSolutionLogLevel.INFO, "Merging solution set from partition:{}", expectedSolution.getPartitionId());
@@ -178,7 +207,7 @@ public class MiruService implements Miru {
                 }
             }
 
-            partitionComparison.analyzeSolutions(solutions, solvableFactory.getRequestName(), solvableFactory.getQueryKey());
+            partitionComparison.analyzeSolutions(solvedSolutions, solvableFactory.getRequestName(), solvableFactory.getQueryKey());
 
             answer = merger.done(lastAnswer, defaultValue, solutionLog);
         } finally {
@@ -251,7 +280,9 @@ public class MiruService implements Miru {
                     lastAnswer = Optional.of(merger.merge(Optional.absent(), solved.answer, solutionLog));
                 }
 
-                partitionComparison.analyzeSolutions(solutions, solvableFactory.getRequestName(), solvableFactory.getQueryKey());
+                if (solved == null || !solved.cached) {
+                    partitionComparison.analyzeSolutions(solutions, solvableFactory.getRequestName(), solvableFactory.getQueryKey());
+                }
 
                 answer = merger.done(lastAnswer, defaultValue, solutionLog);
             }
@@ -385,6 +416,39 @@ public class MiruService implements Miru {
         }
     }
 
+    private Semaphore tenantPermits(MiruTenantId tenantId) {
+        return tenantSolvePermits.computeIfAbsent(tenantId, key -> new Semaphore(maxInFlightPerTenant));
+    }
+
+    private <Q, A, P> MiruSolved<A> solveOrCached(OrderedPartitions<?, ?> orderedPartitions,
+        MiruSolvableFactory<Q, A, P> solvableFactory,
+        Optional<P> report,
+        MiruSolutionLog solutionLog,
+        Callable<MiruSolved<A>> solve) throws Exception {
+
+        MiruPartitionAnswerCache.AnswerKey key = null;
+        if (answerCache != null) {
+            long start = System.currentTimeMillis();
+            key = answerCache.key(orderedPartitions.tenantId, orderedPartitions.partitionId, solvableFactory, report);
+            if (key != null) {
+                A answer = answerCache.get(solvableFactory.getRequestName(), key);
+                if (answer != null) {
+                    long elapsed = System.currentTimeMillis() - start;
+                    solutionLog.log(MiruSolutionLogLevel.INFO, "Found cached answer for closed partition:{} in {} ms",
+                        orderedPartitions.partitionId, elapsed);
+                    MiruPartitionCoord coord = new MiruPartitionCoord(orderedPartitions.tenantId, orderedPartitions.partitionId, localhost);
+                    return new MiruSolved<>(new MiruSolution(coord, elapsed, elapsed, Collections.emptyList(), Collections.emptyList()), answer, true);
+                }
+            }
+        }
+
+        MiruSolved<A> solved = solve.call();
+        if (key != null && solved != null && solved.answer != null && solved.solution != null) {
+            answerCache.put(solvableFactory.getRequestName(), key, solved.solution.usedPartition, solved.answer);
+        }
+        return solved;
+    }
+
     private interface ExpectedSolution<A> {
         MiruPartitionId getPartitionId();
 
@@ -395,63 +459,59 @@ public class MiruService implements Miru {
         long getStart();
     }
 
-    private class ParallelExpectedSolution<A, BM extends IBM, IBM> implements ExpectedSolution<A> {
+    private <Q, A, P, BM extends IBM, IBM> MiruSolved<A> solveParallel(OrderedPartitions<BM, IBM> orderedPartitions,
+        MiruSolvableFactory<Q, A, P> solvableFactory,
+        Optional<Long> suggestedTimeoutInMillis,
+        Executor executor,
+        MiruSolutionLog solutionLog) throws Exception {
 
-        private final OrderedPartitions<BM, IBM> orderedPartitions;
-        private final Future<MiruSolved<A>> future;
-        private final long start;
+        Optional<P> report = solvableFactory.getReport(Optional.absent());
+        Iterable<MiruSolvable<A>> solvables = Iterables.transform(orderedPartitions.partitions, replica -> {
+            if (replica.isLocal()) {
+                solutionLog.log(MiruSolutionLogLevel.INFO, "Created local solvable for coord={}.", replica.getCoord());
+            }
+            return solvableFactory.create(replica, report, new MiruSolutionLog(solutionLog.getLevel()));
+        });
 
-        public <Q, P> ParallelExpectedSolution(OrderedPartitions<BM, IBM> orderedPartitions,
-            MiruSolvableFactory<Q, A, P> solvableFactory,
-            Optional<Long> suggestedTimeoutInMillis,
-            Executor executor,
-            MiruSolutionLog solutionLog) {
+        return solveOrCached(orderedPartitions, solvableFactory, report, solutionLog,
+            () -> solver.solve(solvableFactory.getRequestName(),
+                solvableFactory.getQueryKey(),
+                orderedPartitions.tenantId,
+                orderedPartitions.partitionId,
+                solvables.iterator(),
+                suggestedTimeoutInMillis,
+                executor,
+                solutionLog));
+    }
 
-            Iterable<MiruSolvable<A>> solvables = Iterables.transform(orderedPartitions.partitions, replica -> {
-                if (replica.isLocal()) {
-                    solutionLog.log(MiruSolutionLogLevel.INFO, "Created local solvable for coord={}.", replica.getCoord());
-                }
-                return solvableFactory.create(replica, solvableFactory.getReport(Optional.absent()), new MiruSolutionLog(solutionLog.getLevel()));
-            });
+    private static class ParallelExpectedSolution<A> implements ExpectedSolution<A> {
 
-            this.orderedPartitions = orderedPartitions;
-            this.start = System.currentTimeMillis();
-            this.future = parallelExecutor.submit(() -> {
-                solutionLog.log(MiruSolutionLogLevel.INFO, "Parallel solution began execution in {} ms", System.currentTimeMillis() - start);
-                MiruSolved<A> solved = solver.solve(solvableFactory.getRequestName(),
-                    solvableFactory.getQueryKey(),
-                    orderedPartitions.tenantId,
-                    orderedPartitions.partitionId,
-                    solvables.iterator(),
-                    suggestedTimeoutInMillis,
-                    executor,
-                    solutionLog);
+        private final MiruParallelSolutions<A> parallelSolutions;
+        private final int index;
 
-                long elapsed = System.currentTimeMillis() - start;
-                LOG.inc("parallel>elapsed>pow>" + FilerIO.chunkPower(elapsed, 0));
-                solutionLog.log(MiruSolutionLogLevel.INFO, "Parallel solution finished execution in {} ms", elapsed);
-                return solved;
-            });
+        public ParallelExpectedSolution(MiruParallelSolutions<A> parallelSolutions, int index) {
+            this.parallelSolutions = parallelSolutions;
+            this.index = index;
         }
 
         @Override
         public MiruPartitionId getPartitionId() {
-            return orderedPartitions.partitionId;
+            return parallelSolutions.getPartitionId(index);
         }
 
         @Override
         public MiruSolved<A> get(Optional<A> lastAnswer) throws Exception {
-            return future.get();
+            return parallelSolutions.get(index);
         }
 
         @Override
         public void cancel() throws Exception {
-            future.cancel(true);
+            parallelSolutions.cancel(index);
         }
 
         @Override
         public long getStart() {
-            return start;
+            return parallelSolutions.getStart(index);
         }
     }
 
@@ -484,22 +544,24 @@ public class MiruService implements Miru {
 
         @Override
         public MiruSolved<A> get(Optional<A> lastAnswer) throws Exception {
+            Optional<P> report = solvableFactory.getReport(lastAnswer);
             Iterable<MiruSolvable<A>> solvables = Iterables.transform(orderedPartitions.partitions, replica -> {
                 if (replica.isLocal()) {
                     solutionLog.log(MiruSolutionLogLevel.INFO, "Created local solvable for coord={}.", replica.getCoord());
                 }
-                return solvableFactory.create(replica, solvableFactory.getReport(lastAnswer), new MiruSolutionLog(solutionLog.getLevel()));
+                return solvableFactory.create(replica, report, new MiruSolutionLog(solutionLog.getLevel()));
             });
 
             start = System.currentTimeMillis();
-            return solver.solve(solvableFactory.getRequestName(),
-                solvableFactory.getQueryKey(),
-                orderedPartitions.tenantId,
-                orderedPartitions.partitionId,
-                solvables.iterator(),
-                suggestedTimeoutInMillis,
-                executor,
-                solutionLog);
+            return solveOrCached(orderedPartitions, solvableFactory, report, solutionLog,
+                () -> solver.solve(solvableFactory.getRequestName(),
+                    solvableFactory.getQueryKey(),
+                    orderedPartitions.tenantId,
+                    orderedPartitions.partitionId,
+                    solvables.iterator(),
+                    suggestedTimeoutInMillis,
+                    executor,
+                    solutionLog));
         }
 
         @Override
@@ -50,14 +50,80 @@ public interface MiruServiceConfig extends Config {
     @LongDefault(30_000)
     long getDefaultFailAfterNMillis();
 
+    @BooleanDefault(false)
+    boolean getSolverHedgingEnabled();
+
+    @IntDefault(1_000)
+    int getSolverHedgingWindowSize();
+
+    @IntDefault(95)
+    int getSolverHedgingPercentile();
+
+    @LongDefault(10)
+    long getSolverHedgingMinDelayInMillis();
+
+    @DoubleDefault(5d)
+    double getSolverHedgingBudgetPercent();
+
+    @IntDefault(100)
+    int getSolverHedgingMaxBurst();
+
+    @IntDefault(10_000)
+    int getSolverHedgingMaxTrackedKeys();
+
+    @LongDefault(60 * 60 * 1_000)
+    long getSolverHedgingExpireAfterMillis();
+
+    @IntDefault(16)
+    int getParallelSolverMaxInFlightPerQuery();
+
+    @IntDefault(64)
+    int getParallelSolverMaxInFlightPerTenant();
+
+    @BooleanDefault(false)
+    boolean getPartitionAnswerCacheEnabled();
+
+    @LongDefault(256L * 1024 * 1024)
+    long getPartitionAnswerCacheMaxHeapBytes();
+
+    @StringDefault("")
+    String getPartitionAnswerCacheDiskPath();
+
+    @LongDefault(4L * 1024 * 1024 * 1024)
+    long getPartitionAnswerCacheMaxDiskBytes();
+
+    @LongDefault(10_000)
+    long getPartitionAnswerCacheStateCheckIntervalMillis();
+
     void setDefaultFailAfterNMillis(long millis);
 
     @IntDefault(10_000)
     int getPartitionRebuildBatchSize();
 
+    @IntDefault(4)
+    int getPartitionRebuildPrefetchBatches();
+
+    @LongDefault(256L * 1024 * 1024)
+    long getPartitionRebuildPrefetchMaxBytes();
+
     @IntDefault(10_000)
     int getPartitionSipBatchSize();
 
+    @IntDefault(2_500)
+    int getIndexPipelineBatchSize();
+
+    @IntDefault(48)
+    int getIndexInternParallelism();
+
+    @IntDefault(48)
+    int getIndexPrimaryFieldsParallelism();
+
+    @IntDefault(8)
+    int getIndexAuthzParallelism();
+
+    @IntDefault(8)
+    int getIndexLatestParallelism();
+
     @LongDefault(1_000_000)
     long getPersistentMergeChitCount();
 
@@ -98,6 +164,15 @@ public interface MiruServiceConfig extends Config {
     @IntDefault(10_000)
     int getPartitionAuthzCacheSize();
 
+    @LongDefault(0)
+    long getPartitionAuthzCacheMaxBytes();
+
+    @BooleanDefault(false)
+    boolean getPartitionAuthzCacheIncremental();
+
+    @LongDefault(0)
+    long getPartitionFilterCacheMaxBytes();
+
     @BooleanDefault(true)
     boolean getPartitionDeleteChunkStoreOnClose();
 
@@ -167,6 +242,9 @@ public interface MiruServiceConfig extends Config {
     @BooleanDefault(true)
     boolean getEnableTermInterning();
 
+    @IntDefault(1_048_576)
+    int getTermInternerCapacity();
+
     @BooleanDefault(true)
     boolean getUseLabIndexes();
 
@@ -266,6 +344,16 @@ public interface MiruServiceConfig extends Config {
     @BooleanDefault(false)
     boolean getTimeIndexVerboseLogging();
 
+    /**
+     * Bounds the in memory time navigator of each partition, or 0 to disable it. Snowflake monotonic timestamps take about 4 bytes
+     * per id as varint deltas, so the 1 MB default covers only the newest ~250k ids, and older timestamps fall back to a LAB scan.
+     */
+    @LongDefault(1_048_576)
+    long getTimeIndexNavigatorMaxSizeInBytes();
+
+    @BooleanDefault(false)
+    boolean getColumnarActivityIndexEnabled();
+
     @StringDefault("")
     String getRealtimeDeliveryService();
 
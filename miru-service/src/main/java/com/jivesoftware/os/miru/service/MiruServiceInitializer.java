@@ -64,6 +64,8 @@ import com.jivesoftware.os.miru.service.partition.MiruTenantTopologyFactory;
 import com.jivesoftware.os.miru.service.partition.PartitionErrorTracker;
 import com.jivesoftware.os.miru.service.partition.cluster.MiruClusterExpectedTenants;
 import com.jivesoftware.os.miru.service.solver.MiruLowestLatencySolver;
+import com.jivesoftware.os.miru.service.solver.MiruPartitionAnswerCache;
+import com.jivesoftware.os.miru.service.solver.MiruSolverHedging;
 import com.jivesoftware.os.miru.service.solver.MiruSolver;
 import com.jivesoftware.os.miru.service.stream.MiruContextFactory;
 import com.jivesoftware.os.miru.service.stream.MiruIndexCallbacks;
@@ -292,6 +294,9 @@ public class MiruServiceInitializer {
             sipIndexMarshaller,
             resourceLocator,
             config.getPartitionAuthzCacheSize(),
+            config.getPartitionAuthzCacheMaxBytes(),
+            config.getPartitionAuthzCacheIncremental(),
+            config.getPartitionFilterCacheMaxBytes(),
             fieldIndexStripingLocksProvider,
             streamStripingLocksProvider,
             authzStripingLocksProvider,
@@ -305,7 +310,9 @@ public class MiruServiceInitializer {
             config.getUseLabIndexes(),
             config.getRealtimeDelivery(),
             config.getFsyncOnCommit(),
-            config.getTimeIndexVerboseLogging());
+            config.getTimeIndexVerboseLogging(),
+            config.getTimeIndexNavigatorMaxSizeInBytes(),
+            config.getColumnarActivityIndexEnabled());
 
         MiruPartitionHeartbeatHandler heartbeatHandler = new MiruPartitionHeartbeatHandler(clusterClient, atleastOneThumpThump);
         MiruRebuildDirector rebuildDirector = new MiruRebuildDirector(config.getMaxRebuildActivityCount());
@@ -370,10 +377,35 @@ public class MiruServiceInitializer {
 
         final MiruClusterPartitionDirector partitionDirector = new MiruClusterPartitionDirector(miruHost, expectedTenants);
 
+        MiruSolverHedging solverHedging = null;
+        if (config.getSolverHedgingEnabled()) {
+            solverHedging = new MiruSolverHedging(config.getSolverHedgingWindowSize(),
+                config.getSolverHedgingPercentile(),
+                config.getSolverHedgingMinDelayInMillis(),
+                config.getSolverHedgingBudgetPercent(),
+                config.getSolverHedgingMaxBurst(),
+                config.getSolverHedgingMaxTrackedKeys(),
+                config.getSolverHedgingExpireAfterMillis());
+        }
+
         MiruSolver solver = new MiruLowestLatencySolver(config.getDefaultInitialSolvers(),
             config.getDefaultMaxNumberOfSolvers(),
             config.getDefaultAddAnotherSolverAfterNMillis(),
-            config.getDefaultFailAfterNMillis());
+            config.getDefaultFailAfterNMillis(),
+            solverHedging);
+
+        MiruPartitionAnswerCache answerCache = null;
+        if (config.getPartitionAnswerCacheEnabled()) {
+            String answerCacheDiskPath = config.getPartitionAnswerCacheDiskPath();
+            answerCache = new MiruPartitionAnswerCache(miruHost,
+                contextFactory,
+                config.getPartitionAnswerCacheStateCheckIntervalMillis(),
+                config.getPartitionAnswerCacheMaxHeapBytes(),
+                answerCacheDiskPath.isEmpty() ? null : new File(answerCacheDiskPath),
+                config.getPartitionAnswerCacheMaxDiskBytes());
+            MiruPartitionAnswerCache invalidateAnswerCache = answerCache;
+            indexCallbacks.openCallbacks.add(coord -> invalidateAnswerCache.invalidate(coord.tenantId, coord.partitionId));
+        }
 
         final MiruService miruService = new MiruService(
             miruHost,
@@ -382,7 +414,10 @@ public class MiruServiceInitializer {
             solver,
             schemaProvider,
             solverExecutor,
-            parallelExecutor);
+            parallelExecutor,
+            answerCache,
+            config.getParallelSolverMaxInFlightPerQuery(),
+            config.getParallelSolverMaxInFlightPerTenant());
 
         return new MiruLifecyle<MiruService>() {
 
@@ -395,6 +430,7 @@ public class MiruServiceInitializer {
             public void start() throws Exception {
                 long heartbeatInterval = config.getHeartbeatIntervalInMillis();
                 serviceScheduledExecutor.scheduleWithFixedDelay(partitionDirector::heartbeat, 0, heartbeatInterval, TimeUnit.MILLISECONDS);
+                serviceScheduledExecutor.scheduleWithFixedDelay(() -> termInterner.logMetrics("term"), 0, heartbeatInterval, TimeUnit.MILLISECONDS);
                 leapCache.start("contextCache", config.getLabLeapCacheCleanupIntervalMillis(), throwable -> {
                     LOG.error("Failure in LAB leap cache cleaner", throwable);
                     return false;
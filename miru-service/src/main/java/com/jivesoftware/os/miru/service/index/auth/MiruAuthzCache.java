@@ -1,41 +1,118 @@
 package com.jivesoftware.os.miru.service.index.auth;
 
 import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
 import com.jivesoftware.os.miru.api.query.filter.MiruAuthzExpression;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityInternExtern;
+import com.jivesoftware.os.miru.plugin.metric.MiruCounter;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- *
+ * Caches composite authz bitmaps for a partition. By default a composite is keyed by the versions of its authz values, so any
+ * change to a value discards every composite containing it. In incremental mode a composite is instead kept up to date by
+ * OR-ing in the ids which are newly set against its values, and is only recomposed from the inverted indexes when a value
+ * has been removed from or has missed a delta.
  */
 public class MiruAuthzCache<BM extends IBM, IBM> {
 
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+    private static final MiruCounter DELTA_IDS = new MiruCounter(LOG, "authz>cache>delta>ids");
+
     private final MiruBitmaps<BM, IBM> bitmaps;
     private final Cache<VersionedAuthzExpression, BM> cache;
+    private final Cache<Set<String>, IncrementalAuthz> incrementalCache;
     private final ConcurrentMap<String, VersionableAuthz> versionables = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Set<IncrementalAuthz>> incrementalsByAuthz = Maps.newConcurrentMap();
     private final MiruActivityInternExtern interner;
     private final MiruAuthzUtils<BM, IBM> utils;
+    private final CacheMetric hits;
+    private final CacheMetric misses;
+    private final CacheMetric deltas;
+    private final CacheMetric rebuilds;
 
+    /**
+     * @param maxSize     the maximum number of cached composites, used when maxBytes is not positive
+     * @param maxBytes    the maximum estimated size of cached composites, used when positive
+     * @param incremental whether composites are maintained by deltas rather than invalidated
+     */
     public MiruAuthzCache(MiruBitmaps<BM, IBM> bitmaps,
-        Cache<VersionedAuthzExpression, BM> cache,
+        MiruPartitionCoord coord,
+        int maxSize,
+        long maxBytes,
+        boolean incremental,
         MiruActivityInternExtern interner,
         MiruAuthzUtils<BM, IBM> utils) {
         this.bitmaps = bitmaps;
-        this.cache = cache;
         this.interner = interner;
         this.utils = utils;
+        this.hits = new CacheMetric(coord, "hit");
+        this.misses = new CacheMetric(coord, "miss");
+        this.deltas = new CacheMetric(coord, "delta");
+        this.rebuilds = new CacheMetric(coord, "rebuild");
+
+        if (incremental) {
+            CacheBuilder<Set<String>, IncrementalAuthz> builder = CacheBuilder.newBuilder()
+                .expireAfterAccess(1, TimeUnit.MINUTES) //TODO should be adjusted with respect to tuning GC (prevent promotion from eden space)
+                .removalListener(notification -> {
+                    // a concurrent compose may replace another's composite, which must then stop receiving deltas
+                    if (notification.getCause() != RemovalCause.REPLACED
+                        || notification.getValue() != this.incrementalCache.asMap().get(notification.getKey())) {
+                        unregister(notification.getValue());
+                    }
+                });
+            if (maxBytes > 0) {
+                builder.maximumWeight(maxBytes)
+                    .weigher((Set<String> key, IncrementalAuthz value) -> weigh(value.sizeInBytes()));
+            } else {
+                builder.maximumSize(maxSize);
+            }
+            this.cache = null;
+            this.incrementalCache = builder.build();
+        } else {
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .expireAfterAccess(1, TimeUnit.MINUTES); //TODO should be adjusted with respect to tuning GC (prevent promotion from eden space)
+            if (maxBytes > 0) {
+                this.cache = builder.maximumWeight(maxBytes)
+                    .weigher((VersionedAuthzExpression key, BM value) -> weigh(key.sizeInBytes() + bitmaps.sizeInBytes(value)))
+                    .build();
+            } else {
+                this.cache = builder.maximumSize(maxSize).build();
+            }
+            this.incrementalCache = null;
+        }
+    }
+
+    private static int weigh(long sizeInBytes) {
+        return (int) Math.min(sizeInBytes, Integer.MAX_VALUE);
     }
 
     public long sizeInBytes() {
         long sizeInBytes = 0;
-        for (Map.Entry<VersionedAuthzExpression, BM> entry : cache.asMap().entrySet()) {
-            sizeInBytes += entry.getKey().sizeInBytes() + bitmaps.sizeInBytes(entry.getValue());
+        if (cache != null) {
+            for (Map.Entry<VersionedAuthzExpression, BM> entry : cache.asMap().entrySet()) {
+                sizeInBytes += entry.getKey().sizeInBytes() + bitmaps.sizeInBytes(entry.getValue());
+            }
+        }
+        if (incrementalCache != null) {
+            for (IncrementalAuthz incrementalAuthz : incrementalCache.asMap().values()) {
+                sizeInBytes += incrementalAuthz.sizeInBytes();
+            }
         }
         for (String key : versionables.keySet()) {
             sizeInBytes += key.length() * 2;
@@ -44,25 +121,146 @@ public class MiruAuthzCache<BM extends IBM, IBM> {
         return sizeInBytes;
     }
 
+    /**
+     * Invalidates any composite containing the given authz value, e.g. after ids have been removed.
+     */
     public void increment(String authz) {
         currentVersion(authz).increment();
     }
 
+    /**
+     * Records that the given ids were set against the authz value. In incremental mode the ids are applied as a delta to any
+     * composite containing the value, otherwise this is equivalent to {@link #increment(String)}.
+     */
+    public void set(String authz, int... ids) {
+        long version = currentVersion(authz).increment();
+        if (incrementalCache != null) {
+            Set<IncrementalAuthz> incrementals = incrementalsByAuthz.get(authz);
+            if (incrementals != null) {
+                for (IncrementalAuthz incrementalAuthz : incrementals) {
+                    incrementalAuthz.delta(authz, version, ids);
+                }
+            }
+        }
+    }
+
     public BM getOrCompose(MiruAuthzExpression authzExpression, MiruAuthzUtils.IndexRetriever<IBM> indexRetriever) throws Exception {
+        if (incrementalCache != null) {
+            return getOrComposeIncremental(authzExpression, indexRetriever);
+        }
+
         VersionedAuthzExpression key = new VersionedAuthzExpression(currentVersions(authzExpression));
         BM got = cache.getIfPresent(key);
         if (got == null) {
+            misses.inc();
             got = utils.getCompositeAuthz(authzExpression, indexRetriever);
             cache.put(key, got);
+        } else {
+            hits.inc();
         }
         return got;
     }
 
+    private BM getOrComposeIncremental(MiruAuthzExpression authzExpression, MiruAuthzUtils.IndexRetriever<IBM> indexRetriever) throws Exception {
+        ImmutableSet.Builder<String> keyBuilder = ImmutableSet.builder();
+        for (String authz : authzExpression.values) {
+            keyBuilder.add(interner.internString(authz));
+        }
+        Set<String> key = keyBuilder.build();
+
+        IncrementalAuthz existing = incrementalCache.getIfPresent(key);
+        if (existing != null) {
+            int applied = existing.applyDeltas();
+            if (applied >= 0) {
+                hits.inc();
+                if (applied > 0) {
+                    deltas.inc();
+                    DELTA_IDS.inc(applied);
+                    // reweigh now that the composite has grown, unless a concurrent compose has already replaced it
+                    incrementalCache.asMap().replace(key, existing, existing);
+                }
+                return existing.bitmap;
+            }
+            rebuilds.inc();
+        } else {
+            misses.inc();
+        }
+
+        // versions must be captured before reading the indexes so that a concurrent set is either composed or detected
+        Map<String, Long> versions = Maps.newHashMapWithExpectedSize(key.size());
+        for (String authz : key) {
+            versions.put(authz, currentVersion(authz).version());
+        }
+        BM got = utils.getCompositeAuthz(authzExpression, indexRetriever);
+        IncrementalAuthz incrementalAuthz = new IncrementalAuthz(versions, got);
+        register(incrementalAuthz);
+        if (existing != null) {
+            unregister(existing);
+        }
+        incrementalCache.put(key, incrementalAuthz);
+        return got;
+    }
+
+    /**
+     * @return the number of composites registered to receive deltas, counted once per authz value
+     */
+    public long registeredCount() {
+        long count = 0;
+        for (Set<IncrementalAuthz> incrementals : incrementalsByAuthz.values()) {
+            count += incrementals.size();
+        }
+        return count;
+    }
+
     public void clear() {
-        cache.invalidateAll();
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        if (incrementalCache != null) {
+            incrementalCache.invalidateAll();
+            incrementalsByAuthz.clear();
+        }
         versionables.clear();
     }
 
+    /**
+     * Counts a cache outcome both in total and for the partition, with the names resolved once per cache.
+     */
+    private static class CacheMetric {
+
+        private final MiruCounter total;
+        private final MiruCounter partition;
+        private final String tenantId;
+
+        private CacheMetric(MiruPartitionCoord coord, String type) {
+            this.total = new MiruCounter(LOG, "authz>cache>" + type);
+            this.partition = new MiruCounter(LOG, "authz>cache>" + type + ">" + coord.partitionId.getId());
+            this.tenantId = coord.tenantId.toString();
+        }
+
+        private void inc() {
+            total.inc();
+            partition.inc(1, tenantId);
+        }
+    }
+
+    private void register(IncrementalAuthz incrementalAuthz) {
+        for (String authz : incrementalAuthz.versions.keySet()) {
+            Set<IncrementalAuthz> incrementals = incrementalsByAuthz.computeIfAbsent(authz,
+                k -> Collections.newSetFromMap(Maps.newConcurrentMap()));
+            incrementals.add(incrementalAuthz);
+        }
+    }
+
+    private void unregister(IncrementalAuthz incrementalAuthz) {
+        for (String authz : incrementalAuthz.versions.keySet()) {
+            Set<IncrementalAuthz> incrementals = incrementalsByAuthz.get(authz);
+            if (incrementals != null) {
+                incrementals.remove(incrementalAuthz);
+            }
+        }
+    }
+
     private Set<VersionedAuthz> currentVersions(MiruAuthzExpression authzExpression) {
         Set<VersionedAuthz> versions = Sets.newHashSet();
         for (String authz : authzExpression.values) {
@@ -94,9 +292,13 @@ public class MiruAuthzCache<BM extends IBM, IBM> {
             this.authz = authz;
         }
 
-        synchronized private void increment() {
-            version.incrementAndGet();
+        synchronized private long increment() {
             versionedAuthz = null;
+            return version.incrementAndGet();
+        }
+
+        private long version() {
+            return version.get();
         }
 
         synchronized private VersionedAuthz getLatest() {
@@ -107,4 +309,57 @@ public class MiruAuthzCache<BM extends IBM, IBM> {
         }
     }
 
+    /**
+     * A composite along with the authz versions it reflects. Deltas are accumulated as pending ids and applied copy-on-write
+     * on the next read, so a bitmap which has been handed out is never mutated.
+     */
+    private class IncrementalAuthz {
+
+        private final Map<String, Long> versions;
+        private volatile BM bitmap;
+        private TIntList pending;
+
+        private IncrementalAuthz(Map<String, Long> versions, BM bitmap) {
+            this.versions = versions;
+            this.bitmap = bitmap;
+        }
+
+        synchronized private void delta(String authz, long version, int[] ids) {
+            Long current = versions.get(authz);
+            if (current != null && current == version - 1) {
+                if (pending == null) {
+                    pending = new TIntArrayList(ids.length);
+                }
+                pending.add(ids);
+                versions.put(authz, version);
+            }
+        }
+
+        /**
+         * @return the number of pending ids which were applied, or -1 if the composite is stale and must be recomposed
+         */
+        synchronized private int applyDeltas() {
+            for (Map.Entry<String, Long> entry : versions.entrySet()) {
+                if (currentVersion(entry.getKey()).version() != entry.getValue()) {
+                    return -1;
+                }
+            }
+            if (pending == null) {
+                return 0;
+            }
+            int applied = pending.size();
+            bitmap = bitmaps.or(Arrays.<IBM>asList(bitmap, bitmaps.createWithBits(pending.toArray())));
+            pending = null;
+            return applied;
+        }
+
+        private long sizeInBytes() {
+            long sizeInBytes = 0;
+            for (String authz : versions.keySet()) {
+                sizeInBytes += authz.length() * 2 + 8; // 2 bytes per char plus long version
+            }
+            return sizeInBytes + bitmaps.sizeInBytes(bitmap);
+        }
+    }
+
 }
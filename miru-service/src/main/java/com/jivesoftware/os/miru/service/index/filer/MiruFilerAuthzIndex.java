@@ -53,7 +53,7 @@ public class MiruFilerAuthzIndex<BM extends IBM, IBM> implements MiruAuthzIndex<
     @Override
     public void set(String authz, StackBuffer stackBuffer, int... ids) throws Exception {
         getAuthz(authz).set(stackBuffer, ids);
-        cache.increment(authz);
+        cache.set(authz, ids);
     }
 
     @Override
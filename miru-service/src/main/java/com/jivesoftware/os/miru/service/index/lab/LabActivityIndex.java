@@ -1,5 +1,6 @@
 package com.jivesoftware.os.miru.service.index.lab;
 
+import com.google.common.collect.Lists;
 import com.google.common.primitives.Bytes;
 import com.jivesoftware.os.filer.io.FilerIO;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
@@ -19,8 +20,14 @@ import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
 import com.jivesoftware.os.miru.service.stream.IntTermIdsKeyValueMarshaller;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.File;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.lang.mutable.MutableLong;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -38,6 +45,11 @@ public class LabActivityIndex implements MiruActivityIndex {
     private final ValueIndex<byte[]> metaIndex;
     private final byte[] metaKey;
     private final ValueIndex<byte[]>[] termStorage;
+    private final File columnarFile;
+    private final boolean fsyncOnCommit;
+    private final AtomicReference<LabColumnarActivityStore> columnar = new AtomicReference<>();
+    // reads and writes share the read lock, while compact and restore swap the columnar store under the write lock
+    private final ReadWriteLock columnarLock = new ReentrantReadWriteLock();
 
     public LabActivityIndex(OrderIdProvider idProvider,
         boolean monotime,
@@ -46,7 +58,10 @@ public class LabActivityIndex implements MiruActivityIndex {
         IntTermIdsKeyValueMarshaller intTermIdsKeyValueMarshaller,
         ValueIndex<byte[]> metaIndex,
         byte[] metaKey,
-        ValueIndex<byte[]>[] termStorage) {
+        ValueIndex<byte[]>[] termStorage,
+        File columnarFile,
+        LabColumnarActivityStore columnarStore,
+        boolean fsyncOnCommit) {
         this.idProvider = idProvider;
         this.monotime = monotime;
         this.realtime = realtime;
@@ -55,6 +70,9 @@ public class LabActivityIndex implements MiruActivityIndex {
         this.metaIndex = metaIndex;
         this.metaKey = metaKey;
         this.termStorage = termStorage;
+        this.columnarFile = columnarFile;
+        this.fsyncOnCommit = fsyncOnCommit;
+        this.columnar.set(columnarStore);
     }
 
     private ValueIndex<byte[]> getTermIndex(int fieldId) {
@@ -166,15 +184,27 @@ public class LabActivityIndex implements MiruActivityIndex {
 
         int fieldId = fieldDefinition.fieldId;
         MiruTermId[][] termIds = { null };
-        byte[] concatKey = Bytes.concat(FilerIO.intBytes(fieldId), FilerIO.intBytes(index));
-        getTermIndex(fieldId).get((streamKeys) -> streamKeys.key(0, concatKey, 0, concatKey.length),
-            (index1, key, timestamp, tombstoned, version, payload) -> {
-                if (payload != null && !tombstoned) {
-                    byte[] bytes = payload.copy();
-                    termIds[0] = intTermIdsKeyValueMarshaller.bytesValue(null, bytes, 0);
-                }
-                return false;
-            }, true);
+        // compact and restore move the terms between the store and the term storage under the write lock
+        columnarLock.readLock().lock();
+        try {
+            LabColumnarActivityStore store = columnar.get();
+            if (store != null && store.hasField(fieldId) && index <= store.lastId()) {
+                LOG.inc("count>getTerms>columnar");
+                return store.get(fieldId, index);
+            }
+
+            byte[] concatKey = Bytes.concat(FilerIO.intBytes(fieldId), FilerIO.intBytes(index));
+            getTermIndex(fieldId).get((streamKeys) -> streamKeys.key(0, concatKey, 0, concatKey.length),
+                (index1, key, timestamp, tombstoned, version, payload) -> {
+                    if (payload != null && !tombstoned) {
+                        byte[] bytes = payload.copy();
+                        termIds[0] = intTermIdsKeyValueMarshaller.bytesValue(null, bytes, 0);
+                    }
+                    return false;
+                }, true);
+        } finally {
+            columnarLock.readLock().unlock();
+        }
         LOG.inc("count>getTerms>total");
         LOG.inc("count>getTerms>" + name);
         return termIds[0];
@@ -199,29 +229,49 @@ public class LabActivityIndex implements MiruActivityIndex {
 
         int fieldId = fieldDefinition.fieldId;
         MiruTermId[][] termIds = new MiruTermId[length][];
-        ValueIndex<byte[]> termIndex = getTermIndex(fieldId);
-        byte[] fieldBytes = FilerIO.intBytes(fieldId);
         int[] count = { 0 };
-        termIndex.get(
-            keyStream -> {
+        columnarLock.readLock().lock();
+        try {
+            LabColumnarActivityStore store = columnar.get();
+            if (store != null && store.hasField(fieldId)) {
+                int storeLastId = store.lastId();
                 for (int i = 0; i < length; i++) {
                     int index = indexes[offset + i];
-                    if (index >= 0) {
-                        byte[] key = Bytes.concat(fieldBytes, FilerIO.intBytes(index));
-                        if (!keyStream.key(i, key, 0, key.length)) {
-                            return false;
-                        }
+                    if (index >= 0 && index <= storeLastId) {
+                        termIds[i] = store.get(fieldId, index);
                     }
                 }
-                return true;
-            },
-            (ki, key, timestamp, tombstoned, version, payload) -> {
-                if (payload != null && !tombstoned) {
-                    byte[] bytes = payload.copy();
-                    termIds[ki] = intTermIdsKeyValueMarshaller.bytesValue(null, bytes, 0);
-                }
-                return true;
-            }, true);
+                LOG.inc("count>getAllTerms>columnar");
+                LOG.inc("count>getAllTerms>count", length);
+                LOG.inc("count>getAllTerms>" + name);
+                return termIds;
+            }
+
+            ValueIndex<byte[]> termIndex = getTermIndex(fieldId);
+            byte[] fieldBytes = FilerIO.intBytes(fieldId);
+            termIndex.get(
+                keyStream -> {
+                    for (int i = 0; i < length; i++) {
+                        int index = indexes[offset + i];
+                        if (index >= 0) {
+                            byte[] key = Bytes.concat(fieldBytes, FilerIO.intBytes(index));
+                            if (!keyStream.key(i, key, 0, key.length)) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                },
+                (ki, key, timestamp, tombstoned, version, payload) -> {
+                    if (payload != null && !tombstoned) {
+                        byte[] bytes = payload.copy();
+                        termIds[ki] = intTermIdsKeyValueMarshaller.bytesValue(null, bytes, 0);
+                    }
+                    return true;
+                }, true);
+        } finally {
+            columnarLock.readLock().unlock();
+        }
 
         LOG.inc("count>getAllTerms>total");
         LOG.inc("count>getAllTerms>count", count[0]);
@@ -265,6 +315,24 @@ public class LabActivityIndex implements MiruActivityIndex {
         String name,
         Collection<MiruActivityAndId<MiruInternalActivity>> activityAndIds) throws Exception {
 
+        while (true) {
+            restoreTermStorage();
+            columnarLock.readLock().lock();
+            try {
+                // a compaction may have slipped in after the restore, in which case restore again
+                if (columnar.get() == null) {
+                    return writeInternal(schema, name, activityAndIds);
+                }
+            } finally {
+                columnarLock.readLock().unlock();
+            }
+        }
+    }
+
+    private int writeInternal(MiruSchema schema,
+        String name,
+        Collection<MiruActivityAndId<MiruInternalActivity>> activityAndIds) throws Exception {
+
         int lastIndex = -1;
         @SuppressWarnings("unchecked")
         MiruActivityAndId<MiruInternalActivity>[] activityAndIdsArray = activityAndIds.toArray(new MiruActivityAndId[activityAndIds.size()]);
@@ -331,6 +399,152 @@ public class LabActivityIndex implements MiruActivityIndex {
         return lastIndex;
     }
 
+    /**
+     * Copies the stored field terms for a closed partition into a columnar file, then removes them from the term storage so that
+     * the file is the only copy. A later write restores the term storage before the file is dropped.
+     */
+    public void compactColumnar(MiruSchema schema, long partitionVersion) throws Exception {
+        if (columnarFile == null) {
+            return;
+        }
+        columnarLock.writeLock().lock();
+        try {
+            if (columnar.get() != null) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int lastId = lastId(null);
+            LabColumnarActivityStore.Builder builder = new LabColumnarActivityStore.Builder(lastId, schema.fieldCount());
+            for (int i = 0; i < schema.fieldCount(); i++) {
+                int fieldId = i;
+                if (schema.getFieldDefinition(fieldId).type.hasFeature(Feature.stored)) {
+                    builder.field(fieldId);
+                    streamTerms(fieldId, (index, termIds) -> {
+                        builder.add(fieldId, index, termIds);
+                        return true;
+                    });
+                }
+            }
+            long sizeInBytes = builder.write(columnarFile, partitionVersion);
+            if (sizeInBytes < 0) {
+                LOG.warn("Skipped columnar activity for {}, too large to map", columnarFile);
+                return;
+            }
+            LabColumnarActivityStore store = LabColumnarActivityStore.open(columnarFile, partitionVersion);
+            if (store == null) {
+                LOG.warn("Failed to open columnar activity {}", columnarFile);
+                return;
+            }
+            columnar.set(store);
+
+            BolBuffer entryBuffer = new BolBuffer();
+            BolBuffer keyBuffer = new BolBuffer();
+            long timestamp = System.currentTimeMillis();
+            long version = idProvider.nextId();
+            for (int i = 0; i < schema.fieldCount(); i++) {
+                int fieldId = i;
+                if (store.hasField(fieldId)) {
+                    byte[] fieldBytes = FilerIO.intBytes(fieldId);
+                    getTermIndex(fieldId).append(stream -> {
+                        for (int index = 0; index <= lastId; index++) {
+                            if (store.has(fieldId, index)) {
+                                byte[] key = Bytes.concat(fieldBytes, FilerIO.intBytes(index));
+                                if (!stream.stream(-1, key, timestamp, true, version, null)) {
+                                    return false;
+                                }
+                            }
+                        }
+                        return true;
+                    }, true, entryBuffer, keyBuffer);
+                }
+            }
+            List<Future<Object>> futures = Lists.newArrayList();
+            for (ValueIndex<byte[]> termIndex : termStorage) {
+                termIndex.commit(fsyncOnCommit, true);
+                List<Future<Object>> compact = termIndex.compact(true, 0, 0, false);
+                if (compact != null) {
+                    futures.addAll(compact);
+                }
+            }
+            for (Future<Object> future : futures) {
+                future.get();
+            }
+            LOG.inc("columnar>compact");
+            LOG.info("Compacted columnar activity to {} with {} bytes for {} ids in {} ms",
+                columnarFile, sizeInBytes, lastId + 1, System.currentTimeMillis() - start);
+        } finally {
+            columnarLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes any columnar terms back to the term storage and drops the columnar file, so that the partition can accept writes
+     * again or be moved to another storage.
+     */
+    public void restoreTermStorage() throws Exception {
+        if (columnar.get() == null) {
+            return;
+        }
+        columnarLock.writeLock().lock();
+        try {
+            LabColumnarActivityStore store = columnar.get();
+            if (store == null) {
+                return;
+            }
+            BolBuffer entryBuffer = new BolBuffer();
+            BolBuffer keyBuffer = new BolBuffer();
+            long timestamp = System.currentTimeMillis();
+            long version = idProvider.nextId();
+            for (int i = 0; i < store.fieldCount(); i++) {
+                int fieldId = i;
+                if (store.hasField(fieldId)) {
+                    byte[] fieldBytes = FilerIO.intBytes(fieldId);
+                    getTermIndex(fieldId).append(stream -> {
+                        for (int index = 0; index <= store.lastId(); index++) {
+                            MiruTermId[] termIds = store.get(fieldId, index);
+                            if (termIds != null) {
+                                byte[] key = Bytes.concat(fieldBytes, FilerIO.intBytes(index));
+                                if (!stream.stream(-1, key, timestamp, false, version, intTermIdsKeyValueMarshaller.valueBytes(termIds))) {
+                                    return false;
+                                }
+                            }
+                        }
+                        return true;
+                    }, true, entryBuffer, keyBuffer);
+                }
+            }
+            for (ValueIndex<byte[]> termIndex : termStorage) {
+                termIndex.commit(fsyncOnCommit, true);
+            }
+            columnar.set(null);
+            if (!columnarFile.delete()) {
+                LOG.warn("Failed to delete columnar activity {}", columnarFile);
+            }
+            LOG.inc("columnar>restore");
+        } finally {
+            columnarLock.writeLock().unlock();
+        }
+    }
+
+    private interface TermsStream {
+
+        boolean stream(int index, MiruTermId[] termIds) throws Exception;
+    }
+
+    private boolean streamTerms(int fieldId, TermsStream stream) throws Exception {
+        byte[] fromKey = FilerIO.intBytes(fieldId);
+        byte[] toKey = FilerIO.intBytes(fieldId + 1);
+        return getTermIndex(fieldId).rangeScan(fromKey, toKey, (index, key, timestamp, tombstoned, version, payload) -> {
+            if (key != null && payload != null && !tombstoned) {
+                MiruTermId[] termIds = intTermIdsKeyValueMarshaller.bytesValue(null, payload.copy(), 0);
+                if (!stream.stream(key.getInt(4), termIds)) {
+                    return false;
+                }
+            }
+            return true;
+        }, true);
+    }
+
     @Override
     public void ready(int index, StackBuffer stackBuffer) throws Exception {
         LOG.trace("Check if index {} should extend capacity {}", index, indexSize);
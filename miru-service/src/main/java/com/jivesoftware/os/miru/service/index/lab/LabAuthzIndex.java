@@ -88,7 +88,7 @@ public class LabAuthzIndex<BM extends IBM, IBM> implements MiruAuthzIndex<BM, IB
     @Override
     public void set(String authz, StackBuffer stackBuffer, int... ids) throws Exception {
         getAuthz(authz).set(stackBuffer, ids);
-        cache.increment(authz);
+        cache.set(authz, ids);
     }
 
     @Override
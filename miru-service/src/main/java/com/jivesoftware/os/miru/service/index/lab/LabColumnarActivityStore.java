@@ -0,0 +1,283 @@
+package com.jivesoftware.os.miru.service.index.lab;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.base.MiruTermId;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read only columnar copy of the stored field terms for a closed partition. Each field has a dictionary of its distinct term ids,
+ * addressed by dense ints, and two packed int columns: the start of each activity's terms, and the dense ints themselves. The file
+ * is memory mapped, so bulk reads are sequential scans that allocate only the returned arrays, and each distinct term id is
+ * decoded once and then shared.
+ * <p>
+ * Layout: magic, format, partition version, last id, field count, one section offset per field (-1 if absent), then per field
+ * the dictionary size, value count, dictionary offsets, dictionary bytes, activity offsets and values.
+ */
+public class LabColumnarActivityStore {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private static final int MAGIC = 0x4D434153;
+    private static final int FORMAT = 1;
+
+    private final int lastId;
+    private final Column[] columns;
+
+    private LabColumnarActivityStore(int lastId, Column[] columns) {
+        this.lastId = lastId;
+        this.columns = columns;
+    }
+
+    public int lastId() {
+        return lastId;
+    }
+
+    public int fieldCount() {
+        return columns.length;
+    }
+
+    public boolean hasField(int fieldId) {
+        return fieldId < columns.length && columns[fieldId] != null;
+    }
+
+    /**
+     * @return true if the activity has terms, without decoding them
+     */
+    public boolean has(int fieldId, int index) {
+        Column column = columns[fieldId];
+        int start = column.buffer.getInt(column.idOffsetsPosition + index * 4);
+        int end = column.buffer.getInt(column.idOffsetsPosition + (index + 1) * 4);
+        return start != end;
+    }
+
+    /**
+     * @return the terms for the activity, or null if it has none
+     */
+    public MiruTermId[] get(int fieldId, int index) {
+        Column column = columns[fieldId];
+        int start = column.buffer.getInt(column.idOffsetsPosition + index * 4);
+        int end = column.buffer.getInt(column.idOffsetsPosition + (index + 1) * 4);
+        if (start == end) {
+            return null;
+        }
+        MiruTermId[] termIds = new MiruTermId[end - start];
+        for (int i = 0; i < termIds.length; i++) {
+            termIds[i] = column.term(column.buffer.getInt(column.valuesPosition + (start + i) * 4));
+        }
+        return termIds;
+    }
+
+    /**
+     * @return the store, or null if the file does not exist or was written for another partition version
+     */
+    public static LabColumnarActivityStore open(File file, long partitionVersion) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        MappedByteBuffer buffer;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            if (raf.length() > Integer.MAX_VALUE) {
+                LOG.warn("Ignored oversized columnar activity file:{}", file);
+                return null;
+            }
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        if (buffer.capacity() < 24 || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT || buffer.getLong(8) != partitionVersion) {
+            LOG.info("Ignored stale columnar activity file:{}", file);
+            return null;
+        }
+        int lastId = buffer.getInt(16);
+        int fieldCount = buffer.getInt(20);
+        Column[] columns = new Column[fieldCount];
+        for (int fieldId = 0; fieldId < fieldCount; fieldId++) {
+            long offset = buffer.getLong(24 + fieldId * 8);
+            if (offset >= 0) {
+                columns[fieldId] = new Column(buffer, (int) offset, lastId);
+            }
+        }
+        return new LabColumnarActivityStore(lastId, columns);
+    }
+
+    private static class Column {
+
+        private final MappedByteBuffer buffer;
+        private final int dictOffsetsPosition;
+        private final int dictBytesPosition;
+        private final int idOffsetsPosition;
+        private final int valuesPosition;
+        private final MiruTermId[] decoded;
+
+        private Column(MappedByteBuffer buffer, int position, int lastId) {
+            this.buffer = buffer;
+            int dictSize = buffer.getInt(position);
+            this.dictOffsetsPosition = position + 8;
+            this.dictBytesPosition = dictOffsetsPosition + (dictSize + 1) * 4;
+            int dictBytesLength = buffer.getInt(dictOffsetsPosition + dictSize * 4);
+            this.idOffsetsPosition = dictBytesPosition + dictBytesLength;
+            this.valuesPosition = idOffsetsPosition + (lastId + 2) * 4;
+            this.decoded = new MiruTermId[dictSize];
+        }
+
+        private MiruTermId term(int dense) {
+            MiruTermId termId = decoded[dense];
+            if (termId == null) {
+                int start = buffer.getInt(dictOffsetsPosition + dense * 4);
+                int end = buffer.getInt(dictOffsetsPosition + (dense + 1) * 4);
+                byte[] bytes = new byte[end - start];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buffer.get(dictBytesPosition + start + i);
+                }
+                termId = new MiruTermId(bytes);
+                decoded[dense] = termId;
+            }
+            return termId;
+        }
+    }
+
+    /**
+     * Collects the terms for each field in ascending activity order and writes them as a columnar file.
+     */
+    public static class Builder {
+
+        private final int lastId;
+        private final ColumnBuilder[] columns;
+
+        public Builder(int lastId, int fieldCount) {
+            this.lastId = lastId;
+            this.columns = new ColumnBuilder[fieldCount];
+        }
+
+        public void field(int fieldId) {
+            columns[fieldId] = new ColumnBuilder(lastId);
+        }
+
+        public void add(int fieldId, int index, MiruTermId[] termIds) {
+            if (index >= 0 && index <= lastId && termIds != null && termIds.length > 0) {
+                columns[fieldId].add(index, termIds);
+            }
+        }
+
+        /**
+         * Writes to a temporary file which is then atomically moved into place.
+         *
+         * @return the size of the file in bytes, or -1 if it would be too large to map
+         */
+        public long write(File file, long partitionVersion) throws IOException {
+            long size = 24 + columns.length * 8L;
+            long[] offsets = new long[columns.length];
+            for (int fieldId = 0; fieldId < columns.length; fieldId++) {
+                if (columns[fieldId] != null) {
+                    offsets[fieldId] = size;
+                    size += columns[fieldId].sizeInBytes();
+                } else {
+                    offsets[fieldId] = -1;
+                }
+            }
+            if (size > Integer.MAX_VALUE) {
+                return -1;
+            }
+
+            File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+            try (FileOutputStream fos = new FileOutputStream(tmp);
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, 1024 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT);
+                out.writeLong(partitionVersion);
+                out.writeInt(lastId);
+                out.writeInt(columns.length);
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+                for (ColumnBuilder column : columns) {
+                    if (column != null) {
+                        column.write(out);
+                    }
+                }
+                out.flush();
+                fos.getFD().sync();
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return size;
+        }
+    }
+
+    private static class ColumnBuilder {
+
+        private final Map<MiruTermId, Integer> dictionary = Maps.newHashMap();
+        private final List<byte[]> dictionaryTerms = Lists.newArrayList();
+        private int dictionaryBytes;
+        private final int[] idOffsets;
+        private int[] values = new int[1024];
+        private int valueCount;
+        private int nextIndex;
+
+        private ColumnBuilder(int lastId) {
+            this.idOffsets = new int[lastId + 2];
+        }
+
+        private void add(int index, MiruTermId[] termIds) {
+            if (index < nextIndex) {
+                throw new IllegalArgumentException("Terms must be added in ascending order, " + index + " < " + nextIndex);
+            }
+            for (int i = nextIndex; i <= index; i++) {
+                idOffsets[i] = valueCount;
+            }
+            if (valueCount + termIds.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length * 2, valueCount + termIds.length));
+            }
+            for (MiruTermId termId : termIds) {
+                Integer dense = dictionary.get(termId);
+                if (dense == null) {
+                    dense = dictionaryTerms.size();
+                    dictionary.put(termId, dense);
+                    dictionaryTerms.add(termId.getBytes());
+                    dictionaryBytes += termId.length();
+                }
+                values[valueCount++] = dense;
+            }
+            nextIndex = index + 1;
+        }
+
+        private long sizeInBytes() {
+            return 8 + (dictionaryTerms.size() + 1) * 4L + dictionaryBytes + idOffsets.length * 4L + valueCount * 4L;
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            for (int i = nextIndex; i < idOffsets.length; i++) {
+                idOffsets[i] = valueCount;
+            }
+            out.writeInt(dictionaryTerms.size());
+            out.writeInt(valueCount);
+            int offset = 0;
+            for (byte[] term : dictionaryTerms) {
+                out.writeInt(offset);
+                offset += term.length;
+            }
+            out.writeInt(offset);
+            for (byte[] term : dictionaryTerms) {
+                out.write(term);
+            }
+            for (int idOffset : idOffsets) {
+                out.writeInt(idOffset);
+            }
+            for (int i = 0; i < valueCount; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+}
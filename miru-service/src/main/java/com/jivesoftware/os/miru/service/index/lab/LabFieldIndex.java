@@ -25,6 +25,7 @@ import com.jivesoftware.os.miru.plugin.index.TermIdStream;
 import com.jivesoftware.os.miru.plugin.partition.TrackError;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.List;
 import org.apache.commons.lang.mutable.MutableLong;
@@ -36,6 +37,8 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
+    private static final int MAX_CARDINALITY_ID = -2;
+
     private final OrderIdProvider idProvider;
     private final MiruBitmaps<BM, IBM> bitmaps;
     private final TrackError trackError;
@@ -403,7 +406,14 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
                         bytes.add(payload.length);
                         int lastId = payload.getInt(0);
                         if (considerIfLastIdGreaterThanN < 0 || lastId > considerIfLastIdGreaterThanN) {
-                            indexTx.tx(index, lastId, null, new ByteBufferBackedFiler(payload.asByteBuffer()), LabInvertedIndex.LAST_ID_LENGTH, stackBuffer);
+                            ByteBuffer byteBuffer = payload.asByteBuffer();
+                            byteBuffer.position(LabInvertedIndex.LAST_ID_LENGTH);
+                            IBM view = bitmaps.view(byteBuffer);
+                            if (view != null) {
+                                indexTx.tx(index, lastId, view, null, -1, stackBuffer);
+                            } else {
+                                indexTx.tx(index, lastId, null, new ByteBufferBackedFiler(payload.asByteBuffer()), LabInvertedIndex.LAST_ID_LENGTH, stackBuffer);
+                            }
                         }
                     }
                     return true;
@@ -475,6 +485,25 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
         return getCardinality(fieldDefinition, termId, -1, stackBuffer);
     }
 
+    @Override
+    public long getMaxCardinality(MiruFieldDefinition fieldDefinition, MiruTermId termId, StackBuffer stackBuffer) throws Exception {
+        if (fieldDefinition.type.hasFeature(Feature.cardinality)) {
+            int fieldId = fieldDefinition.fieldId;
+            byte[] fieldIdBytes = FilerIO.intBytes(fieldId);
+            long[] max = { -1 };
+            byte[] cardinalityIndexKey = cardinalityIndexKey(fieldIdBytes, MAX_CARDINALITY_ID, termId.getBytes());
+            getCardinalityIndex(fieldId).get((streamKeys) -> streamKeys.key(0, cardinalityIndexKey, 0, cardinalityIndexKey.length),
+                (index, key, timestamp, tombstoned, version, payload) -> {
+                    if (payload != null && !tombstoned) {
+                        max[0] = payload.getLong(0);
+                    }
+                    return false;
+                }, true);
+            return max[0];
+        }
+        return -1;
+    }
+
     private void mergeCardinalities(MiruFieldDefinition fieldDefinition, MiruTermId termId, int[] ids, long[] counts) throws Exception {
         if (fieldDefinition.type.hasFeature(Feature.cardinality) && counts != null) {
             int fieldId = fieldDefinition.fieldId;
@@ -508,16 +537,35 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
             }
 
             long[] globalCount = { 0 };
+            long[] maxCount = { -1 };
+            boolean[] hasMax = { false };
             byte[] cardinalityIndexKey = cardinalityIndexKey(fieldBytes, -1, termId.getBytes());
+            byte[] maxCardinalityIndexKey = cardinalityIndexKey(fieldBytes, MAX_CARDINALITY_ID, termId.getBytes());
             cardinalityIndex.get(
-                (keyStream) -> keyStream.key(0, cardinalityIndexKey, 0, cardinalityIndexKey.length),
+                (keyStream) -> keyStream.key(0, cardinalityIndexKey, 0, cardinalityIndexKey.length)
+                    && keyStream.key(1, maxCardinalityIndexKey, 0, maxCardinalityIndexKey.length),
                 (index, key, timestamp, tombstoned, version, payload) -> {
                     if (payload != null && !tombstoned) {
-                        globalCount[0] = payload.getLong(0);
+                        if (index == 0) {
+                            globalCount[0] = payload.getLong(0);
+                        } else {
+                            maxCount[0] = payload.getLong(0);
+                            hasMax[0] = true;
+                        }
                     }
-                    return false;
+                    return true;
                 },
                 true);
+
+            // a term counted before max cardinalities were tracked has an unknown bound, which stays unknown until rebuilt
+            boolean unknownMax = hasMax[0] ? maxCount[0] < 0 : globalCount[0] != 0;
+            if (unknownMax) {
+                maxCount[0] = -1;
+            } else {
+                for (long count : counts) {
+                    maxCount[0] = Math.max(maxCount[0], count);
+                }
+            }
             globalCount[0] += delta;
 
             long timestamp = System.currentTimeMillis();
@@ -532,8 +580,10 @@ public class LabFieldIndex<BM extends IBM, IBM> implements MiruFieldIndex<BM, IB
                     }
 
                     byte[] globalKey = cardinalityIndexKey(fieldBytes, -1, termId.getBytes());
-                    valueStream.stream(-1, globalKey, timestamp, false, version, UIO.longBytes(globalCount[0]));
-                    return true;
+                    if (!valueStream.stream(-1, globalKey, timestamp, false, version, UIO.longBytes(globalCount[0]))) {
+                        return false;
+                    }
+                    return valueStream.stream(-1, maxCardinalityIndexKey, timestamp, false, version, UIO.longBytes(maxCount[0]));
                 },
                 true,
                 new BolBuffer(),
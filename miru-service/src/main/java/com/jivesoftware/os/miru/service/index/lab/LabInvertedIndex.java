@@ -14,6 +14,8 @@ import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.index.IndexTx;
 import com.jivesoftware.os.miru.plugin.index.MiruInvertedIndex;
+import com.jivesoftware.os.miru.plugin.metric.MiruCounter;
+import com.jivesoftware.os.miru.plugin.metric.MiruMetricHandles;
 import com.jivesoftware.os.miru.plugin.partition.TrackError;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
@@ -32,6 +34,8 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
+    private static final MiruMetricHandles<Integer, IndexMetrics> INDEX_METRICS = new MiruMetricHandles<>(IndexMetrics::new);
+
     public static final int LAST_ID_LENGTH = 4;
 
     private final OrderIdProvider idProvider;
@@ -45,6 +49,7 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
     private final byte[] termKeyBytes;
     private final ValueIndex<byte[]> termIndex;
     private final Object mutationLock;
+    private final IndexMetrics metrics;
     private volatile int lastId = Integer.MIN_VALUE;
 
     public LabInvertedIndex(OrderIdProvider idProvider,
@@ -70,18 +75,14 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
         this.termKeyBytes = termKeyBytes;
         this.termIndex = termIndex;
         this.mutationLock = mutationLock;
+        this.metrics = INDEX_METRICS.get(name, fieldId);
     }
 
     @Override
     public void getIndex(BitmapAndLastId<BM> container, StackBuffer stackBuffer) throws Exception {
         MutableLong bytes = new MutableLong();
         getIndexInternal(null, container, bytes);
-        LOG.inc("count>getIndex>total");
-        LOG.inc("count>getIndex>" + name + ">total");
-        LOG.inc("count>getIndex>" + name + ">" + fieldId);
-        LOG.inc("bytes>getIndex>total", bytes.longValue());
-        LOG.inc("bytes>getIndex>" + name + ">total", bytes.longValue());
-        LOG.inc("bytes>getIndex>" + name + ">" + fieldId, bytes.longValue());
+        metrics.getIndex.record(bytes.longValue());
     }
 
     private void getIndexInternal(int[] keys, BitmapAndLastId<BM> container, MutableLong bytes) throws Exception {
@@ -203,7 +204,15 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
                                 resultHolder[0] = tx.tx(null, null, -1, null);
                                 return false;
                             } else {
-                                resultHolder[0] = tx.tx(null, new ByteBufferBackedFiler(payload.asByteBuffer()), LAST_ID_LENGTH, stackBuffer);
+                                ByteBuffer byteBuffer = payload.asByteBuffer();
+                                byteBuffer.position(LAST_ID_LENGTH);
+                                IBM view = bitmaps.view(byteBuffer);
+                                if (view != null) {
+                                    LOG.inc("txIndex>view");
+                                    resultHolder[0] = tx.tx(view, null, -1, stackBuffer);
+                                } else {
+                                    resultHolder[0] = tx.tx(null, new ByteBufferBackedFiler(payload.asByteBuffer()), LAST_ID_LENGTH, stackBuffer);
+                                }
                                 return false;
                             }
                         } else {
@@ -218,12 +227,7 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
             result = resultHolder[0];
         }
 
-        LOG.inc("count>txIndex>total");
-        LOG.inc("count>txIndex>" + name + ">total");
-        LOG.inc("count>txIndex>" + name + ">" + fieldId);
-        LOG.inc("bytes>txIndex>total", bytes.longValue());
-        LOG.inc("bytes>txIndex>" + name + ">total", bytes.longValue());
-        LOG.inc("bytes>txIndex>" + name + ">" + fieldId, bytes.longValue());
+        metrics.txIndex.record(bytes.longValue());
         return result;
     }
 
@@ -296,12 +300,7 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
         BitmapAndLastId<BM> index = new BitmapAndLastId<>();
         getIndexInternal(keys, index, bytes);
         BM bitmap = index.isSet() ? index.getBitmap() : bitmaps.create();
-        LOG.inc("count>getOrCreateIndex>total");
-        LOG.inc("count>getOrCreateIndex>" + name + ">total");
-        LOG.inc("count>getOrCreateIndex>" + name + ">" + fieldId);
-        LOG.inc("bytes>getOrCreateIndex>total", bytes.longValue());
-        LOG.inc("bytes>getOrCreateIndex>" + name + ">total", bytes.longValue());
-        LOG.inc("bytes>getOrCreateIndex>" + name + ">" + fieldId, bytes.longValue());
+        metrics.getOrCreateIndex.record(bytes.longValue());
         return bitmap;
     }
 
@@ -386,12 +385,7 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
                 bytesWritten += bytes[i].length;
             }
         }
-        LOG.inc("count>set>total");
-        LOG.inc("count>set>" + name + ">total");
-        LOG.inc("count>set>" + name + ">" + fieldId);
-        LOG.inc("bytes>set>total", bytesWritten);
-        LOG.inc("bytes>set>" + name + ">total", bytesWritten);
-        LOG.inc("bytes>set>" + name + ">" + fieldId, bytesWritten);
+        metrics.set.record(bytesWritten);
         if (atomized) {
             LOG.inc("atomized>set>calls");
             LOG.inc("atomized>set>atoms", keys == null ? 0 : keys.length);
@@ -487,12 +481,7 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
                 }
                 lastId = id[0];
             }
-            LOG.inc("count>lastId>total");
-            LOG.inc("count>lastId>" + name + ">total");
-            LOG.inc("count>lastId>" + name + ">" + fieldId);
-            LOG.inc("bytes>lastId>total", bytes.longValue());
-            LOG.inc("bytes>lastId>" + name + ">total", bytes.longValue());
-            LOG.inc("bytes>lastId>" + name + ">" + fieldId, bytes.longValue());
+            metrics.lastId.record(bytes.longValue());
         }
         return lastId;
     }
@@ -546,4 +535,48 @@ public class LabInvertedIndex<BM extends IBM, IBM> implements MiruInvertedIndex<
         }
     }
 
+    private static class IndexMetrics {
+
+        private final OpMetrics getIndex;
+        private final OpMetrics txIndex;
+        private final OpMetrics getOrCreateIndex;
+        private final OpMetrics set;
+        private final OpMetrics lastId;
+
+        private IndexMetrics(String name, int fieldId) {
+            this.getIndex = new OpMetrics("getIndex", name, fieldId);
+            this.txIndex = new OpMetrics("txIndex", name, fieldId);
+            this.getOrCreateIndex = new OpMetrics("getOrCreateIndex", name, fieldId);
+            this.set = new OpMetrics("set", name, fieldId);
+            this.lastId = new OpMetrics("lastId", name, fieldId);
+        }
+    }
+
+    private static class OpMetrics {
+
+        private final MiruCounter countTotal;
+        private final MiruCounter countName;
+        private final MiruCounter countField;
+        private final MiruCounter bytesTotal;
+        private final MiruCounter bytesName;
+        private final MiruCounter bytesField;
+
+        private OpMetrics(String op, String name, int fieldId) {
+            this.countTotal = new MiruCounter(LOG, "count>" + op + ">total");
+            this.countName = new MiruCounter(LOG, "count>" + op + ">" + name + ">total");
+            this.countField = new MiruCounter(LOG, "count>" + op + ">" + name + ">" + fieldId);
+            this.bytesTotal = new MiruCounter(LOG, "bytes>" + op + ">total");
+            this.bytesName = new MiruCounter(LOG, "bytes>" + op + ">" + name + ">total");
+            this.bytesField = new MiruCounter(LOG, "bytes>" + op + ">" + name + ">" + fieldId);
+        }
+
+        private void record(long bytes) {
+            countTotal.inc();
+            countName.inc();
+            countField.inc();
+            bytesTotal.inc(bytes);
+            bytesName.inc(bytes);
+            bytesField.inc(bytes);
+        }
+    }
 }
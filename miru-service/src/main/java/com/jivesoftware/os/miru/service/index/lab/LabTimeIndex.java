@@ -40,6 +40,7 @@ public class LabTimeIndex implements MiruTimeIndex {
     private final ValueIndex<byte[]> monotonicTimestampIndex;
     private final ValueIndex<byte[]> rawTimestampToIndex;
     private final boolean verboseLogging;
+    private final LabTimeNavigator navigator;
 
     public LabTimeIndex(MiruPartitionCoord coord,
         OrderIdProvider idProvider,
@@ -47,7 +48,8 @@ public class LabTimeIndex implements MiruTimeIndex {
         byte[] metaKey,
         ValueIndex<byte[]> monotonicTimestampIndex,
         ValueIndex<byte[]> rawTimestampToIndex,
-        boolean verboseLogging) throws Exception {
+        boolean verboseLogging,
+        long navigatorMaxSizeInBytes) throws Exception {
 
         this.coord = coord;
         this.idProvider = idProvider;
@@ -56,8 +58,10 @@ public class LabTimeIndex implements MiruTimeIndex {
         this.monotonicTimestampIndex = monotonicTimestampIndex;
         this.rawTimestampToIndex = rawTimestampToIndex;
         this.verboseLogging = verboseLogging;
+        this.navigator = navigatorMaxSizeInBytes > 0 ? new LabTimeNavigator(navigatorMaxSizeInBytes) : null;
 
         init();
+        seedNavigator();
     }
 
     private void init() throws Exception {
@@ -171,6 +175,10 @@ public class LabTimeIndex implements MiruTimeIndex {
             return true;
         }, true, entryBuffer, keyBuffer);
 
+        if (navigator != null) {
+            navigator.append(ids, monotonics);
+        }
+
         rawTimestampToIndex.append(stream -> {
             for (int i = 0; i < ids.length; i++) {
                 if (timestamps[i] != -1 && ids[i] != -1) {
@@ -197,6 +205,11 @@ public class LabTimeIndex implements MiruTimeIndex {
             return lastId() + 1;
         }
 
+        int navigated = navigate(timestamp);
+        if (navigated != LabTimeNavigator.UNKNOWN) {
+            return navigated;
+        }
+
         int[] id = { 0 };
         monotonicTimestampIndex.rangeScan(UIO.longBytes(timestamp), null, (index, key, payloadTimestamp, tombstoned, version, payload) -> {
             if (key != null) {
@@ -270,6 +283,11 @@ public class LabTimeIndex implements MiruTimeIndex {
             return lastId + 1;
         }
 
+        int navigated = navigate(timestamp + 1);
+        if (navigated != LabTimeNavigator.UNKNOWN) {
+            return Math.min(navigated, lastId + 1);
+        }
+
         int[] id = { 0 };
         monotonicTimestampIndex.rangeScan(
             UIO.longBytes(timestamp),
@@ -304,6 +322,11 @@ public class LabTimeIndex implements MiruTimeIndex {
             return lastId;
         }
 
+        int navigated = navigate(timestamp + 1);
+        if (navigated != LabTimeNavigator.UNKNOWN) {
+            return Math.min(navigated - 1, lastId);
+        }
+
         int[] id = { -1 };
         monotonicTimestampIndex.rangeScan(
             UIO.longBytes(timestamp),
@@ -327,6 +350,45 @@ public class LabTimeIndex implements MiruTimeIndex {
         return id[0];
     }
 
+    /*
+     Seeds the navigator with a single scan when the index is opened, so no query thread pays for it. A failed seed leaves the
+     navigator unusable and every lookup falls back to the index.
+     */
+    private void seedNavigator() {
+        if (navigator == null) {
+            return;
+        }
+        try {
+            navigator.seed(seeding -> {
+                long start = System.currentTimeMillis();
+                monotonicTimestampIndex.rowScan((index, key, payloadTimestamp, tombstoned, version, payload) -> {
+                    if (key != null && !tombstoned) {
+                        seeding.append(key.getInt(8), key.getLong(0));
+                    }
+                    return true;
+                }, true);
+                if (verboseLogging) {
+                    LOG.info("Seeded navigator for coord:{} lastId:{} sizeInBytes:{} in {} ms",
+                        coord, id.get(), navigator.sizeInBytes(), System.currentTimeMillis() - start);
+                }
+            });
+        } catch (Exception e) {
+            LOG.warn("Failed to seed navigator for coord:{}", new Object[] { coord }, e);
+        }
+    }
+
+    /*
+     Returns the first id whose monotonic timestamp is at least the given timestamp, or UNKNOWN if the navigator can't say.
+     */
+    private int navigate(long timestamp) {
+        if (navigator == null) {
+            return LabTimeNavigator.UNKNOWN;
+        }
+        int navigated = navigator.ceiling(timestamp, lastId());
+        LOG.inc(navigated != LabTimeNavigator.UNKNOWN ? "navigate>hit" : "navigate>miss");
+        return navigated;
+    }
+
     @Override
     public void close() {
     }
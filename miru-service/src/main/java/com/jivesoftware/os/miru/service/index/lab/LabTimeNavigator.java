@@ -0,0 +1,252 @@
+package com.jivesoftware.os.miru.service.index.lab;
+
+/**
+ * In memory copy of the monotonic timestamp for every id in a suffix of a partition, so timestamp to id navigation can be answered
+ * without a LAB range scan. Monotonic timestamps strictly increase with contiguous ids, so they are held as blocks of varint deltas
+ * beneath a sorted array of block base timestamps. A lookup binary searches the bases and decodes at most one block. When the
+ * footprint exceeds its bound the oldest blocks are dropped, and lookups older than the remaining suffix report {@link #UNKNOWN}.
+ * Any non contiguous append leaves the navigator unusable, so callers always fall back to the index.
+ * <p>
+ * Writers build blocks under the navigator's lock and publish an immutable copy after the seed and after each batch of appends,
+ * so lookups never take the lock and only see whole batches.
+ */
+public class LabTimeNavigator {
+
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    private static final int BLOCK_SIZE = 128;
+    private static final int BLOCK_OVERHEAD_IN_BYTES = 8 + 8 + 16; // base, reference, array header
+
+    private final long maxSizeInBytes;
+
+    private long[] bases = new long[16];
+    private byte[][] deltas = new byte[16][];
+    private int blockCount;
+
+    private final byte[] tail = new byte[BLOCK_SIZE * 10];
+    private int tailLength;
+
+    private int firstId = -1;
+    private int lastId = -1;
+    private long lastMonotonic = Long.MIN_VALUE;
+    private long sizeInBytes;
+
+    private boolean seeded;
+    private boolean valid = true;
+
+    private volatile Blocks published;
+
+    public LabTimeNavigator(long maxSizeInBytes) {
+        this.maxSizeInBytes = maxSizeInBytes;
+    }
+
+    /**
+     * Seeds the navigator from the index, once. The seed runs while holding the navigator's lock so that concurrent appends
+     * wait until it completes, and lookups report {@link #UNKNOWN} until it has been published.
+     */
+    public synchronized void seed(Seed seed) throws Exception {
+        if (seeded) {
+            return;
+        }
+        seeded = true;
+        try {
+            seed.seed(this::append);
+        } catch (Exception e) {
+            invalidate();
+            throw e;
+        } finally {
+            publish();
+        }
+    }
+
+    public interface Seed {
+
+        void seed(Appender appender) throws Exception;
+    }
+
+    public interface Appender {
+
+        void append(int id, long monotonic);
+    }
+
+    /**
+     * Appends the monotonic timestamps for a batch of ids, skipping any id or monotonic of -1, and publishes the result. Appends
+     * are ignored until seeding has begun, since the seed reads every id already in the index. Ids already covered are ignored, and
+     * any gap or non increasing timestamp invalidates the navigator.
+     */
+    public synchronized void append(int[] ids, long[] monotonics) {
+        if (!seeded || !valid) {
+            return;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != -1 && monotonics[i] != -1) {
+                append(ids[i], monotonics[i]);
+            }
+        }
+        publish();
+    }
+
+    private void append(int id, long monotonic) {
+        if (!valid || id <= lastId) {
+            return;
+        }
+        if (lastId != -1 && (id != lastId + 1 || monotonic <= lastMonotonic)) {
+            invalidate();
+            return;
+        }
+
+        if (lastId == -1 || (id - firstId) % BLOCK_SIZE == 0) {
+            if (lastId == -1) {
+                firstId = id;
+            } else {
+                sealTail();
+            }
+            if (blockCount == bases.length) {
+                int length = bases.length * 2;
+                long[] grownBases = new long[length];
+                byte[][] grownDeltas = new byte[length][];
+                System.arraycopy(bases, 0, grownBases, 0, blockCount);
+                System.arraycopy(deltas, 0, grownDeltas, 0, blockCount);
+                bases = grownBases;
+                deltas = grownDeltas;
+            }
+            bases[blockCount] = monotonic;
+            blockCount++;
+            sizeInBytes += BLOCK_OVERHEAD_IN_BYTES;
+            evict();
+        } else {
+            long delta = monotonic - lastMonotonic;
+            while ((delta & ~0x7FL) != 0) {
+                tail[tailLength++] = (byte) ((delta & 0x7F) | 0x80);
+                sizeInBytes++;
+                delta >>>= 7;
+            }
+            tail[tailLength++] = (byte) delta;
+            sizeInBytes++;
+        }
+        lastId = id;
+        lastMonotonic = monotonic;
+    }
+
+    private void sealTail() {
+        byte[] sealed = new byte[tailLength];
+        System.arraycopy(tail, 0, sealed, 0, tailLength);
+        deltas[blockCount - 1] = sealed;
+        tailLength = 0;
+    }
+
+    private void evict() {
+        int evictCount = 0;
+        while (sizeInBytes > maxSizeInBytes && blockCount - evictCount > 1) {
+            sizeInBytes -= BLOCK_OVERHEAD_IN_BYTES + deltas[evictCount].length;
+            evictCount++;
+        }
+        if (evictCount > 0) {
+            System.arraycopy(bases, evictCount, bases, 0, blockCount - evictCount);
+            System.arraycopy(deltas, evictCount, deltas, 0, blockCount - evictCount);
+            for (int i = blockCount - evictCount; i < blockCount; i++) {
+                deltas[i] = null;
+            }
+            blockCount -= evictCount;
+            firstId += evictCount * BLOCK_SIZE;
+        }
+    }
+
+    private void invalidate() {
+        valid = false;
+        bases = new long[0];
+        deltas = new byte[0][];
+        blockCount = 0;
+        tailLength = 0;
+        sizeInBytes = 0;
+    }
+
+    private void publish() {
+        if (!valid || blockCount == 0) {
+            published = null;
+            return;
+        }
+        long[] publishedBases = new long[blockCount];
+        byte[][] publishedDeltas = new byte[blockCount][];
+        System.arraycopy(bases, 0, publishedBases, 0, blockCount);
+        System.arraycopy(deltas, 0, publishedDeltas, 0, blockCount - 1);
+        publishedDeltas[blockCount - 1] = new byte[tailLength];
+        System.arraycopy(tail, 0, publishedDeltas[blockCount - 1], 0, tailLength);
+        published = new Blocks(firstId, lastId, lastMonotonic, publishedBases, publishedDeltas);
+    }
+
+    /**
+     * @param indexLastId the last id known to the index
+     * @return the first id whose monotonic timestamp is at least the given timestamp, or {@link #UNKNOWN} if the answer is not
+     * covered by the navigator
+     */
+    public int ceiling(long timestamp, int indexLastId) {
+        Blocks blocks = published;
+        if (blocks == null) {
+            return UNKNOWN;
+        }
+        long[] bases = blocks.bases;
+        if (timestamp > blocks.lastMonotonic) {
+            return blocks.lastId == indexLastId ? blocks.lastId + 1 : UNKNOWN;
+        }
+        if (timestamp < bases[0]) {
+            return blocks.firstId == 0 ? 0 : UNKNOWN;
+        }
+
+        int low = 0;
+        int high = bases.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (bases[mid] <= timestamp) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int id = blocks.firstId + low * BLOCK_SIZE;
+        long monotonic = bases[low];
+        if (monotonic >= timestamp) {
+            return id;
+        }
+        byte[] blockDeltas = blocks.deltas[low];
+        int offset = 0;
+        while (offset < blockDeltas.length) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = blockDeltas[offset++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            monotonic += delta;
+            id++;
+            if (monotonic >= timestamp) {
+                return id;
+            }
+        }
+        return id + 1;
+    }
+
+    public synchronized long sizeInBytes() {
+        return sizeInBytes;
+    }
+
+    private static class Blocks {
+
+        private final int firstId;
+        private final int lastId;
+        private final long lastMonotonic;
+        private final long[] bases;
+        private final byte[][] deltas;
+
+        private Blocks(int firstId, int lastId, long lastMonotonic, long[] bases, byte[][] deltas) {
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.lastMonotonic = lastMonotonic;
+            this.bases = bases;
+            this.deltas = deltas;
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.jivesoftware.os.miru.api.MiruPartitionCoord;
 import com.jivesoftware.os.miru.api.MiruPartitionCoordInfo;
 import com.jivesoftware.os.miru.api.MiruPartitionState;
 import com.jivesoftware.os.miru.api.MiruStats;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
 import com.jivesoftware.os.miru.api.activity.TimeAndVersion;
@@ -27,6 +28,7 @@ import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruSipIndex;
 import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
+import com.jivesoftware.os.miru.plugin.metric.MiruCounter;
 import com.jivesoftware.os.miru.plugin.partition.MiruHostedPartition;
 import com.jivesoftware.os.miru.plugin.partition.MiruPartitionUnavailableException;
 import com.jivesoftware.os.miru.plugin.partition.MiruQueryablePartition;
@@ -49,7 +51,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -68,6 +70,9 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
 
     private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
 
+    private static final MiruCounter[] REBUILD_POWERS = powerCounters("rebuild>count>power>");
+    private static final MiruCounter[] SIP_POWERS = powerCounters("sip>count>power>");
+
     private final MiruStats miruStats;
     private final MiruBitmaps<BM, IBM> bitmaps;
     private final TrackError trackError;
@@ -95,6 +100,11 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
     private final boolean partitionAllowNonLatestSchemaInteractions;
     private final boolean partitionCompactOnClosedWriters;
     private final int partitionRebuildBatchSize;
+    private final String rebuildBatchTimerName;
+    private final MiruCounter rebuildPartitionCounter;
+    private final MiruCounter sipPartitionCounter;
+    private final int partitionRebuildPrefetchBatches;
+    private final long partitionRebuildPrefetchMaxBytes;
     private final int partitionSipBatchSize;
     private final MiruMergeChits persistentMergeChits;
     private final MiruMergeChits transientMergeChits;
@@ -152,6 +162,8 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         boolean partitionAllowNonLatestSchemaInteractions,
         boolean partitionCompactOnClosedWriters,
         int partitionRebuildBatchSize,
+        int partitionRebuildPrefetchBatches,
+        long partitionRebuildPrefetchMaxBytes,
         int partitionSipBatchSize,
         MiruMergeChits persistentMergeChits,
         MiruMergeChits transientMergeChits,
@@ -182,6 +194,11 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         this.partitionAllowNonLatestSchemaInteractions = partitionAllowNonLatestSchemaInteractions;
         this.partitionCompactOnClosedWriters = partitionCompactOnClosedWriters;
         this.partitionRebuildBatchSize = partitionRebuildBatchSize;
+        this.rebuildBatchTimerName = "rebuild>batchSize-" + partitionRebuildBatchSize;
+        this.rebuildPartitionCounter = new MiruCounter(LOG, "rebuild>partition>" + coord.partitionId);
+        this.sipPartitionCounter = new MiruCounter(LOG, "sip>partition>" + coord.partitionId);
+        this.partitionRebuildPrefetchBatches = partitionRebuildPrefetchBatches;
+        this.partitionRebuildPrefetchMaxBytes = partitionRebuildPrefetchMaxBytes;
         this.partitionSipBatchSize = partitionSipBatchSize;
         this.persistentMergeChits = persistentMergeChits;
         this.transientMergeChits = transientMergeChits;
@@ -823,7 +840,10 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
                                             MiruPartitionAccessor<BM, IBM, C, S> online = accessor.copyToState(MiruPartitionState.online);
                                             accessor = updatePartition(accessor, online);
                                             if (accessor != null) {
+                                                long start = System.currentTimeMillis();
                                                 accessor.merge("rebuild", got, transientMergeChits, trackError);
+                                                LOG.inc("rebuild>stage>merge>elapsed", System.currentTimeMillis() - start);
+                                                LOG.incBucket("rebuild>throughput>merge", 1_000L, 100);
                                                 trackError.reset();
                                             }
                                         } else {
@@ -875,7 +895,7 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         }
 
         private boolean rebuild(final MiruPartitionAccessor<BM, IBM, C, S> accessor, StackBuffer stackBuffer) throws Exception {
-            final ArrayBlockingQueue<MiruWALClient.StreamBatch<MiruWALEntry, C>> queue = new ArrayBlockingQueue<>(1);
+            final MiruRebuildQueue<RebuildBatch<C>> queue = new MiruRebuildQueue<>(partitionRebuildPrefetchBatches, partitionRebuildPrefetchMaxBytes);
             final AtomicReference<C> cursor = new AtomicReference<>(accessor.getRebuildCursor());
             final AtomicBoolean rebuilding = new AtomicBoolean(true);
             final AtomicBoolean endOfWAL = new AtomicBoolean(false);
@@ -885,21 +905,25 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
             rebuildWALExecutors.submit(() -> {
                 try {
 
-                    MiruWALClient.StreamBatch<MiruWALEntry, C> streamBatch = walClient.getActivity(coord.tenantId,
-                        coord.partitionId,
-                        cursor.get(),
-                        partitionRebuildBatchSize,
-                        -1L,
-                        null);
+                    MiruWALClient.StreamBatch<MiruWALEntry, C> streamBatch = fetch(cursor.get());
 
                     while (rebuilding.get() && accessorRef.get() == accessor && streamBatch != null) {
-                        tryQueuePut(rebuilding, queue, streamBatch);
+                        long start = System.currentTimeMillis();
+                        List<MiruPartitionedActivity> partitionedActivities = new ArrayList<>(streamBatch.activities.size());
+                        long sizeInBytes = 0;
+                        for (MiruWALEntry batch : streamBatch.activities) {
+                            partitionedActivities.add(batch.activity);
+                            sizeInBytes += estimateSizeInBytes(batch.activity);
+                        }
+                        // entries arrive decoded from fetch, so this stage only unwraps them and sizes the batch for the queue
+                        LOG.inc("rebuild>stage>prepare>elapsed", System.currentTimeMillis() - start);
+                        LOG.incBucket("rebuild>throughput>prepare", 1_000L, 100, partitionedActivities.size());
+
+                        tryQueuePut(rebuilding, queue, new RebuildBatch<>(partitionedActivities, streamBatch.cursor), sizeInBytes);
                         if (streamBatch.activities.isEmpty()) {
                             break;
                         }
-                        streamBatch = (streamBatch.cursor != null)
-                            ? walClient.getActivity(coord.tenantId, coord.partitionId, streamBatch.cursor, partitionRebuildBatchSize, -1L, null)
-                            : null;
+                        streamBatch = (streamBatch.cursor != null) ? fetch(streamBatch.cursor) : null;
                     }
 
                     // signals end of rebuild
@@ -919,30 +943,26 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
             try {
                 int totalIndexed = 0;
                 while (true) {
-                    MiruWALClient.StreamBatch<MiruWALEntry, C> streamBatch = null;
-                    List<MiruPartitionedActivity> partitionedActivities = null;
-                    C nextCursor = null;
-                    while ((rebuilding.get() || !queue.isEmpty()) && streamBatch == null) {
-                        streamBatch = queue.poll(1, TimeUnit.SECONDS);
+                    RebuildBatch<C> rebuildBatch = null;
+                    while ((rebuilding.get() || !queue.isEmpty()) && rebuildBatch == null) {
+                        rebuildBatch = queue.poll(1, TimeUnit.SECONDS);
                     }
 
-                    if (streamBatch != null && streamBatch.cursor != null) {
-                        partitionedActivities = new ArrayList<>(streamBatch.activities.size());
-                        for (MiruWALEntry batch : streamBatch.activities) {
-                            partitionedActivities.add(batch.activity);
-                        }
-                        nextCursor = streamBatch.cursor;
-                    } else {
+                    if (rebuildBatch == null || rebuildBatch.cursor == null) {
                         // end of rebuild
                         LOG.debug("Ending rebuild for {}", coord);
                         break;
                     }
 
+                    List<MiruPartitionedActivity> partitionedActivities = rebuildBatch.activities;
+                    C nextCursor = rebuildBatch.cursor;
+
                     int count = partitionedActivities.size();
                     totalIndexed += count;
 
                     LOG.debug("Indexing batch of size {} (total {}) for {}", count, totalIndexed, coord);
-                    LOG.startTimer("rebuild>batchSize-" + partitionRebuildBatchSize);
+                    LOG.startTimer(rebuildBatchTimerName);
+                    long start = System.currentTimeMillis();
                     if (accessor.transientContext.isPresent()) {
                         accessor.indexInternal(accessor.transientContext.get(),
                             partitionedActivities.iterator(),
@@ -959,13 +979,15 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
                     if (nextCursor.getSipCursor() != null) {
                         accessor.setSip(accessor.transientContext, nextCursor.getSipCursor(), stackBuffer);
                     }
+                    LOG.inc("rebuild>stage>index>elapsed", System.currentTimeMillis() - start);
+                    LOG.incBucket("rebuild>throughput>index", 1_000L, 100, count);
 
-                    LOG.stopTimer("rebuild>batchSize-" + partitionRebuildBatchSize);
+                    LOG.stopTimer(rebuildBatchTimerName);
                     LOG.inc("rebuild>count>calls", 1);
                     LOG.inc("rebuild>count>total", count);
-                    LOG.inc("rebuild>count>power>" + FilerIO.chunkPower(count, 0), 1);
+                    incPower(REBUILD_POWERS, count);
                     LOG.inc("rebuild", count, coord.tenantId.toString());
-                    LOG.inc("rebuild>partition>" + coord.partitionId, count, coord.tenantId.toString());
+                    rebuildPartitionCounter.inc(count, coord.tenantId.toString());
                 }
             } catch (Exception e) {
                 LOG.error("Failure during rebuild index for {}", new Object[] { coord }, e);
@@ -998,18 +1020,78 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
             return endOfWAL.get() && accessorRef.get() == accessor;
         }
 
+        /*
+         Fetches and decodes the next batch, so the fetch stage covers both the WAL read and deserialization.
+         */
+        private MiruWALClient.StreamBatch<MiruWALEntry, C> fetch(C cursor) throws Exception {
+            long start = System.currentTimeMillis();
+            MiruWALClient.StreamBatch<MiruWALEntry, C> streamBatch = walClient.getActivity(coord.tenantId,
+                coord.partitionId,
+                cursor,
+                partitionRebuildBatchSize,
+                -1L,
+                null);
+            LOG.inc("rebuild>stage>fetch>elapsed", System.currentTimeMillis() - start);
+            if (streamBatch != null) {
+                LOG.incBucket("rebuild>throughput>fetch", 1_000L, 100, streamBatch.activities.size());
+            }
+            return streamBatch;
+        }
+
         private boolean tryQueuePut(AtomicBoolean rebuilding,
-            ArrayBlockingQueue<MiruWALClient.StreamBatch<MiruWALEntry, C>> queue,
-            MiruWALClient.StreamBatch<MiruWALEntry, C> batch)
+            MiruRebuildQueue<RebuildBatch<C>> queue,
+            RebuildBatch<C> batch,
+            long sizeInBytes)
             throws InterruptedException {
             boolean success = false;
             while (rebuilding.get() && !success) {
-                success = queue.offer(batch, 1, TimeUnit.SECONDS);
+                success = queue.offer(batch, sizeInBytes, 1, TimeUnit.SECONDS);
             }
             return success;
         }
     }
 
+    private static long estimateSizeInBytes(MiruPartitionedActivity partitionedActivity) {
+        long sizeInBytes = 64;
+        MiruActivity activity = partitionedActivity.getActivityNullable();
+        if (activity != null) {
+            if (activity.authz != null) {
+                for (String authz : activity.authz) {
+                    sizeInBytes += 2 * authz.length();
+                }
+            }
+            sizeInBytes += estimateSizeInBytes(activity.fieldsValues);
+            sizeInBytes += estimateSizeInBytes(activity.propsValues);
+        }
+        return sizeInBytes;
+    }
+
+    private static long estimateSizeInBytes(Map<String, List<String>> values) {
+        long sizeInBytes = 0;
+        if (values != null) {
+            for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+                sizeInBytes += 2 * entry.getKey().length();
+                if (entry.getValue() != null) {
+                    for (String value : entry.getValue()) {
+                        sizeInBytes += 16 + 2 * value.length();
+                    }
+                }
+            }
+        }
+        return sizeInBytes;
+    }
+
+    private static class RebuildBatch<C> {
+
+        private final List<MiruPartitionedActivity> activities;
+        private final C cursor;
+
+        private RebuildBatch(List<MiruPartitionedActivity> activities, C cursor) {
+            this.activities = activities;
+            this.cursor = cursor;
+        }
+    }
+
     protected class SipMigrateIndexRunnable implements Runnable {
 
         private final AtomicBoolean checkedObsolete = new AtomicBoolean(false);
@@ -1286,9 +1368,9 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
             LOG.inc("sip>count>calls", 1);
             if (count > 0) {
                 LOG.inc("sip>count>total", count);
-                LOG.inc("sip>count>power>" + FilerIO.chunkPower(count, 0), 1);
+                incPower(SIP_POWERS, count);
                 LOG.inc("sip>count", count, coord.tenantId.toString());
-                LOG.inc("sip>partition>" + coord.partitionId, count, coord.tenantId.toString());
+                sipPartitionCounter.inc(count, coord.tenantId.toString());
             }
             if (initialCount > 0) {
                 if (initialCount > count * 2 && accessor.persistentContext.isPresent()) {
@@ -1400,4 +1482,15 @@ public class MiruLocalHostedPartition<BM extends IBM, IBM, C extends MiruCursor<
         }
     }
 
+    private static MiruCounter[] powerCounters(String prefix) {
+        MiruCounter[] counters = new MiruCounter[65];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new MiruCounter(LOG, prefix + i);
+        }
+        return counters;
+    }
+
+    private static void incPower(MiruCounter[] counters, int count) {
+        counters[FilerIO.chunkPower(count, 0)].inc(1);
+    }
 }
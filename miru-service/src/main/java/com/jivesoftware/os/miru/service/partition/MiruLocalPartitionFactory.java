@@ -126,10 +126,17 @@ public class MiruLocalPartitionFactory<C extends MiruCursor<C, S>, S extends Mir
                 new MiruIndexValueBits<>(),
                 new MiruIndexBloom<>(new BloomIndex<>(bitmaps, Hashing.murmur3_128(), 100_000, 0.01f)),
                 new MiruIndexLatest<>(),
-                new MiruIndexPairedLatest<>()),
+                new MiruIndexPairedLatest<>(),
+                config.getIndexPipelineBatchSize(),
+                config.getIndexInternParallelism(),
+                config.getIndexPrimaryFieldsParallelism(),
+                config.getIndexAuthzParallelism(),
+                config.getIndexLatestParallelism()),
             config.getPartitionAllowNonLatestSchemaInteractions(),
             config.getPartitionCompactOnClosedWriters(),
             config.getPartitionRebuildBatchSize(),
+            config.getPartitionRebuildPrefetchBatches(),
+            config.getPartitionRebuildPrefetchMaxBytes(),
             config.getPartitionSipBatchSize(),
             persistentMergeChits,
             transientMergeChits,
@@ -0,0 +1,105 @@
+package com.jivesoftware.os.miru.service.partition;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Blocking hand-off between the rebuild WAL fetcher and the rebuild indexer, bounded by both the number of queued batches and
+ * their estimated size in bytes. A batch is always admitted into an empty queue so that a single oversized batch cannot stall
+ * the rebuild.
+ */
+public class MiruRebuildQueue<T> {
+
+    private final int maxBatches;
+    private final long maxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private final Deque<Sized<T>> queue = new ArrayDeque<>();
+    private long queuedBytes = 0;
+
+    public MiruRebuildQueue(int maxBatches, long maxBytes) {
+        this.maxBatches = Math.max(maxBatches, 1);
+        this.maxBytes = maxBytes;
+    }
+
+    public boolean offer(T batch, long sizeInBytes, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (!queue.isEmpty() && (queue.size() >= maxBatches || queuedBytes + sizeInBytes > maxBytes)) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            queue.addLast(new Sized<>(batch, sizeInBytes));
+            queuedBytes += sizeInBytes;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty()) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            Sized<T> sized = queue.removeFirst();
+            queuedBytes -= sized.sizeInBytes;
+            notFull.signalAll();
+            return sized.batch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        lock.lock();
+        try {
+            return queue.isEmpty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long sizeInBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static class Sized<T> {
+
+        private final T batch;
+        private final long sizeInBytes;
+
+        private Sized(T batch, long sizeInBytes) {
+            this.batch = batch;
+            this.sizeInBytes = sizeInBytes;
+        }
+    }
+}
@@ -75,12 +75,14 @@ public class RunningPercentile {
     }
 
     public long get() {
-        if (lowerTimes.isEmpty() && upperTimes.isEmpty()) {
-            return -1;
-        } else if (upperTimes.isEmpty()) {
-            return lowerTimes.lastEntry().getElement();
-        } else {
-            return (lowerTimes.lastEntry().getElement() + upperTimes.firstEntry().getElement()) / 2;
+        synchronized (position) {
+            if (lowerTimes.isEmpty() && upperTimes.isEmpty()) {
+                return -1;
+            } else if (upperTimes.isEmpty()) {
+                return lowerTimes.lastEntry().getElement();
+            } else {
+                return (lowerTimes.lastEntry().getElement() + upperTimes.firstEntry().getElement()) / 2;
+            }
         }
     }
 }
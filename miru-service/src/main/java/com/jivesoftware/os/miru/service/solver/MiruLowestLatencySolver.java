@@ -1,9 +1,12 @@
 package com.jivesoftware.os.miru.service.solver;
 
 import com.google.common.base.Optional;
+import com.google.common.collect.Maps;
 import com.jivesoftware.os.miru.api.MiruPartitionCoord;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.plugin.metric.MiruCounter;
+import com.jivesoftware.os.miru.plugin.metric.MiruMetricHandles;
 import com.jivesoftware.os.miru.plugin.solution.MiruPartitionResponse;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolution;
 import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
@@ -18,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorCompletionService;
@@ -31,20 +35,38 @@ public class MiruLowestLatencySolver implements MiruSolver {
 
     private static final MetricLogger log = MetricLoggerFactory.getLogger();
 
+    private static final MiruCounter SUCCESS_LOCAL = new MiruCounter(log, "solve>throughput>success>local");
+    private static final MiruCounter SUCCESS_REMOTE = new MiruCounter(log, "solve>throughput>success>remote");
+    private static final MiruMetricHandles<String, RequestMetrics> REQUEST_METRICS = new MiruMetricHandles<>(RequestMetrics::new);
+
     private final int initialSolvers;
     private final int maxNumberOfSolvers;
     private final long defaultAddAnotherSolverAfterNMillis;
     private final long failAfterNMillis;
+    private final MiruSolverHedging hedging;
 
     public MiruLowestLatencySolver(
         int initialSolvers,
         int maxNumberOfSolvers,
         long defaultAddAnotherSolverAfterNMillis,
         long failAfterNMillis) {
+        this(initialSolvers, maxNumberOfSolvers, defaultAddAnotherSolverAfterNMillis, failAfterNMillis, null);
+    }
+
+    /**
+     * @param hedging optional latency-driven hedging policy, or null to add solvers after a fixed delay
+     */
+    public MiruLowestLatencySolver(
+        int initialSolvers,
+        int maxNumberOfSolvers,
+        long defaultAddAnotherSolverAfterNMillis,
+        long failAfterNMillis,
+        MiruSolverHedging hedging) {
         this.initialSolvers = initialSolvers;
         this.maxNumberOfSolvers = maxNumberOfSolvers;
         this.defaultAddAnotherSolverAfterNMillis = defaultAddAnotherSolverAfterNMillis;
         this.failAfterNMillis = failAfterNMillis;
+        this.hedging = hedging;
     }
 
     @Override
@@ -58,8 +80,14 @@ public class MiruLowestLatencySolver implements MiruSolver {
         MiruSolutionLog solutionLog)
         throws InterruptedException {
 
+        RequestMetrics metrics = REQUEST_METRICS.get(requestName, queryKey);
         long failAfterTime = System.currentTimeMillis() + failAfterNMillis;
         long addAnotherSolverAfterNMillis = suggestedTimeoutInMillis.or(defaultAddAnotherSolverAfterNMillis);
+        if (hedging != null) {
+            hedging.request();
+            addAnotherSolverAfterNMillis = hedging.hedgeAfterNMillis(requestName, queryKey, addAnotherSolverAfterNMillis);
+            solvables = hedging.orderByLatency(requestName, queryKey, solvables);
+        }
 
         CompletionService<MiruPartitionResponse<R>> completionService = new ExecutorCompletionService<>(executor);
         int solversAdded = 0;
@@ -69,14 +97,16 @@ public class MiruLowestLatencySolver implements MiruSolver {
         List<SolvableFuture<R>> futures = new ArrayList<>(initialSolvers);
         List<MiruPartitionCoord> triedPartitions = new ArrayList<>(initialSolvers);
         MiruSolved<R> solved = null;
+        SolvableFuture<R> winner = null;
+        long winnerLatency = 0;
         try {
-            log.set(ValueType.COUNT, "solve>request>" + requestName + ">" + queryKey + ">timeout", suggestedTimeoutInMillis.or(-1L));
+            metrics.timeout.set(ValueType.COUNT, suggestedTimeoutInMillis.or(-1L));
             log.inc("solve>calls");
-            log.inc("solve>request>" + requestName + ">" + queryKey + ">calls");
+            metrics.calls.inc();
 
             if (!solvables.hasNext()) {
                 log.inc("solve>empty");
-                log.inc("solve>request>" + requestName + ">" + queryKey + ">empty");
+                metrics.empty.inc();
                 solutionLog.log(MiruSolutionLogLevel.WARN, "WARNING: No solvables available tenant={} partition={}", tenantId, partitionId);
                 return null;
             }
@@ -87,14 +117,14 @@ public class MiruLowestLatencySolver implements MiruSolver {
                 triedPartitions.add(solvable.getCoord());
                 futures.add(new SolvableFuture<>(solvable, completionService.submit(solvable), System.currentTimeMillis()));
                 log.inc("solve>initial");
-                log.inc("solve>request>" + requestName + ">" + queryKey + ">initial");
+                metrics.initial.inc();
                 solversAdded++;
             }
             while (solversFailed < maxNumberOfSolvers && System.currentTimeMillis() < failAfterTime) {
                 boolean mayAddSolver = (solversAdded < maxNumberOfSolvers && solvables.hasNext());
                 long timeout = Math.max(failAfterTime - System.currentTimeMillis(), 0);
                 if (timeout == 0) {
-                    log.inc("solve>request>" + requestName + ">" + queryKey + ">outOfTime");
+                    metrics.outOfTime.inc();
                     solutionLog.log(MiruSolutionLogLevel.WARN, "WARNING: Ran out of time. Took more than {} millis to compute a solution.", failAfterTime);
                     break; // out of time
                 }
@@ -103,6 +133,12 @@ public class MiruLowestLatencySolver implements MiruSolver {
                 }
                 solutionLog.log(MiruSolutionLogLevel.INFO, "Polling completion service for {} millis", timeout);
                 Future<MiruPartitionResponse<R>> future = completionService.poll(timeout, TimeUnit.MILLISECONDS);
+                if (future == null && mayAddSolver && hedging != null && !hedging.tryHedge()) {
+                    log.inc("solve>hedgeDenied");
+                    metrics.hedgeDenied.inc();
+                    solutionLog.log(MiruSolutionLogLevel.INFO, "Hedge budget exhausted, will not add another solver yet.");
+                    mayAddSolver = false;
+                }
                 if (future != null) {
                     try {
                         MiruPartitionResponse<R> response = future.get();
@@ -114,6 +150,8 @@ public class MiruLowestLatencySolver implements MiruSolver {
                                     solutionLog.log(MiruSolutionLogLevel.INFO, "Got a solution coord={}.", coord);
                                     long usedResultElapsed = System.currentTimeMillis() - f.startTime;
                                     long totalElapsed = System.currentTimeMillis() - startTime;
+                                    winner = f;
+                                    winnerLatency = usedResultElapsed;
                                     solved = new MiruSolved<>(
                                         new MiruSolution(coord,
                                             usedResultElapsed,
@@ -121,11 +159,18 @@ public class MiruLowestLatencySolver implements MiruSolver {
                                             triedPartitions,
                                             response.log),
                                         response.answer);
+                                    if (hedging != null) {
+                                        hedging.record(requestName, queryKey, coord.host, usedResultElapsed);
+                                    }
                                     log.inc("solve>success");
-                                    log.inc("solve>request>" + requestName + ">" + queryKey + ">success");
-                                    String locality = f.solvable.isLocal() ? "local" : "remote";
-                                    log.incBucket("solve>throughput>success>" + locality, 1_000L, 100);
-                                    log.incBucket("solve>throughput>success>" + locality + ">" + requestName + ">" + queryKey, 1_000L, 100);
+                                    metrics.success.inc();
+                                    if (f.solvable.isLocal()) {
+                                        SUCCESS_LOCAL.incBucket(1_000L, 100);
+                                        metrics.successLocal.incBucket(1_000L, 100);
+                                    } else {
+                                        SUCCESS_REMOTE.incBucket(1_000L, 100);
+                                        metrics.successRemote.incBucket(1_000L, 100);
+                                    }
                                     MiruSolutionLog solvableSolutionLog = f.solvable.getSolutionLog();
                                     if (solvableSolutionLog != null) {
                                         for (String l : solvableSolutionLog.asList()) {
@@ -147,7 +192,8 @@ public class MiruLowestLatencySolver implements MiruSolver {
                             }
                             break;
                         } else {
-                            log.inc("solve>request>" + requestName + ">" + queryKey + ">solvableFailed");
+                            metrics.solvableFailed.inc();
+                            markFailed(futures, future);
                             solversFailed++;
                         }
                     } catch (ExecutionException e) {
@@ -163,53 +209,123 @@ public class MiruLowestLatencySolver implements MiruSolver {
                             cause = cause.getCause();
                         }
                         if (interrupted) {
-                            log.inc("solve>request>" + requestName + ">" + queryKey + ">solvableInterrupted");
+                            metrics.solvableInterrupted.inc();
                         } else {
-                            log.inc("solve>request>" + requestName + ">" + queryKey + ">solvableError>" + e.getCause().getClass().getSimpleName());
+                            metrics.solvableError(e.getCause().getClass()).inc();
                         }
 
                         log.debug("Solver failed to execute", e.getCause());
                         log.incBucket("solve>throughput>failure", 1_000L, 100);
-                        log.incBucket("solve>throughput>failure>" + requestName + ">" + queryKey, 1_000L, 100);
+                        metrics.failure.incBucket(1_000L, 100);
                         solutionLog.log(MiruSolutionLogLevel.WARN, "WARNING: Solver failed to execute. cause: {}", e.getMessage());
+                        markFailed(futures, future);
                         solversFailed++;
                     }
                 } else {
-                    log.inc("solve>request>" + requestName + ">" + queryKey + ">moreSolvers");
+                    metrics.moreSolvers.inc();
                     solutionLog.log(MiruSolutionLogLevel.WARN, "No solution completed within {} millis. Will add addition solver if possible.", timeout);
                 }
                 if (mayAddSolver) {
                     MiruSolvable<R> solvable = solvables.next();
                     solutionLog.log(MiruSolutionLogLevel.INFO, "Added a solver coord={}", solvable.getCoord());
                     log.inc("solve>added");
-                    log.inc("solve>request>" + requestName + ">" + queryKey + ">added");
+                    metrics.added.inc();
                     triedPartitions.add(solvable.getCoord());
                     futures.add(new SolvableFuture<>(solvable, completionService.submit(solvable), System.currentTimeMillis()));
                     solversAdded++;
                 } else if (solversFailed == solversAdded) {
-                    log.inc("solve>request>" + requestName + ">" + queryKey + ">allFailed");
+                    metrics.allFailed.inc();
                     solutionLog.log(MiruSolutionLogLevel.ERROR, "All solvers failed to execute.");
                     break;
                 }
             }
         } finally {
+            long endTime = System.currentTimeMillis();
             for (SolvableFuture<R> f : futures) {
                 f.future.cancel(true);
+                if (hedging != null && f != winner) {
+                    // a failure is charged the full timeout, otherwise the loser's latency is censored, so it is charged
+                    // no less than the winner even if it was only just hedged
+                    long latency = f.failed ? failAfterNMillis : Math.max(endTime - f.startTime, winnerLatency + 1);
+                    hedging.recordLoser(requestName, queryKey, f.solvable.getCoord().host, latency);
+                }
             }
             int abandoned = solversAdded - solversSuccess - solversFailed;
             log.incBucket("solve>throughput>abandoned", 1_000L, 100, abandoned);
-            log.incBucket("solve>throughput>abandoned>" + requestName + ">" + queryKey, 1_000L, 100, abandoned);
+            metrics.abandoned.incBucket(1_000L, 100, abandoned);
         }
 
         return solved;
     }
 
+    private static class RequestMetrics {
+
+        private final MiruCounter timeout;
+        private final MiruCounter calls;
+        private final MiruCounter empty;
+        private final MiruCounter initial;
+        private final MiruCounter outOfTime;
+        private final MiruCounter hedgeDenied;
+        private final MiruCounter success;
+        private final MiruCounter solvableFailed;
+        private final MiruCounter solvableInterrupted;
+        private final MiruCounter moreSolvers;
+        private final MiruCounter added;
+        private final MiruCounter allFailed;
+        private final MiruCounter successLocal;
+        private final MiruCounter successRemote;
+        private final MiruCounter failure;
+        private final MiruCounter abandoned;
+        private final String request;
+        private final ConcurrentMap<Class<?>, MiruCounter> solvableErrors = Maps.newConcurrentMap();
+
+        private RequestMetrics(String requestName, String queryKey) {
+            this.request = "solve>request>" + requestName + ">" + queryKey + ">";
+            this.timeout = new MiruCounter(log, request + "timeout");
+            this.calls = new MiruCounter(log, request + "calls");
+            this.empty = new MiruCounter(log, request + "empty");
+            this.initial = new MiruCounter(log, request + "initial");
+            this.outOfTime = new MiruCounter(log, request + "outOfTime");
+            this.hedgeDenied = new MiruCounter(log, request + "hedgeDenied");
+            this.success = new MiruCounter(log, request + "success");
+            this.solvableFailed = new MiruCounter(log, request + "solvableFailed");
+            this.solvableInterrupted = new MiruCounter(log, request + "solvableInterrupted");
+            this.moreSolvers = new MiruCounter(log, request + "moreSolvers");
+            this.added = new MiruCounter(log, request + "added");
+            this.allFailed = new MiruCounter(log, request + "allFailed");
+            String throughput = ">" + requestName + ">" + queryKey;
+            this.successLocal = new MiruCounter(log, "solve>throughput>success>local" + throughput);
+            this.successRemote = new MiruCounter(log, "solve>throughput>success>remote" + throughput);
+            this.failure = new MiruCounter(log, "solve>throughput>failure" + throughput);
+            this.abandoned = new MiruCounter(log, "solve>throughput>abandoned" + throughput);
+        }
+
+        private MiruCounter solvableError(Class<?> causeClass) {
+            MiruCounter counter = solvableErrors.get(causeClass);
+            if (counter == null) {
+                counter = solvableErrors.computeIfAbsent(causeClass, k -> new MiruCounter(log, request + "solvableError>" + k.getSimpleName()));
+            }
+            return counter;
+        }
+    }
+
+    private static <R> void markFailed(List<SolvableFuture<R>> futures, Future<MiruPartitionResponse<R>> future) {
+        for (SolvableFuture<R> f : futures) {
+            if (f.future == future) {
+                f.failed = true;
+                break;
+            }
+        }
+    }
+
     private static class SolvableFuture<R> {
 
         private final MiruSolvable<R> solvable;
         private final Future<MiruPartitionResponse<R>> future;
         private final long startTime;
 
+        private boolean failed;
+
         private SolvableFuture(MiruSolvable<R> solvable, Future<MiruPartitionResponse<R>> future, long startTime) {
             this.solvable = solvable;
             this.future = future;
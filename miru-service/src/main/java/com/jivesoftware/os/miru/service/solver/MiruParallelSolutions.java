@@ -0,0 +1,357 @@
+package com.jivesoftware.os.miru.service.solver;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.filer.io.FilerIO;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.plugin.solution.MiruAnswerEvaluator;
+import com.jivesoftware.os.miru.plugin.solution.MiruAnswerMerger;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolution;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLog;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolutionLogLevel;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The partition solutions of one parallel query. Solutions are launched lazily, each holding a tenant permit for as long as its task
+ * runs, and no more than {@code maxInFlight} of them are launched ahead of the partition being consumed.
+ */
+public class MiruParallelSolutions<A> {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final ExecutorService executor;
+    private final Semaphore tenantPermits;
+    private final int maxInFlight;
+    private final MiruSolutionLog solutionLog;
+    private final List<Solution> solutions = Lists.newArrayList();
+    private final BlockingQueue<Completion<A>> completions = new LinkedBlockingQueue<>();
+
+    public MiruParallelSolutions(ExecutorService executor, Semaphore tenantPermits, int maxInFlight, MiruSolutionLog solutionLog) {
+        this.executor = executor;
+        this.tenantPermits = tenantPermits;
+        this.maxInFlight = maxInFlight;
+        this.solutionLog = solutionLog;
+    }
+
+    /**
+     * @return the index of the added solution
+     */
+    public int add(MiruPartitionId partitionId, Callable<MiruSolved<A>> solve) {
+        int index = solutions.size();
+        solutions.add(new Solution(index, partitionId, solve));
+        return index;
+    }
+
+    public int size() {
+        return solutions.size();
+    }
+
+    public MiruPartitionId getPartitionId(int index) {
+        return solutions.get(index).partitionId;
+    }
+
+    public long getStart(int index) {
+        return solutions.get(index).start;
+    }
+
+    /**
+     * Launches the given solution, waiting for a permit if need be, along with as many of the solutions after it as the window and
+     * the available permits allow.
+     */
+    public void launchWindow(int index) throws InterruptedException {
+        solutions.get(index).launch(true);
+        for (int i = index + 1; i < Math.min(index + maxInFlight, solutions.size()); i++) {
+            if (!solutions.get(i).launch(false)) {
+                break;
+            }
+        }
+    }
+
+    public MiruSolved<A> get(int index) throws Exception {
+        launchWindow(index);
+        return solutions.get(index).future.get();
+    }
+
+    public void cancel(int index) {
+        solutions.get(index).cancel();
+    }
+
+    /**
+     * Solves every partition and merges the answers of adjacent runs of partitions as they complete. The earlier run is always the
+     * last answer, so the merger sees the same order as a serial merge. The evaluator is consulted whenever a merged run begins at the
+     * first partition, and once done no partition after that run is launched or merged.
+     *
+     * @return the merged answer, or absent if no partition was solved
+     */
+    public Optional<A> treeMerge(MiruAnswerEvaluator<A> evaluator,
+        MiruAnswerMerger<A> merger,
+        List<MiruSolution> solved,
+        List<MiruSolution> uncached,
+        List<Integer> incompletePartitionIds) throws Exception {
+
+        Map<Integer, Run<A>> runsByFirst = Maps.newHashMap();
+        Map<Integer, Run<A>> runsByLast = Maps.newHashMap();
+        int next = 0;
+        int stop = solutions.size();
+        int solving = 0;
+        int merging = 0;
+        boolean success = false;
+        try {
+            while (true) {
+                while (next < stop && solving < maxInFlight) {
+                    if (!solutions.get(next).launch(solving == 0 && merging == 0)) {
+                        break;
+                    }
+                    next++;
+                    solving++;
+                }
+                if (solving == 0 && merging == 0) {
+                    break;
+                }
+
+                Completion<A> completion = completions.take();
+                Run<A> run;
+                if (completion.failure != null) {
+                    throw new ExecutionException("Failed to merge answers", completion.failure);
+                } else if (completion.run == null) {
+                    Solution solution = solutions.get(completion.index);
+                    if (solution.index >= stop) {
+                        continue;
+                    }
+                    solving--;
+                    solution.consumed = true;
+
+                    MiruSolved<A> partitionSolved = solution.future.get();
+                    if (partitionSolved == null) {
+                        solutionLog.log(MiruSolutionLogLevel.WARN, "No solution for partition:{}", solution.partitionId);
+                        incompletePartitionIds.add(solution.partitionId.getId());
+                        if (evaluator.stopOnUnsolvablePartition()) {
+                            solutionLog.log(MiruSolutionLogLevel.ERROR, "ERROR result set is unsolvable");
+                            next = stop(solution.index + 1, next, stop, runsByFirst, runsByLast);
+                            solving = countSolving(next);
+                            stop = solution.index + 1;
+                        }
+                        run = new Run<>(solution.index, solution.index, null);
+                    } else {
+                        solutionLog.log(MiruSolutionLogLevel.INFO, "Solved partition:{}. elapse:{} millis",
+                            solution.partitionId, (System.currentTimeMillis() - solution.start));
+                        solved.add(partitionSolved.solution);
+                        if (!partitionSolved.cached) {
+                            uncached.add(partitionSolved.solution);
+                        }
+                        run = new Run<>(solution.index, solution.index, partitionSolved.answer);
+                    }
+                } else {
+                    merging--;
+                    solutionLog.append(completion.mergeLog);
+                    run = completion.run;
+                    if (run.first >= stop) {
+                        continue;
+                    }
+                }
+
+                while (run != null) {
+                    if (run.first == 0 && run.answer != null && run.last + 1 < stop && evaluator.isDone(run.answer, solutionLog)) {
+                        next = stop(run.last + 1, next, stop, runsByFirst, runsByLast);
+                        solving = countSolving(next);
+                        stop = run.last + 1;
+                    }
+
+                    Run<A> earlier = runsByLast.remove(run.first - 1);
+                    Run<A> later = null;
+                    if (earlier != null) {
+                        runsByFirst.remove(earlier.first);
+                        later = run;
+                    } else {
+                        later = runsByFirst.remove(run.last + 1);
+                        if (later != null) {
+                            runsByLast.remove(later.last);
+                            earlier = run;
+                        }
+                    }
+
+                    if (earlier == null) {
+                        runsByFirst.put(run.first, run);
+                        runsByLast.put(run.last, run);
+                        run = null;
+                    } else if (earlier.answer == null || later.answer == null) {
+                        run = new Run<>(earlier.first, later.last, earlier.answer != null ? earlier.answer : later.answer);
+                    } else {
+                        merging++;
+                        submitMerge(earlier, later, merger);
+                        run = null;
+                    }
+                }
+            }
+
+            success = true;
+        } finally {
+            if (!success) {
+                for (int i = 0; i < next; i++) {
+                    solutions.get(i).cancel();
+                }
+            }
+        }
+
+        LOG.inc("askAndMerge>treeMerge");
+        Run<A> merged = runsByFirst.get(0);
+        return Optional.fromNullable(merged != null ? merged.answer : null);
+    }
+
+    private int stop(int stopAt,
+        int next,
+        int stop,
+        Map<Integer, Run<A>> runsByFirst,
+        Map<Integer, Run<A>> runsByLast) {
+        for (int i = stopAt; i < Math.min(next, stop); i++) {
+            solutions.get(i).cancel();
+        }
+        for (Iterator<Run<A>> iter = runsByFirst.values().iterator(); iter.hasNext(); ) {
+            Run<A> run = iter.next();
+            if (run.first >= stopAt) {
+                iter.remove();
+                runsByLast.remove(run.last);
+            }
+        }
+        return Math.min(next, stopAt);
+    }
+
+    private int countSolving(int next) {
+        int solving = 0;
+        for (int i = 0; i < next; i++) {
+            if (!solutions.get(i).consumed) {
+                solving++;
+            }
+        }
+        return solving;
+    }
+
+    private void submitMerge(Run<A> earlier, Run<A> later, MiruAnswerMerger<A> merger) {
+        executor.submit(() -> {
+            MiruSolutionLog mergeLog = new MiruSolutionLog(solutionLog.getLevel());
+            try {
+                long start = System.currentTimeMillis();
+                A merged = merger.merge(Optional.of(earlier.answer), later.answer, mergeLog);
+                mergeLog.log(MiruSolutionLogLevel.INFO, "Merged partitions {} to {}. elapse:{} millis",
+                    earlier.first, later.last, (System.currentTimeMillis() - start));
+                completions.add(new Completion<>(-1, new Run<>(earlier.first, later.last, merged), mergeLog, null));
+            } catch (Throwable t) {
+                completions.add(new Completion<>(-1, null, mergeLog, t));
+            }
+        });
+    }
+
+    private static class Run<A> {
+
+        private final int first;
+        private final int last;
+        private final A answer; // null if no partition in the run was solved
+
+        private Run(int first, int last, A answer) {
+            this.first = first;
+            this.last = last;
+            this.answer = answer;
+        }
+    }
+
+    private static class Completion<A> {
+
+        private final int index; // -1 for a merge
+        private final Run<A> run;
+        private final MiruSolutionLog mergeLog;
+        private final Throwable failure;
+
+        private Completion(int index, Run<A> run, MiruSolutionLog mergeLog, Throwable failure) {
+            this.index = index;
+            this.run = run;
+            this.mergeLog = mergeLog;
+            this.failure = failure;
+        }
+    }
+
+    private class Solution {
+
+        private final int index;
+        private final MiruPartitionId partitionId;
+        private final Callable<MiruSolved<A>> solve;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private Future<MiruSolved<A>> future;
+        private long start;
+        private boolean consumed;
+
+        private Solution(int index, MiruPartitionId partitionId, Callable<MiruSolved<A>> solve) {
+            this.index = index;
+            this.partitionId = partitionId;
+            this.solve = solve;
+        }
+
+        /**
+         * Submits the solution once a tenant permit is available.
+         *
+         * @param block whether to wait for a permit
+         * @return true if the solution has been submitted
+         */
+        private boolean launch(boolean block) throws InterruptedException {
+            if (future != null) {
+                return true;
+            }
+            if (block) {
+                tenantPermits.acquire();
+            } else if (!tenantPermits.tryAcquire()) {
+                LOG.inc("parallel>permits>exhausted");
+                return false;
+            }
+
+            start = System.currentTimeMillis();
+            try {
+                future = executor.submit(() -> {
+                    if (!started.compareAndSet(false, true)) {
+                        // cancelled before it ran, and the canceller returned the permit
+                        return null;
+                    }
+                    try {
+                        solutionLog.log(MiruSolutionLogLevel.INFO, "Parallel solution began execution in {} ms", System.currentTimeMillis() - start);
+                        MiruSolved<A> solved = solve.call();
+
+                        long elapsed = System.currentTimeMillis() - start;
+                        LOG.inc("parallel>elapsed>pow>" + FilerIO.chunkPower(elapsed, 0));
+                        solutionLog.log(MiruSolutionLogLevel.INFO, "Parallel solution finished execution in {} ms", elapsed);
+                        return solved;
+                    } finally {
+                        tenantPermits.release();
+                        completions.add(new Completion<>(index, null, null, null));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                tenantPermits.release();
+                throw e;
+            }
+            return true;
+        }
+
+        private void cancel() {
+            if (future != null) {
+                future.cancel(true);
+                if (started.compareAndSet(false, true)) {
+                    // it never ran and now never will, otherwise the running task returns the permit when it exits
+                    tenantPermits.release();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.jivesoftware.os.miru.service.solver;
+
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.api.MiruPartitionCoord;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.TenantAndPartition;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolvableFactory;
+import com.jivesoftware.os.miru.service.stream.MiruContextFactory;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import org.nustaq.serialization.FSTConfiguration;
+
+/**
+ * Caches answers solved against closed partitions, whose indexes can no longer change. Entries are keyed by tenant, partition,
+ * partition version, question and a canonical hash of the request and report, so a rebuild (which assigns a new version) or a
+ * reopened partition never serves a stale answer. Answers are held as serialized bytes so that every hit hands the merger a
+ * private copy, first in a bounded heap tier and optionally in a bounded disk tier. Only answers solved by the local replica are
+ * kept, because the version in the key is the local replica's. Disk entries are named by tenant, partition and hash so that
+ * entries reloaded after a restart can still be invalidated.
+ */
+public class MiruPartitionAnswerCache {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private static final FSTConfiguration CONF = FSTConfiguration.createDefaultConfiguration();
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    static {
+        MAPPER.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        MAPPER.configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        MAPPER.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+        MAPPER.registerModule(new GuavaModule());
+    }
+
+    private final MiruHost localhost;
+    private final MiruContextFactory<?> contextFactory;
+    private final long stateCheckIntervalMillis;
+    private final Cache<AnswerKey, byte[]> heapAnswers;
+    private final File diskDir;
+    private final long maxDiskBytes;
+
+    private final ConcurrentMap<TenantAndPartition, PartitionVersion> versions = Maps.newConcurrentMap();
+    private final LinkedHashMap<String, DiskEntry> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+
+    public MiruPartitionAnswerCache(MiruHost localhost,
+        MiruContextFactory<?> contextFactory,
+        long stateCheckIntervalMillis,
+        long maxHeapBytes,
+        File diskDir,
+        long maxDiskBytes) {
+        this.localhost = localhost;
+        this.contextFactory = contextFactory;
+        this.stateCheckIntervalMillis = stateCheckIntervalMillis;
+        this.heapAnswers = CacheBuilder.newBuilder()
+            .maximumWeight(maxHeapBytes)
+            .weigher((AnswerKey key, byte[] value) -> value.length)
+            .build();
+        this.diskDir = diskDir;
+        this.maxDiskBytes = maxDiskBytes;
+        if (diskDir != null) {
+            loadDiskEntries();
+        }
+    }
+
+    private void loadDiskEntries() {
+        if (!diskDir.exists() && !diskDir.mkdirs()) {
+            throw new IllegalStateException("Failed to create answer cache dir: " + diskDir);
+        }
+        File[] files = diskDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        synchronized (diskEntries) {
+            for (File file : files) {
+                TenantAndPartition tenantAndPartition = file.getName().endsWith(".tmp") ? null : parseFileName(file.getName());
+                if (tenantAndPartition == null) {
+                    file.delete();
+                } else {
+                    diskEntries.put(file.getName(), new DiskEntry(tenantAndPartition, file.length()));
+                    diskBytes += file.length();
+                }
+            }
+            evictDisk();
+        }
+    }
+
+    /**
+     * @return the key for the question against the partition, or null if the answer may not be cached
+     */
+    public <Q, A, P> AnswerKey key(MiruTenantId tenantId,
+        MiruPartitionId partitionId,
+        MiruSolvableFactory<Q, A, P> solvableFactory,
+        Optional<P> report) throws Exception {
+
+        MiruRequest<Q> request = solvableFactory.getQuestion().getCacheableRequest();
+        if (request == null) {
+            return null;
+        }
+
+        TenantAndPartition tenantAndPartition = new TenantAndPartition(tenantId, partitionId);
+        long version = closedVersion(tenantAndPartition);
+        if (version < 0) {
+            return null;
+        }
+
+        // name and log level do not affect the answer
+        MiruRequest<Q> canonical = new MiruRequest<>(null, request.tenantId, request.actorId, request.authzExpression, request.query, null);
+        Hasher hasher = Hashing.sha256().newHasher();
+        hasher.putString(tenantId.toString(), Charsets.UTF_8);
+        hasher.putInt(partitionId.getId());
+        hasher.putLong(version);
+        hasher.putString(solvableFactory.getQuestion().getClass().getName(), Charsets.UTF_8);
+        hasher.putString(solvableFactory.getQueryKey(), Charsets.UTF_8);
+        hasher.putBytes(MAPPER.writeValueAsBytes(canonical));
+        hasher.putBytes(MAPPER.writeValueAsBytes(report.orNull()));
+        return new AnswerKey(tenantAndPartition, hasher.hash().toString());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <A> A get(String requestName, AnswerKey key) throws Exception {
+        byte[] bytes = heapAnswers.getIfPresent(key);
+        if (bytes == null && diskDir != null) {
+            bytes = readDisk(key);
+            if (bytes != null) {
+                heapAnswers.put(key, bytes);
+                LOG.inc("askAndMerge>cache>disk>" + requestName);
+            }
+        }
+        if (bytes == null) {
+            LOG.inc("askAndMerge>cache>miss");
+            LOG.inc("askAndMerge>cache>miss>" + requestName);
+            return null;
+        }
+        LOG.inc("askAndMerge>cache>hit");
+        LOG.inc("askAndMerge>cache>hit>" + requestName);
+        return (A) CONF.asObject(bytes);
+    }
+
+    /**
+     * Caches the answer if it was solved by the local replica. Answers from remote replicas are not cached, since their completeness
+     * and version are unknown to this host.
+     */
+    public <A> void put(String requestName, AnswerKey key, MiruPartitionCoord usedPartition, A answer) throws Exception {
+        if (usedPartition == null || !localhost.equals(usedPartition.host)) {
+            LOG.inc("askAndMerge>cache>remote>" + requestName);
+            return;
+        }
+        byte[] bytes = CONF.asByteArray(answer);
+        heapAnswers.put(key, bytes);
+        if (diskDir != null && bytes.length <= maxDiskBytes) {
+            writeDisk(key, bytes);
+        }
+        LOG.inc("askAndMerge>cache>put>" + requestName);
+    }
+
+    /**
+     * Drops every answer for the partition and forces its closed state and version to be checked again.
+     */
+    public void invalidate(MiruTenantId tenantId, MiruPartitionId partitionId) {
+        TenantAndPartition tenantAndPartition = new TenantAndPartition(tenantId, partitionId);
+        versions.remove(tenantAndPartition);
+        invalidate(tenantAndPartition);
+    }
+
+    private void invalidate(TenantAndPartition tenantAndPartition) {
+        heapAnswers.asMap().keySet().removeIf(key -> key.tenantAndPartition.equals(tenantAndPartition));
+        if (diskDir != null) {
+            synchronized (diskEntries) {
+                Iterator<Map.Entry<String, DiskEntry>> iter = diskEntries.entrySet().iterator();
+                while (iter.hasNext()) {
+                    Map.Entry<String, DiskEntry> entry = iter.next();
+                    if (tenantAndPartition.equals(entry.getValue().tenantAndPartition)) {
+                        iter.remove();
+                        diskBytes -= entry.getValue().size;
+                        new File(diskDir, entry.getKey()).delete();
+                    }
+                }
+            }
+        }
+        LOG.inc("askAndMerge>cache>invalidate");
+    }
+
+    private long closedVersion(TenantAndPartition tenantAndPartition) throws Exception {
+        long now = System.currentTimeMillis();
+        PartitionVersion partitionVersion = versions.get(tenantAndPartition);
+        if (partitionVersion == null || now - partitionVersion.checkedTimestamp > stateCheckIntervalMillis) {
+            MiruPartitionCoord coord = new MiruPartitionCoord(tenantAndPartition.tenantId, tenantAndPartition.partitionId, localhost);
+            long version = contextFactory.checkClosed(coord) ? contextFactory.readVersion(coord) : -1;
+            if (partitionVersion != null && partitionVersion.version != version) {
+                invalidate(tenantAndPartition);
+            }
+            partitionVersion = new PartitionVersion(now, version);
+            versions.put(tenantAndPartition, partitionVersion);
+        }
+        return partitionVersion.version;
+    }
+
+    private byte[] readDisk(AnswerKey key) throws Exception {
+        synchronized (diskEntries) {
+            if (diskEntries.get(key.fileName()) == null) {
+                return null;
+            }
+        }
+        File file = new File(diskDir, key.fileName());
+        try {
+            return Files.readAllBytes(file.toPath());
+        } catch (Exception e) {
+            LOG.warn("Failed to read cached answer from {}", new Object[] { file }, e);
+            return null;
+        }
+    }
+
+    private void writeDisk(AnswerKey key, byte[] bytes) {
+        File tmp = new File(diskDir, key.fileName() + ".tmp");
+        try {
+            Files.write(tmp.toPath(), bytes);
+            Files.move(tmp.toPath(), new File(diskDir, key.fileName()).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            LOG.warn("Failed to write cached answer to {}", new Object[] { tmp }, e);
+            tmp.delete();
+            return;
+        }
+        synchronized (diskEntries) {
+            DiskEntry existing = diskEntries.put(key.fileName(), new DiskEntry(key.tenantAndPartition, bytes.length));
+            if (existing != null) {
+                diskBytes -= existing.size;
+            }
+            diskBytes += bytes.length;
+            evictDisk();
+        }
+    }
+
+    private void evictDisk() {
+        Iterator<Map.Entry<String, DiskEntry>> iter = diskEntries.entrySet().iterator();
+        while (diskBytes > maxDiskBytes && iter.hasNext()) {
+            Map.Entry<String, DiskEntry> eldest = iter.next();
+            iter.remove();
+            diskBytes -= eldest.getValue().size;
+            new File(diskDir, eldest.getKey()).delete();
+            LOG.inc("askAndMerge>cache>disk>evict");
+        }
+    }
+
+    private static TenantAndPartition parseFileName(String fileName) {
+        String[] parts = fileName.split("\\.");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new TenantAndPartition(new MiruTenantId(BaseEncoding.base16().decode(parts[0])), MiruPartitionId.of(Integer.parseInt(parts[1])));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public static class AnswerKey {
+
+        private final TenantAndPartition tenantAndPartition;
+        private final String hash;
+
+        private AnswerKey(TenantAndPartition tenantAndPartition, String hash) {
+            this.tenantAndPartition = tenantAndPartition;
+            this.hash = hash;
+        }
+
+        private String fileName() {
+            return BaseEncoding.base16().encode(tenantAndPartition.tenantId.getBytes()) + "." + tenantAndPartition.partitionId.getId() + "." + hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            AnswerKey answerKey = (AnswerKey) o;
+            return hash.equals(answerKey.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash.hashCode();
+        }
+    }
+
+    private static class PartitionVersion {
+
+        private final long checkedTimestamp;
+        private final long version;
+
+        private PartitionVersion(long checkedTimestamp, long version) {
+            this.checkedTimestamp = checkedTimestamp;
+            this.version = version;
+        }
+    }
+
+    private static class DiskEntry {
+
+        private final TenantAndPartition tenantAndPartition;
+        private final long size;
+
+        private DiskEntry(TenantAndPartition tenantAndPartition, long size) {
+            this.tenantAndPartition = tenantAndPartition;
+            this.size = size;
+        }
+    }
+}
@@ -9,9 +9,15 @@ public class MiruSolved<A> {
 
     public final MiruSolution solution; // show your work!
     public final A answer; // circle the answer!
+    public final boolean cached; // copied from your neighbor!
 
     public MiruSolved(MiruSolution solution, A answer) {
+        this(solution, answer, false);
+    }
+
+    public MiruSolved(MiruSolution solution, A answer, boolean cached) {
         this.solution = solution;
         this.answer = answer;
+        this.cached = cached;
     }
 }
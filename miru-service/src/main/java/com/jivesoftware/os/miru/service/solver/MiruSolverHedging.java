@@ -0,0 +1,243 @@
+package com.jivesoftware.os.miru.service.solver;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.MiruHost;
+import com.jivesoftware.os.miru.plugin.solution.MiruSolvable;
+import com.jivesoftware.os.miru.service.partition.RunningPercentile;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency-driven hedging policy for {@link MiruLowestLatencySolver}. Tracks a running percentile per request name/queryKey and per
+ * replica host, so the solver can order replicas by recent latency and wait for the observed percentile before adding a hedge.
+ * Hedges draw from a shared budget which accrues a fixed percentage of a token per request. Percentiles are kept for a bounded number
+ * of keys and are dropped once they go unused, so ad hoc query keys and departed hosts do not accumulate.
+ */
+public class MiruSolverHedging {
+
+    private static final long TOKEN = 10_000L;
+
+    private final int windowSize;
+    private final int percentile;
+    private final long minHedgeAfterNMillis;
+    private final long creditPerRequest;
+    private final long maxCredit;
+
+    private final Cache<RequestKey, RunningPercentile> requestPercentiles;
+    private final Cache<ReplicaKey, RunningPercentile> replicaPercentiles;
+    private final AtomicLong credit = new AtomicLong();
+
+    /**
+     * @param windowSize           the number of latencies retained per percentile window
+     * @param percentile           the percentile to wait for before hedging, e.g. 95
+     * @param minHedgeAfterNMillis the lower bound on the hedge delay
+     * @param budgetPercent        the percentage of requests which may issue a hedge
+     * @param maxBurstHedges       the number of hedges which may accumulate while idle
+     * @param maxTrackedKeys       the number of request keys, and separately replica keys, with a retained percentile
+     * @param expireAfterNMillis   how long an unused percentile is retained
+     */
+    public MiruSolverHedging(int windowSize,
+        int percentile,
+        long minHedgeAfterNMillis,
+        double budgetPercent,
+        int maxBurstHedges,
+        int maxTrackedKeys,
+        long expireAfterNMillis) {
+        this.windowSize = windowSize;
+        this.percentile = percentile;
+        this.minHedgeAfterNMillis = minHedgeAfterNMillis;
+        this.creditPerRequest = (long) (TOKEN * budgetPercent / 100d);
+        this.maxCredit = TOKEN * maxBurstHedges;
+        this.requestPercentiles = CacheBuilder.newBuilder()
+            .maximumSize(maxTrackedKeys)
+            .expireAfterAccess(expireAfterNMillis, TimeUnit.MILLISECONDS)
+            .build();
+        this.replicaPercentiles = CacheBuilder.newBuilder()
+            .maximumSize(maxTrackedKeys)
+            .expireAfterAccess(expireAfterNMillis, TimeUnit.MILLISECONDS)
+            .build();
+    }
+
+    /**
+     * Accrues hedge budget for an incoming request.
+     */
+    public void request() {
+        long current;
+        long next;
+        do {
+            current = credit.get();
+            next = Math.min(current + creditPerRequest, maxCredit);
+        }
+        while (current != next && !credit.compareAndSet(current, next));
+    }
+
+    /**
+     * Attempts to spend one hedge from the budget.
+     *
+     * @return true if the hedge may be issued
+     */
+    public boolean tryHedge() {
+        long current;
+        do {
+            current = credit.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        }
+        while (!credit.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * Suggests how long to wait for outstanding solvers before hedging.
+     *
+     * @param requestName              the request name
+     * @param queryKey                 the query key
+     * @param defaultHedgeAfterNMillis the delay to use when no latencies have been observed
+     * @return the hedge delay in millis
+     */
+    public long hedgeAfterNMillis(String requestName, String queryKey, long defaultHedgeAfterNMillis) {
+        RunningPercentile runningPercentile = requestPercentiles.getIfPresent(new RequestKey(requestName, queryKey));
+        long observed = runningPercentile != null ? runningPercentile.get() : -1;
+        return observed < 0 ? defaultHedgeAfterNMillis : Math.max(observed, minHedgeAfterNMillis);
+    }
+
+    /**
+     * Drains the solvables and orders them by the recent latency of their replica host. Replicas without any observed latency
+     * retain their given order behind those which have been observed.
+     */
+    public <R> Iterator<MiruSolvable<R>> orderByLatency(String requestName, String queryKey, Iterator<MiruSolvable<R>> solvables) {
+        List<SolvableAndLatency<R>> ordered = Lists.newArrayList();
+        while (solvables.hasNext()) {
+            MiruSolvable<R> solvable = solvables.next();
+            RunningPercentile runningPercentile = replicaPercentiles.getIfPresent(new ReplicaKey(requestName, queryKey, solvable.getCoord().host));
+            long latency = runningPercentile != null ? runningPercentile.get() : -1;
+            ordered.add(new SolvableAndLatency<>(solvable, latency < 0 ? Long.MAX_VALUE : latency));
+        }
+        ordered.sort((o1, o2) -> Long.compare(o1.latency, o2.latency));
+        return Lists.transform(ordered, input -> input.solvable).iterator();
+    }
+
+    /**
+     * Records the latency of a successful solvable.
+     */
+    public void record(String requestName, String queryKey, MiruHost host, long latencyInMillis) {
+        getOrCreate(requestPercentiles.asMap(), new RequestKey(requestName, queryKey)).add(latencyInMillis);
+        getOrCreate(replicaPercentiles.asMap(), new ReplicaKey(requestName, queryKey, host)).add(latencyInMillis);
+    }
+
+    /**
+     * Records the latency of a solvable which lost, failed or was abandoned. Only the replica is charged, since the request latency
+     * is measured by the winner, so a replica which is never the fastest still sorts behind the replicas which are.
+     *
+     * @param latencyInMillis the penalty for the loser, which the caller bounds below by the winner's latency since a loser's own
+     *                        elapsed time is censored when it was abandoned
+     */
+    public void recordLoser(String requestName, String queryKey, MiruHost host, long latencyInMillis) {
+        getOrCreate(replicaPercentiles.asMap(), new ReplicaKey(requestName, queryKey, host)).add(latencyInMillis);
+    }
+
+    private <K> RunningPercentile getOrCreate(ConcurrentMap<K, RunningPercentile> percentiles, K key) {
+        RunningPercentile runningPercentile = percentiles.get(key);
+        if (runningPercentile == null) {
+            runningPercentile = new RunningPercentile(windowSize, percentile);
+            RunningPercentile existing = percentiles.putIfAbsent(key, runningPercentile);
+            if (existing != null) {
+                runningPercentile = existing;
+            }
+        }
+        return runningPercentile;
+    }
+
+    private static class SolvableAndLatency<R> {
+
+        private final MiruSolvable<R> solvable;
+        private final long latency;
+
+        private SolvableAndLatency(MiruSolvable<R> solvable, long latency) {
+            this.solvable = solvable;
+            this.latency = latency;
+        }
+    }
+
+    private static class RequestKey {
+
+        private final String requestName;
+        private final String queryKey;
+
+        private RequestKey(String requestName, String queryKey) {
+            this.requestName = requestName;
+            this.queryKey = queryKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            RequestKey that = (RequestKey) o;
+
+            if (requestName != null ? !requestName.equals(that.requestName) : that.requestName != null) {
+                return false;
+            }
+            return !(queryKey != null ? !queryKey.equals(that.queryKey) : that.queryKey != null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = requestName != null ? requestName.hashCode() : 0;
+            result = 31 * result + (queryKey != null ? queryKey.hashCode() : 0);
+            return result;
+        }
+    }
+
+    private static class ReplicaKey {
+
+        private final String requestName;
+        private final String queryKey;
+        private final MiruHost host;
+
+        private ReplicaKey(String requestName, String queryKey, MiruHost host) {
+            this.requestName = requestName;
+            this.queryKey = queryKey;
+            this.host = host;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+
+            ReplicaKey that = (ReplicaKey) o;
+
+            if (requestName != null ? !requestName.equals(that.requestName) : that.requestName != null) {
+                return false;
+            }
+            if (queryKey != null ? !queryKey.equals(that.queryKey) : that.queryKey != null) {
+                return false;
+            }
+            return !(host != null ? !host.equals(that.host) : that.host != null);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = requestName != null ? requestName.hashCode() : 0;
+            result = 31 * result + (queryKey != null ? queryKey.hashCode() : 0);
+            result = 31 * result + (host != null ? host.hashCode() : 0);
+            return result;
+        }
+    }
+}
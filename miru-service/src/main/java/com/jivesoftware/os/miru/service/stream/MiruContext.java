@@ -7,6 +7,7 @@ import com.jivesoftware.os.miru.api.MiruBackingStorage;
 import com.jivesoftware.os.miru.api.activity.schema.MiruSchema;
 import com.jivesoftware.os.miru.api.base.MiruStreamId;
 import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
+import com.jivesoftware.os.miru.plugin.cache.MiruFilterCache;
 import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
@@ -49,6 +50,7 @@ public class MiruContext<BM extends IBM, IBM, S extends MiruSipCursor<S>> implem
     public final MiruUnreadTrackingIndex<BM, IBM> unreadTrackingIndex;
     public final MiruInboxIndex<BM, IBM> inboxIndex;
     public final MiruPluginCacheProvider cacheProvider;
+    public final MiruFilterCache<BM, IBM> filterCache;
     public final MiruActivityInternExtern activityInternExtern;
     public final StripingLocksProvider<MiruStreamId> streamLocks;
     public final ChunkStore[] chunkStores;
@@ -76,6 +78,7 @@ public class MiruContext<BM extends IBM, IBM, S extends MiruSipCursor<S>> implem
         MiruUnreadTrackingIndex<BM, IBM> unreadTrackingIndex,
         MiruInboxIndex<BM, IBM> inboxIndex,
         MiruPluginCacheProvider cacheProvider,
+        MiruFilterCache<BM, IBM> filterCache,
         MiruActivityInternExtern activityInternExtern,
         StripingLocksProvider<MiruStreamId> streamLocks,
         ChunkStore[] chunkStores,
@@ -98,6 +101,7 @@ public class MiruContext<BM extends IBM, IBM, S extends MiruSipCursor<S>> implem
         this.unreadTrackingIndex = unreadTrackingIndex;
         this.inboxIndex = inboxIndex;
         this.cacheProvider = cacheProvider;
+        this.filterCache = filterCache;
         this.activityInternExtern = activityInternExtern;
         this.streamLocks = streamLocks;
         this.chunkStores = chunkStores;
@@ -165,6 +169,11 @@ public class MiruContext<BM extends IBM, IBM, S extends MiruSipCursor<S>> implem
         return cacheProvider;
     }
 
+    @Override
+    public MiruFilterCache<BM, IBM> getFilterCache() {
+        return filterCache;
+    }
+
     @Override
     public StripingLocksProvider<MiruStreamId> getStreamLocks() {
         return streamLocks;
@@ -2,8 +2,6 @@ package com.jivesoftware.os.miru.service.stream;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Charsets;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.jivesoftware.os.filer.chunk.store.transaction.MapBackedKeyedFPIndex;
 import com.jivesoftware.os.filer.chunk.store.transaction.MapCreator;
@@ -46,6 +44,7 @@ import com.jivesoftware.os.miru.api.field.MiruFieldType;
 import com.jivesoftware.os.miru.api.wal.MiruSipCursor;
 import com.jivesoftware.os.miru.plugin.MiruInterner;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
+import com.jivesoftware.os.miru.plugin.cache.MiruFilterCache;
 import com.jivesoftware.os.miru.plugin.cache.MiruPluginCacheProvider;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityInternExtern;
@@ -65,7 +64,6 @@ import com.jivesoftware.os.miru.service.index.MiruFilerProvider;
 import com.jivesoftware.os.miru.service.index.TimeIdIndex;
 import com.jivesoftware.os.miru.service.index.auth.MiruAuthzCache;
 import com.jivesoftware.os.miru.service.index.auth.MiruAuthzUtils;
-import com.jivesoftware.os.miru.service.index.auth.VersionedAuthzExpression;
 import com.jivesoftware.os.miru.service.index.filer.MiruFilerActivityIndex;
 import com.jivesoftware.os.miru.service.index.filer.MiruFilerAuthzIndex;
 import com.jivesoftware.os.miru.service.index.filer.MiruFilerFieldIndex;
@@ -75,6 +73,7 @@ import com.jivesoftware.os.miru.service.index.filer.MiruFilerSipIndex;
 import com.jivesoftware.os.miru.service.index.filer.MiruFilerTimeIndex;
 import com.jivesoftware.os.miru.service.index.filer.MiruFilerUnreadTrackingIndex;
 import com.jivesoftware.os.miru.service.index.lab.LabActivityIndex;
+import com.jivesoftware.os.miru.service.index.lab.LabColumnarActivityStore;
 import com.jivesoftware.os.miru.service.index.lab.LabAuthzIndex;
 import com.jivesoftware.os.miru.service.index.lab.LabFieldIndex;
 import com.jivesoftware.os.miru.service.index.lab.LabInboxIndex;
@@ -99,7 +98,6 @@ import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.builder.HashCodeBuilder;
@@ -132,6 +130,9 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
     private final MiruSipIndexMarshaller<S> sipMarshaller;
     private final MiruResourceLocator diskResourceLocator;
     private final int partitionAuthzCacheSize;
+    private final long partitionAuthzCacheMaxBytes;
+    private final boolean partitionAuthzCacheIncremental;
+    private final long partitionFilterCacheMaxBytes;
     private final StripingLocksProvider<MiruTermId> fieldIndexStripingLocksProvider;
     private final StripingLocksProvider<MiruStreamId> streamStripingLocksProvider;
     private final StripingLocksProvider<String> authzStripingLocksProvider;
@@ -146,6 +147,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
     private final boolean realtimeDelivery;
     private final boolean fsyncOnCommit;
     private final boolean timeIndexVerboseLogging;
+    private final long timeIndexNavigatorMaxSizeInBytes;
+    private final boolean columnarActivityEnabled;
 
     public MiruContextFactory(OrderIdProvider idProvider,
         TxCogs persistentCogs,
@@ -160,6 +163,9 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         MiruSipIndexMarshaller<S> sipMarshaller,
         MiruResourceLocator diskResourceLocator,
         int partitionAuthzCacheSize,
+        long partitionAuthzCacheMaxBytes,
+        boolean partitionAuthzCacheIncremental,
+        long partitionFilterCacheMaxBytes,
         StripingLocksProvider<MiruTermId> fieldIndexStripingLocksProvider,
         StripingLocksProvider<MiruStreamId> streamStripingLocksProvider,
         StripingLocksProvider<String> authzStripingLocksProvider,
@@ -173,7 +179,9 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         boolean useLabIndexes,
         boolean realtimeDelivery,
         boolean fsyncOnCommit,
-        boolean timeIndexVerboseLogging) {
+        boolean timeIndexVerboseLogging,
+        long timeIndexNavigatorMaxSizeInBytes,
+        boolean columnarActivityEnabled) {
 
         this.idProvider = idProvider;
         this.persistentCogs = persistentCogs;
@@ -188,6 +196,9 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         this.sipMarshaller = sipMarshaller;
         this.diskResourceLocator = diskResourceLocator;
         this.partitionAuthzCacheSize = partitionAuthzCacheSize;
+        this.partitionAuthzCacheMaxBytes = partitionAuthzCacheMaxBytes;
+        this.partitionAuthzCacheIncremental = partitionAuthzCacheIncremental;
+        this.partitionFilterCacheMaxBytes = partitionFilterCacheMaxBytes;
         this.fieldIndexStripingLocksProvider = fieldIndexStripingLocksProvider;
         this.streamStripingLocksProvider = streamStripingLocksProvider;
         this.authzStripingLocksProvider = authzStripingLocksProvider;
@@ -202,6 +213,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         this.realtimeDelivery = realtimeDelivery;
         this.fsyncOnCommit = fsyncOnCommit;
         this.timeIndexVerboseLogging = timeIndexVerboseLogging;
+        this.timeIndexNavigatorMaxSizeInBytes = timeIndexNavigatorMaxSizeInBytes;
+        this.columnarActivityEnabled = columnarActivityEnabled;
     }
 
     public MiruBackingStorage findBackingStorage(MiruPartitionCoord coord) throws Exception {
@@ -369,11 +382,13 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
 
         MiruAuthzUtils<BM, IBM> authzUtils = new MiruAuthzUtils<>(bitmaps);
 
-        Cache<VersionedAuthzExpression, BM> authzCache = CacheBuilder.newBuilder()
-            .maximumSize(partitionAuthzCacheSize)
-            .expireAfterAccess(1, TimeUnit.MINUTES) //TODO should be adjusted with respect to tuning GC (prevent promotion from eden space)
-            .build();
-        MiruAuthzCache<BM, IBM> miruAuthzCache = new MiruAuthzCache<>(bitmaps, authzCache, activityInternExtern, authzUtils);
+        MiruAuthzCache<BM, IBM> miruAuthzCache = new MiruAuthzCache<>(bitmaps,
+            coord,
+            partitionAuthzCacheSize,
+            partitionAuthzCacheMaxBytes,
+            partitionAuthzCacheIncremental,
+            activityInternExtern,
+            authzUtils);
 
         MiruAuthzIndex<BM, IBM> authzIndex = new MiruFilerAuthzIndex<>(
             bitmaps,
@@ -434,6 +449,7 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             unreadTrackingIndex,
             inboxIndex,
             cacheProvider,
+            new MiruFilterCache<>(bitmaps, partitionFilterCacheMaxBytes),
             activityInternExtern,
             streamLocks,
             chunkStores,
@@ -550,7 +566,8 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             keyBytes("timeIndex"),
             monoTimeIndex,
             rawTimeIndex,
-            timeIndexVerboseLogging);
+            timeIndexVerboseLogging,
+            timeIndexNavigatorMaxSizeInBytes);
 
         IntTermIdsKeyValueMarshaller intTermIdsKeyValueMarshaller = new IntTermIdsKeyValueMarshaller();
 
@@ -589,7 +606,14 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             hashIndexEnabled));
         commitables.add(timeAndVersionIndex);
 
-        MiruActivityIndex activityIndex = new LabActivityIndex(
+        File columnarFile = null;
+        LabColumnarActivityStore columnarStore = null;
+        if (columnarActivityEnabled && storage == MiruBackingStorage.disk) {
+            columnarFile = diskResourceLocator.getFilerFile(new MiruPartitionCoordIdentifier(coord), "columnarActivity");
+            columnarStore = LabColumnarActivityStore.open(columnarFile, version);
+        }
+
+        LabActivityIndex activityIndex = new LabActivityIndex(
             idProvider,
             monotime,
             realtime,
@@ -597,7 +621,11 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             intTermIdsKeyValueMarshaller,
             metaIndex,
             keyBytes("lastId"),
-            termStorage);
+            termStorage,
+            columnarFile,
+            columnarStore,
+            fsyncOnCommit);
+        boolean columnar = columnarFile != null;
 
         TrackError trackError = partitionErrorTracker.track(coord);
 
@@ -742,11 +770,13 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
 
         MiruAuthzUtils<BM, IBM> authzUtils = new MiruAuthzUtils<>(bitmaps);
 
-        Cache<VersionedAuthzExpression, BM> authzCache = CacheBuilder.newBuilder()
-            .maximumSize(partitionAuthzCacheSize)
-            .expireAfterAccess(1, TimeUnit.MINUTES) //TODO should be adjusted with respect to tuning GC (prevent promotion from eden space)
-            .build();
-        MiruAuthzCache<BM, IBM> miruAuthzCache = new MiruAuthzCache<>(bitmaps, authzCache, activityInternExtern, authzUtils);
+        MiruAuthzCache<BM, IBM> miruAuthzCache = new MiruAuthzCache<>(bitmaps,
+            coord,
+            partitionAuthzCacheSize,
+            partitionAuthzCacheMaxBytes,
+            partitionAuthzCacheIncremental,
+            activityInternExtern,
+            authzUtils);
 
         MiruAuthzIndex<BM, IBM> authzIndex = new LabAuthzIndex<>(
             idProvider,
@@ -776,6 +806,7 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
             unreadTrackingIndex,
             inboxIndex,
             cacheProvider,
+            new MiruFilterCache<>(bitmaps, partitionFilterCacheMaxBytes),
             activityInternExtern,
             streamLocks,
             null,
@@ -817,6 +848,12 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
                     }
                 }
                 cacheProvider.compact(true, 0, 0, false);
+                if (columnar && checkClosed(coord)) {
+                    futures.add(executorService.submit(() -> {
+                        activityIndex.compactColumnar(schema, version);
+                        return null;
+                    }));
+                }
                 if (waitForCompletion) {
                     for (Future<?> future : futures) {
                         future.get();
@@ -851,6 +888,10 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         MiruBackingStorage toStorage,
         StackBuffer stackBuffer) throws Exception {
 
+        if (from.activityIndex instanceof LabActivityIndex) {
+            ((LabActivityIndex) from.activityIndex).restoreTermStorage();
+        }
+
         File[] fromLabDirs = getAllocator(from.storage).getLabDirs(coord, LAB_VERSION);
         File[] toLabDirs = getAllocator(toStorage).getLabDirs(coord, LAB_VERSION);
 
@@ -904,6 +945,15 @@ public class MiruContextFactory<S extends MiruSipCursor<S>> {
         }
     }
 
+    /**
+     * @return the persisted version of the coord, or -1 if no version has been saved
+     */
+    public long readVersion(MiruPartitionCoord coord) throws IOException {
+        MiruResourcePartitionIdentifier identifier = new MiruPartitionCoordIdentifier(coord);
+        File versionFile = diskResourceLocator.getFilerFile(identifier, "version");
+        return versionFile.exists() ? objectMapper.readValue(versionFile, Long.class) : -1;
+    }
+
     public void saveVersion(MiruPartitionCoord coord, long version) throws IOException {
         MiruResourcePartitionIdentifier identifier = new MiruPartitionCoordIdentifier(coord);
         File versionFile = diskResourceLocator.getFilerFile(identifier, "version");
@@ -1,13 +1,19 @@
 package com.jivesoftware.os.miru.service.stream;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
 import com.jivesoftware.os.miru.plugin.index.MiruInternalActivity;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
@@ -21,24 +27,55 @@ public class MiruIndexAuthz<BM extends IBM, IBM> {
     public List<Future<?>> index(final MiruContext<BM, IBM, ?> context,
         MiruTenantId tenantId,
         final List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds,
+        int parallelism,
         ExecutorService indexExecutor)
         throws Exception {
 
-        //TODO create work based on distinct authz strings
-        return Collections.<Future<?>>singletonList(indexExecutor.submit(() -> {
-            StackBuffer stackBuffer = new StackBuffer();
-            for (MiruActivityAndId<MiruInternalActivity> internalActivityAndId : internalActivityAndIds) {
-                MiruInternalActivity activity = internalActivityAndId.activity;
-                if (activity.authz != null) {
-                    log.inc("count>set", activity.authz.length);
-                    log.inc("count>set", activity.authz.length, tenantId.toString());
-                    for (String authz : activity.authz) {
-                        context.authzIndex.set(authz, stackBuffer, internalActivityAndId.id);
+        Map<String, TIntList> authzWork = Maps.newHashMap();
+        for (MiruActivityAndId<MiruInternalActivity> internalActivityAndId : internalActivityAndIds) {
+            MiruInternalActivity activity = internalActivityAndId.activity;
+            if (activity.authz != null) {
+                for (String authz : activity.authz) {
+                    TIntList ids = authzWork.get(authz);
+                    if (ids == null) {
+                        ids = new TIntArrayList();
+                        authzWork.put(authz, ids);
                     }
+                    ids.add(internalActivityAndId.id);
                 }
             }
-            return null;
-        }));
+        }
+
+        if (authzWork.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // distinct authz strings are spread across at most 'parallelism' tasks
+        int numTasks = Math.max(1, Math.min(parallelism, authzWork.size()));
+        List<List<Map.Entry<String, TIntList>>> taskWork = Lists.newArrayListWithCapacity(numTasks);
+        for (int i = 0; i < numTasks; i++) {
+            taskWork.add(new ArrayList<>());
+        }
+        int index = 0;
+        for (Map.Entry<String, TIntList> entry : authzWork.entrySet()) {
+            taskWork.get(index % numTasks).add(entry);
+            index++;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(numTasks);
+        for (List<Map.Entry<String, TIntList>> work : taskWork) {
+            futures.add(indexExecutor.submit(() -> {
+                StackBuffer stackBuffer = new StackBuffer();
+                for (Map.Entry<String, TIntList> entry : work) {
+                    TIntList ids = entry.getValue();
+                    log.inc("count>set", ids.size());
+                    log.inc("count>set", ids.size(), tenantId.toString());
+                    context.authzIndex.set(entry.getKey(), stackBuffer, ids.toArray());
+                }
+                return null;
+            }));
+        }
+        return futures;
     }
 
 }
@@ -30,27 +30,40 @@ public class MiruIndexLatest<BM extends IBM, IBM> {
 
     public List<Future<?>> index(final MiruContext<BM, IBM, ?> context,
         MiruTenantId tenantId, List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds,
+        int parallelism,
         ExecutorService indexExecutor)
         throws Exception {
 
         final MiruFieldIndex<BM, IBM> allFieldIndex = context.fieldIndexProvider.getFieldIndex(MiruFieldType.primary);
         final MiruFieldIndex<BM, IBM> latestFieldIndex = context.fieldIndexProvider.getFieldIndex(MiruFieldType.latest);
         List<MiruFieldDefinition> writeTimeAggregateFields = context.getSchema().getFieldsWithLatest();
-        // rough estimate of necessary capacity
-        List<Future<?>> futures = Lists.newArrayListWithCapacity(internalActivityAndIds.size() * writeTimeAggregateFields.size());
-        for (final MiruActivityAndId<MiruInternalActivity> internalActivityAndId : internalActivityAndIds) {
-            for (final MiruFieldDefinition fieldDefinition : writeTimeAggregateFields) {
-                final MiruTermId[] fieldValues = internalActivityAndId.activity.fieldsValues[fieldDefinition.fieldId];
-                if (fieldValues != null && fieldValues.length > 0) {
-                    futures.add(indexExecutor.submit(() -> {
-                        StackBuffer stackBuffer = new StackBuffer();
-                        // Answers the question,
-                        // "What is the latest activity against each distinct value of this field?"
-                        MiruInvertedIndex<BM, IBM> aggregateIndex = latestFieldIndex.getOrCreateInvertedIndex("indexLatest",
-                            fieldDefinition.fieldId, fieldAggregateTermId);
+        if (writeTimeAggregateFields.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // fields are spread across at most 'parallelism' tasks, and each field is applied in id order by a single task
+        int numTasks = Math.max(1, Math.min(parallelism, writeTimeAggregateFields.size()));
+        List<Future<?>> futures = Lists.newArrayListWithCapacity(numTasks);
+        for (int i = 0; i < numTasks; i++) {
+            List<MiruFieldDefinition> taskFields = Lists.newArrayList();
+            for (int j = i; j < writeTimeAggregateFields.size(); j += numTasks) {
+                taskFields.add(writeTimeAggregateFields.get(j));
+            }
+            futures.add(indexExecutor.submit(() -> {
+                StackBuffer stackBuffer = new StackBuffer();
+                BitmapAndLastId<BM> container = new BitmapAndLastId<>();
+                for (MiruFieldDefinition fieldDefinition : taskFields) {
+                    // Answers the question,
+                    // "What is the latest activity against each distinct value of this field?"
+                    MiruInvertedIndex<BM, IBM> aggregateIndex = latestFieldIndex.getOrCreateInvertedIndex("indexLatest",
+                        fieldDefinition.fieldId, fieldAggregateTermId);
+                    for (MiruActivityAndId<MiruInternalActivity> internalActivityAndId : internalActivityAndIds) {
+                        MiruTermId[] fieldValues = internalActivityAndId.activity.fieldsValues[fieldDefinition.fieldId];
+                        if (fieldValues == null || fieldValues.length == 0) {
+                            continue;
+                        }
 
                         // ["doc"] -> "d1", "d2", "d3", "d4" -> [0, 1(d1), 0, 0, 1(d2), 0, 0, 1(d3), 0, 0, 1(d4)]
-                        BitmapAndLastId<BM> container = new BitmapAndLastId<>();
                         for (MiruTermId fieldValue : fieldValues) {
                             MiruInvertedIndex<BM, IBM> fieldValueIndex = allFieldIndex.get("indexLatest", fieldDefinition.fieldId, fieldValue);
                             container.clear();
@@ -65,11 +78,10 @@ public class MiruIndexLatest<BM extends IBM, IBM> {
                         log.inc("count>set", 1);
                         log.inc("count>set", 1, tenantId.toString());
                         latestFieldIndex.set(fieldDefinition, fieldAggregateTermId, new int[] { internalActivityAndId.id }, null, stackBuffer);
-
-                        return null;
-                    }));
+                    }
                 }
-            }
+                return null;
+            }));
         }
         return futures;
     }
@@ -98,20 +98,37 @@ public class MiruIndexPrimaryFields<BM extends IBM, IBM> {
     public List<Future<?>> index(final MiruContext<BM, IBM, ?> context,
         MiruTenantId tenantId,
         List<Future<List<PrimaryIndexWork>>> fieldWorkFutures,
+        int parallelism,
         ExecutorService indexExecutor)
         throws Exception {
 
         List<PrimaryIndexWork>[] work = awaitFieldWorkFutures(fieldWorkFutures);
 
         final MiruFieldIndex<BM, IBM> fieldIndex = context.getFieldIndexProvider().getFieldIndex(MiruFieldType.primary);
-        List<Integer> fieldIds = context.getSchema().getFieldIds();
-        List<Future<?>> futures = new ArrayList<>(fieldIds.size());
+        int numTasks = Math.max(1, parallelism);
+        List<List<FieldAndWork>> taskWork = new ArrayList<>(numTasks);
+        for (int i = 0; i < numTasks; i++) {
+            taskWork.add(new ArrayList<>());
+        }
+        int index = 0;
         for (int fieldId = 0; fieldId < work.length; fieldId++) {
-            List<PrimaryIndexWork> fieldWork = work[fieldId];
             MiruFieldDefinition fieldDefinition = context.getSchema().getFieldDefinition(fieldId);
-            for (final PrimaryIndexWork primaryIndexWork : fieldWork) {
-                futures.add(indexExecutor.submit(() -> {
-                    StackBuffer stackBuffer = new StackBuffer();
+            for (PrimaryIndexWork primaryIndexWork : work[fieldId]) {
+                taskWork.get(index % numTasks).add(new FieldAndWork(fieldDefinition, primaryIndexWork));
+                index++;
+            }
+        }
+
+        List<Future<?>> futures = new ArrayList<>(numTasks);
+        for (List<FieldAndWork> fieldAndWorks : taskWork) {
+            if (fieldAndWorks.isEmpty()) {
+                continue;
+            }
+            futures.add(indexExecutor.submit(() -> {
+                StackBuffer stackBuffer = new StackBuffer();
+                for (FieldAndWork fieldAndWork : fieldAndWorks) {
+                    MiruFieldDefinition fieldDefinition = fieldAndWork.fieldDefinition;
+                    PrimaryIndexWork primaryIndexWork = fieldAndWork.work;
                     if (fieldDefinition.type.hasFeature(MiruFieldDefinition.Feature.indexed)) {
                         log.inc("count>set", primaryIndexWork.ids.size());
                         log.inc("count>set", primaryIndexWork.ids.size(), tenantId.toString());
@@ -128,9 +145,9 @@ public class MiruIndexPrimaryFields<BM extends IBM, IBM> {
                             primaryIndexWork.counts != null ? primaryIndexWork.counts.get(0) : -1,
                             stackBuffer);
                     }
-                    return null;
-                }));
-            }
+                }
+                return null;
+            }));
         }
         return futures;
     }
@@ -147,6 +164,17 @@ public class MiruIndexPrimaryFields<BM extends IBM, IBM> {
         return fieldsWork;
     }
 
+    private static class FieldAndWork {
+
+        private final MiruFieldDefinition fieldDefinition;
+        private final PrimaryIndexWork work;
+
+        private FieldAndWork(MiruFieldDefinition fieldDefinition, PrimaryIndexWork work) {
+            this.fieldDefinition = fieldDefinition;
+            this.work = work;
+        }
+    }
+
     private static class TermWork {
 
         private final TIntList ids = new TIntArrayList();
@@ -1,11 +1,13 @@
 package com.jivesoftware.os.miru.service.stream;
 
+import com.google.common.collect.Lists;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
 import com.jivesoftware.os.miru.api.MiruPartitionCoord;
 import com.jivesoftware.os.miru.api.activity.MiruActivity;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityAndId;
 import com.jivesoftware.os.miru.plugin.index.MiruInternalActivity;
 import com.jivesoftware.os.miru.plugin.index.TimeVersionRealtime;
+import com.jivesoftware.os.miru.plugin.metric.MiruCounter;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import java.util.ArrayList;
@@ -15,6 +17,7 @@ import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Handles indexing of activity, including repair and removal, with synchronization and attention to versioning.
@@ -23,27 +26,51 @@ public class MiruIndexer<BM extends IBM, IBM> {
 
     private final static MetricLogger log = MetricLoggerFactory.getLogger();
 
+    private static final StageMetrics INTERN_METRICS = new StageMetrics("intern");
+    private static final StageMetrics PRIMARY_METRICS = new StageMetrics("primary");
+    private static final StageMetrics OTHER_METRICS = new StageMetrics("other");
+
     private final MiruIndexAuthz<BM, IBM> indexAuthz;
     private final MiruIndexPrimaryFields<BM, IBM> indexPrimaryFields;
     private final MiruIndexValueBits<BM, IBM> indexValueBits;
     private final MiruIndexBloom<BM, IBM> indexBloom;
     private final MiruIndexLatest<BM, IBM> indexLatest;
     private final MiruIndexPairedLatest<BM, IBM> indexPairedLatest;
+    private final int pipelineBatchSize;
+    private final int internParallelism;
+    private final int primaryFieldsParallelism;
+    private final int authzParallelism;
+    private final int latestParallelism;
 
     public MiruIndexer(MiruIndexAuthz<BM, IBM> indexAuthz,
         MiruIndexPrimaryFields<BM, IBM> indexPrimaryFields,
         MiruIndexValueBits<BM, IBM> indexValueBits,
         MiruIndexBloom<BM, IBM> indexBloom,
         MiruIndexLatest<BM, IBM> indexLatest,
-        MiruIndexPairedLatest<BM, IBM> indexPairedLatest) {
+        MiruIndexPairedLatest<BM, IBM> indexPairedLatest,
+        int pipelineBatchSize,
+        int internParallelism,
+        int primaryFieldsParallelism,
+        int authzParallelism,
+        int latestParallelism) {
         this.indexAuthz = indexAuthz;
         this.indexPrimaryFields = indexPrimaryFields;
         this.indexValueBits = indexValueBits;
         this.indexBloom = indexBloom;
         this.indexLatest = indexLatest;
         this.indexPairedLatest = indexPairedLatest;
+        this.pipelineBatchSize = pipelineBatchSize;
+        this.internParallelism = Math.max(internParallelism, 1);
+        this.primaryFieldsParallelism = Math.max(primaryFieldsParallelism, 1);
+        this.authzParallelism = Math.max(authzParallelism, 1);
+        this.latestParallelism = Math.max(latestParallelism, 1);
     }
 
+    /**
+     * Indexes the activity as a pipeline of stages (intern, primary fields, authz/latest/activity) over sub-batches of at most
+     * {@code pipelineBatchSize} activities. Interning of the next sub-batch overlaps with index writes for the current sub-batch,
+     * and the activity index is only marked ready once every sub-batch has been written.
+     */
     public void index(final MiruContext<BM, IBM, ?> context,
         final MiruPartitionCoord coord,
         final List<MiruActivityAndId<MiruActivity>> activityAndIds,
@@ -54,75 +81,106 @@ public class MiruIndexer<BM extends IBM, IBM> {
             return;
         }
 
-        @SuppressWarnings("unchecked")
-        final List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds = Arrays.<MiruActivityAndId<MiruInternalActivity>>asList(
-            new MiruActivityAndId[activityAndIds.size()]);
-
         log.debug("Start: Index batch of {}", activityAndIds.size());
 
-        final int numPartitions = 48;
-        final int numActivities = internalActivityAndIds.size();
-        final int partitionSize = (numActivities + numPartitions - 1) / numPartitions;
+        // activity is sorted by id, so any repair of an already indexed id invalidates cached filters
+        StackBuffer readyStackBuffer = new StackBuffer();
+        boolean repair = activityAndIds.get(0).id <= context.activityIndex.lastId(readyStackBuffer);
 
-        List<Future<?>> internFutures = new ArrayList<>(numPartitions);
-        for (int i = 0; i < activityAndIds.size(); i += partitionSize) {
-            final int startOfSubList = i;
-            internFutures.add(indexExecutor.submit(() -> {
+        int numActivities = activityAndIds.size();
+        int batchSize = pipelineBatchSize > 0 ? pipelineBatchSize : numActivities;
+        List<List<MiruActivityAndId<MiruActivity>>> batches = Lists.partition(activityAndIds, batchSize);
+
+        Interned interned = intern(context, batches.get(0), indexExecutor);
+        int lastId = -1;
+        for (int i = 0; i < batches.size(); i++) {
+            List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds = interned.await();
+
+            // intern the next batch while this batch writes its indexes
+            interned = (i + 1 < batches.size()) ? intern(context, batches.get(i + 1), indexExecutor) : null;
+
+            // 1. Compose and index field values work
+            long primaryStart = System.currentTimeMillis();
+            List<Future<List<PrimaryIndexWork>>> primaryFieldsComposed = indexPrimaryFields.compose(context, internalActivityAndIds, indexExecutor);
+            List<Future<?>> primaryFieldFutures = indexPrimaryFields.index(context, coord.tenantId, primaryFieldsComposed,
+                primaryFieldsParallelism, indexExecutor);
+            awaitFutures(primaryFieldFutures, "indexPrimaryFields");
+            PRIMARY_METRICS.record(primaryStart, internalActivityAndIds.size());
+
+            // 2. Index remaining work and update activity index
+            long otherStart = System.currentTimeMillis();
+            final List<Future<?>> otherFutures = new ArrayList<>();
+            otherFutures.addAll(indexAuthz.index(context, coord.tenantId, internalActivityAndIds, authzParallelism, indexExecutor));
+            otherFutures.addAll(indexLatest.index(context, coord.tenantId, internalActivityAndIds, latestParallelism, indexExecutor));
+            otherFutures.add(indexExecutor.submit(() -> {
                 StackBuffer stackBuffer = new StackBuffer();
-                context.activityInternExtern.intern(activityAndIds, startOfSubList, partitionSize, internalActivityAndIds, context.getSchema(), stackBuffer);
+                context.activityIndex.set(context.getSchema(), internalActivityAndIds, stackBuffer);
+                return null;
+            }));
+
+            /*TODO really? reevaluate if we need removes
+            // 3. Update removal index
+            otherFutures.add(indexExecutor.submit(() -> {
+                // repairs also unhide (remove from removal)
+                log.inc("count>remove", activityAndIds.size());
+                log.inc("count>remove", activityAndIds.size(), coord.tenantId.toString());
+                StackBuffer stackBuffer = new StackBuffer();
+                TIntList ids = new TIntArrayList();
+                for (MiruActivityAndId<MiruActivity> activityAndId : activityAndIds) {
+                    ids.add(activityAndId.id);
+                }
+                context.removalIndex.remove(stackBuffer, ids.toArray());
                 return null;
             }));
+            */
+
+            awaitFutures(otherFutures, "indexOther");
+            OTHER_METRICS.record(otherStart, internalActivityAndIds.size());
+
+            lastId = internalActivityAndIds.get(internalActivityAndIds.size() - 1).id;
         }
-        awaitFutures(internFutures, "indexIntern");
 
-        // free for GC before we begin indexing
+        // free for GC
         activityAndIds.clear();
 
-        // 1. Compose work
-        List<Future<List<PrimaryIndexWork>>> primaryFieldsComposed = indexPrimaryFields.compose(context, internalActivityAndIds, indexExecutor);
-
-        // 2. Index field values work
-        List<Future<?>> primaryFieldFutures = indexPrimaryFields.index(context, coord.tenantId, primaryFieldsComposed, indexExecutor);
-
-        // 3. Wait for completion
-        awaitFutures(primaryFieldFutures, "indexPrimaryFields");
-
-        // 4. Index remaining work
-        final List<Future<?>> otherFutures = new ArrayList<>();
-        otherFutures.addAll(indexAuthz.index(context, coord.tenantId, internalActivityAndIds, indexExecutor));
-        otherFutures.addAll(indexLatest.index(context, coord.tenantId, internalActivityAndIds, indexExecutor));
-
-        // 5. Update activity index
-        otherFutures.add(indexExecutor.submit(() -> {
-            StackBuffer stackBuffer = new StackBuffer();
-            context.activityIndex.set(context.getSchema(), internalActivityAndIds, stackBuffer);
-            return null;
-        }));
-
-        /*TODO really? reevaluate if we need removes
-        // 6. Update removal index
-        otherFutures.add(indexExecutor.submit(() -> {
-            // repairs also unhide (remove from removal)
-            log.inc("count>remove", activityAndIds.size());
-            log.inc("count>remove", activityAndIds.size(), coord.tenantId.toString());
-            StackBuffer stackBuffer = new StackBuffer();
-            TIntList ids = new TIntArrayList();
-            for (MiruActivityAndId<MiruActivity> activityAndId : activityAndIds) {
-                ids.add(activityAndId.id);
-            }
-            context.removalIndex.remove(stackBuffer, ids.toArray());
-            return null;
-        }));
-        */
+        // 4. Mark as ready
+        context.activityIndex.ready(lastId, readyStackBuffer);
+        if (repair) {
+            context.filterCache.invalidateAll();
+        }
 
-        // 7. Wait for completion
-        awaitFutures(otherFutures, "indexOther");
+        log.debug("End: Index batch of {}", numActivities);
+    }
 
-        // 8. Mark as ready
-        StackBuffer stackBuffer = new StackBuffer();
-        context.activityIndex.ready(internalActivityAndIds.get(internalActivityAndIds.size() - 1).id, stackBuffer);
+    private Interned intern(MiruContext<BM, IBM, ?> context,
+        List<MiruActivityAndId<MiruActivity>> activityAndIds,
+        ExecutorService indexExecutor) {
+
+        @SuppressWarnings("unchecked")
+        final List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds = Arrays.<MiruActivityAndId<MiruInternalActivity>>asList(
+            new MiruActivityAndId[activityAndIds.size()]);
+
+        final int numActivities = activityAndIds.size();
+        final int partitionSize = (numActivities + internParallelism - 1) / internParallelism;
 
-        log.debug("End: Index batch of {}", internalActivityAndIds.size());
+        Interned interned = new Interned(internalActivityAndIds);
+        for (int i = 0; i < numActivities; i += partitionSize) {
+            final int startOfSubList = i;
+            interned.futures.add(indexExecutor.submit(() -> {
+                StackBuffer stackBuffer = new StackBuffer();
+                context.activityInternExtern.intern(activityAndIds, startOfSubList, partitionSize, internalActivityAndIds, context.getSchema(), stackBuffer);
+                interned.finished.accumulateAndGet(System.currentTimeMillis(), Math::max);
+                return null;
+            }));
+        }
+        return interned;
+    }
+
+    /**
+     * Buckets elapsed millis by power of two, e.g. 0, 1, 2, 4, 8 ... where each bucket counts elapsed times less than twice its label.
+     */
+    static long histogramBucket(long elapsed) {
+        return elapsed <= 0 ? 0 : Long.highestOneBit(elapsed);
     }
 
     public void set(MiruContext<BM, IBM, ?> context, List<MiruActivityAndId<MiruActivity>> activityAndIds) throws Exception {
@@ -158,6 +216,7 @@ public class MiruIndexer<BM extends IBM, IBM> {
 
             // finally, update the activity index
             context.activityIndex.setAndReady(context.getSchema(), internalActivity, stackBuffer);
+            context.filterCache.invalidateAll();
         }
     }
 
@@ -170,4 +229,48 @@ public class MiruIndexer<BM extends IBM, IBM> {
             log.trace(futureName + ": Finished waiting for futures in " + (System.currentTimeMillis() - start) + " ms");
         }
     }
+
+    private class Interned {
+
+        private final List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds;
+        private final List<Future<?>> futures = new ArrayList<>(internParallelism);
+        private final long started = System.currentTimeMillis();
+        private final AtomicLong finished = new AtomicLong(started);
+
+        private Interned(List<MiruActivityAndId<MiruInternalActivity>> internalActivityAndIds) {
+            this.internalActivityAndIds = internalActivityAndIds;
+        }
+
+        private List<MiruActivityAndId<MiruInternalActivity>> await() throws InterruptedException, ExecutionException {
+            awaitFutures(futures, "indexIntern");
+            INTERN_METRICS.recordElapsed(finished.get() - started, internalActivityAndIds.size());
+            return internalActivityAndIds;
+        }
+    }
+
+    private static class StageMetrics {
+
+        private final MiruCounter elapsed;
+        private final MiruCounter[] histogram = new MiruCounter[64];
+        private final MiruCounter throughput;
+
+        private StageMetrics(String stage) {
+            this.elapsed = new MiruCounter(log, "index>stage>" + stage + ">elapsed");
+            for (int i = 0; i < histogram.length; i++) {
+                long bucket = i == 0 ? 0 : 1L << (i - 1);
+                histogram[i] = new MiruCounter(log, "index>stage>" + stage + ">histogram>" + bucket);
+            }
+            this.throughput = new MiruCounter(log, "index>throughput>" + stage);
+        }
+
+        private void record(long startTime, int count) {
+            recordElapsed(System.currentTimeMillis() - startTime, count);
+        }
+
+        private void recordElapsed(long elapsedMillis, int count) {
+            elapsed.inc(elapsedMillis);
+            histogram[64 - Long.numberOfLeadingZeros(histogramBucket(elapsedMillis))].inc();
+            throughput.incBucket(1_000L, 100, count);
+        }
+    }
 }
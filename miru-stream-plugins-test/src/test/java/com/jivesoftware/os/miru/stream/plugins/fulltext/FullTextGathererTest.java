@@ -55,7 +55,7 @@ public class FullTextGathererTest {
             miruSchema, MiruBackingStorage.disk, new MiruBitmapsRoaring(), Collections.emptyList());
 
         this.service = miruProvider.getMiru(tenant1);
-        this.injectable = new FullTextInjectable(miruProvider, new FullText(miruProvider));
+        this.injectable = new FullTextInjectable(miruProvider, new FullText(miruProvider, false));
 
         for (int i = 0; i < dictionary.length; i++) {
             dictionary[i] = Integer.toHexString(i);
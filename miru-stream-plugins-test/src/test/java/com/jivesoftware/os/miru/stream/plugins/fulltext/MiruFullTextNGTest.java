@@ -74,6 +74,7 @@ public class MiruFullTextNGTest {
 
     private MiruService service;
     private FullTextInjectable injectable;
+    private FullTextInjectable prunedInjectable;
 
     private final MiruPartitionedActivityFactory partitionedActivityFactory = new MiruPartitionedActivityFactory();
     private final String[] dictionary = new String[10];
@@ -84,7 +85,8 @@ public class MiruFullTextNGTest {
             miruSchema, MiruBackingStorage.disk, new MiruBitmapsRoaring(), Collections.emptyList());
 
         this.service = miruProvider.getMiru(tenant1);
-        this.injectable = new FullTextInjectable(miruProvider, new FullText(miruProvider));
+        this.injectable = new FullTextInjectable(miruProvider, new FullText(miruProvider, false));
+        this.prunedInjectable = new FullTextInjectable(miruProvider, new FullText(miruProvider, true));
 
         for (int i = 0; i < dictionary.length; i++) {
             dictionary[i] = Integer.toHexString(i);
@@ -143,6 +145,58 @@ public class MiruFullTextNGTest {
         runQueries(rand, timespan, time.get(), FullTextQuery.Strategy.TF_IDF);
     }
 
+    @Test(enabled = true)
+    public void prunedTopResultsMatchUnprunedTest() throws Exception {
+
+        Random rand = new Random(1234);
+        SnowflakeIdPacker snowflakeIdPacker = new SnowflakeIdPacker();
+        int numberOfPrunableActivities = 2_500;
+        long timespan = numberOfBuckets * snowflakeIdPacker.pack(TimeUnit.HOURS.toMillis(3), 0, 0);
+        long intervalPerActivity = Math.max(timespan / numberOfPrunableActivities, 1);
+        AtomicLong time = new AtomicLong(snowflakeIdPacker.pack(System.currentTimeMillis(), 0, 0) - timespan);
+
+        // more than one scoring batch, so the later batches are restricted to the essential terms
+        List<MiruPartitionedActivity> batch = Lists.newArrayListWithCapacity(numberOfPrunableActivities);
+        for (int i = 0; i < numberOfPrunableActivities; i++) {
+            batch.add(skewedContentActivity(rand, tenant1, partitionId, time.addAndGet(intervalPerActivity),
+                "bob" + rand.nextInt(numberOfUsers), walIndex.incrementAndGet()));
+        }
+        service.writeToIndex(batch);
+
+        MiruTimeRange timeRange = new MiruTimeRange(time.get() - timespan, time.get());
+        for (int i = 0; i < numberOfQueries; i++) {
+            String query = queryAnd(rand, 3);
+            for (int desiredNumberOfResults : new int[] { 1, 10, 100 }) {
+                MiruRequest<FullTextQuery> request = new MiruRequest<>("test",
+                    tenant1,
+                    MiruActorId.NOT_PROVIDED,
+                    MiruAuthzExpression.NOT_PROVIDED,
+                    new FullTextQuery(timeRange,
+                        "text",
+                        "en",
+                        false,
+                        query,
+                        -1,
+                        MiruFilter.NO_FILTER,
+                        FullTextQuery.Strategy.TF_IDF,
+                        desiredNumberOfResults,
+                        new String[0]),
+                    MiruSolutionLogLevel.NONE);
+
+                FullTextAnswer unpruned = injectable.filterCustomStream(request).answer;
+                FullTextAnswer pruned = prunedInjectable.filterCustomStream(request).answer;
+
+                assertEquals(unpruned.pruned, 0);
+                assertEquals(unpruned.scored, unpruned.found);
+                assertEquals(pruned.found, unpruned.found);
+                assertEquals(pruned.results.size(), (int) Math.min(desiredNumberOfResults, unpruned.found));
+                assertEquals(pruned.results, unpruned.results, "query:" + query + " desired:" + desiredNumberOfResults);
+                System.out.println("query: " + query + " desired: " + desiredNumberOfResults
+                    + " scored: " + pruned.scored + " pruned: " + pruned.pruned);
+            }
+        }
+    }
+
     private void runQueries(Random rand, long timespan, long lastTime, FullTextQuery.Strategy strategy) throws MiruQueryServiceException, InterruptedException {
         System.out.println("-------- " + strategy + " --------");
         final MiruTimeRange timeRange = new MiruTimeRange(lastTime - timespan, lastTime);
@@ -212,6 +266,32 @@ public class MiruFullTextNGTest {
         return partitionedActivityFactory.activity(1, partitionId, index, activity);
     }
 
+    /**
+     * Draws each term with a frequency that falls off along the dictionary, so the terms have very different bounds.
+     */
+    private MiruPartitionedActivity skewedContentActivity(Random rand,
+        MiruTenantId tenantId,
+        MiruPartitionId partitionId,
+        long time,
+        String user,
+        int index) {
+
+        String doc = String.valueOf(index);
+        int numberOfTerms = 1 + rand.nextInt(numberOfTermsPerDoc);
+        List<String> text = Lists.newArrayListWithCapacity(numberOfTerms);
+        for (int i = 0; i < numberOfTerms; i++) {
+            text.add(dictionary[Math.min(rand.nextInt(dictionary.length), rand.nextInt(dictionary.length))]);
+        }
+
+        Map<String, List<String>> fieldsValues = Maps.newHashMap();
+        fieldsValues.put("user", Arrays.asList(user));
+        fieldsValues.put("doc", Arrays.asList(doc));
+        fieldsValues.put("text", text);
+
+        MiruActivity activity = new MiruActivity(tenantId, time, 0, false, new String[0], fieldsValues, Collections.emptyMap());
+        return partitionedActivityFactory.activity(1, partitionId, index, activity);
+    }
+
     private String queryAnd(Random rand, int clauses) {
         StringBuilder buf = new StringBuilder();
         for (int i = 0; i < clauses; i++) {
@@ -145,4 +145,9 @@ public class DistinctCountCustomQuestion implements Question<DistinctCountQuery,
         return report;
     }
 
+    @Override
+    public MiruRequest<DistinctCountQuery> getCacheableRequest() {
+        return request;
+    }
+
 }
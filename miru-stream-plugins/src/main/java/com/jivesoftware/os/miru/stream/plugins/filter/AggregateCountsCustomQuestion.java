@@ -170,4 +170,9 @@ public class AggregateCountsCustomQuestion implements Question<AggregateCountsQu
         }
         return report;
     }
+
+    @Override
+    public MiruRequest<AggregateCountsQuery> getCacheableRequest() {
+        return request;
+    }
 }
@@ -4,7 +4,6 @@ import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import com.google.common.collect.MinMaxPriorityQueue;
 import com.jivesoftware.os.filer.io.api.StackBuffer;
 import com.jivesoftware.os.miru.api.activity.schema.MiruFieldDefinition;
@@ -19,6 +18,7 @@ import com.jivesoftware.os.miru.plugin.MiruProvider;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruBitmaps;
 import com.jivesoftware.os.miru.plugin.bitmap.MiruIntIterator;
 import com.jivesoftware.os.miru.plugin.context.MiruRequestContext;
+import com.jivesoftware.os.miru.plugin.index.BitmapAndLastId;
 import com.jivesoftware.os.miru.plugin.index.MiruActivityInternExtern;
 import com.jivesoftware.os.miru.plugin.index.MiruFieldIndex;
 import com.jivesoftware.os.miru.plugin.index.MiruTermComposer;
@@ -28,11 +28,13 @@ import com.jivesoftware.os.miru.plugin.solution.MiruRequest;
 import com.jivesoftware.os.miru.stream.plugins.fulltext.FullTextAnswer.ActivityScore;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import org.apache.commons.lang.mutable.MutableInt;
+import org.apache.commons.lang.mutable.MutableLong;
 
 /**
  *
@@ -41,10 +43,17 @@ public class FullText {
 
     private static final MetricLogger log = MetricLoggerFactory.getLogger();
 
+    private static final float BOUND_SLACK = 1.0001f;
+
     private final MiruProvider<? extends Miru> miruProvider;
+    private final boolean maxScorePruning;
 
-    public FullText(MiruProvider<? extends Miru> miruProvider) {
+    /**
+     * @param maxScorePruning whether to skip ids whose term bounds cannot reach the current top scores
+     */
+    public FullText(MiruProvider<? extends Miru> miruProvider, boolean maxScorePruning) {
         this.miruProvider = miruProvider;
+        this.maxScorePruning = maxScorePruning;
     }
 
     public MiruFilter parseQuery(String defaultField, String locale, boolean useStopWords, String query) throws Exception {
@@ -77,21 +86,27 @@ public class FullText {
             gatherFieldDefinitions = new MiruFieldDefinition[0];
         }
 
+        long found = bitmaps.cardinality(answer);
+
         List<ActivityScore> activityScores;
+        MutableLong scoredCount = new MutableLong();
+        long prunedCount = 0;
         if (request.query.strategy == FullTextQuery.Strategy.TF_IDF) {
-            activityScores = collectTfIdf(name, bitmaps, requestContext, request, lastReport, answer, termCollector, gatherFieldDefinitions, stackBuffer);
+            activityScores = collectTfIdf(name, bitmaps, requestContext, request, lastReport, answer, termCollector, gatherFieldDefinitions, scoredCount,
+                stackBuffer);
+            prunedCount = found - scoredCount.longValue();
+            log.inc("fullText>tfIdf>scored", scoredCount.longValue());
+            log.inc("fullText>tfIdf>pruned", prunedCount);
         } else if (request.query.strategy == FullTextQuery.Strategy.TIME) {
             activityScores = collectTime(name, bitmaps, requestContext, request, lastReport, answer, gatherFieldDefinitions, stackBuffer);
         } else {
             activityScores = Collections.emptyList();
         }
 
-        long found = bitmaps.cardinality(answer);
-
         boolean resultsExhausted = request.query.strategy == FullTextQuery.Strategy.TIME
             && request.query.timeRange.smallestTimestamp > requestContext.getTimeIndex().getLargestTimestamp();
 
-        FullTextAnswer result = new FullTextAnswer(activityScores, found, resultsExhausted);
+        FullTextAnswer result = new FullTextAnswer(activityScores, found, resultsExhausted, scoredCount.longValue(), prunedCount);
         log.debug("result={}", result);
         return result;
     }
@@ -104,6 +119,7 @@ public class FullText {
         BM answer,
         Map<FieldAndTermId, MutableInt> termCollector,
         MiruFieldDefinition[] gatherFieldDefinitions,
+        MutableLong scoredCount,
         StackBuffer stackBuffer) throws Exception {
 
         MiruActivityInternExtern internExtern = miruProvider.getActivityInternExtern(request.tenantId);
@@ -115,17 +131,30 @@ public class FullText {
 
         List<ActivityScore> activityScores = Lists.newArrayListWithCapacity(request.query.desiredNumberOfResults);
 
-        Map<FieldAndTermId, Float> termMultipliers = Maps.newHashMapWithExpectedSize(termCollector.size());
+        List<TermScorer> termScorers = Lists.newArrayListWithCapacity(termCollector.size());
         for (Map.Entry<FieldAndTermId, MutableInt> entry : termCollector.entrySet()) {
             FieldAndTermId fieldAndTermId = entry.getKey();
             MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(fieldAndTermId.fieldId);
             long idf = primaryFieldIndex.getGlobalCardinality(fieldDefinition, fieldAndTermId.termId, stackBuffer);
             if (idf > 0) {
                 float multiplier = entry.getValue().floatValue() / (float) idf;
-                termMultipliers.put(fieldAndTermId, multiplier);
+                long maxTf = maxScorePruning ? primaryFieldIndex.getMaxCardinality(fieldDefinition, fieldAndTermId.termId, stackBuffer) : -1;
+                // unknown bounds are infinite so the term is always essential
+                float bound = maxTf < 0 ? Float.POSITIVE_INFINITY : multiplier * (float) maxTf;
+                termScorers.add(new TermScorer(fieldAndTermId, fieldDefinition, multiplier, bound));
             }
         }
 
+        // lowest bounds first, so that the leading terms are the first to become non-essential
+        Collections.sort(termScorers, (o1, o2) -> Float.compare(o1.bound, o2.bound));
+        float[] boundSums = new float[termScorers.size()];
+        float boundSum = 0f;
+        for (int i = 0; i < boundSums.length; i++) {
+            boundSum += termScorers.get(i).bound;
+            // slack guards against float rounding letting a real score exceed the sum of its bounds
+            boundSums[i] = boundSum * BOUND_SLACK;
+        }
+
         MinMaxPriorityQueue<RawBitScore> scored = MinMaxPriorityQueue
             .expectedSize(desiredNumberOfResults)
             .maximumSize(desiredNumberOfResults)
@@ -137,23 +166,49 @@ public class FullText {
         int batchSize = 1000; //TODO configure?
         int[] ids = new int[batchSize];
         int i = 0;
+        int nonEssential = 0;
+        int lastBatchId = -1;
         while (iter.hasNext()) {
             int lastSetBit = iter.next();
+            if (lastSetBit <= lastBatchId) {
+                continue;
+            }
             ids[i] = lastSetBit;
             i++;
 
             if (i == batchSize) {
-                batchTfIdf(name, requestContext, request, internExtern, primaryFieldIndex, termMultipliers, scored, minScore, acceptableBelowMin, ids,
-                    gatherFieldDefinitions, stackBuffer);
+                batchTfIdf(name, requestContext, request, internExtern, primaryFieldIndex, termScorers, boundSums, scored,
+                    desiredNumberOfResults, minScore, acceptableBelowMin, ids, gatherFieldDefinitions, scoredCount, stackBuffer);
+                lastBatchId = lastSetBit;
                 i = 0;
+
+                // ids which only match non-essential terms cannot beat the threshold, so restrict the remaining ids to the essential terms
+                int essentialFrom = countNonEssential(boundSums, threshold(scored, desiredNumberOfResults, minScore, acceptableBelowMin));
+                if (essentialFrom > nonEssential) {
+                    nonEssential = essentialFrom;
+                    if (nonEssential == termScorers.size()) {
+                        break;
+                    }
+                    List<IBM> essentialBitmaps = Lists.newArrayListWithCapacity(termScorers.size() - nonEssential);
+                    for (int j = nonEssential; j < termScorers.size(); j++) {
+                        IBM termBitmap = termScorers.get(j).getBitmap(name, primaryFieldIndex, stackBuffer);
+                        if (termBitmap != null) {
+                            essentialBitmaps.add(termBitmap);
+                        }
+                    }
+                    if (essentialBitmaps.isEmpty()) {
+                        break;
+                    }
+                    iter = bitmaps.intIterator(bitmaps.and(Arrays.<IBM>asList(answer, bitmaps.or(essentialBitmaps))));
+                }
             }
         }
 
         if (i > 0) {
             int[] remainder = new int[i];
             System.arraycopy(ids, 0, remainder, 0, i);
-            batchTfIdf(name, requestContext, request, internExtern, primaryFieldIndex, termMultipliers, scored, minScore, acceptableBelowMin, remainder,
-                gatherFieldDefinitions, stackBuffer);
+            batchTfIdf(name, requestContext, request, internExtern, primaryFieldIndex, termScorers, boundSums, scored,
+                desiredNumberOfResults, minScore, acceptableBelowMin, remainder, gatherFieldDefinitions, scoredCount, stackBuffer);
         }
 
         Iterables.addAll(activityScores, Iterables.transform(scored, (RawBitScore input) -> {
@@ -169,36 +224,93 @@ public class FullText {
         return activityScores;
     }
 
+    /**
+     * @return the score an id must reach to be kept, any id whose bound is lower can be skipped
+     */
+    private float threshold(MinMaxPriorityQueue<RawBitScore> scored, int desiredNumberOfResults, float minScore, MutableInt acceptableBelowMin) {
+        float threshold = -Float.MAX_VALUE;
+        if (!maxScorePruning || (acceptableBelowMin.intValue() > 0 && minScore > -Float.MAX_VALUE)) {
+            // every id at or below the min spends the below-min allowance, so none can be skipped until it is spent
+            return threshold;
+        }
+        if (scored.size() >= desiredNumberOfResults && !scored.isEmpty()) {
+            // ties are kept by a later (higher) id, so only a strictly lower bound is hopeless
+            threshold = scored.peekLast().score;
+        }
+        if (acceptableBelowMin.intValue() <= 0) {
+            // scores at or below the min are discarded
+            threshold = Math.max(threshold, Math.nextUp(minScore));
+        }
+        return threshold;
+    }
+
+    /**
+     * @return the number of leading terms whose combined bound is below the threshold
+     */
+    private static int countNonEssential(float[] boundSums, float threshold) {
+        int nonEssential = 0;
+        while (nonEssential < boundSums.length && boundSums[nonEssential] < threshold) {
+            nonEssential++;
+        }
+        return nonEssential;
+    }
+
     private <BM extends IBM, IBM> void batchTfIdf(String name,
         MiruRequestContext<BM, IBM, ?> requestContext,
         MiruRequest<FullTextQuery> request,
         MiruActivityInternExtern internExtern,
         MiruFieldIndex<BM, IBM> primaryFieldIndex,
-        Map<FieldAndTermId, Float> termMultipliers,
+        List<TermScorer> termScorers,
+        float[] boundSums,
         MinMaxPriorityQueue<RawBitScore> scored,
+        int desiredNumberOfResults,
         float minScore,
         MutableInt acceptableBelowMin,
         int[] ids,
         MiruFieldDefinition[] gatherFieldDefinitions,
+        MutableLong scoredCount,
         StackBuffer stackBuffer) throws Exception {
 
-        MiruSchema schema = requestContext.getSchema();
+        float threshold = threshold(scored, desiredNumberOfResults, minScore, acceptableBelowMin);
 
         float[] scores = new float[ids.length];
-        for (Map.Entry<FieldAndTermId, Float> entry : termMultipliers.entrySet()) {
-            FieldAndTermId fieldAndTermId = entry.getKey();
-            float multiplier = entry.getValue();
+        int[] live = new int[ids.length];
+        for (int i = 0; i < live.length; i++) {
+            live[i] = i;
+        }
+        int liveCount = live.length;
+
+        // highest bounds first, dropping any id which can no longer reach the threshold with the terms that remain
+        for (int t = termScorers.size() - 1; t >= 0; t--) {
+            int kept = 0;
+            for (int i = 0; i < liveCount; i++) {
+                if (scores[live[i]] + boundSums[t] >= threshold) {
+                    live[kept] = live[i];
+                    kept++;
+                }
+            }
+            liveCount = kept;
+            if (liveCount == 0) {
+                break;
+            }
 
-            MiruFieldDefinition fieldDefinition = schema.getFieldDefinition(fieldAndTermId.fieldId);
-            long[] tf = primaryFieldIndex.getCardinalities(fieldDefinition, fieldAndTermId.termId, ids, stackBuffer);
+            int[] liveIds = new int[liveCount];
+            for (int i = 0; i < liveCount; i++) {
+                liveIds[i] = ids[live[i]];
+            }
+
+            TermScorer termScorer = termScorers.get(t);
+            long[] tf = primaryFieldIndex.getCardinalities(termScorer.fieldDefinition, termScorer.fieldAndTermId.termId, liveIds, stackBuffer);
             for (int i = 0; i < tf.length; i++) {
                 if (tf[i] > 0) {
-                    scores[i] += multiplier * (float) tf[i];
+                    scores[live[i]] += termScorer.multiplier * (float) tf[i];
                 }
             }
         }
+        scoredCount.add(liveCount);
 
-        for (int i = 0; i < ids.length; i++) {
+        for (int l = 0; l < liveCount; l++) {
+            int i = live[l];
             int _i = i;
             if (scores[i] > minScore) {
                 RawBitScore bitScore = new RawBitScore(new Promise<>(() -> {
@@ -279,6 +391,35 @@ public class FullText {
         return gatherValues;
     }
 
+    private static class TermScorer {
+
+        private final FieldAndTermId fieldAndTermId;
+        private final MiruFieldDefinition fieldDefinition;
+        private final float multiplier;
+        private final float bound;
+
+        private boolean fetched;
+        private Object bitmap;
+
+        private TermScorer(FieldAndTermId fieldAndTermId, MiruFieldDefinition fieldDefinition, float multiplier, float bound) {
+            this.fieldAndTermId = fieldAndTermId;
+            this.fieldDefinition = fieldDefinition;
+            this.multiplier = multiplier;
+            this.bound = bound;
+        }
+
+        @SuppressWarnings("unchecked")
+        private <BM extends IBM, IBM> IBM getBitmap(String name, MiruFieldIndex<BM, IBM> fieldIndex, StackBuffer stackBuffer) throws Exception {
+            if (!fetched) {
+                BitmapAndLastId<BM> container = new BitmapAndLastId<>();
+                fieldIndex.get(name, fieldAndTermId.fieldId, fieldAndTermId.termId).getIndex(container, stackBuffer);
+                bitmap = container.isSet() ? container.getBitmap() : null;
+                fetched = true;
+            }
+            return (IBM) bitmap;
+        }
+    }
+
     private static class RawBitScore implements Comparable<RawBitScore> {
 
         private final Promise<TimestampedValues> values;
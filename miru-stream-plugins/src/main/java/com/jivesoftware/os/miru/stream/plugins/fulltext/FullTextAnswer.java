@@ -11,20 +11,26 @@ import java.util.List;
 /** @author jonathan */
 public class FullTextAnswer implements Serializable {
 
-    public static final FullTextAnswer EMPTY_RESULTS = new FullTextAnswer(ImmutableList.<ActivityScore>of(), 0, true);
+    public static final FullTextAnswer EMPTY_RESULTS = new FullTextAnswer(ImmutableList.<ActivityScore>of(), 0, true, 0, 0);
 
     public final List<ActivityScore> results;
     public final long found;
     public final boolean resultsExhausted;
+    public final long scored;
+    public final long pruned;
 
     @JsonCreator
     public FullTextAnswer(
         @JsonProperty("results") List<ActivityScore> results,
         @JsonProperty("found") long found,
-        @JsonProperty("resultsExhausted") boolean resultsExhausted) {
+        @JsonProperty("resultsExhausted") boolean resultsExhausted,
+        @JsonProperty("scored") long scored,
+        @JsonProperty("pruned") long pruned) {
         this.results = results;
         this.found = found;
         this.resultsExhausted = resultsExhausted;
+        this.scored = scored;
+        this.pruned = pruned;
     }
 
     @Override
@@ -33,6 +39,8 @@ public class FullTextAnswer implements Serializable {
             "results=" + results +
             ", found=" + found +
             ", resultsExhausted=" + resultsExhausted +
+            ", scored=" + scored +
+            ", pruned=" + pruned +
             '}';
     }
 
@@ -64,7 +64,16 @@ public class FullTextAnswerMerger implements MiruAnswerMerger<FullTextAnswer> {
             }
         }
 
-        return new FullTextAnswer(ImmutableList.copyOf(mergedResults), lastAnswer.found + currentAnswer.found, currentAnswer.resultsExhausted);
+        return new FullTextAnswer(ImmutableList.copyOf(mergedResults),
+            lastAnswer.found + currentAnswer.found,
+            currentAnswer.resultsExhausted,
+            lastAnswer.scored + currentAnswer.scored,
+            lastAnswer.pruned + currentAnswer.pruned);
+    }
+
+    @Override
+    public boolean canMergeInTree() {
+        return true;
     }
 
     @Override
@@ -19,6 +19,9 @@ public interface FullTextConfig extends Config {
     @IntDefault(10_000)
     int getGathererBatchSize();
 
+    @BooleanDefault(false)
+    boolean getMaxScorePruningEnabled();
+
     @ClassDefault(DisabledTermProviderInitializer.class)
     Class<? extends FullTextTermProviderInitializer> getTermProviderInitializerClass();
 
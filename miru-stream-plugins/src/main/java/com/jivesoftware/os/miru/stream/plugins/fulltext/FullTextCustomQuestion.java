@@ -138,8 +138,15 @@ public class FullTextCustomQuestion implements Question<FullTextQuery, FullTextA
             report = Optional.of(new FullTextReport(
                 answer.get().results.size(),
                 lowestScore,
-                highestScore));
+                highestScore,
+                answer.get().scored,
+                answer.get().pruned));
         }
         return report;
     }
+
+    @Override
+    public MiruRequest<FullTextQuery> getCacheableRequest() {
+        return request;
+    }
 }
@@ -67,7 +67,8 @@ public class FullTextPlugin implements MiruPlugin<FullTextEndpoints, FullTextInj
     @Override
     public Collection<MiruEndpointInjectable<FullTextInjectable>> getInjectables(MiruProvider<? extends Miru> miruProvider) {
 
-        FullText fullText = new FullText(miruProvider);
+        FullTextConfig config = miruProvider.getConfig(FullTextConfig.class);
+        FullText fullText = new FullText(miruProvider, config.getMaxScorePruningEnabled());
         return Collections.singletonList(new MiruEndpointInjectable<>(
             FullTextInjectable.class,
             new FullTextInjectable(miruProvider, fullText)
@@ -12,14 +12,20 @@ public class FullTextReport implements Serializable {
     public final int scoredActivities;
     public final float lowestScore;
     public final float highestScore;
+    public final long scored;
+    public final long pruned;
 
     public FullTextReport(
         @JsonProperty("scoredActivities") int scoredActivities,
         @JsonProperty("lowestScore") float lowestScore,
-        @JsonProperty("highestScore") float highestScore) {
+        @JsonProperty("highestScore") float highestScore,
+        @JsonProperty("scored") long scored,
+        @JsonProperty("pruned") long pruned) {
         this.scoredActivities = scoredActivities;
         this.lowestScore = lowestScore;
         this.highestScore = highestScore;
+        this.scored = scored;
+        this.pruned = pruned;
     }
 
     @Override
@@ -28,6 +34,8 @@ public class FullTextReport implements Serializable {
             "scoredActivities=" + scoredActivities +
             ", lowestScore=" + lowestScore +
             ", highestScore=" + highestScore +
+            ", scored=" + scored +
+            ", pruned=" + pruned +
             '}';
     }
 }
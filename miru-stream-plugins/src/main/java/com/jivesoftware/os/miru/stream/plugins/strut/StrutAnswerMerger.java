@@ -112,6 +112,11 @@ public class StrutAnswerMerger implements MiruAnswerMerger<StrutAnswer> {
         return Math.max(left.score, right.score);
     }
 
+    @Override
+    public boolean canMergeInTree() {
+        return true;
+    }
+
     @Override
     public StrutAnswer done(Optional<StrutAnswer> last, StrutAnswer alternative, MiruSolutionLog solutionLog) {
         return last.or(alternative);
@@ -22,6 +22,12 @@ public interface StrutConfig extends Config {
     @LongDefault(1024)
     long getModelCacheMaxSize();
 
+    @LongDefault(256 * 1024 * 1024L)
+    long getDecodedModelCacheMaxBytes();
+
+    @LongDefault(1_000)
+    long getModelCacheUpdateIntervalMillis();
+
     @IntDefault(24)
     int getAsyncThreadPoolSize();
 
@@ -9,8 +9,7 @@ import com.jivesoftware.os.miru.catwalk.shared.CatwalkQuery;
 import com.jivesoftware.os.miru.catwalk.shared.CatwalkQuery.CatwalkFeature;
 import com.jivesoftware.os.miru.catwalk.shared.FeatureScore;
 import com.jivesoftware.os.miru.catwalk.shared.StrutModel;
-import com.jivesoftware.os.miru.catwalk.shared.StrutModelKey;
-import com.jivesoftware.os.miru.catwalk.shared.StrutModelScore;
+import com.jivesoftware.os.miru.catwalk.shared.StrutModelScores;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 import com.jivesoftware.os.routing.bird.http.client.HttpResponse;
@@ -23,11 +22,14 @@ import com.jivesoftware.os.routing.bird.shared.ClientCall.ClientResponse;
 import com.jivesoftware.os.routing.bird.shared.NextClientStrategy;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.xerial.snappy.SnappyInputStream;
 
 /**
@@ -45,8 +47,11 @@ public class StrutModelCache {
     private final ObjectMapper requestMapper;
     private final HttpResponseMapper responseMapper;
     private final Cache<String, byte[]> modelCache;
+    private final Cache<String, StrutModel> decodedModelCache;
 
     private final Map<MiruTenantId, NextClientStrategy> tenantNextClientStrategy = Maps.newConcurrentMap();
+    private final Map<String, PendingUpdate> pendingUpdates = Maps.newConcurrentMap();
+    private final AtomicBoolean asyncUpdates = new AtomicBoolean(false);
 
     public StrutModelCache(TenantAwareHttpClient<String> catwalkClient,
         ExecutorService tasExecutors,
@@ -55,7 +60,8 @@ public class StrutModelCache {
         long tasInitialSLAMillis,
         ObjectMapper requestMapper,
         HttpResponseMapper responseMapper,
-        Cache<String, byte[]> modelCache) {
+        Cache<String, byte[]> modelCache,
+        Cache<String, StrutModel> decodedModelCache) {
 
         this.catwalkClient = catwalkClient;
         this.tasExecutors = tasExecutors;
@@ -65,6 +71,24 @@ public class StrutModelCache {
         this.requestMapper = requestMapper;
         this.responseMapper = responseMapper;
         this.modelCache = modelCache;
+        this.decodedModelCache = decodedModelCache;
+    }
+
+    /**
+     * Sends model update notifications from the given executor, coalescing repeated hits for the same model and partition
+     * between sends. Until started, notifications are sent from the request thread.
+     */
+    public void start(ScheduledExecutorService executorService, long updateIntervalMillis) {
+        if (updateIntervalMillis > 0) {
+            asyncUpdates.set(true);
+            executorService.scheduleWithFixedDelay(() -> {
+                try {
+                    sendPendingUpdates();
+                } catch (Throwable t) {
+                    LOG.error("Failure while sending strut model updates", t);
+                }
+            }, updateIntervalMillis, updateIntervalMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     private static class ModelNotAvailable extends RuntimeException {
@@ -88,12 +112,17 @@ public class StrutModelCache {
             return convert(catwalkQuery, fetchModel(nextClientStrategy, catwalkQuery, key, partitionId));
         }
 
-        StrutModel model = null;
+        StrutModel model = decodedModelCache != null ? decodedModelCache.getIfPresent(key) : null;
+        if (model != null) {
+            LOG.inc("strut>model>cache>hit");
+            LOG.inc("strut>model>cache>decoded>hit");
+            update(nextClientStrategy, catwalkQuery, key, partitionId);
+            return model;
+        }
+
         byte[] modelBytes = modelCache.getIfPresent(key);
         if (modelBytes != null) {
-            SnappyInputStream in = new SnappyInputStream(new BufferedInputStream(new ByteArrayInputStream(modelBytes), 8192));
-            CatwalkModel catwalkModel = requestMapper.readValue(in, CatwalkModel.class);
-            model = convert(catwalkQuery, catwalkModel);
+            model = convert(catwalkQuery, decode(modelBytes));
         }
 
         if (model == null) {
@@ -102,9 +131,7 @@ public class StrutModelCache {
                     return fetchModelBytes(nextClientStrategy, catwalkQuery, key, partitionId);
                 });
 
-                SnappyInputStream in = new SnappyInputStream(new BufferedInputStream(new ByteArrayInputStream(modelBytes), 8192));
-                CatwalkModel catwalkModel = requestMapper.readValue(in, CatwalkModel.class);
-                model = convert(catwalkQuery, catwalkModel);
+                model = convert(catwalkQuery, decode(modelBytes));
             } catch (ExecutionException ee) {
                 if (ee.getCause() instanceof ModelNotAvailable) {
                     LOG.info(ee.getCause().getMessage());
@@ -117,11 +144,11 @@ public class StrutModelCache {
             if (model.model == null) {
                 LOG.info("Discarded null model for tenantId:{} partitionId:{} catwalkId:{} modelId:{}", tenantId, partitionId, catwalkId, modelId);
                 LOG.inc("strut>model>cache>discard");
-                modelCache.invalidate(key);
+                invalidate(key);
                 return null;
             } else {
                 boolean empty = true;
-                for (Map<StrutModelKey, StrutModelScore> featureModel : model.model) {
+                for (StrutModelScores featureModel : model.model) {
                     if (!featureModel.isEmpty()) {
                         empty = false;
                         break;
@@ -130,7 +157,7 @@ public class StrutModelCache {
                 if (empty) {
                     LOG.info("Discarded empty model for tenantId:{} partitionId:{} catwalkId:{} modelId:{}", tenantId, partitionId, catwalkId, modelId);
                     LOG.inc("strut>model>cache>empty");
-                    modelCache.invalidate(key);
+                    invalidate(key);
                     return null;
                 } else {
                     LOG.inc("strut>model>cache>miss");
@@ -138,16 +165,77 @@ public class StrutModelCache {
             }
         } else {
             LOG.inc("strut>model>cache>hit");
-            String json = requestMapper.writeValueAsString(catwalkQuery);
-            catwalkClient.call("",
-                nextClientStrategy,
-                "strutModelCacheUpdate",
-                (c) -> new ClientCall.ClientResponse<>(c.postJson("/miru/catwalk/model/update/" + key + "/" + partitionId, json, null), true));
+            update(nextClientStrategy, catwalkQuery, key, partitionId);
+        }
+
+        if (decodedModelCache != null) {
+            decodedModelCache.put(key, model);
         }
         return model;
 
     }
 
+    private CatwalkModel decode(byte[] modelBytes) throws Exception {
+        SnappyInputStream in = new SnappyInputStream(new BufferedInputStream(new ByteArrayInputStream(modelBytes), 8192));
+        return requestMapper.readValue(in, CatwalkModel.class);
+    }
+
+    private void invalidate(String key) {
+        modelCache.invalidate(key);
+        if (decodedModelCache != null) {
+            decodedModelCache.invalidate(key);
+        }
+    }
+
+    private void update(NextClientStrategy nextClientStrategy, CatwalkQuery catwalkQuery, String key, int partitionId) throws Exception {
+        if (asyncUpdates.get()) {
+            PendingUpdate existing = pendingUpdates.put(key + "/" + partitionId, new PendingUpdate(nextClientStrategy, catwalkQuery, key, partitionId));
+            if (existing != null) {
+                LOG.inc("strut>model>cache>update>coalesced");
+            }
+        } else {
+            sendUpdate(nextClientStrategy, catwalkQuery, key, partitionId);
+        }
+    }
+
+    private void sendPendingUpdates() {
+        Iterator<PendingUpdate> iter = pendingUpdates.values().iterator();
+        while (iter.hasNext()) {
+            PendingUpdate pendingUpdate = iter.next();
+            iter.remove();
+            try {
+                sendUpdate(pendingUpdate.nextClientStrategy, pendingUpdate.catwalkQuery, pendingUpdate.key, pendingUpdate.partitionId);
+                LOG.inc("strut>model>cache>update>sent");
+            } catch (Exception e) {
+                LOG.warn("Failed to send model update for key:{} partitionId:{}", new Object[] { pendingUpdate.key, pendingUpdate.partitionId }, e);
+                LOG.inc("strut>model>cache>update>failure");
+            }
+        }
+    }
+
+    private void sendUpdate(NextClientStrategy nextClientStrategy, CatwalkQuery catwalkQuery, String key, int partitionId) throws Exception {
+        String json = requestMapper.writeValueAsString(catwalkQuery);
+        catwalkClient.call("",
+            nextClientStrategy,
+            "strutModelCacheUpdate",
+            (c) -> new ClientCall.ClientResponse<>(c.postJson("/miru/catwalk/model/update/" + key + "/" + partitionId, json, null), true));
+    }
+
+    private static class PendingUpdate {
+
+        private final NextClientStrategy nextClientStrategy;
+        private final CatwalkQuery catwalkQuery;
+        private final String key;
+        private final int partitionId;
+
+        private PendingUpdate(NextClientStrategy nextClientStrategy, CatwalkQuery catwalkQuery, String key, int partitionId) {
+            this.nextClientStrategy = nextClientStrategy;
+            this.catwalkQuery = catwalkQuery;
+            this.key = key;
+            this.partitionId = partitionId;
+        }
+    }
+
     private byte[] fetchModelBytes(NextClientStrategy nextClientStrategy, CatwalkQuery catwalkQuery, String key, int partitionId) throws Exception {
 
         String json = requestMapper.writeValueAsString(catwalkQuery);
@@ -193,22 +281,22 @@ public class StrutModelCache {
     private StrutModel convert(CatwalkQuery catwalkQuery, CatwalkModel model) {
 
         CatwalkFeature[] features = catwalkQuery.definition.features;
-        @SuppressWarnings("unchecked")
-        Map<StrutModelKey, StrutModelScore>[] modelFeatureScore = new Map[features.length];
-        for (int i = 0; i < modelFeatureScore.length; i++) {
-            modelFeatureScore[i] = new HashMap<>();
-        }
+        StrutModelScores[] modelFeatureScores = new StrutModelScores[features.length];
         for (int i = 0; i < features.length; i++) {
-            if (model != null && model.featureScores != null && model.featureScores[i] != null) {
+            if (model != null && model.featureScores != null && model.featureScores[i] != null && !model.featureScores[i].isEmpty()) {
                 List<FeatureScore> featureScores = model.featureScores[i];
+                int numeratorsCount = featureScores.get(0).numerators.length;
+                modelFeatureScores[i] = new StrutModelScores(numeratorsCount, featureScores.size());
                 for (FeatureScore featureScore : featureScores) {
                     // magical deflation
                     long denominator = (featureScore.denominator * model.totalNumPartitions[i]) / featureScore.numPartitions;
-                    modelFeatureScore[i].put(new StrutModelKey(featureScore.termIds), new StrutModelScore(featureScore.numerators, denominator));
+                    modelFeatureScores[i].put(featureScore.termIds, featureScore.numerators, denominator);
                 }
+            } else {
+                modelFeatureScores[i] = new StrutModelScores(0, 0);
             }
         }
-        return new StrutModel(modelFeatureScore,
+        return new StrutModel(modelFeatureScores,
             model != null ? model.modelCounts : new long[features.length],
             model != null ? model.totalCount : 0,
             model != null ? model.numberOfModels : new int[features.length],
@@ -8,6 +8,7 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jivesoftware.os.miru.catwalk.shared.StrutModel;
 import com.jivesoftware.os.miru.plugin.Miru;
 import com.jivesoftware.os.miru.plugin.MiruProvider;
 import com.jivesoftware.os.miru.plugin.plugin.LifecycleMiruPlugin;
@@ -96,6 +97,7 @@ public class StrutPlugin implements MiruPlugin<StrutEndpoints, StrutInjectable>,
         HttpResponseMapper responseMapper = new HttpResponseMapper(mapper);
 
         Cache<String, byte[]> modelCache = null;
+        Cache<String, StrutModel> decodedModelCache = null;
         if (config.getModelCacheEnabled()) {
             modelCache = CacheBuilder
                 .newBuilder()
@@ -103,14 +105,23 @@ public class StrutPlugin implements MiruPlugin<StrutEndpoints, StrutInjectable>,
                 .softValues()
                 .maximumSize(config.getModelCacheMaxSize())
                 .build();
+            if (config.getDecodedModelCacheMaxBytes() > 0) {
+                decodedModelCache = CacheBuilder
+                    .newBuilder()
+                    .expireAfterWrite(config.getModelCacheExpirationInMillis(), TimeUnit.MILLISECONDS)
+                    .maximumWeight(config.getDecodedModelCacheMaxBytes())
+                    .weigher((String key, StrutModel value) -> (int) Math.min(key.length() * 2L + value.sizeInBytes(), Integer.MAX_VALUE))
+                    .build();
+            }
         }
 
         ExecutorService stas = miruProvider.allocateThreadPool("strut-tas", 1024);
 
-        StrutModelCache cache = new StrutModelCache(catwalkHttpClient, stas, 100, 95, 1000, mapper, responseMapper, modelCache);
+        StrutModelCache cache = new StrutModelCache(catwalkHttpClient, stas, 100, 95, 1000, mapper, responseMapper, modelCache, decodedModelCache);
 
         ScheduledExecutorService asyncExecutorService = Executors.newScheduledThreadPool(config.getAsyncThreadPoolSize(),
             new ThreadFactoryBuilder().setNameFormat("strut-async-%d").build());
+        cache.start(asyncExecutorService, config.getModelCacheUpdateIntervalMillis());
 
         AtomicLong pendingUpdates = new AtomicLong();
         HealthCheck pendingUpdatesHealthCheck = new PendingUpdatesHealthChecker(miruProvider.getConfig(PendingUpdatesHealthCheckConfig.class), pendingUpdates);
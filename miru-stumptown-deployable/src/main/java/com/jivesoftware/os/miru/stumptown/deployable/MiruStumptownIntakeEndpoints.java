@@ -7,6 +7,8 @@ import com.jivesoftware.os.miru.logappender.MiruLogEvent;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
 
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import javax.inject.Singleton;
@@ -16,6 +18,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import org.xerial.snappy.SnappyInputStream;
 
 @Singleton
 @Path("/miru/stumptown")
@@ -35,6 +38,24 @@ public class MiruStumptownIntakeEndpoints {
     @Path("/intake")
     @Consumes(MediaType.APPLICATION_JSON)
     public Response intake(List<MiruLogEvent> logEvents) throws Exception {
+        return deliver(logEvents);
+    }
+
+    @POST
+    @Path("/intake/snappy")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    public Response intakeSnappy(InputStream inputStream) throws Exception {
+        LogEvents logEvents;
+        try {
+            logEvents = mapper.readValue(new SnappyInputStream(inputStream), LogEvents.class);
+        } catch (Exception x) {
+            LOG.error("Failed decompressing intake", x);
+            return Response.serverError().build();
+        }
+        return deliver(logEvents);
+    }
+
+    private Response deliver(List<MiruLogEvent> logEvents) {
         try {
             for (MiruLogEvent logEvent : logEvents) {
                 LOG.debug("host:{} service:{} instance:{} message:{}",
@@ -52,4 +73,8 @@ public class MiruStumptownIntakeEndpoints {
         }
     }
 
+    private static class LogEvents extends ArrayList<MiruLogEvent> {
+
+    }
+
 }
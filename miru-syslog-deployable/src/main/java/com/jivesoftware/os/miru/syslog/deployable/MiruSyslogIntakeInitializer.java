@@ -6,6 +6,7 @@ import com.jivesoftware.os.routing.bird.http.client.TenantAwareHttpClient;
 import org.merlin.config.Config;
 import org.merlin.config.defaults.BooleanDefault;
 import org.merlin.config.defaults.IntDefault;
+import org.merlin.config.defaults.LongDefault;
 
 class MiruSyslogIntakeInitializer {
 
@@ -23,12 +24,36 @@ class MiruSyslogIntakeInitializer {
         @IntDefault(1024 * 1024)
         int getReceiveBufferSize();
 
+        @BooleanDefault(false)
+        boolean getShardedEnabled();
+
+        @IntDefault(4)
+        int getForwardWorkers();
+
+        @IntDefault(10_000)
+        int getForwardWorkerQueueSize();
+
+        @LongDefault(1_000)
+        long getForwardMaxFlushLatencyMillis();
+
+        @LongDefault(10)
+        long getBackpressureRetryMillis();
+
     }
 
     MiruSyslogIntakeService initialize(InstanceConfig instanceConfig,
         MiruSyslogIntakeConfig miruSyslogIntakeConfig,
         MiruLogAppenderConfig miruLogAppenderConfig,
         TenantAwareHttpClient<String> client) {
+        MiruSyslogShardedForwarder shardedForwarder = null;
+        if (miruSyslogIntakeConfig.getShardedEnabled()) {
+            shardedForwarder = new MiruSyslogShardedForwarder(client,
+                miruSyslogIntakeConfig.getForwardWorkers(),
+                miruSyslogIntakeConfig.getForwardWorkerQueueSize(),
+                miruLogAppenderConfig.getBatchSize(),
+                miruSyslogIntakeConfig.getForwardMaxFlushLatencyMillis(),
+                miruLogAppenderConfig.getIfErrorPauseMillis());
+        }
         return new MiruSyslogIntakeService(
             miruSyslogIntakeConfig.getEnabled(),
             instanceConfig.getMainPort(),
@@ -43,6 +68,8 @@ class MiruSyslogIntakeInitializer {
             miruLogAppenderConfig.getIfErrorPauseMillis(),
             miruLogAppenderConfig.getNonBlockingDrainThreshold(),
             miruLogAppenderConfig.getNonBlockingDrainCount(),
+            shardedForwarder,
+            miruSyslogIntakeConfig.getBackpressureRetryMillis(),
             client);
     }
 
@@ -27,6 +27,7 @@ import io.netty.handler.codec.string.StringEncoder;
 import io.netty.util.CharsetUtil;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -36,6 +37,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 class MiruSyslogIntakeService {
@@ -57,6 +59,8 @@ class MiruSyslogIntakeService {
     private final long ifErrorPauseMillis;
     private final int nonBlockingDrainThreshold;
     private final int nonBlockingDrainCount;
+    private final MiruSyslogShardedForwarder shardedForwarder;
+    private final long backpressureRetryMillis;
 
     private final AtomicBoolean started = new AtomicBoolean(false);
 
@@ -84,6 +88,8 @@ class MiruSyslogIntakeService {
         long ifErrorPauseMillis,
         int nonBlockingDrainThreshold,
         int nonBlockingDrainCount,
+        MiruSyslogShardedForwarder shardedForwarder,
+        long backpressureRetryMillis,
         TenantAwareHttpClient<String> client) {
         this.enabled = enabled;
 
@@ -100,6 +106,8 @@ class MiruSyslogIntakeService {
         this.ifErrorPauseMillis = ifErrorPauseMillis;
         this.nonBlockingDrainThreshold = nonBlockingDrainThreshold;
         this.nonBlockingDrainCount = nonBlockingDrainCount;
+        this.shardedForwarder = shardedForwarder;
+        this.backpressureRetryMillis = backpressureRetryMillis;
 
         this.client = client;
     }
@@ -116,13 +124,20 @@ class MiruSyslogIntakeService {
         }
 
         if (started.compareAndSet(false, true)) {
-            queueProcessor.submit(new QueueConsumer());
+            if (shardedForwarder != null) {
+                shardedForwarder.start();
+            } else {
+                queueProcessor.submit(new QueueConsumer());
+            }
             listenProcessor.submit(new SyslogListener());
         }
     }
 
     void stop() {
         if (started.compareAndSet(true, false)) {
+            if (shardedForwarder != null) {
+                shardedForwarder.stop();
+            }
             queueProcessor.shutdownNow();
             listenProcessor.shutdownNow();
         }
@@ -166,6 +181,61 @@ class MiruSyslogIntakeService {
 
         }
 
+        /**
+         * Parses on the event loop and hands events to the sharded forwarder. When a shard is full the channel stops reading, and
+         * its pending events are retried on the event loop until they fit, so slow forwarding pushes back on the source rather
+         * than dropping events.
+         */
+        private class ShardedSyslogServerHandler extends SimpleChannelInboundHandler<String> {
+
+            private final ArrayDeque<MiruLogEvent> pending = new ArrayDeque<>();
+
+            @Override
+            public void channelRead0(ChannelHandlerContext ctx, String line) throws Exception {
+                LOG.inc("syslog>received");
+                InetSocketAddress remoteAddress = (InetSocketAddress) ctx.channel().remoteAddress();
+
+                SyslogEvent syslogEvent = new SyslogEvent()
+                    .setMessage(line)
+                    .setAddress(remoteAddress)
+                    .build();
+
+                if (syslogEvent.miruLogEvent == null) {
+                    LOG.inc("syslog>invalid");
+                    return;
+                }
+                LOG.inc("syslog>parsed");
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(syslogEvent.toString());
+                }
+
+                if (!pending.isEmpty() || !shardedForwarder.offer(syslogEvent.miruLogEvent)) {
+                    pending.add(syslogEvent.miruLogEvent);
+                    if (ctx.channel().config().isAutoRead()) {
+                        ctx.channel().config().setAutoRead(false);
+                        LOG.inc("syslog>backpressure");
+                        ctx.executor().schedule(() -> drainPending(ctx), backpressureRetryMillis, TimeUnit.MILLISECONDS);
+                    }
+                }
+            }
+
+            private void drainPending(ChannelHandlerContext ctx) {
+                while (!pending.isEmpty()) {
+                    if (!shardedForwarder.offer(pending.peek())) {
+                        if (ctx.channel().isActive() && started.get()) {
+                            ctx.executor().schedule(() -> drainPending(ctx), backpressureRetryMillis, TimeUnit.MILLISECONDS);
+                        } else {
+                            LOG.inc("syslog>dropped", pending.size());
+                            pending.clear();
+                        }
+                        return;
+                    }
+                    pending.poll();
+                }
+                ctx.channel().config().setAutoRead(true);
+            }
+        }
+
         @Override
         public void run() {
             EventLoopGroup parentGroup = new NioEventLoopGroup(1);
@@ -183,7 +253,7 @@ class MiruSyslogIntakeService {
                             pipeline.addLast(new StringEncoder(CharsetUtil.UTF_8));
                             pipeline.addLast(new LineBasedFrameDecoder(maxFrameLength));
                             pipeline.addLast(new StringDecoder(CharsetUtil.UTF_8));
-                            pipeline.addLast(new SyslogServerHandler());
+                            pipeline.addLast(shardedForwarder != null ? new ShardedSyslogServerHandler() : new SyslogServerHandler());
                         }
                     })
                     .bind(port).sync().channel().closeFuture().sync();
@@ -0,0 +1,104 @@
+package com.jivesoftware.os.miru.syslog.deployable;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.jivesoftware.os.miru.logappender.MiruLogBatchPoster;
+import com.jivesoftware.os.miru.logappender.MiruLogEvent;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.mlogger.core.ValueType;
+import com.jivesoftware.os.routing.bird.http.client.TenantAwareHttpClient;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shards parsed events by host and service across forwarding workers, each with its own bounded queue, so that events from one
+ * source stay in order while separate sources forward in parallel. A full shard rejects the offer rather than dropping anything,
+ * leaving the caller to apply backpressure.
+ */
+class MiruSyslogShardedForwarder {
+
+    private static final MetricLogger LOG = MetricLoggerFactory.getLogger();
+
+    private final MiruLogBatchPoster poster;
+    private final BlockingQueue<MiruLogEvent>[] queues;
+    private final ExecutorService workers;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    MiruSyslogShardedForwarder(TenantAwareHttpClient<String> client,
+        int numWorkers,
+        int workerQueueSize,
+        int batchSize,
+        long maxFlushLatencyMillis,
+        long ifErrorPauseMillis) {
+        this(new MiruLogBatchPoster("MiruSyslogShardedForwarder", "syslog>forward", client, batchSize, maxFlushLatencyMillis,
+            ifErrorPauseMillis),
+            numWorkers,
+            workerQueueSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    MiruSyslogShardedForwarder(MiruLogBatchPoster poster, int numWorkers, int workerQueueSize) {
+        this.poster = poster;
+
+        this.queues = new BlockingQueue[numWorkers];
+        for (int i = 0; i < numWorkers; i++) {
+            queues[i] = new ArrayBlockingQueue<>(workerQueueSize);
+        }
+        this.workers = Executors.newFixedThreadPool(numWorkers,
+            new ThreadFactoryBuilder().setNameFormat("miru-syslog-forward-%d").build());
+    }
+
+    void start() {
+        if (running.compareAndSet(false, true)) {
+            for (int i = 0; i < queues.length; i++) {
+                workers.submit(new Worker(i));
+            }
+        }
+    }
+
+    void stop() {
+        if (running.compareAndSet(true, false)) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * @return false if the event's shard is full
+     */
+    boolean offer(MiruLogEvent miruLogEvent) {
+        int shard = Math.abs(Objects.hash(miruLogEvent.host, miruLogEvent.service) % queues.length);
+        if (queues[shard].offer(miruLogEvent)) {
+            LOG.inc("syslog>shard>queued");
+            return true;
+        }
+        LOG.inc("syslog>shard>full");
+        return false;
+    }
+
+    private class Worker implements Runnable {
+
+        private final int shard;
+        private final BlockingQueue<MiruLogEvent> queue;
+
+        private Worker(int shard) {
+            this.shard = shard;
+            this.queue = queues[shard];
+        }
+
+        @Override
+        public void run() {
+            while (running.get()) {
+                List<MiruLogEvent> miruLogEvents = poster.nextBatch(queue);
+                LOG.set(ValueType.COUNT, "syslog>shard>" + shard + ">depth", queue.size());
+                if (!miruLogEvents.isEmpty()) {
+                    poster.post(miruLogEvents, running);
+                }
+            }
+        }
+    }
+}
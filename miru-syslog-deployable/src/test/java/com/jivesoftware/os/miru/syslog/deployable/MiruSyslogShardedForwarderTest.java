@@ -0,0 +1,119 @@
+package com.jivesoftware.os.miru.syslog.deployable;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.logappender.MiruLogBatchPoster;
+import com.jivesoftware.os.miru.logappender.MiruLogEvent;
+import java.io.ByteArrayInputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.testng.annotations.Test;
+import org.xerial.snappy.SnappyInputStream;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class MiruSyslogShardedForwarderTest {
+
+    @Test
+    public void testFullShardRejectsOffer() throws Exception {
+        MiruSyslogShardedForwarder forwarder = new MiruSyslogShardedForwarder(new RecordingPoster(1, new CountDownLatch(0), 0), 1, 3);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(forwarder.offer(event(i)));
+        }
+        assertFalse(forwarder.offer(event(3)));
+    }
+
+    @Test
+    public void testStalledPostAppliesBackpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingPoster poster = new RecordingPoster(1, release, 0);
+        MiruSyslogShardedForwarder forwarder = new MiruSyslogShardedForwarder(poster, 1, 2);
+        forwarder.start();
+        try {
+            assertTrue(forwarder.offer(event(0)));
+            assertTrue(poster.entered.await(10, TimeUnit.SECONDS));
+
+            // the worker is stuck posting the first event, so the shard fills and pushes back
+            assertTrue(forwarder.offer(event(1)));
+            assertTrue(forwarder.offer(event(2)));
+            assertFalse(forwarder.offer(event(3)));
+
+            release.countDown();
+            waitForPosted(poster, 3);
+            assertTrue(forwarder.offer(event(3)));
+            waitForPosted(poster, 4);
+            assertEquals(poster.posted, Lists.newArrayList("0", "1", "2", "3"));
+        } finally {
+            forwarder.stop();
+        }
+    }
+
+    @Test
+    public void testFailedPostIsRetriedUntilAccepted() throws Exception {
+        RecordingPoster poster = new RecordingPoster(10, new CountDownLatch(0), 2);
+        MiruSyslogShardedForwarder forwarder = new MiruSyslogShardedForwarder(poster, 1, 10);
+        forwarder.start();
+        try {
+            assertTrue(forwarder.offer(event(0)));
+            waitForPosted(poster, 1);
+            assertEquals(poster.posted, Lists.newArrayList("0"));
+            assertEquals(poster.attempts.get(), 3);
+        } finally {
+            forwarder.stop();
+        }
+    }
+
+    private static void waitForPosted(RecordingPoster poster, int count) throws InterruptedException {
+        long failAfter = System.currentTimeMillis() + 10_000;
+        while (poster.posted.size() < count) {
+            assertTrue(System.currentTimeMillis() < failAfter, "Only posted " + poster.posted);
+            Thread.sleep(10);
+        }
+    }
+
+    private static MiruLogEvent event(int index) {
+        MiruLogEvent miruLogEvent = new MiruLogEvent();
+        miruLogEvent.host = "host";
+        miruLogEvent.service = "service";
+        miruLogEvent.message = String.valueOf(index);
+        return miruLogEvent;
+    }
+
+    /**
+     * Accepts posts once released, failing the given number of attempts first, and records the messages it accepted in order.
+     */
+    private static class RecordingPoster extends MiruLogBatchPoster {
+
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release;
+        private final int failures;
+        private final AtomicInteger attempts = new AtomicInteger();
+        private final List<String> posted = Collections.synchronizedList(Lists.newArrayList());
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        private RecordingPoster(int batchSize, CountDownLatch release, int failures) {
+            super("test", "test", null, batchSize, 10, 1);
+            this.release = release;
+            this.failures = failures;
+        }
+
+        @Override
+        protected int postBytes(byte[] bytes) throws Exception {
+            entered.countDown();
+            release.await();
+            if (attempts.incrementAndGet() <= failures) {
+                return 500;
+            }
+            MiruLogEvent[] miruLogEvents = objectMapper.readValue(new SnappyInputStream(new ByteArrayInputStream(bytes)), MiruLogEvent[].class);
+            for (MiruLogEvent miruLogEvent : miruLogEvents) {
+                posted.add(miruLogEvent.message);
+            }
+            return 202;
+        }
+    }
+}
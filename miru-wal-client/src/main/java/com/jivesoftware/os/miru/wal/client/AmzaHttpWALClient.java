@@ -14,6 +14,7 @@ import com.jivesoftware.os.miru.api.activity.StreamIdPartitionedActivities;
 import com.jivesoftware.os.miru.api.activity.TimeAndVersion;
 import com.jivesoftware.os.miru.api.base.MiruStreamId;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.marshall.MiruPartitionedActivityCodec;
 import com.jivesoftware.os.miru.api.wal.AmzaCursor;
 import com.jivesoftware.os.miru.api.wal.AmzaSipCursor;
 import com.jivesoftware.os.miru.api.wal.MiruActivityWALStatus;
@@ -59,6 +60,8 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
     private final HttpResponseMapper responseMapper;
     private final SickThreads sickThreads;
     private final long sleepOnFailureMillis;
+    private final boolean binaryActivityTransport;
+    private final MiruPartitionedActivityCodec activityCodec;
     private final Cache<TenantRoutingGroup<?>, NextClientStrategy> tenantRoutingCache;
 
     private final Map<MiruTenantId, NextClientStrategy> tenantNextClientStrategy = Maps.newConcurrentMap();
@@ -71,7 +74,8 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
         long tasInitialSLAMillis,
         ObjectMapper requestMapper,
         HttpResponseMapper responseMapper,
-        SickThreads sickThreads, long sleepOnFailureMillis) {
+        SickThreads sickThreads, long sleepOnFailureMillis,
+        boolean binaryActivityTransport) {
 
         this.routingTenantId = routingTenantId;
         this.walClient = walClient;
@@ -83,6 +87,8 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
         this.responseMapper = responseMapper;
         this.sickThreads = sickThreads;
         this.sleepOnFailureMillis = sleepOnFailureMillis;
+        this.binaryActivityTransport = binaryActivityTransport;
+        this.activityCodec = new MiruPartitionedActivityCodec(requestMapper, -1);
         this.tenantRoutingCache = CacheBuilder.newBuilder()
             .maximumSize(50_000) //TODO config
             .expireAfterWrite(5, TimeUnit.MINUTES) //TODO config
@@ -243,18 +249,17 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
         Set<TimeAndVersion> lastSeen,
         int batchSize) throws Exception {
         final String jsonCursor = requestMapper.writeValueAsString(new SipAndLastSeen<>(cursor, lastSeen));
+        String endpoint = "/miru/wal/amza/sip/activity/" + (binaryActivityTransport ? "binary/" : "")
+            + tenantId.toString() + "/" + partitionId.getId() + "/" + batchSize;
         try {
             while (true) {
                 try {
                     @SuppressWarnings("unchecked")
                     StreamBatch<MiruWALEntry, AmzaSipCursor> response = sendWithTenantPartition(RoutingGroupType.activity, tenantId, partitionId, false,
                         "sipActivity",
-                        client -> extract(
-                            client.postJson("/miru/wal/amza/sip/activity/" + tenantId.toString() + "/" + partitionId.getId() + "/" + batchSize, jsonCursor,
-                                null),
-                            StreamBatch.class,
-                            new Class[] { MiruWALEntry.class, AmzaSipCursor.class },
-                            null));
+                        client -> extractBatch(
+                            client.postJson(endpoint, jsonCursor, null),
+                            AmzaSipCursor.class));
                     if (response != null) {
                         return response;
                     }
@@ -308,7 +313,8 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
         long stopAtTimestamp,
         MutableLong bytesCount) throws Exception {
         try {
-            String endpoint = "/miru/wal/amza/activity/" + tenantId.toString() + "/" + partitionId.getId() + "/" + batchSize + "/" + stopAtTimestamp;
+            String endpoint = "/miru/wal/amza/activity/" + (binaryActivityTransport ? "binary/" : "")
+                + tenantId.toString() + "/" + partitionId.getId() + "/" + batchSize + "/" + stopAtTimestamp;
             String jsonCursor = requestMapper.writeValueAsString(cursor);
             while (true) {
                 try {
@@ -320,11 +326,7 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
                             if (bytesCount != null && httpResponse.getResponseBody() != null) {
                                 bytesCount.add(httpResponse.getResponseBody().length);
                             }
-                            return extract(
-                                httpResponse,
-                                StreamBatch.class,
-                                new Class[] { MiruWALEntry.class, AmzaCursor.class },
-                                null);
+                            return extractBatch(httpResponse, AmzaCursor.class);
                         });
                     if (response != null) {
                         return response;
@@ -503,6 +505,26 @@ public class AmzaHttpWALClient implements MiruWALClient<AmzaCursor, AmzaSipCurso
         return new ClientResponse<>(new SendResult<>(result, true, false), true);
     }
 
+    @SuppressWarnings("unchecked")
+    private <C> ClientResponse<SendResult<StreamBatch<MiruWALEntry, C>>> extractBatch(HttpResponse response, Class<C> cursorClass) {
+        if (response.getStatusCode() == HttpStatus.SC_NOT_FOUND || response.getStatusCode() == HttpStatus.SC_CONFLICT) {
+            return new ClientResponse<>(new SendResult<>(null, false, false), true);
+        } else if (!responseMapper.isSuccessStatusCode(response.getStatusCode())) {
+            return new ClientResponse<>(new SendResult<>(null, false, true), true);
+        }
+        StreamBatch<MiruWALEntry, C> result;
+        if (binaryActivityTransport) {
+            try {
+                result = activityCodec.batchFromBytes(response.getResponseBody(), cursorClass);
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to decode binary activity batch", e);
+            }
+        } else {
+            result = responseMapper.extractResultFromResponse(response, StreamBatch.class, new Class[] { MiruWALEntry.class, cursorClass }, null);
+        }
+        return new ClientResponse<>(new SendResult<>(result, true, false), true);
+    }
+
     private static class TenantRoutingGroup<P> {
 
         private final RoutingGroupType type;
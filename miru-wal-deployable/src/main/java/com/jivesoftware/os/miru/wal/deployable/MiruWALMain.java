@@ -37,6 +37,7 @@ import com.jivesoftware.os.miru.api.RoutingBirdHostPortProvider;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.activity.TenantAndPartition;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.marshall.MiruPartitionedActivityCodec;
 import com.jivesoftware.os.miru.api.topology.MiruClusterClient;
 import com.jivesoftware.os.miru.api.wal.AmzaCursor;
 import com.jivesoftware.os.miru.api.wal.AmzaSipCursor;
@@ -425,12 +426,16 @@ public class MiruWALMain {
                     1000,
                     mapper,
                     walClientSickThreads,
-                    10_000);
+                    10_000,
+                    walConfig.getBinaryActivityTransport());
 
+                MiruPartitionedActivityCodec activityCodec = new MiruPartitionedActivityCodec(mapper, walConfig.getBinaryActivityCompressAboveBytes());
                 AmzaActivityWALWriter amzaActivityWALWriter = new AmzaActivityWALWriter(amzaWALUtil,
                     amzaServiceConfig.getReplicateTimeoutMillis(),
-                    mapper);
-                AmzaActivityWALReader amzaActivityWALReader = new AmzaActivityWALReader(amzaWALUtil, mapper);
+                    mapper,
+                    activityCodec,
+                    walConfig.getBinaryActivityEncoding());
+                AmzaActivityWALReader amzaActivityWALReader = new AmzaActivityWALReader(amzaWALUtil, activityCodec);
                 AmzaWALLookup amzaWALLookup = new AmzaWALLookup(amzaWALUtil,
                     amzaServiceConfig.getReplicateTimeoutMillis());
 
@@ -448,6 +453,7 @@ public class MiruWALMain {
 
                 deployable.addEndpoints(AmzaWALEndpoints.class);
                 deployable.addInjectables(AmzaWALDirector.class, amzaWALDirector);
+                deployable.addInjectables(MiruPartitionedActivityCodec.class, activityCodec);
 
                 if (primaryAmzaWAL) {
                     activityWALReader = amzaActivityWALReader;
@@ -7,6 +7,7 @@ import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
 import com.jivesoftware.os.miru.api.activity.StreamIdPartitionedActivities;
 import com.jivesoftware.os.miru.api.base.MiruStreamId;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.marshall.MiruPartitionedActivityCodec;
 import com.jivesoftware.os.miru.api.wal.AmzaCursor;
 import com.jivesoftware.os.miru.api.wal.AmzaSipCursor;
 import com.jivesoftware.os.miru.api.wal.MiruActivityWALStatus;
@@ -48,11 +49,13 @@ public class AmzaWALEndpoints {
 
     private final AmzaWALDirector walDirector;
     private final MiruStats stats;
+    private final MiruPartitionedActivityCodec activityCodec;
     private final ResponseHelper responseHelper = ResponseHelper.INSTANCE;
 
-    public AmzaWALEndpoints(@Context AmzaWALDirector walDirector, @Context MiruStats stats) {
+    public AmzaWALEndpoints(@Context AmzaWALDirector walDirector, @Context MiruStats stats, @Context MiruPartitionedActivityCodec activityCodec) {
         this.walDirector = walDirector;
         this.stats = stats;
+        this.activityCodec = activityCodec;
     }
 
     @GET
@@ -336,12 +339,32 @@ public class AmzaWALEndpoints {
         @PathParam("batchSize") int batchSize,
         SipAndLastSeen<AmzaSipCursor> sipAndLastSeen)
         throws Exception {
+        return sipActivity(tenantId, partitionId, batchSize, sipAndLastSeen, false);
+    }
+
+    @POST
+    @Path("/sip/activity/binary/{tenantId}/{partitionId}/{batchSize}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response sipActivityBinary(@PathParam("tenantId") String tenantId,
+        @PathParam("partitionId") int partitionId,
+        @PathParam("batchSize") int batchSize,
+        SipAndLastSeen<AmzaSipCursor> sipAndLastSeen)
+        throws Exception {
+        return sipActivity(tenantId, partitionId, batchSize, sipAndLastSeen, true);
+    }
+
+    private Response sipActivity(String tenantId,
+        int partitionId,
+        int batchSize,
+        SipAndLastSeen<AmzaSipCursor> sipAndLastSeen,
+        boolean binary) {
         try {
             long start = System.currentTimeMillis();
             StreamBatch<MiruWALEntry, AmzaSipCursor> sipActivity = walDirector.sipActivity(new MiruTenantId(tenantId.getBytes(Charsets.UTF_8)),
                 MiruPartitionId.of(partitionId), sipAndLastSeen.sipCursor, sipAndLastSeen.lastSeen, batchSize);
-            stats.ingressed("/sip/activity/" + batchSize, 1, System.currentTimeMillis() - start);
-            return responseHelper.jsonResponse(sipActivity);
+            stats.ingressed((binary ? "/sip/activity/binary/" : "/sip/activity/") + batchSize, 1, System.currentTimeMillis() - start);
+            return batchResponse(sipActivity, binary);
         } catch (MiruWALNotInitializedException x) {
             log.error("WAL not initialized calling sipActivity({},{},{},{})",
                 new Object[] { tenantId, partitionId, batchSize, sipAndLastSeen }, x);
@@ -392,12 +415,35 @@ public class AmzaWALEndpoints {
         @PathParam("stopAtTimestamp") long stopAtTimestamp,
         AmzaCursor cursor)
         throws Exception {
+        return getActivity(tenantId, partitionId, batchSize, stopAtTimestamp, cursor, false);
+    }
+
+    @POST
+    @Path("/activity/binary/{tenantId}/{partitionId}/{batchSize}/{stopAtTimestamp}")
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response getActivityBinary(@PathParam("tenantId") String tenantId,
+        @PathParam("partitionId") int partitionId,
+        @PathParam("batchSize") int batchSize,
+        @PathParam("stopAtTimestamp") long stopAtTimestamp,
+        AmzaCursor cursor)
+        throws Exception {
+        return getActivity(tenantId, partitionId, batchSize, stopAtTimestamp, cursor, true);
+    }
+
+    private Response getActivity(String tenantId,
+        int partitionId,
+        int batchSize,
+        long stopAtTimestamp,
+        AmzaCursor cursor,
+        boolean binary) {
         try {
             long start = System.currentTimeMillis();
             StreamBatch<MiruWALEntry, AmzaCursor> activity = walDirector.getActivity(new MiruTenantId(tenantId.getBytes(Charsets.UTF_8)),
                 MiruPartitionId.of(partitionId), cursor, batchSize, stopAtTimestamp, null);
-            stats.ingressed("/activity/" + tenantId + "/" + partitionId + "/" + batchSize, 1, System.currentTimeMillis() - start);
-            return responseHelper.jsonResponse(activity);
+            stats.ingressed((binary ? "/activity/binary/" : "/activity/") + tenantId + "/" + partitionId + "/" + batchSize, 1,
+                System.currentTimeMillis() - start);
+            return batchResponse(activity, binary);
         } catch (MiruWALNotInitializedException x) {
             log.error("WAL not initialized calling getActivity({},{},{},{})",
                 new Object[] { tenantId, partitionId, batchSize, cursor }, x);
@@ -412,6 +458,13 @@ public class AmzaWALEndpoints {
         }
     }
 
+    private <C> Response batchResponse(StreamBatch<MiruWALEntry, C> batch, boolean binary) throws Exception {
+        if (binary) {
+            return Response.ok(activityCodec.batchToBytes(batch), MediaType.APPLICATION_OCTET_STREAM).build();
+        }
+        return responseHelper.jsonResponse(batch);
+    }
+
     @POST
     @Path("/oldestReadEventId/{tenantId}/{streamId}")
     @Consumes(MediaType.APPLICATION_JSON)
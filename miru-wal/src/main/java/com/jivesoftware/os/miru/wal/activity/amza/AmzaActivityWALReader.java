@@ -1,6 +1,5 @@
 package com.jivesoftware.os.miru.wal.activity.amza;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -18,7 +17,7 @@ import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity.Type;
 import com.jivesoftware.os.miru.api.activity.TimeAndVersion;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
-import com.jivesoftware.os.miru.api.marshall.JacksonJsonObjectTypeMarshaller;
+import com.jivesoftware.os.miru.api.marshall.MiruPartitionedActivityCodec;
 import com.jivesoftware.os.miru.api.topology.NamedCursor;
 import com.jivesoftware.os.miru.api.wal.AmzaCursor;
 import com.jivesoftware.os.miru.api.wal.AmzaSipCursor;
@@ -52,11 +51,11 @@ public class AmzaActivityWALReader implements MiruActivityWALReader<AmzaCursor,
 
     private final AmzaWALUtil amzaWALUtil;
     private final MiruActivityWALColumnKeyMarshaller columnKeyMarshaller = new MiruActivityWALColumnKeyMarshaller();
-    private final JacksonJsonObjectTypeMarshaller<MiruPartitionedActivity> partitionedActivityMarshaller;
+    private final MiruPartitionedActivityCodec partitionedActivityMarshaller;
 
-    public AmzaActivityWALReader(AmzaWALUtil amzaWALUtil, ObjectMapper mapper) {
+    public AmzaActivityWALReader(AmzaWALUtil amzaWALUtil, MiruPartitionedActivityCodec activityCodec) {
         this.amzaWALUtil = amzaWALUtil;
-        this.partitionedActivityMarshaller = new JacksonJsonObjectTypeMarshaller<>(MiruPartitionedActivity.class, mapper);
+        this.partitionedActivityMarshaller = activityCodec;
     }
 
     private TakeCursors takeCursors(StreamMiruActivityWAL streamMiruActivityWAL,
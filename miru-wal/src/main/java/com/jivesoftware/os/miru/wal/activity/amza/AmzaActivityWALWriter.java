@@ -11,6 +11,7 @@ import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
 import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
 import com.jivesoftware.os.miru.api.base.MiruTenantId;
 import com.jivesoftware.os.miru.api.marshall.JacksonJsonObjectTypeMarshaller;
+import com.jivesoftware.os.miru.api.marshall.MiruPartitionedActivityCodec;
 import com.jivesoftware.os.miru.api.topology.RangeMinMax;
 import com.jivesoftware.os.miru.wal.AmzaWALUtil;
 import com.jivesoftware.os.miru.wal.MiruWALWrongRouteException;
@@ -20,6 +21,7 @@ import com.jivesoftware.os.miru.wal.activity.rcvs.MiruActivityWALColumnKey;
 import com.jivesoftware.os.miru.wal.activity.rcvs.MiruActivityWALColumnKeyMarshaller;
 import com.jivesoftware.os.mlogger.core.MetricLogger;
 import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import com.jivesoftware.os.rcvs.marshall.api.TypeMarshaller;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -39,12 +41,16 @@ public class AmzaActivityWALWriter implements MiruActivityWALWriter {
 
     public AmzaActivityWALWriter(AmzaWALUtil amzaWALUtil,
         long replicateTimeoutMillis,
-        ObjectMapper mapper) {
+        ObjectMapper mapper,
+        MiruPartitionedActivityCodec activityCodec,
+        boolean binaryActivityEncoding) {
         this.amzaWALUtil = amzaWALUtil;
         this.replicateTimeoutMillis = replicateTimeoutMillis;
 
-        JacksonJsonObjectTypeMarshaller<MiruPartitionedActivity> partitionedActivityMarshaller =
-            new JacksonJsonObjectTypeMarshaller<>(MiruPartitionedActivity.class, mapper);
+        // readers decode both encodings, so rows written before the switch stay readable
+        TypeMarshaller<MiruPartitionedActivity> partitionedActivityMarshaller = binaryActivityEncoding
+            ? activityCodec
+            : new JacksonJsonObjectTypeMarshaller<>(MiruPartitionedActivity.class, mapper);
         this.activityWALKeyFunction = (partitionedActivity) -> {
             long activityCollisionId;
             if (partitionedActivity.type != MiruPartitionedActivity.Type.BEGIN && partitionedActivity.type != MiruPartitionedActivity.Type.END) {
@@ -1,6 +1,7 @@
 package com.jivesoftware.os.miru.writer.deployable;
 
 import org.merlin.config.Config;
+import org.merlin.config.defaults.BooleanDefault;
 import org.merlin.config.defaults.IntDefault;
 import org.merlin.config.defaults.LongDefault;
 
@@ -16,4 +17,17 @@ public interface MiruClientConfig extends Config {
     @LongDefault(1_000 * 60 * 60 * 24 * 7)
     Long getPartitionMaximumAgeInMillis();
 
+    @IntDefault(100_000)
+    Integer getPartitionAgeCacheMaxSize();
+
+    // 5 minutes
+    @LongDefault(1_000 * 60 * 5)
+    Long getPartitionAgeCacheTTLMillis();
+
+    @IntDefault(10_000)
+    Integer getPartitionerWriteBatchSize();
+
+    @BooleanDefault(false)
+    Boolean getPartitionerGroupCommit();
+
 }
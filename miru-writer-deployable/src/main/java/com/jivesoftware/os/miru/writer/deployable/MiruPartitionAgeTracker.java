@@ -0,0 +1,92 @@
+package com.jivesoftware.os.miru.writer.deployable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.TenantAndPartition;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.wal.MiruWALClient;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks the oldest activity clock timestamp for the partitions this writer is writing to, so that alignment checks need not
+ * ask the WAL every time. Values are seeded from the WAL, lowered locally as this writer flushes activities, and refreshed from
+ * the WAL after the TTL or when a partition rolls over.
+ */
+public class MiruPartitionAgeTracker {
+
+    private static final MetricLogger log = MetricLoggerFactory.getLogger();
+
+    private final MiruWALClient<?, ?> walClient;
+    private final long ttlMillis;
+    private final Cache<TenantAndPartition, PartitionAge> ages;
+
+    public MiruPartitionAgeTracker(MiruWALClient<?, ?> walClient, int maxSize, long ttlMillis) {
+        this.walClient = walClient;
+        this.ttlMillis = ttlMillis;
+        this.ages = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+    }
+
+    /**
+     * @return the oldest activity clock timestamp for the partition, or a non-positive value if the partition has no activities
+     */
+    public long oldestActivityClockTimestamp(MiruTenantId tenantId, MiruPartitionId partitionId) throws Exception {
+        TenantAndPartition key = new TenantAndPartition(tenantId, partitionId);
+        PartitionAge age = ages.getIfPresent(key);
+        long now = System.currentTimeMillis();
+        if (age != null && now - age.fetchedTimestamp < ttlMillis) {
+            log.inc("partitioner>age>hit");
+            return age.oldestClockTimestamp.get();
+        }
+
+        log.inc("partitioner>age>refresh");
+        long oldestClockTimestamp = walClient.oldestActivityClockTimestamp(tenantId, partitionId);
+        ages.put(key, new PartitionAge(now, oldestClockTimestamp));
+        return oldestClockTimestamp;
+    }
+
+    /**
+     * Lowers the tracked timestamp for the partition to account for activities this writer has just written.
+     */
+    public void flushed(MiruTenantId tenantId, MiruPartitionId partitionId, List<MiruPartitionedActivity> partitionedActivities) {
+        PartitionAge age = ages.getIfPresent(new TenantAndPartition(tenantId, partitionId));
+        if (age == null) {
+            return;
+        }
+
+        long oldestClockTimestamp = Long.MAX_VALUE;
+        for (MiruPartitionedActivity partitionedActivity : partitionedActivities) {
+            if (partitionedActivity.type.isActivityType()) {
+                oldestClockTimestamp = Math.min(oldestClockTimestamp, partitionedActivity.clockTimestamp);
+            }
+        }
+        if (oldestClockTimestamp != Long.MAX_VALUE) {
+            age.lower(oldestClockTimestamp);
+        }
+    }
+
+    public void invalidate(MiruTenantId tenantId, MiruPartitionId partitionId) {
+        ages.invalidate(new TenantAndPartition(tenantId, partitionId));
+    }
+
+    private static class PartitionAge {
+
+        private final long fetchedTimestamp;
+        private final AtomicLong oldestClockTimestamp;
+
+        private PartitionAge(long fetchedTimestamp, long oldestClockTimestamp) {
+            this.fetchedTimestamp = fetchedTimestamp;
+            this.oldestClockTimestamp = new AtomicLong(oldestClockTimestamp);
+        }
+
+        private void lower(long clockTimestamp) {
+            oldestClockTimestamp.accumulateAndGet(clockTimestamp, (current, update) -> current > 0 ? Math.min(current, update) : update);
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /** @author jonathan */
 public class MiruPartitioner {
@@ -41,6 +42,9 @@ public class MiruPartitioner {
     private final MiruWALClient<?, ?> walClient;
     private final MiruClusterClient clusterClient;
     private final long partitionMaximumAgeInMillis;
+    private final MiruPartitionAgeTracker partitionAgeTracker;
+    private final int writeBatchSize;
+    private final MiruWALGroupCommitter groupCommitter;
     private final MiruPartitionedActivityFactory partitionedActivityFactory = new MiruPartitionedActivityFactory();
     private final StripingLocksProvider<MiruTenantId> locks = new StripingLocksProvider<>(64);
     private final Cache<MiruTenantId, Map<MiruPartitionId, MiruClusterClient.PartitionRange>> tenantIngressRangeCache;
@@ -50,12 +54,18 @@ public class MiruPartitioner {
         MiruPartitionIdProvider partitionIdProvider,
         MiruWALClient<?, ?> walClient,
         MiruClusterClient clusterClient,
-        long partitionMaximumAgeInMillis) {
+        long partitionMaximumAgeInMillis,
+        MiruPartitionAgeTracker partitionAgeTracker,
+        int writeBatchSize,
+        boolean groupCommit) {
         this.writerId = writerId;
         this.partitionIdProvider = partitionIdProvider;
         this.walClient = walClient;
         this.clusterClient = clusterClient;
         this.partitionMaximumAgeInMillis = partitionMaximumAgeInMillis;
+        this.partitionAgeTracker = partitionAgeTracker;
+        this.writeBatchSize = writeBatchSize;
+        this.groupCommitter = groupCommit ? new MiruWALGroupCommitter(walClient, writeBatchSize) : null;
         this.tenantIngressRangeCache = CacheBuilder.newBuilder()
             .maximumSize(10_000)
             .expireAfterWrite(5, TimeUnit.MINUTES)
@@ -86,7 +96,7 @@ public class MiruPartitioner {
                 flushActivities(tenantId, largestPartitionIdAcrossAllWriters, latestIndex, true,
                     new PartitionedLists(Collections.emptyList(), partitionedActivities));
             } else {
-                long oldestActivityClockTimestamp = walClient.oldestActivityClockTimestamp(tenantId, currentPartitionId); //TODO cache
+                long oldestActivityClockTimestamp = partitionAgeTracker.oldestActivityClockTimestamp(tenantId, currentPartitionId);
                 long ageOfOldestActivity = System.currentTimeMillis() - oldestActivityClockTimestamp;
                 if (oldestActivityClockTimestamp > 0 && ageOfOldestActivity > partitionMaximumAgeInMillis) {
                     ListMultimap<MiruPartitionId, MiruPartitionedActivity> partitionedActivities = ArrayListMultimap.create();
@@ -106,7 +116,7 @@ public class MiruPartitioner {
     public void writeActivities(MiruTenantId tenantId, List<MiruActivity> activities, boolean recoverFromRemoval)
         throws Exception {
 
-        List<List<MiruActivity>> partitions = Lists.partition(activities, 10_000); //TODO config
+        List<List<MiruActivity>> partitions = Lists.partition(activities, writeBatchSize);
         for (List<MiruActivity> partition : partitions) {
             MiruPartitionId latestPartitionId;
             int latestIndex;
@@ -115,6 +125,14 @@ public class MiruPartitioner {
             PartitionedLists partitionedLists;
             TenantAndPartition end = null;
 
+            // in group commit mode the remote lookup happens before taking the lock, which then only guards the cursor. Concurrent
+            // writes of the same activity can therefore both miss the lookup and claim separate indexes, so group commit assumes
+            // a given activity is only ever in flight from one request at a time.
+            List<MiruVersionedActivityLookupEntry> versionedEntries = null;
+            if (groupCommitter != null) {
+                versionedEntries = getVersionedEntries(tenantId, partition);
+            }
+
             synchronized (locks.lock(tenantId, 0)) {
                 MiruPartitionCursor partitionCursor = partitionIdProvider.getCursor(tenantId, writerId);
                 if (partitionCursor.isMaxCapacity()) {
@@ -130,7 +148,7 @@ public class MiruPartitioner {
                 }
 
                 int indexBefore = partitionCursor.last();
-                partitionedLists = partition(tenantId, partition, partitionCursor, recoverFromRemoval);
+                partitionedLists = partition(tenantId, partition, partitionCursor, recoverFromRemoval, versionedEntries);
                 if (!partitionRolloverOccurred && partitionedLists.activities.isEmpty() && partitionedLists.repairs.isEmpty()) {
                     continue;
                 }
@@ -157,7 +175,17 @@ public class MiruPartitioner {
                 }
             } catch (Exception e) {
                 synchronized (locks.lock(tenantId, 0)) {
-                    partitionIdProvider.rewindCursor(tenantId, writerId, indexAdvanced);
+                    if (groupCommitter == null) {
+                        partitionIdProvider.rewindCursor(tenantId, writerId, indexAdvanced);
+                    } else {
+                        // only rewind if no concurrent writer has claimed indexes past ours, otherwise leave the gap
+                        MiruPartitionCursor partitionCursor = partitionIdProvider.getCursor(tenantId, writerId);
+                        if (partitionCursor.getPartitionId().equals(latestPartitionId) && partitionCursor.last() == latestIndex) {
+                            partitionIdProvider.rewindCursor(tenantId, writerId, indexAdvanced);
+                        } else {
+                            log.inc("partitioner>groupCommit>gap>" + latestPartitionId.getId(), indexAdvanced, tenantId.toString());
+                        }
+                    }
                 }
                 throw e;
             }
@@ -165,63 +193,72 @@ public class MiruPartitioner {
     }
 
     public void removeActivities(MiruTenantId tenantId, List<MiruActivity> activities) throws Exception {
-        synchronized (locks.lock(tenantId, 0)) {
-            ListMultimap<MiruPartitionId, MiruPartitionedActivity> partitionedActivities = ArrayListMultimap.create();
-            List<MiruVersionedActivityLookupEntry> versionedEntries = Lists.newArrayList();
-
-            Long[] times = new Long[activities.size()];
-            int index = 0;
-            for (MiruActivity activity : activities) {
-                times[index] = activity.time;
-                index++;
+        if (groupCommitter != null) {
+            doRemoveActivities(tenantId, activities);
+        } else {
+            synchronized (locks.lock(tenantId, 0)) {
+                doRemoveActivities(tenantId, activities);
             }
+        }
+    }
 
-            List<MiruVersionedActivityLookupEntry> lookupEntries = getVersionedEntries(tenantId, times);
-            index = 0;
-            for (MiruActivity activity : activities) {
-                MiruVersionedActivityLookupEntry versionedEntry = lookupEntries.get(index);
-                index++;
-                if (versionedEntry != null) {
-                    if (activity.version > versionedEntry.version) {
-                        MiruPartitionId partitionId = MiruPartitionId.of(versionedEntry.entry.partitionId);
-                        partitionedActivities.put(partitionId, partitionedActivityFactory.remove(writerId, partitionId, versionedEntry.entry.index, activity));
-                        versionedEntries.add(new MiruVersionedActivityLookupEntry(activity.time, activity.version,
-                            new MiruActivityLookupEntry(partitionId.getId(), versionedEntry.entry.index, versionedEntry.entry.writerId, true)));
-                    } else {
-                        log.debug("Ignored stale deletion {} <= {} of activity {}", activity.version, versionedEntry.version, activity);
-                    }
+    private void doRemoveActivities(MiruTenantId tenantId, List<MiruActivity> activities) throws Exception {
+        ListMultimap<MiruPartitionId, MiruPartitionedActivity> partitionedActivities = ArrayListMultimap.create();
+        List<MiruVersionedActivityLookupEntry> versionedEntries = Lists.newArrayList();
+
+        Long[] times = new Long[activities.size()];
+        int index = 0;
+        for (MiruActivity activity : activities) {
+            times[index] = activity.time;
+            index++;
+        }
+
+        List<MiruVersionedActivityLookupEntry> lookupEntries = getVersionedEntries(tenantId, times);
+        index = 0;
+        for (MiruActivity activity : activities) {
+            MiruVersionedActivityLookupEntry versionedEntry = lookupEntries.get(index);
+            index++;
+            if (versionedEntry != null) {
+                if (activity.version > versionedEntry.version) {
+                    MiruPartitionId partitionId = MiruPartitionId.of(versionedEntry.entry.partitionId);
+                    partitionedActivities.put(partitionId, partitionedActivityFactory.remove(writerId, partitionId, versionedEntry.entry.index, activity));
+                    versionedEntries.add(new MiruVersionedActivityLookupEntry(activity.time, activity.version,
+                        new MiruActivityLookupEntry(partitionId.getId(), versionedEntry.entry.index, versionedEntry.entry.writerId, true)));
                 } else {
-                    log.debug("Ignored removal of nonexistent activity {}", activity);
+                    log.debug("Ignored stale deletion {} <= {} of activity {}", activity.version, versionedEntry.version, activity);
                 }
+            } else {
+                log.debug("Ignored removal of nonexistent activity {}", activity);
             }
+        }
 
-            for (MiruPartitionId partitionId : partitionedActivities.keySet()) {
-                walClient.writeActivity(tenantId, partitionId, partitionedActivities.get(partitionId));
-            }
+        for (MiruPartitionId partitionId : partitionedActivities.keySet()) {
+            writeActivity(tenantId, partitionId, partitionedActivities.get(partitionId));
         }
     }
 
     public void writeReadEvents(MiruTenantId tenantId, List<MiruReadEvent> readEvents) throws Exception {
-        synchronized (locks.lock(tenantId, 0)) {
-            walClient.writeReadTracking(tenantId,
-                readEvents,
-                readEvent -> partitionedActivityFactory.read(writerId, MiruPartitionId.of(-1), -1, readEvent));
-        }
+        writeReadTracking(tenantId, readEvents, readEvent -> partitionedActivityFactory.read(writerId, MiruPartitionId.of(-1), -1, readEvent));
     }
 
     public void writeUnreadEvents(MiruTenantId tenantId, List<MiruReadEvent> readEvents) throws Exception {
-        synchronized (locks.lock(tenantId, 0)) {
-            walClient.writeReadTracking(tenantId,
-                readEvents,
-                readEvent -> partitionedActivityFactory.unread(writerId, MiruPartitionId.of(-1), -1, readEvent));
-        }
+        writeReadTracking(tenantId, readEvents, readEvent -> partitionedActivityFactory.unread(writerId, MiruPartitionId.of(-1), -1, readEvent));
     }
 
     public void writeAllReadEvents(MiruTenantId tenantId, List<MiruReadEvent> readEvents) throws Exception {
-        synchronized (locks.lock(tenantId, 0)) {
-            walClient.writeReadTracking(tenantId,
-                readEvents,
-                readEvent -> partitionedActivityFactory.allread(writerId, MiruPartitionId.of(-1), -1, readEvent));
+        writeReadTracking(tenantId, readEvents, readEvent -> partitionedActivityFactory.allread(writerId, MiruPartitionId.of(-1), -1, readEvent));
+    }
+
+    private void writeReadTracking(MiruTenantId tenantId,
+        List<MiruReadEvent> readEvents,
+        Function<MiruReadEvent, MiruPartitionedActivity> transformer) throws Exception {
+        if (groupCommitter != null) {
+            // read tracking is not cursor based, so there is nothing to guard
+            walClient.writeReadTracking(tenantId, readEvents, transformer);
+        } else {
+            synchronized (locks.lock(tenantId, 0)) {
+                walClient.writeReadTracking(tenantId, readEvents, transformer);
+            }
         }
     }
 
@@ -236,7 +273,8 @@ public class MiruPartitioner {
         PartitionedLists partitionedLists) throws Exception {
 
         if (!partitionedLists.activities.isEmpty()) {
-            walClient.writeActivity(tenantId, partitionId, partitionedLists.activities);
+            writeActivity(tenantId, partitionId, partitionedLists.activities);
+            partitionAgeTracker.flushed(tenantId, partitionId, partitionedLists.activities);
             log.set(ValueType.COUNT, "partitioner>index>" + partitionId.getId(), latestIndex, tenantId.toString());
             log.set(ValueType.COUNT, "partitioner>partition", partitionId.getId(), tenantId.toString());
         }
@@ -244,7 +282,7 @@ public class MiruPartitioner {
         for (MiruPartitionId repairPartitionId : partitionedLists.repairs.keySet()) {
             List<MiruPartitionedActivity> repairActivities = partitionedLists.repairs.get(repairPartitionId);
             if (!repairActivities.isEmpty()) {
-                walClient.writeActivity(tenantId, repairPartitionId, repairActivities);
+                writeActivity(tenantId, repairPartitionId, repairActivities);
                 log.inc("partitioner>repair>calls>" + repairPartitionId.getId(), tenantId.toString());
                 log.inc("partitioner>repair>count>" + repairPartitionId.getId(), repairActivities.size(), tenantId.toString());
             }
@@ -254,31 +292,37 @@ public class MiruPartitioner {
             synchronized (locks.lock(tenantId, 0)) {
                 partitionIdProvider.setLargestPartitionIdForWriter(tenantId, partitionId, writerId, 0);
                 tenantIngressRangeCache.invalidate(tenantId);
+                partitionAgeTracker.invalidate(tenantId, partitionId);
+                MiruPartitionId prevPartitionId = partitionId.prev();
+                if (prevPartitionId != null) {
+                    partitionAgeTracker.invalidate(tenantId, prevPartitionId);
+                }
             }
         }
     }
 
-    private PartitionedLists partition(MiruTenantId tenantId, List<MiruActivity> activities, MiruPartitionCursor cursor,
-        boolean recoverFromRemoval) throws Exception {
+    private void writeActivity(MiruTenantId tenantId, MiruPartitionId partitionId, List<MiruPartitionedActivity> partitionedActivities) throws Exception {
+        if (groupCommitter != null) {
+            groupCommitter.writeActivity(tenantId, partitionId, partitionedActivities);
+        } else {
+            walClient.writeActivity(tenantId, partitionId, partitionedActivities);
+        }
+    }
 
-        for (MiruActivity activity : activities) {
-            if (!tenantId.equals(activity.tenantId)) {
-                throw new RuntimeException("It is expected that the provided activities will all have the same tenant id.");
-            }
+    private PartitionedLists partition(MiruTenantId tenantId,
+        List<MiruActivity> activities,
+        MiruPartitionCursor cursor,
+        boolean recoverFromRemoval,
+        List<MiruVersionedActivityLookupEntry> versionedEntries) throws Exception {
+
+        if (versionedEntries == null) {
+            versionedEntries = getVersionedEntries(tenantId, activities);
         }
 
         ListMultimap<MiruPartitionId, MiruPartitionedActivity> partitionedRepairs = ArrayListMultimap.create();
         List<MiruPartitionedActivity> partitionedActivities = Lists.newArrayList();
 
-        Long[] times = new Long[activities.size()];
         int index = 0;
-        for (MiruActivity activity : activities) {
-            times[index] = activity.time;
-            index++;
-        }
-
-        List<MiruVersionedActivityLookupEntry> versionedEntries = getVersionedEntries(tenantId, times);
-        index = 0;
 
         for (MiruActivity activity : activities) {
             MiruVersionedActivityLookupEntry versionedEntry = versionedEntries.get(index);
@@ -304,6 +348,22 @@ public class MiruPartitioner {
         return new PartitionedLists(partitionedActivities, partitionedRepairs);
     }
 
+    private List<MiruVersionedActivityLookupEntry> getVersionedEntries(MiruTenantId tenantId, List<MiruActivity> activities) throws Exception {
+        for (MiruActivity activity : activities) {
+            if (!tenantId.equals(activity.tenantId)) {
+                throw new RuntimeException("It is expected that the provided activities will all have the same tenant id.");
+            }
+        }
+
+        Long[] times = new Long[activities.size()];
+        int index = 0;
+        for (MiruActivity activity : activities) {
+            times[index] = activity.time;
+            index++;
+        }
+        return getVersionedEntries(tenantId, times);
+    }
+
     private List<MiruVersionedActivityLookupEntry> getVersionedEntries(MiruTenantId tenantId, Long[] times) throws Exception {
         List<MiruPartitionId> partitionIds = Lists.newArrayList();
         Map<MiruPartitionId, MiruClusterClient.PartitionRange> ingressRanges = tenantIngressRangeCache.get(tenantId, () -> {
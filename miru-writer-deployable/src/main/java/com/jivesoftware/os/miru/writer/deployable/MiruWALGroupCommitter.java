@@ -0,0 +1,152 @@
+package com.jivesoftware.os.miru.writer.deployable;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.TenantAndPartition;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.wal.MiruWALClient;
+import com.jivesoftware.os.mlogger.core.MetricLogger;
+import com.jivesoftware.os.mlogger.core.MetricLoggerFactory;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Combines concurrent activity writes for the same tenant and partition into a single WAL write. The first writer to arrive
+ * while no write is in flight becomes the leader and flushes everything queued so far, while the others wait for the outcome of
+ * the batch which carried their activities. A group is dropped as soon as its last writer leaves, so idle partitions hold no state.
+ */
+public class MiruWALGroupCommitter {
+
+    private static final MetricLogger log = MetricLoggerFactory.getLogger();
+
+    private final MiruWALClient<?, ?> walClient;
+    private final int maxBatchSize;
+    private final ConcurrentMap<TenantAndPartition, Group> groups = Maps.newConcurrentMap();
+
+    public MiruWALGroupCommitter(MiruWALClient<?, ?> walClient, int maxBatchSize) {
+        this.walClient = walClient;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Writes the activities in a batch with any others queued for the same tenant and partition. Batches are written in the order
+     * their first writer arrived. If the batch fails, every writer whose activities it carried gets the failure.
+     */
+    public void writeActivity(MiruTenantId tenantId, MiruPartitionId partitionId, List<MiruPartitionedActivity> partitionedActivities) throws Exception {
+        TenantAndPartition key = new TenantAndPartition(tenantId, partitionId);
+        Pending pending = new Pending(partitionedActivities);
+        while (true) {
+            Group group = groups.computeIfAbsent(key, k -> new Group(k));
+            if (group.commit(tenantId, partitionId, pending)) {
+                return;
+            }
+        }
+    }
+
+    int groupCount() {
+        return groups.size();
+    }
+
+    private static class Pending {
+
+        private final List<MiruPartitionedActivity> partitionedActivities;
+        private boolean done;
+        private Exception failure;
+
+        private Pending(List<MiruPartitionedActivity> partitionedActivities) {
+            this.partitionedActivities = partitionedActivities;
+        }
+    }
+
+    private class Group {
+
+        private final TenantAndPartition key;
+        private final Deque<Pending> queue = new ArrayDeque<>();
+        private boolean flushing;
+        private int writers;
+        private boolean retired;
+
+        private Group(TenantAndPartition key) {
+            this.key = key;
+        }
+
+        /**
+         * @return false if the group was retired before the pending write could join it
+         */
+        private boolean commit(MiruTenantId tenantId, MiruPartitionId partitionId, Pending pending) throws Exception {
+            synchronized (this) {
+                if (retired) {
+                    return false;
+                }
+                queue.addLast(pending);
+                writers++;
+            }
+
+            try {
+                flush(tenantId, partitionId, pending);
+            } finally {
+                synchronized (this) {
+                    if (!pending.done) {
+                        // interrupted while waiting, so nobody else should flush it
+                        queue.remove(pending);
+                    }
+                    writers--;
+                    if (writers == 0) {
+                        retired = true;
+                        groups.remove(key, this);
+                    }
+                }
+            }
+
+            if (pending.failure != null) {
+                throw pending.failure;
+            }
+            return true;
+        }
+
+        private void flush(MiruTenantId tenantId, MiruPartitionId partitionId, Pending pending) throws Exception {
+            while (true) {
+                List<Pending> batch = Lists.newArrayList();
+                List<MiruPartitionedActivity> combined = Lists.newArrayList();
+                synchronized (this) {
+                    while (!pending.done && flushing) {
+                        wait();
+                    }
+                    if (pending.done) {
+                        break;
+                    }
+                    flushing = true;
+                    while (!queue.isEmpty()
+                        && (combined.isEmpty() || combined.size() + queue.peekFirst().partitionedActivities.size() <= maxBatchSize)) {
+                        Pending next = queue.removeFirst();
+                        batch.add(next);
+                        combined.addAll(next.partitionedActivities);
+                    }
+                }
+
+                Exception failure = null;
+                try {
+                    walClient.writeActivity(tenantId, partitionId, combined);
+                    log.inc("partitioner>groupCommit>calls");
+                    log.inc("partitioner>groupCommit>requests", batch.size());
+                    log.inc("partitioner>groupCommit>activities", combined.size());
+                } catch (Exception e) {
+                    failure = e;
+                } finally {
+                    synchronized (this) {
+                        for (Pending flushed : batch) {
+                            flushed.done = true;
+                            flushed.failure = failure;
+                        }
+                        flushing = false;
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+}
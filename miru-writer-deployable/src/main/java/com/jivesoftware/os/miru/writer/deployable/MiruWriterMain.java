@@ -260,7 +260,8 @@ public class MiruWriterMain {
                     1000,
                     mapper,
                     walClientSickThreads,
-                    10_000);
+                    10_000,
+                    walConfig.getBinaryActivityTransport());
                 walClient = amzaWALClient;
             } else {
                 throw new IllegalStateException("Invalid activity WAL type: " + walConfig.getActivityWALType());
@@ -281,11 +282,17 @@ public class MiruWriterMain {
 
             MiruClusterClient clusterClient = new MiruClusterClientInitializer(tasExecutors, 100, 95, 1000).initialize(miruStats, "", manageHttpClient, mapper);
 
+            MiruPartitionAgeTracker partitionAgeTracker = new MiruPartitionAgeTracker(walClient,
+                clientConfig.getPartitionAgeCacheMaxSize(),
+                clientConfig.getPartitionAgeCacheTTLMillis());
             MiruPartitioner miruPartitioner = new MiruPartitioner(instanceConfig.getInstanceName(),
                 amzaPartitionIdProvider,
                 walClient,
                 clusterClient,
-                clientConfig.getPartitionMaximumAgeInMillis());
+                clientConfig.getPartitionMaximumAgeInMillis(),
+                partitionAgeTracker,
+                clientConfig.getPartitionerWriteBatchSize(),
+                clientConfig.getPartitionerGroupCommit());
 
             ExecutorService sendActivitiesExecutorService = deployable.newBoundedExecutor(clientConfig.getSendActivitiesThreadPoolSize(),
                 "send-activities");
@@ -0,0 +1,140 @@
+package com.jivesoftware.os.miru.writer.deployable;
+
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.activity.MiruActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivityFactory;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.wal.MiruWALClient;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ *
+ */
+public class MiruPartitionAgeTrackerTest {
+
+    private final MiruTenantId tenantId = new MiruTenantId("test".getBytes());
+    private final MiruPartitionId partitionId = MiruPartitionId.of(0);
+
+    private final AtomicLong walOldest = new AtomicLong();
+    private final AtomicInteger walCalls = new AtomicInteger();
+
+    @Test
+    public void testCachedUntilTtlExpires() throws Exception {
+        MiruPartitionAgeTracker tracker = new MiruPartitionAgeTracker(walClient(), 100, 60_000);
+        walOldest.set(1_000);
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 1_000);
+        walOldest.set(500);
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 1_000);
+        assertEquals(walCalls.get(), 1);
+
+        MiruPartitionAgeTracker expiring = new MiruPartitionAgeTracker(walClient(), 100, 0);
+        assertEquals(expiring.oldestActivityClockTimestamp(tenantId, partitionId), 500);
+        walOldest.set(200);
+        assertEquals(expiring.oldestActivityClockTimestamp(tenantId, partitionId), 200);
+        assertEquals(walCalls.get(), 3);
+    }
+
+    @Test
+    public void testFlushedOnlyLowers() throws Exception {
+        MiruPartitionAgeTracker tracker = new MiruPartitionAgeTracker(walClient(), 100, 60_000);
+
+        // nothing is tracked until the partition has been looked up
+        tracker.flushed(tenantId, partitionId, Collections.singletonList(activity(1, 100)));
+        walOldest.set(1_000);
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 1_000);
+
+        tracker.flushed(tenantId, partitionId, Collections.singletonList(activity(2, 2_000)));
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 1_000);
+
+        MiruPartitionedActivity begin = new MiruPartitionedActivityFactory(() -> 10).begin(1, partitionId, tenantId, 3);
+        tracker.flushed(tenantId, partitionId, Collections.singletonList(begin));
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 1_000);
+
+        tracker.flushed(tenantId, partitionId, Lists.newArrayList(activity(4, 900), activity(5, 700), activity(6, 800)));
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 700);
+        assertEquals(walCalls.get(), 1);
+    }
+
+    @Test
+    public void testFlushedSeedsEmptyPartition() throws Exception {
+        MiruPartitionAgeTracker tracker = new MiruPartitionAgeTracker(walClient(), 100, 60_000);
+        walOldest.set(-1);
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), -1);
+
+        tracker.flushed(tenantId, partitionId, Collections.singletonList(activity(1, 700)));
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 700);
+    }
+
+    @Test
+    public void testConcurrentFlushesKeepOldest() throws Exception {
+        MiruPartitionAgeTracker tracker = new MiruPartitionAgeTracker(walClient(), 100, 60_000);
+        walOldest.set(1_000_000);
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 1_000_000);
+
+        int numThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int t = 0; t < numThreads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1_000; i++) {
+                        long clockTimestamp = 1_000 + (i * numThreads + thread) * 31 % 100_000;
+                        tracker.flushed(tenantId, partitionId, Collections.singletonList(activity(i, clockTimestamp)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 1_000);
+        assertEquals(walCalls.get(), 1);
+    }
+
+    @Test
+    public void testInvalidateForcesLookup() throws Exception {
+        MiruPartitionAgeTracker tracker = new MiruPartitionAgeTracker(walClient(), 100, 60_000);
+        walOldest.set(1_000);
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 1_000);
+        tracker.flushed(tenantId, partitionId, Collections.singletonList(activity(1, 500)));
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 500);
+
+        // the partition rolled over, so the next lookup goes back to the WAL
+        tracker.invalidate(tenantId, partitionId);
+        walOldest.set(2_000);
+        assertEquals(tracker.oldestActivityClockTimestamp(tenantId, partitionId), 2_000);
+        assertEquals(walCalls.get(), 2);
+    }
+
+    private MiruPartitionedActivity activity(int index, long clockTimestamp) {
+        MiruActivity activity = new MiruActivity.Builder(tenantId, index, index, false, new String[0]).build();
+        return new MiruPartitionedActivityFactory(() -> clockTimestamp).activity(1, partitionId, index, activity);
+    }
+
+    private MiruWALClient<?, ?> walClient() {
+        return (MiruWALClient<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { MiruWALClient.class }, (proxy, method, args) -> {
+            if (!method.getName().equals("oldestActivityClockTimestamp")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            walCalls.incrementAndGet();
+            return walOldest.get();
+        });
+    }
+}
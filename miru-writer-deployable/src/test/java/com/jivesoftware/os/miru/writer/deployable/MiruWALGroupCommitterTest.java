@@ -0,0 +1,157 @@
+package com.jivesoftware.os.miru.writer.deployable;
+
+import com.google.common.collect.Lists;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionId;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivity;
+import com.jivesoftware.os.miru.api.activity.MiruPartitionedActivityFactory;
+import com.jivesoftware.os.miru.api.base.MiruTenantId;
+import com.jivesoftware.os.miru.api.wal.MiruWALClient;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ *
+ */
+public class MiruWALGroupCommitterTest {
+
+    private final MiruTenantId tenantId = new MiruTenantId("test".getBytes());
+    private final MiruPartitionId partitionId = MiruPartitionId.of(0);
+    private final MiruPartitionedActivityFactory factory = new MiruPartitionedActivityFactory();
+
+    @Test
+    public void testCoalescesQueuedWritesInOrder() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<Integer>> calls = Collections.synchronizedList(Lists.newArrayList());
+        MiruWALGroupCommitter committer = new MiruWALGroupCommitter(walClient(calls, entered, release, -1), 100);
+
+        List<Writer> writers = startWriters(committer, 5, entered);
+        release.countDown();
+        for (Writer writer : writers) {
+            writer.join();
+            assertNull(writer.failure.get());
+        }
+
+        assertEquals(calls.size(), 2);
+        assertEquals(calls.get(0), Lists.newArrayList(0));
+        assertEquals(calls.get(1), Lists.newArrayList(1, 2, 3, 4));
+        assertEquals(committer.groupCount(), 0);
+    }
+
+    @Test
+    public void testBatchesAreBoundedBySize() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<Integer>> calls = Collections.synchronizedList(Lists.newArrayList());
+        MiruWALGroupCommitter committer = new MiruWALGroupCommitter(walClient(calls, entered, release, -1), 2);
+
+        List<Writer> writers = startWriters(committer, 6, entered);
+        release.countDown();
+        for (Writer writer : writers) {
+            writer.join();
+            assertNull(writer.failure.get());
+        }
+
+        assertEquals(calls.size(), 4);
+        assertEquals(calls.get(0), Lists.newArrayList(0));
+        assertEquals(calls.get(1), Lists.newArrayList(1, 2));
+        assertEquals(calls.get(2), Lists.newArrayList(3, 4));
+        assertEquals(calls.get(3), Lists.newArrayList(5));
+    }
+
+    @Test
+    public void testFailureReachesEveryWriterInTheBatch() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<List<Integer>> calls = Collections.synchronizedList(Lists.newArrayList());
+        MiruWALGroupCommitter committer = new MiruWALGroupCommitter(walClient(calls, entered, release, 1), 100);
+
+        List<Writer> writers = startWriters(committer, 4, entered);
+        release.countDown();
+        for (Writer writer : writers) {
+            writer.join();
+        }
+
+        assertNull(writers.get(0).failure.get());
+        for (Writer writer : writers.subList(1, writers.size())) {
+            assertTrue(writer.failure.get() instanceof IllegalStateException);
+        }
+        assertEquals(committer.groupCount(), 0);
+
+        // the group is rebuilt for the next write
+        committer.writeActivity(tenantId, partitionId, Collections.singletonList(factory.begin(1, partitionId, tenantId, 9)));
+        assertEquals(calls.get(calls.size() - 1), Lists.newArrayList(9));
+    }
+
+    /**
+     * Starts the first writer, waits for it to block inside the WAL, then queues the rest one at a time so their order is known.
+     */
+    private List<Writer> startWriters(MiruWALGroupCommitter committer, int count, CountDownLatch entered) throws Exception {
+        List<Writer> writers = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            Writer writer = new Writer(committer, i);
+            writers.add(writer);
+            writer.start();
+            if (i == 0) {
+                entered.await();
+            } else {
+                while (writer.getState() != Thread.State.WAITING && writer.isAlive()) {
+                    Thread.yield();
+                }
+            }
+        }
+        return writers;
+    }
+
+    private class Writer extends Thread {
+
+        private final MiruWALGroupCommitter committer;
+        private final int index;
+        private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+        private Writer(MiruWALGroupCommitter committer, int index) {
+            this.committer = committer;
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            try {
+                committer.writeActivity(tenantId, partitionId, Collections.singletonList(factory.begin(1, partitionId, tenantId, index)));
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private MiruWALClient<?, ?> walClient(List<List<Integer>> calls, CountDownLatch entered, CountDownLatch release, int failCall) {
+        return (MiruWALClient<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { MiruWALClient.class }, (proxy, method, args) -> {
+            if (!method.getName().equals("writeActivity")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            List<Integer> indexes = Lists.newArrayList();
+            for (MiruPartitionedActivity partitionedActivity : (List<MiruPartitionedActivity>) args[2]) {
+                indexes.add(partitionedActivity.index);
+            }
+            int call = calls.size();
+            calls.add(indexes);
+            if (call == 0) {
+                entered.countDown();
+                release.await();
+            }
+            if (call == failCall) {
+                throw new IllegalStateException("failed call " + call);
+            }
+            return null;
+        });
+    }
+}